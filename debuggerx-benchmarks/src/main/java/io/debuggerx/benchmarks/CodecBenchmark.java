@@ -0,0 +1,142 @@
+package io.debuggerx.benchmarks;
+
+import io.debuggerx.common.config.DebuggerConfig;
+import io.debuggerx.common.constants.JdwpConstants;
+import io.debuggerx.common.enums.ConnectionType;
+import io.debuggerx.core.capture.CaptureSettings;
+import io.debuggerx.core.capture.PacketCapture;
+import io.debuggerx.protocol.jdwp.IdSizes;
+import io.debuggerx.protocol.packet.JdwpFrames;
+import io.debuggerx.protocol.packet.JdwpPacket;
+import io.debuggerx.transport.codec.JdwpPacketDecoder;
+import io.debuggerx.transport.codec.JdwpPacketEncoder;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.embedded.EmbeddedChannel;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 编解码器基准：{@link JdwpPacketDecoder}按帧切分、按需解析为{@link JdwpPacket}，以及{@link JdwpPacketEncoder}编码
+ * <p>
+ * 每次调用向解码器写入一段包含{@value #FRAMES_PER_READ}个帧的字节流(复合事件与回复交替)，结果按单帧计时
+ *
+ * @author ouwu
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CodecBenchmark {
+    static final int FRAMES_PER_READ = 32;
+
+    @Param({"4", "8"})
+    public int idSize;
+
+    /**
+     * 是否开启包捕获(写入临时文件)
+     */
+    @Param({"false", "true"})
+    public boolean capture;
+
+    private EmbeddedChannel decoderChannel;
+    private EmbeddedChannel encoderChannel;
+    private ByteBuf stream;
+    private JdwpPacket event;
+    private File captureFile;
+
+    @Setup
+    public void setup() throws IOException {
+        if (capture) {
+            captureFile = File.createTempFile("codec-benchmark", ".dbxcap");
+            PacketCapture.getInstance().start(CaptureSettings.of(DebuggerConfig.getDefault(), captureFile.getPath()));
+        }
+        IdSizes idSizes = JdwpPackets.idSizes(idSize);
+
+        JdwpPacket[] packets = new JdwpPacket[FRAMES_PER_READ];
+        for (int i = 0; i < FRAMES_PER_READ; i++) {
+            packets[i] = i % 2 == 0 ? JdwpPackets.compositeEvent(idSizes, 3, i) : JdwpPackets.reply(i, 64);
+        }
+        stream = JdwpPackets.stream(packets);
+        for (JdwpPacket packet : packets) {
+            packet.release();
+        }
+
+        decoderChannel = new EmbeddedChannel(new JdwpPacketDecoder());
+        decoderChannel.writeInbound(Unpooled.wrappedBuffer(JdwpConstants.HANDSHAKE_PACKET));
+        decoderChannel.readInbound();
+
+        encoderChannel = new EmbeddedChannel(new JdwpPacketEncoder());
+        event = JdwpPackets.compositeEvent(idSizes, 3, 1);
+    }
+
+    @TearDown
+    public void tearDown() {
+        decoderChannel.finishAndReleaseAll();
+        encoderChannel.finishAndReleaseAll();
+        stream.release();
+        event.release();
+        if (captureFile != null) {
+            PacketCapture.getInstance().stop();
+            captureFile.delete();
+        }
+    }
+
+    /**
+     * 快速路径：仅切分帧并读取header字段，与代理处理器一样先经过包捕获
+     */
+    @Benchmark
+    @OperationsPerInvocation(FRAMES_PER_READ)
+    public void decodeFrames(Blackhole blackhole) {
+        decoderChannel.writeInbound(stream.retainedDuplicate());
+        ByteBuf frame;
+        while ((frame = decoderChannel.readInbound()) != null) {
+            PacketCapture.getInstance().capture(decoderChannel, ConnectionType.JVM_SERVER, frame);
+            blackhole.consume(JdwpFrames.id(frame));
+            frame.release();
+        }
+    }
+
+    /**
+     * 慢速路径：切分后再解析为{@link JdwpPacket}
+     */
+    @Benchmark
+    @OperationsPerInvocation(FRAMES_PER_READ)
+    public void decodePackets(Blackhole blackhole) {
+        decoderChannel.writeInbound(stream.retainedDuplicate());
+        ByteBuf frame;
+        while ((frame = decoderChannel.readInbound()) != null) {
+            JdwpPacket packet = JdwpPacket.decode(frame);
+            blackhole.consume(packet.getHeader());
+            packet.release();
+            frame.release();
+        }
+    }
+
+    @Benchmark
+    public void encode(Blackhole blackhole) {
+        // 编码器写出后释放数据包，先retain以便复用
+        encoderChannel.writeOutbound(event.retain());
+        ByteBuf out = encoderChannel.readOutbound();
+        blackhole.consume(out.readableBytes());
+        out.release();
+    }
+}
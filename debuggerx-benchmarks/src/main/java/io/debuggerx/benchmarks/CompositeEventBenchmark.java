@@ -0,0 +1,78 @@
+package io.debuggerx.benchmarks;
+
+import io.debuggerx.core.processor.CommandProcessor;
+import io.debuggerx.core.processor.registry.CommandProcessorRegistry;
+import io.debuggerx.core.processor.registry.EventProcessorRegistry;
+import io.debuggerx.core.session.DebugSession;
+import io.debuggerx.core.session.SessionManager;
+import io.debuggerx.protocol.enums.CommandIdentifier;
+import io.debuggerx.protocol.packet.JdwpPacket;
+import io.netty.channel.embedded.EmbeddedChannel;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 复合事件解析基准：{@code CompositeEventCommandProcessor}从Event.Composite包中提取请求id
+ *
+ * @author ouwu
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CompositeEventBenchmark {
+
+    @Param({"4", "8"})
+    public int idSize;
+
+    /**
+     * 每个复合事件包含的事件数
+     */
+    @Param({"1", "5", "20"})
+    public int events;
+
+    private final SessionManager sessionManager = SessionManager.getInstance();
+    private EmbeddedChannel jvmChannel;
+    private DebugSession session;
+    private CommandProcessor processor;
+    private JdwpPacket packet;
+
+    @Setup
+    public void setup() {
+        // 断点事件处理会更新会话的当前断点
+        jvmChannel = new EmbeddedChannel();
+        session = sessionManager.createJvmServerSession(jvmChannel);
+        session.getVmInfo().setIdSizes(JdwpPackets.idSizes(idSize));
+
+        processor = new CommandProcessorRegistry(new EventProcessorRegistry())
+                .getProcessor(CommandIdentifier.COMPOSITE_EVENT_COMMAND);
+        packet = JdwpPackets.compositeEvent(session.getVmInfo().getIdSizes(), events, 1);
+    }
+
+    @TearDown
+    public void tearDown() {
+        sessionManager.removeSession(jvmChannel);
+        jvmChannel.finishAndReleaseAll();
+        packet.release();
+    }
+
+    @Benchmark
+    public List<Integer> parse() {
+        return processor.process(packet.dataBuffer(), packet, session);
+    }
+}
@@ -0,0 +1,137 @@
+package io.debuggerx.benchmarks;
+
+import io.debuggerx.common.constants.JdwpConstants;
+import io.debuggerx.protocol.enums.CommandIdentifier;
+import io.debuggerx.protocol.enums.EventKind;
+import io.debuggerx.protocol.jdwp.IdSizes;
+import io.debuggerx.protocol.packet.JdwpHeader;
+import io.debuggerx.protocol.packet.JdwpPacket;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * 基准测试使用的JDWP数据包构造工具
+ * <p>
+ * 复合事件按调试器停在断点并单步时JVM实际发出的组合构造：断点、单步、方法进入、类准备、线程启动循环出现
+ *
+ * @author ouwu
+ */
+public final class JdwpPackets {
+    /**
+     * 复合事件中循环出现的事件类型
+     */
+    private static final EventKind[] EVENT_MIX = {
+            EventKind.BREAKPOINT,
+            EventKind.SINGLE_STEP,
+            EventKind.METHOD_ENTRY,
+            EventKind.CLASS_PREPARE,
+            EventKind.THREAD_START
+    };
+
+    private static final byte[] CLASS_SIGNATURE =
+            "Lcom/example/order/service/OrderServiceImpl$$EnhancerBySpringCGLIB$$5f1c2a;".getBytes(StandardCharsets.UTF_8);
+
+    private static final byte SUSPEND_POLICY_ALL = 2;
+    private static final byte TYPE_TAG_CLASS = 1;
+    private static final byte VIRTUAL_MACHINE_COMMAND_SET = 1;
+    private static final byte VERSION_COMMAND = 1;
+    private static final int CLASS_STATUS_PREPARED = 7;
+
+    private JdwpPackets() {
+    }
+
+    /**
+     * 与JVM协商的id长度
+     * @param idSize 所有id统一的字节数(4或8)
+     */
+    public static IdSizes idSizes(int idSize) {
+        return new IdSizes(idSize, idSize, idSize, idSize, idSize);
+    }
+
+    /**
+     * 构造复合事件包(Event.Composite)
+     * @param idSizes id长度
+     * @param events 事件数
+     * @param firstRequestId 第一个事件的请求id，后续事件依次递增
+     * @return 数据包
+     */
+    public static JdwpPacket compositeEvent(IdSizes idSizes, int events, int firstRequestId) {
+        ByteBuf data = Unpooled.buffer();
+        data.writeByte(SUSPEND_POLICY_ALL);
+        data.writeInt(events);
+        for (int i = 0; i < events; i++) {
+            EventKind kind = EVENT_MIX[i % EVENT_MIX.length];
+            data.writeByte(kind.id);
+            data.writeInt(firstRequestId + i);
+            writeId(data, idSizes.getObjectIdSize(), 0x1000 + i);
+            if (kind == EventKind.CLASS_PREPARE) {
+                data.writeByte(TYPE_TAG_CLASS);
+                writeId(data, idSizes.getReferenceTypeIdSize(), 0x2000 + i);
+                data.writeInt(CLASS_SIGNATURE.length);
+                data.writeBytes(CLASS_SIGNATURE);
+                data.writeInt(CLASS_STATUS_PREPARED);
+            } else if (kind != EventKind.THREAD_START) {
+                // location
+                data.writeByte(TYPE_TAG_CLASS);
+                writeId(data, idSizes.getReferenceTypeIdSize(), 0x2000 + i);
+                writeId(data, idSizes.getMethodIdSize(), 0x3000 + i);
+                data.writeLong(42 + i);
+            }
+        }
+        CommandIdentifier composite = CommandIdentifier.COMPOSITE_EVENT_COMMAND;
+        return new JdwpPacket(commandHeader(0, (byte) composite.getCommandSetId(), (byte) composite.getCommandId()), data);
+    }
+
+    /**
+     * 构造无需解析的命令包(VirtualMachine.Version)
+     * @param id 调试器分配的id
+     */
+    public static JdwpPacket versionCommand(int id) {
+        return new JdwpPacket(commandHeader(id, VIRTUAL_MACHINE_COMMAND_SET, VERSION_COMMAND), (byte[]) null);
+    }
+
+    /**
+     * 构造回复包
+     * @param id 对应命令的id
+     * @param dataLength 数据部分长度
+     */
+    public static JdwpPacket reply(int id, int dataLength) {
+        JdwpHeader header = new JdwpHeader();
+        header.setId(id);
+        header.setFlags(JdwpConstants.FLAG_REPLY_PACKET);
+        header.setErrorCode((short) 0);
+        return new JdwpPacket(header, new byte[dataLength]);
+    }
+
+    /**
+     * 将数据包依次编码为连续的字节流，模拟一次socket读取到的多个帧
+     * @param packets 数据包，编码后仍由调用方释放
+     * @return 字节流
+     */
+    public static ByteBuf stream(JdwpPacket... packets) {
+        ByteBuf out = Unpooled.buffer();
+        for (JdwpPacket packet : packets) {
+            packet.writeTo(out);
+        }
+        return out;
+    }
+
+    private static JdwpHeader commandHeader(int id, byte commandSet, byte command) {
+        JdwpHeader header = new JdwpHeader();
+        header.setId(id);
+        header.setFlags(JdwpConstants.FLAG_COMMAND);
+        header.setCommandSet(commandSet);
+        header.setCommand(command);
+        return header;
+    }
+
+    private static void writeId(ByteBuf out, int size, long value) {
+        if (size == 8) {
+            out.writeLong(value);
+        } else {
+            out.writeInt((int) value);
+        }
+    }
+}
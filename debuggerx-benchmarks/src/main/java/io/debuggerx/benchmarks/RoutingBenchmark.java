@@ -0,0 +1,122 @@
+package io.debuggerx.benchmarks;
+
+import io.debuggerx.common.enums.ConnectionType;
+import io.debuggerx.core.service.DebuggerService;
+import io.debuggerx.core.session.DebugSession;
+import io.debuggerx.core.session.SessionManager;
+import io.debuggerx.protocol.packet.JdwpPacket;
+import io.debuggerx.protocol.packet.PacketSource;
+import io.netty.channel.DefaultChannelId;
+import io.netty.channel.embedded.EmbeddedChannel;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 路由基准：{@link DebuggerService#handlePacket}将JVM事件分发给所有调试器，以及调试器命令与回复的id映射往返
+ *
+ * @author ouwu
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RoutingBenchmark {
+
+    @Param({"4", "8"})
+    public int idSize;
+
+    /**
+     * 连接的调试器数量
+     */
+    @Param({"1", "4", "16"})
+    public int debuggers;
+
+    private final SessionManager sessionManager = SessionManager.getInstance();
+    private final DebuggerService debuggerService = DebuggerService.getInstance();
+
+    private EmbeddedChannel jvmChannel;
+    private EmbeddedChannel[] debuggerChannels;
+    private PacketSource jvmSource;
+    private PacketSource[] debuggerSources;
+    private DebugSession session;
+
+    private JdwpPacket event;
+    private JdwpPacket command;
+    private JdwpPacket reply;
+    private int next;
+
+    @Setup
+    public void setup() {
+        jvmChannel = new EmbeddedChannel();
+        debuggerService.handleHandshake(jvmChannel, ConnectionType.JVM_SERVER);
+        session = sessionManager.sessionOf(jvmChannel);
+        session.getVmInfo().setIdSizes(JdwpPackets.idSizes(idSize));
+        jvmSource = new PacketSource(ConnectionType.JVM_SERVER, jvmChannel);
+
+        debuggerChannels = new EmbeddedChannel[debuggers];
+        debuggerSources = new PacketSource[debuggers];
+        for (int i = 0; i < debuggers; i++) {
+            // EmbeddedChannel默认共用同一个id，调试器以channel id区分
+            debuggerChannels[i] = new EmbeddedChannel(DefaultChannelId.newInstance());
+            debuggerService.handleHandshake(debuggerChannels[i], ConnectionType.DEBUGGER_PROXY);
+            debuggerSources[i] = new PacketSource(ConnectionType.DEBUGGER_PROXY, debuggerChannels[i]);
+            // 每个调试器都订阅事件中的请求id
+            for (int requestId = 1; requestId <= 3; requestId++) {
+                session.getEventRoutes().subscribe(requestId, session.slotOf(debuggerChannels[i]));
+            }
+        }
+
+        // 断点命中并单步时的典型组合：断点、单步、方法进入
+        event = JdwpPackets.compositeEvent(session.getVmInfo().getIdSizes(), 3, 1);
+        command = JdwpPackets.versionCommand(1);
+        reply = JdwpPackets.reply(0, 64);
+    }
+
+    @TearDown
+    public void tearDown() {
+        sessionManager.removeSession(jvmChannel);
+        jvmChannel.finishAndReleaseAll();
+        for (EmbeddedChannel channel : debuggerChannels) {
+            channel.finishAndReleaseAll();
+        }
+        event.release();
+        command.release();
+        reply.release();
+    }
+
+    /**
+     * JVM事件：解析复合事件并查找订阅了其请求id的调试器
+     */
+    @Benchmark
+    public List<PacketSource> routeEvent() {
+        return debuggerService.handlePacket(jvmSource, event, session);
+    }
+
+    /**
+     * 调试器命令分配全局id，JVM回复按id找回来源调试器并还原原始id
+     */
+    @Benchmark
+    public List<PacketSource> routeCommandAndReply() {
+        PacketSource debugger = debuggerSources[next++ % debuggers];
+        command.getHeader().setId(next);
+        debuggerService.handlePacket(debugger, command, session);
+
+        reply.getHeader().setId(command.getHeader().getId());
+        return debuggerService.handlePacket(jvmSource, reply, session);
+    }
+}
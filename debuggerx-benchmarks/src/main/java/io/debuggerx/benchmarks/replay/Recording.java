@@ -0,0 +1,331 @@
+package io.debuggerx.benchmarks.replay;
+
+import io.debuggerx.common.constants.JdwpConstants;
+import io.debuggerx.common.exception.DebuggerException;
+import io.debuggerx.core.capture.CaptureFormat;
+import io.debuggerx.core.capture.CaptureReader;
+import lombok.AccessLevel;
+import lombok.Getter;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 从捕获文件载入的一次会话：各调试器发出的命令、JVM的回复与事件，以及两者之间的对应关系
+ * <p>
+ * 回复按{@link CaptureFormat#LINK}记录的新id与命令配对。假JVM收到代理转发的命令时按内容查找录制的回复，
+ * 内容未录制(代理自身发出的命令)或不一致时退回按命令集/命令依次取用。
+ * 录制时被截断的帧在回放时补零到原长度。录制的回复逐个取用，一个Recording只能回放一次。
+ *
+ * @author ouwu
+ */
+@Getter
+public class Recording {
+    /**
+     * 第一条记录的时间，回放按相对偏移调度
+     */
+    private long startedAt = -1;
+    private String jvmDescription;
+    private final List<DebuggerTrack> debuggers = new ArrayList<>();
+    /**
+     * JVM发出的事件，按录制顺序
+     */
+    private final List<Frame> events = new ArrayList<>();
+    /**
+     * 事件包id -> 在{@link #events}中的下标
+     */
+    @Getter(AccessLevel.NONE)
+    private final Map<Integer, Integer> eventIndexes = new HashMap<>();
+    private int replyCount;
+    private int truncatedFrames;
+
+    /**
+     * 命令内容 -> 录制的回复，按录制顺序取用
+     */
+    @Getter(AccessLevel.NONE)
+    private final Map<ContentKey, Deque<Frame>> repliesByContent = new HashMap<>();
+    /**
+     * commandSet << 8 | command -> 录制的回复，按录制顺序取用，与按内容的索引互不影响
+     */
+    @Getter(AccessLevel.NONE)
+    private final Map<Integer, Deque<Frame>> repliesByCommand = new HashMap<>();
+
+    private Recording() {
+    }
+
+    /**
+     * Loads a capture of one proxy session. The capture must have been taken with no sampling and
+     * no command set filter, and should use a snap length large enough for the replies.
+     *
+     * @param file the capture file
+     * @return the recording
+     * @throws IOException if the file cannot be read
+     * @throws DebuggerException if the file holds no session, or frames of several JVMs
+     */
+    public static Recording load(String file) throws IOException {
+        Recording recording = new Recording();
+        try (CaptureReader reader = new CaptureReader(file)) {
+            recording.read(reader);
+        }
+        if (recording.jvmDescription == null) {
+            throw new DebuggerException("No JVM frames in " + file);
+        }
+        return recording;
+    }
+
+    private void read(CaptureReader reader) throws IOException {
+        int jvmChannel = -1;
+        Map<Integer, DebuggerTrack> tracks = new LinkedHashMap<>();
+        Map<Integer, String> descriptions = new HashMap<>();
+        // 各调试器最近发出的命令：originId -> 命令
+        Map<Integer, Map<Integer, Command>> latestCommands = new HashMap<>();
+        List<Link> links = new ArrayList<>();
+        Map<Integer, Frame> replies = new HashMap<>();
+        List<Command> commands = new ArrayList<>();
+
+        while (reader.next()) {
+            if (startedAt < 0) {
+                startedAt = reader.getTimestamp();
+            }
+            long offset = reader.getTimestamp() - startedAt;
+            ByteBuffer data = reader.data();
+            switch (reader.getDirection()) {
+                case CaptureFormat.CHANNEL:
+                    descriptions.put(reader.getChannel(), StandardCharsets.UTF_8.decode(data).toString());
+                    break;
+                case CaptureFormat.LINK: {
+                    int newId = data.getInt();
+                    int originId = data.getInt();
+                    Map<Integer, Command> latest = latestCommands.get(reader.getChannel());
+                    links.add(new Link(newId, latest == null ? null : latest.get(originId), data.get(), data.get()));
+                    break;
+                }
+                case CaptureFormat.FROM_DEBUGGER: {
+                    Frame frame = frame(reader, offset);
+                    DebuggerTrack track = tracks.computeIfAbsent(reader.getChannel(),
+                            channel -> new DebuggerTrack(descriptions.get(channel), offset));
+                    Command command = new Command(frame);
+                    track.commands.add(command);
+                    commands.add(command);
+                    latestCommands.computeIfAbsent(reader.getChannel(), channel -> new HashMap<>()).put(frame.getId(), command);
+                    break;
+                }
+                case CaptureFormat.FROM_JVM: {
+                    if (jvmChannel < 0) {
+                        jvmChannel = reader.getChannel();
+                        jvmDescription = descriptions.get(jvmChannel);
+                    } else if (jvmChannel != reader.getChannel()) {
+                        throw new DebuggerException("Capture holds several JVM sessions: " + jvmDescription
+                                + ", " + descriptions.get(reader.getChannel()));
+                    }
+                    Frame frame = frame(reader, offset);
+                    if (frame.isCommand()) {
+                        frame.gate = replies.size();
+                        eventIndexes.put(frame.getId(), events.size());
+                        events.add(frame);
+                    } else {
+                        replies.put(frame.getId(), frame);
+                    }
+                    break;
+                }
+                default:
+                    throw new DebuggerException("Unknown capture record direction " + reader.getDirection());
+            }
+        }
+        debuggers.addAll(tracks.values());
+        replyCount = replies.size();
+        pair(links, replies, commands);
+    }
+
+    /**
+     * 按转发时分配的新id将命令与回复配对，建立假JVM的回复索引和调试器的期望回复
+     */
+    private void pair(List<Link> links, Map<Integer, Frame> replies, List<Command> commands) {
+        for (Link link : links) {
+            Frame frame = replies.get(link.newId);
+            if (frame == null) {
+                continue;
+            }
+            if (link.origin != null) {
+                link.origin.expected = frame;
+                if (!link.origin.frame.isTruncated()) {
+                    repliesByContent.computeIfAbsent(new ContentKey(link.origin.frame), key -> new ArrayDeque<>()).add(frame);
+                }
+            }
+            repliesByCommand.computeIfAbsent((link.commandSet & 0xFF) << 8 | link.command & 0xFF,
+                    key -> new ArrayDeque<>()).add(frame);
+        }
+        // 未转发到JVM的命令(缓存命中、合并)期望与之前内容相同的命令得到同样的回复
+        Map<ContentKey, Frame> answered = new HashMap<>();
+        for (Command command : commands) {
+            ContentKey key = new ContentKey(command.frame);
+            if (command.expected != null) {
+                answered.put(key, command.expected);
+            } else {
+                command.expected = answered.get(key);
+            }
+        }
+    }
+
+    private Frame frame(CaptureReader reader, long offset) {
+        if (reader.getCaptured() < JdwpConstants.HEADER_LENGTH) {
+            throw new DebuggerException("Capture record shorter than a JDWP header");
+        }
+        if (reader.isTruncated()) {
+            truncatedFrames++;
+        }
+        byte[] bytes = new byte[reader.getCaptured()];
+        reader.data().get(bytes);
+        return new Frame(offset, bytes, reader.getLength());
+    }
+
+    /**
+     * @param eventId the packet ID of an event sent by the JVM
+     * @return the index of the event in {@link #getEvents()}, or -1 if it was not recorded
+     */
+    int eventIndex(int eventId) {
+        Integer index = eventIndexes.get(eventId);
+        return index == null ? -1 : index;
+    }
+
+    /**
+     * Finds the recorded reply for a command the proxy forwarded to the JVM, by content first and
+     * then by command. Replies are used in recorded order; the last one is reused for any further
+     * matching command, such as the same query or event request also sent by the replaying proxy
+     * itself.
+     *
+     * @param command the command frame received by the stub JVM
+     * @return the recorded reply, or null if none was recorded for this command
+     */
+    Frame takeReply(ByteBuffer command) {
+        Frame reply = take(repliesByContent.get(new ContentKey(command)));
+        return reply != null ? reply : take(repliesByCommand.get((command.get(9) & 0xFF) << 8 | command.get(10) & 0xFF));
+    }
+
+    private static Frame take(Deque<Frame> replies) {
+        if (replies == null) {
+            return null;
+        }
+        return replies.size() > 1 ? replies.poll() : replies.peek();
+    }
+
+    /**
+     * 录制的一帧，只保存捕获到的字节，发送时补零到原长度
+     */
+    @Getter
+    public static final class Frame {
+        private final long offsetNanos;
+        private final byte[] bytes;
+        private final int length;
+        /**
+         * 事件发送前应已发出的回复数，保持录制时回复与事件的先后
+         */
+        private int gate;
+
+        private Frame(long offsetNanos, byte[] bytes, int length) {
+            this.offsetNanos = offsetNanos;
+            this.bytes = bytes;
+            this.length = length;
+        }
+
+        public int getId() {
+            return ByteBuffer.wrap(bytes).getInt(4);
+        }
+
+        public boolean isCommand() {
+            return (bytes[8] & JdwpConstants.FLAG_REPLY_PACKET) == 0;
+        }
+
+        public boolean isTruncated() {
+            return bytes.length < length;
+        }
+    }
+
+    /**
+     * 一个调试器连接：连接时间与按顺序发出的命令
+     */
+    @Getter
+    public static final class DebuggerTrack {
+        private final String description;
+        private final long connectedAtNanos;
+        private final List<Command> commands = new ArrayList<>();
+
+        private DebuggerTrack(String description, long connectedAtNanos) {
+            this.description = description;
+            this.connectedAtNanos = connectedAtNanos;
+        }
+    }
+
+    /**
+     * 调试器发出的命令及录制时JVM对它的回复
+     */
+    @Getter
+    public static final class Command {
+        private final Frame frame;
+        /**
+         * 录制的回复，id为代理分配的新id；未知时为null
+         */
+        private Frame expected;
+
+        private Command(Frame frame) {
+            this.frame = frame;
+        }
+    }
+
+    /**
+     * 转发到JVM的命令：新id与发出它的调试器命令，代理自身发出的命令origin为null
+     */
+    private static final class Link {
+        private final int newId;
+        private final Command origin;
+        private final byte commandSet;
+        private final byte command;
+
+        private Link(int newId, Command origin, byte commandSet, byte command) {
+            this.newId = newId;
+            this.origin = origin;
+            this.commandSet = commandSet;
+            this.command = command;
+        }
+    }
+
+    /**
+     * 命令集、命令与数据，不含id
+     */
+    private static final class ContentKey {
+        private final byte[] content;
+        private final int hash;
+
+        private ContentKey(Frame frame) {
+            this(ByteBuffer.wrap(frame.bytes));
+        }
+
+        private ContentKey(ByteBuffer frame) {
+            int start = frame.position() + 9;
+            content = new byte[frame.limit() - start];
+            for (int i = 0; i < content.length; i++) {
+                content[i] = frame.get(start + i);
+            }
+            hash = Arrays.hashCode(content);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof ContentKey && Arrays.equals(content, ((ContentKey) o).content);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+}
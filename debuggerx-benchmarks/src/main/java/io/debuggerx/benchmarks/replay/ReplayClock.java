@@ -0,0 +1,38 @@
+package io.debuggerx.benchmarks.replay;
+
+/**
+ * 回放时钟：按录制时的相对偏移(可加速)调度帧，或不等待全速发送
+ *
+ * @author ouwu
+ */
+final class ReplayClock {
+    /**
+     * 回放速度倍数，0表示全速
+     */
+    private final double speed;
+    private volatile long startedAt;
+
+    ReplayClock(double speed) {
+        this.speed = speed;
+    }
+
+    void start() {
+        startedAt = System.nanoTime();
+    }
+
+    boolean isFlatOut() {
+        return speed <= 0;
+    }
+
+    /**
+     * @param offsetNanos 帧在录制中相对第一条记录的偏移
+     * @return 是否已到发送时间
+     */
+    boolean isDue(long offsetNanos) {
+        return isFlatOut() || System.nanoTime() - startedAt >= (long) (offsetNanos / speed);
+    }
+
+    long elapsedNanos() {
+        return System.nanoTime() - startedAt;
+    }
+}
@@ -0,0 +1,122 @@
+package io.debuggerx.benchmarks.replay;
+
+import lombok.Builder;
+import lombok.Getter;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Result of replaying a recorded session through the proxy.
+ *
+ * @author ouwu
+ */
+@Getter
+@Builder
+public class ReplayReport {
+    /**
+     * 回放速度倍数，0表示全速
+     */
+    private final double speed;
+    private final long durationNanos;
+    private final int debuggers;
+    private final int commandsSent;
+    private final int replies;
+    /**
+     * 回放结束时仍未收到回复的命令数
+     */
+    private final int unanswered;
+    /**
+     * 与录制的回复不一致的回复数
+     */
+    private final int mismatches;
+    /**
+     * 录制中找不到对应回复、无法比较的回复数
+     */
+    private final int unverified;
+    private final List<String> mismatchSamples;
+    private final int eventsSent;
+    /**
+     * 各调试器收到的事件包总数，一个事件包可能转发给多个调试器
+     */
+    private final int eventsDelivered;
+    /**
+     * 假JVM收到但录制中没有回复可用的命令数
+     */
+    private final int unmatchedJvmCommands;
+    private final int truncatedFrames;
+    /**
+     * 命令往返延迟，已排序(纳秒)
+     */
+    private final long[] commandLatencies;
+    /**
+     * 事件转发延迟，已排序(纳秒)
+     */
+    private final long[] eventLatencies;
+    /**
+     * 回放期间代理线程分配的字节数，-1表示JVM不支持统计
+     */
+    private final long allocatedBytes;
+
+    /**
+     * @return packets per second through the proxy: commands, their replies and delivered events
+     */
+    public double getPacketsPerSecond() {
+        return durationNanos == 0 ? 0 : (commandsSent + replies + eventsDelivered) * (double) TimeUnit.SECONDS.toNanos(1) / durationNanos;
+    }
+
+    /**
+     * @return bytes allocated by the proxy threads per second, -1 if unknown
+     */
+    public double getAllocationRate() {
+        return allocatedBytes < 0 || durationNanos == 0 ? -1 : allocatedBytes * (double) TimeUnit.SECONDS.toNanos(1) / durationNanos;
+    }
+
+    /**
+     * @param percentile between 0 and 1
+     * @return the command round trip latency percentile in microseconds, 0 if no reply arrived
+     */
+    public long commandLatencyMicros(double percentile) {
+        return percentileMicros(commandLatencies, percentile);
+    }
+
+    /**
+     * @param percentile between 0 and 1
+     * @return the event forwarding latency percentile in microseconds, 0 if no event arrived
+     */
+    public long eventLatencyMicros(double percentile) {
+        return percentileMicros(eventLatencies, percentile);
+    }
+
+    private static long percentileMicros(long[] sorted, double percentile) {
+        if (sorted.length == 0) {
+            return 0;
+        }
+        int index = (int) Math.min(sorted.length - 1, Math.ceil(percentile * sorted.length) - 1);
+        return TimeUnit.NANOSECONDS.toMicros(sorted[Math.max(index, 0)]);
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder out = new StringBuilder();
+        out.append(String.format("Replay (%s) of %d debugger(s) in %d ms: %.0f packets/s%n",
+                speed <= 0 ? "flat out" : "x" + speed, debuggers, TimeUnit.NANOSECONDS.toMillis(durationNanos), getPacketsPerSecond()));
+        out.append(String.format("  commands: %d sent, %d replies, %d unanswered, %d differ from the recording, %d unverified%n",
+                commandsSent, replies, unanswered, mismatches, unverified));
+        out.append(String.format("  command latency: p50=%dus p90=%dus p99=%dus max=%dus%n",
+                commandLatencyMicros(0.5), commandLatencyMicros(0.9), commandLatencyMicros(0.99), commandLatencyMicros(1)));
+        out.append(String.format("  events: %d sent, %d delivered, latency p50=%dus p99=%dus max=%dus%n",
+                eventsSent, eventsDelivered, eventLatencyMicros(0.5), eventLatencyMicros(0.99), eventLatencyMicros(1)));
+        if (allocatedBytes >= 0) {
+            out.append(String.format("  proxy allocation: %d bytes, %.1f MB/s%n", allocatedBytes, getAllocationRate() / (1024 * 1024)));
+        }
+        if (unmatchedJvmCommands > 0 || truncatedFrames > 0) {
+            out.append(String.format("  %d JVM command(s) without a recorded reply, %d truncated frame(s) padded with zeros%n",
+                    unmatchedJvmCommands, truncatedFrames));
+        }
+        for (String sample : mismatchSamples) {
+            out.append("  differs: ").append(sample).append(System.lineSeparator());
+        }
+        return out.toString();
+    }
+}
@@ -0,0 +1,289 @@
+package io.debuggerx.benchmarks.replay;
+
+import io.debuggerx.common.config.DebuggerConfig;
+import io.debuggerx.common.exception.DebuggerException;
+import io.debuggerx.core.session.DebugSession;
+import io.debuggerx.core.session.SessionManager;
+import io.debuggerx.transport.server.DebugProxyServer;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.nio.NioEventLoopGroup;
+import io.netty.util.concurrent.DefaultThreadFactory;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadInfo;
+import java.lang.management.ThreadMXBean;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.LongStream;
+
+/**
+ * Replays a recorded session through a live {@link DebugProxyServer}, with a stub in place of the
+ * JVM and of each debugger.
+ * <p>
+ * The stub JVM answers the commands the proxy forwards with the recorded replies and sends the
+ * recorded events. Each stub debugger sends its recorded commands and compares the replies it gets
+ * with the recorded ones. Frames keep their recorded timing, optionally sped up, or are sent flat
+ * out. The {@link ReplayReport} gives throughput, latency percentiles and the bytes allocated by
+ * the proxy threads.
+ * <pre>
+ * java -cp debuggerx-benchmarks/target/benchmarks.jar io.debuggerx.benchmarks.replay.SessionReplay session.dbxcap [--flat | --speed=N]
+ * </pre>
+ *
+ * @author ouwu
+ */
+public class SessionReplay {
+    private static final String DEBUGGER_THREAD_PREFIX = "replay-debugger";
+    private static final long CONNECT_TIMEOUT_SECONDS = 10;
+    /**
+     * 所有帧发出后，超过该时间没有新的回复即结束回放
+     */
+    private static final long IDLE_TIMEOUT_NANOS = TimeUnit.SECONDS.toNanos(10);
+    /**
+     * 所有回复到达后，等待仍在转发途中的事件
+     */
+    private static final long EVENT_QUIET_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+
+    private final Recording recording;
+    private final DebuggerConfig config;
+    private final double speed;
+
+    /**
+     * @param recording the session to replay, used once
+     * @param config the proxy configuration; its JVM address and debugger port are overwritten
+     * @param speed the timing speed-up factor, 1 for the recorded timing, 0 to send flat out
+     */
+    public SessionReplay(Recording recording, DebuggerConfig config, double speed) {
+        this.recording = recording;
+        this.config = config;
+        this.speed = speed;
+    }
+
+    public static void main(String[] args) throws Exception {
+        double speed = 1;
+        for (int i = 1; i < args.length; i++) {
+            if ("--flat".equals(args[i])) {
+                speed = 0;
+            } else if (args[i].startsWith("--speed=")) {
+                speed = Double.parseDouble(args[i].substring("--speed=".length()));
+            } else {
+                args = new String[0];
+            }
+        }
+        if (args.length == 0) {
+            System.err.println("Usage: SessionReplay <capture file> [--flat | --speed=N]");
+            System.exit(2);
+        }
+        ReplayReport report = new SessionReplay(Recording.load(args[0]), DebuggerConfig.getDefault(), speed).run();
+        System.out.print(report);
+        System.exit(report.getMismatches() == 0 && report.getUnanswered() == 0 ? 0 : 1);
+    }
+
+    /**
+     * Starts a proxy and both stubs, replays the recording and stops everything.
+     *
+     * @return the report
+     * @throws InterruptedException if interrupted while replaying
+     * @throws DebuggerException if the proxy does not connect to the stubs
+     */
+    public ReplayReport run() throws InterruptedException {
+        // 会话管理器是全局的，上一次回放的会话关闭后再开始
+        awaitNoSession();
+        ReplayClock clock = new ReplayClock(speed);
+        EventLoopGroup debuggerGroup = new NioEventLoopGroup(2, new DefaultThreadFactory(DEBUGGER_THREAD_PREFIX));
+        List<StubDebugger> debuggers = new ArrayList<>();
+        DebugProxyServer proxy = null;
+        try (StubJvm jvm = new StubJvm(recording, clock)) {
+            config.setJvmServerHost("127.0.0.1");
+            config.setJvmServerPort(jvm.start());
+            config.setDebuggerProxyPort(0);
+            proxy = new DebugProxyServer(config);
+            proxy.startAsync();
+            if (!jvm.awaitConnection(CONNECT_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+                throw new DebuggerException("Proxy did not connect to the stub JVM");
+            }
+            awaitSession();
+            InetSocketAddress proxyAddress = proxy.getDebuggerProxyAddress();
+            for (Recording.DebuggerTrack track : recording.getDebuggers()) {
+                debuggers.add(new StubDebugger(debuggers.size() + 1, recording, track, clock, jvm));
+            }
+
+            AllocationMeter allocation = new AllocationMeter();
+            clock.start();
+            jvm.startEvents();
+            replay(clock, jvm, debuggers, debuggerGroup, proxyAddress);
+            long durationNanos = clock.elapsedNanos();
+            awaitQuiet(debuggers);
+            long allocatedBytes = allocation.allocatedBytes();
+
+            // 关闭连接后再读取各调试器在事件循环线程上记录的结果
+            debuggers.forEach(StubDebugger::close);
+            return report(jvm, debuggers, durationNanos, allocatedBytes);
+        } finally {
+            debuggers.forEach(StubDebugger::close);
+            if (proxy != null) {
+                proxy.shutdown();
+            }
+            debuggerGroup.shutdownGracefully(0, 1, TimeUnit.SECONDS).syncUninterruptibly();
+        }
+    }
+
+    /**
+     * 按录制时间接入调试器，直到全部命令收到回复、全部事件发出，或所有帧发出后长时间没有新回复
+     */
+    private static void replay(ReplayClock clock, StubJvm jvm, List<StubDebugger> debuggers, EventLoopGroup group,
+                               InetSocketAddress proxyAddress) throws InterruptedException {
+        int connected = 0;
+        int lastReplies = -1;
+        long lastProgressAt = System.nanoTime();
+        while (true) {
+            while (connected < debuggers.size() && clock.isDue(debuggers.get(connected).getConnectAtNanos())) {
+                debuggers.get(connected++).start(group, proxyAddress);
+            }
+            boolean allSent = connected == debuggers.size() && jvm.isEventsDone();
+            boolean allAnswered = true;
+            int replies = 0;
+            for (int i = 0; i < connected; i++) {
+                StubDebugger debugger = debuggers.get(i);
+                allSent &= debugger.isAllSent();
+                allAnswered &= debugger.isDone();
+                replies += debugger.getReplies();
+            }
+            if (allSent && allAnswered) {
+                return;
+            }
+            long now = System.nanoTime();
+            if (replies != lastReplies) {
+                lastReplies = replies;
+                lastProgressAt = now;
+            } else if (allSent && now - lastProgressAt > IDLE_TIMEOUT_NANOS) {
+                return;
+            }
+            TimeUnit.MILLISECONDS.sleep(1);
+        }
+    }
+
+    private static void awaitQuiet(List<StubDebugger> debuggers) throws InterruptedException {
+        int last = -1;
+        long quietSince = System.nanoTime();
+        while (System.nanoTime() - quietSince < EVENT_QUIET_NANOS) {
+            int events = debuggers.stream().mapToInt(StubDebugger::getEvents).sum();
+            if (events != last) {
+                last = events;
+                quietSince = System.nanoTime();
+            }
+            TimeUnit.MILLISECONDS.sleep(5);
+        }
+    }
+
+    private static void awaitNoSession() throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(CONNECT_TIMEOUT_SECONDS);
+        while (!SessionManager.getInstance().getSessions().isEmpty()) {
+            if (System.nanoTime() > deadline) {
+                throw new DebuggerException("A proxy session is still open in this JVM");
+            }
+            TimeUnit.MILLISECONDS.sleep(10);
+        }
+    }
+
+    private static void awaitSession() throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(CONNECT_TIMEOUT_SECONDS);
+        while (SessionManager.getInstance().getSessions().stream().noneMatch(DebugSession::isHandshakeCompleted)) {
+            if (System.nanoTime() > deadline) {
+                throw new DebuggerException("Proxy did not complete the handshake with the stub JVM");
+            }
+            TimeUnit.MILLISECONDS.sleep(10);
+        }
+    }
+
+    private ReplayReport report(StubJvm jvm, List<StubDebugger> debuggers, long durationNanos, long allocatedBytes) {
+        List<String> samples = new ArrayList<>();
+        long[] commandLatencies = debuggers.stream().flatMapToLong(debugger -> LongStream.of(debugger.getLatencies())).toArray();
+        long[] eventLatencies = debuggers.stream().flatMapToLong(debugger -> LongStream.of(debugger.getEventLatencies())).toArray();
+        Arrays.sort(commandLatencies);
+        Arrays.sort(eventLatencies);
+        int commandsSent = 0;
+        int replies = 0;
+        for (StubDebugger debugger : debuggers) {
+            commandsSent += debugger.getCommandsSent();
+            replies += debugger.getReplies();
+            samples.addAll(debugger.getMismatchSamples());
+        }
+        int commands = recording.getDebuggers().stream().mapToInt(track -> track.getCommands().size()).sum();
+        return ReplayReport.builder()
+                .speed(speed)
+                .durationNanos(durationNanos)
+                .debuggers(debuggers.size())
+                .commandsSent(commandsSent)
+                .replies(replies)
+                .unanswered(commands - replies)
+                .mismatches(debuggers.stream().mapToInt(StubDebugger::getMismatches).sum())
+                .unverified(debuggers.stream().mapToInt(StubDebugger::getUnverified).sum())
+                .mismatchSamples(samples)
+                .eventsSent(jvm.getEventsSent())
+                .eventsDelivered(debuggers.stream().mapToInt(StubDebugger::getEvents).sum())
+                .unmatchedJvmCommands(jvm.getUnmatchedCommands())
+                .truncatedFrames(recording.getTruncatedFrames())
+                .commandLatencies(commandLatencies)
+                .eventLatencies(eventLatencies)
+                .allocatedBytes(allocatedBytes)
+                .build();
+    }
+
+    /**
+     * 统计回放期间代理线程(除两端存根和调用线程外的所有Java线程)分配的字节数
+     */
+    private static final class AllocationMeter {
+        private final com.sun.management.ThreadMXBean threads;
+        private final Map<Long, Long> start;
+
+        private AllocationMeter() {
+            ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+            this.threads = bean instanceof com.sun.management.ThreadMXBean
+                    && ((com.sun.management.ThreadMXBean) bean).isThreadAllocatedMemorySupported()
+                    ? (com.sun.management.ThreadMXBean) bean : null;
+            if (threads != null) {
+                threads.setThreadAllocatedMemoryEnabled(true);
+            }
+            this.start = snapshot();
+        }
+
+        /**
+         * @return 自创建以来分配的字节数，-1表示不支持
+         */
+        private long allocatedBytes() {
+            if (threads == null) {
+                return -1;
+            }
+            long total = 0;
+            for (Map.Entry<Long, Long> entry : snapshot().entrySet()) {
+                total += entry.getValue() - start.getOrDefault(entry.getKey(), 0L);
+            }
+            return total;
+        }
+
+        private Map<Long, Long> snapshot() {
+            Map<Long, Long> allocated = new HashMap<>();
+            if (threads == null) {
+                return allocated;
+            }
+            long current = Thread.currentThread().getId();
+            for (ThreadInfo info : threads.getThreadInfo(threads.getAllThreadIds())) {
+                if (info == null || info.getThreadId() == current
+                        || info.getThreadName().startsWith(StubJvm.THREAD_PREFIX)
+                        || info.getThreadName().startsWith(DEBUGGER_THREAD_PREFIX)) {
+                    continue;
+                }
+                long bytes = threads.getThreadAllocatedBytes(info.getThreadId());
+                if (bytes >= 0) {
+                    allocated.put(info.getThreadId(), bytes);
+                }
+            }
+            return allocated;
+        }
+    }
+}
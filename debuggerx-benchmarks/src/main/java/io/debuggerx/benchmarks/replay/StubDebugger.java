@@ -0,0 +1,274 @@
+package io.debuggerx.benchmarks.replay;
+
+import io.debuggerx.common.constants.JdwpConstants;
+import io.debuggerx.common.exception.DebuggerException;
+import io.debuggerx.transport.codec.JdwpPacketDecoder;
+import io.netty.bootstrap.Bootstrap;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.channel.ChannelInitializer;
+import io.netty.channel.ChannelOption;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.socket.nio.NioSocketChannel;
+import io.netty.util.concurrent.ScheduledFuture;
+
+import java.io.Closeable;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 回放时代替一个调试器：按录制的时间发出命令，记录往返延迟，并将收到的回复与录制的回复比较
+ * <p>
+ * 除计数外的状态只在本连接的事件循环线程上访问，回放结束、连接关闭后再由调用方读取。
+ *
+ * @author ouwu
+ */
+final class StubDebugger implements Closeable {
+    private static final long HANDSHAKE_TIMEOUT_SECONDS = 10;
+    /**
+     * 最多保留的不一致回复描述
+     */
+    private static final int MAX_MISMATCH_SAMPLES = 10;
+
+    private final int number;
+    private final Recording recording;
+    private final Recording.DebuggerTrack track;
+    private final List<Recording.Command> commands;
+    private final ReplayClock clock;
+    private final StubJvm jvm;
+    private final CountDownLatch handshake = new CountDownLatch(1);
+    /**
+     * 调试器命令id -> 命令下标，仅事件循环线程访问
+     */
+    private final Map<Integer, Integer> pending = new HashMap<>();
+    private final long[] sentAt;
+    private final long[] latencies;
+    private long[] eventLatencies = new long[1024];
+    private final List<String> mismatchSamples = new ArrayList<>();
+
+    private Channel channel;
+    private volatile ScheduledFuture<?> commandPump;
+    private volatile int nextCommand;
+    private volatile int replies;
+    private volatile int events;
+    private int eventLatencyCount;
+    private int mismatches;
+    private int unverified;
+
+    /**
+     * @param number 调试器在录制中的序号，用于报告
+     */
+    StubDebugger(int number, Recording recording, Recording.DebuggerTrack track, ReplayClock clock, StubJvm jvm) {
+        this.number = number;
+        this.recording = recording;
+        this.track = track;
+        this.commands = track.getCommands();
+        this.clock = clock;
+        this.jvm = jvm;
+        this.sentAt = new long[commands.size()];
+        this.latencies = new long[commands.size()];
+    }
+
+    /**
+     * 连接代理、完成握手并开始按录制的时间发出命令
+     */
+    void start(EventLoopGroup group, InetSocketAddress proxyAddress) throws InterruptedException {
+        channel = new Bootstrap()
+                .group(group)
+                .channel(NioSocketChannel.class)
+                .option(ChannelOption.TCP_NODELAY, true)
+                .handler(new ChannelInitializer<Channel>() {
+                    @Override
+                    protected void initChannel(Channel ch) {
+                        ch.pipeline()
+                                .addLast(new JdwpPacketDecoder())
+                                .addLast(new ReplyHandler());
+                    }
+                })
+                .connect(proxyAddress).sync().channel();
+        channel.closeFuture().addListener(future -> handshake.countDown());
+        channel.writeAndFlush(Unpooled.wrappedBuffer(JdwpConstants.HANDSHAKE_PACKET));
+        if (!handshake.await(HANDSHAKE_TIMEOUT_SECONDS, TimeUnit.SECONDS) || !channel.isActive()) {
+            throw new DebuggerException("JDWP handshake with the proxy failed for " + track.getDescription());
+        }
+        commandPump = channel.eventLoop().scheduleAtFixedRate(this::pumpCommands, 0, 1, TimeUnit.MILLISECONDS);
+    }
+
+    private void pumpCommands() {
+        int next = nextCommand;
+        while (next < commands.size() && channel.isWritable()) {
+            Recording.Frame frame = commands.get(next).getFrame();
+            if (!clock.isDue(frame.getOffsetNanos())) {
+                break;
+            }
+            pending.put(frame.getId(), next);
+            sentAt[next] = System.nanoTime();
+            channel.write(StubJvm.copy(channel.alloc(), frame, frame.getId()));
+            next++;
+        }
+        nextCommand = next;
+        channel.flush();
+        ScheduledFuture<?> pump = commandPump;
+        if (next == commands.size() && pump != null) {
+            pump.cancel(false);
+        }
+    }
+
+    long getConnectAtNanos() {
+        return track.getConnectedAtNanos();
+    }
+
+    boolean isAllSent() {
+        return nextCommand == commands.size();
+    }
+
+    /**
+     * @return 是否已发出全部命令并收到全部回复
+     */
+    boolean isDone() {
+        return nextCommand == commands.size() && replies == commands.size();
+    }
+
+    int getCommandsSent() {
+        return nextCommand;
+    }
+
+    int getReplies() {
+        return replies;
+    }
+
+    int getEvents() {
+        return events;
+    }
+
+    int getMismatches() {
+        return mismatches;
+    }
+
+    int getUnverified() {
+        return unverified;
+    }
+
+    List<String> getMismatchSamples() {
+        return mismatchSamples;
+    }
+
+    /**
+     * @return 已收到回复的命令往返延迟(纳秒)
+     */
+    long[] getLatencies() {
+        long[] result = new long[replies];
+        int count = 0;
+        for (int i = 0; i < nextCommand && count < result.length; i++) {
+            if (latencies[i] > 0) {
+                result[count++] = latencies[i];
+            }
+        }
+        return Arrays.copyOf(result, count);
+    }
+
+    /**
+     * @return 事件从假JVM发出到本调试器收到的延迟(纳秒)
+     */
+    long[] getEventLatencies() {
+        return Arrays.copyOf(eventLatencies, eventLatencyCount);
+    }
+
+    @Override
+    public void close() {
+        if (commandPump != null) {
+            commandPump.cancel(false);
+        }
+        if (channel != null) {
+            channel.close().syncUninterruptibly();
+        }
+    }
+
+    private void onReply(ByteBuf frame, long receivedAt) {
+        Integer index = pending.remove(frame.getInt(frame.readerIndex() + 4));
+        if (index == null) {
+            return;
+        }
+        latencies[index] = Math.max(1, receivedAt - sentAt[index]);
+        Recording.Frame expected = commands.get(index).getExpected();
+        if (expected == null) {
+            unverified++;
+        } else {
+            String difference = compare(frame, expected);
+            if (difference != null) {
+                mismatches++;
+                if (mismatchSamples.size() < MAX_MISMATCH_SAMPLES) {
+                    byte[] command = commands.get(index).getFrame().getBytes();
+                    mismatchSamples.add(String.format("debugger %d command %d/%d id=%d: %s",
+                            number, command[9] & 0xFF, command[10] & 0xFF, frame.getInt(frame.readerIndex() + 4), difference));
+                }
+            }
+        }
+        replies++;
+    }
+
+    private void onEvent(ByteBuf frame, long receivedAt) {
+        int index = recording.eventIndex(frame.getInt(frame.readerIndex() + 4));
+        long eventSentAt = index < 0 ? 0 : jvm.eventSentAt(index);
+        if (eventSentAt > 0) {
+            if (eventLatencyCount == eventLatencies.length) {
+                eventLatencies = Arrays.copyOf(eventLatencies, eventLatencies.length * 2);
+            }
+            eventLatencies[eventLatencyCount++] = receivedAt - eventSentAt;
+        }
+        events++;
+    }
+
+    /**
+     * 比较长度、flags、错误码和录制到的数据，不比较id
+     * @return 不一致的描述，一致时为null
+     */
+    private static String compare(ByteBuf frame, Recording.Frame expected) {
+        int start = frame.readerIndex();
+        if (frame.readableBytes() != expected.getLength()) {
+            return "length " + frame.readableBytes() + ", recorded " + expected.getLength();
+        }
+        byte[] bytes = expected.getBytes();
+        short errorCode = frame.getShort(start + 9);
+        short expectedErrorCode = (short) ((bytes[9] & 0xFF) << 8 | bytes[10] & 0xFF);
+        if (errorCode != expectedErrorCode) {
+            return "error code " + errorCode + ", recorded " + expectedErrorCode;
+        }
+        for (int i = 8; i < bytes.length; i++) {
+            if (frame.getByte(start + i) != bytes[i]) {
+                return "data differs at byte " + i;
+            }
+        }
+        return null;
+    }
+
+    private final class ReplyHandler extends ChannelInboundHandlerAdapter {
+        @Override
+        public void channelRead(ChannelHandlerContext ctx, Object msg) {
+            if (msg instanceof byte[]) {
+                handshake.countDown();
+                return;
+            }
+            ByteBuf frame = (ByteBuf) msg;
+            try {
+                long receivedAt = System.nanoTime();
+                if ((frame.getByte(frame.readerIndex() + 8) & JdwpConstants.FLAG_REPLY_PACKET) != 0) {
+                    onReply(frame, receivedAt);
+                } else {
+                    onEvent(frame, receivedAt);
+                }
+            } finally {
+                frame.release();
+            }
+        }
+    }
+}
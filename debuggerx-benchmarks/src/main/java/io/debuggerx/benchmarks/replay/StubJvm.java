@@ -0,0 +1,207 @@
+package io.debuggerx.benchmarks.replay;
+
+import io.debuggerx.common.constants.JdwpConstants;
+import io.debuggerx.transport.codec.JdwpPacketDecoder;
+import io.netty.bootstrap.ServerBootstrap;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.channel.ChannelInitializer;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.nio.NioEventLoopGroup;
+import io.netty.channel.socket.nio.NioServerSocketChannel;
+import io.netty.util.concurrent.DefaultThreadFactory;
+import io.netty.util.concurrent.ScheduledFuture;
+
+import java.io.Closeable;
+import java.net.InetSocketAddress;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 回放时代替被调试JVM：用录制的回复应答代理转发的命令，并按录制的时间和顺序发出事件
+ * <p>
+ * 事件在录制时排在其前面的回复都已发出后才发送，保证事件请求先于它触发的事件生效；
+ * 回复因代理行为变化而迟迟不出现时，等待{@link #GATE_STALL_MILLIS}后照常发送。
+ *
+ * @author ouwu
+ */
+final class StubJvm implements Closeable {
+    static final String THREAD_PREFIX = "replay-jvm";
+    private static final short ERROR_NOT_IMPLEMENTED = 99;
+    private static final long GATE_STALL_MILLIS = 100;
+
+    private final Recording recording;
+    private final ReplayClock clock;
+    private final List<Recording.Frame> events;
+    private final EventLoopGroup group = new NioEventLoopGroup(1, new DefaultThreadFactory(THREAD_PREFIX));
+    private final CountDownLatch connected = new CountDownLatch(1);
+    /**
+     * 每个事件发出时的{@link System#nanoTime()}，0表示尚未发出
+     */
+    private final long[] eventSentAt;
+
+    private Channel serverChannel;
+    private volatile Channel proxyChannel;
+    private volatile ScheduledFuture<?> eventPump;
+    /**
+     * 以下计数仅在事件循环线程上写入
+     */
+    private volatile int repliesSent;
+    private volatile int unmatchedCommands;
+    private volatile int nextEvent;
+    private long gateBlockedSince = -1;
+
+    StubJvm(Recording recording, ReplayClock clock) {
+        this.recording = recording;
+        this.clock = clock;
+        this.events = recording.getEvents();
+        this.eventSentAt = new long[events.size()];
+    }
+
+    /**
+     * 在本地随机端口上监听
+     * @return 监听端口
+     */
+    int start() throws InterruptedException {
+        serverChannel = new ServerBootstrap()
+                .group(group)
+                .channel(NioServerSocketChannel.class)
+                .childHandler(new ChannelInitializer<Channel>() {
+                    @Override
+                    protected void initChannel(Channel ch) {
+                        ch.pipeline()
+                                .addLast(new JdwpPacketDecoder())
+                                .addLast(new CommandHandler());
+                    }
+                })
+                .bind("127.0.0.1", 0).sync().channel();
+        return ((InetSocketAddress) serverChannel.localAddress()).getPort();
+    }
+
+    boolean awaitConnection(long timeout, TimeUnit unit) throws InterruptedException {
+        return connected.await(timeout, unit);
+    }
+
+    /**
+     * 开始按录制的时间发出事件
+     */
+    void startEvents() {
+        Channel channel = proxyChannel;
+        eventPump = channel.eventLoop().scheduleAtFixedRate(() -> pumpEvents(channel), 0, 1, TimeUnit.MILLISECONDS);
+    }
+
+    private void pumpEvents(Channel channel) {
+        int next = nextEvent;
+        while (next < events.size() && channel.isWritable()) {
+            Recording.Frame event = events.get(next);
+            if (!clock.isDue(event.getOffsetNanos())) {
+                break;
+            }
+            if (repliesSent < event.getGate()) {
+                long now = System.nanoTime();
+                if (gateBlockedSince < 0) {
+                    gateBlockedSince = now;
+                }
+                if (now - gateBlockedSince < TimeUnit.MILLISECONDS.toNanos(GATE_STALL_MILLIS)) {
+                    break;
+                }
+            }
+            gateBlockedSince = -1;
+            eventSentAt[next] = System.nanoTime();
+            channel.write(copy(channel.alloc(), event, event.getId()));
+            next++;
+        }
+        nextEvent = next;
+        channel.flush();
+        // 首次执行可能早于eventPump赋值，下一轮再取消
+        ScheduledFuture<?> pump = eventPump;
+        if (next == events.size() && pump != null) {
+            pump.cancel(false);
+        }
+    }
+
+    /**
+     * @param index 事件在录制中的下标
+     * @return 发出时的{@link System#nanoTime()}，0表示尚未发出
+     */
+    long eventSentAt(int index) {
+        return eventSentAt[index];
+    }
+
+    boolean isEventsDone() {
+        return nextEvent == events.size();
+    }
+
+    int getEventsSent() {
+        return nextEvent;
+    }
+
+    int getRepliesSent() {
+        return repliesSent;
+    }
+
+    /**
+     * @return 没有录制回复可用、以NOT_IMPLEMENTED应答的命令数
+     */
+    int getUnmatchedCommands() {
+        return unmatchedCommands;
+    }
+
+    @Override
+    public void close() {
+        if (serverChannel != null) {
+            serverChannel.close().syncUninterruptibly();
+        }
+        if (proxyChannel != null) {
+            proxyChannel.close().syncUninterruptibly();
+        }
+        group.shutdownGracefully(0, 1, TimeUnit.SECONDS).syncUninterruptibly();
+    }
+
+    /**
+     * 复制录制的帧并替换id，截断的部分补零
+     */
+    static ByteBuf copy(ByteBufAllocator alloc, Recording.Frame frame, int id) {
+        ByteBuf buf = alloc.buffer(frame.getLength());
+        buf.writeBytes(frame.getBytes());
+        buf.writeZero(frame.getLength() - frame.getBytes().length);
+        buf.setInt(4, id);
+        return buf;
+    }
+
+    private final class CommandHandler extends ChannelInboundHandlerAdapter {
+        @Override
+        public void channelRead(ChannelHandlerContext ctx, Object msg) {
+            if (msg instanceof byte[]) {
+                ctx.writeAndFlush(Unpooled.wrappedBuffer(JdwpConstants.HANDSHAKE_PACKET));
+                proxyChannel = ctx.channel();
+                connected.countDown();
+                return;
+            }
+            ByteBuf frame = (ByteBuf) msg;
+            try {
+                int id = frame.getInt(frame.readerIndex() + 4);
+                Recording.Frame reply = recording.takeReply(frame.nioBuffer());
+                if (reply != null) {
+                    ctx.writeAndFlush(copy(ctx.alloc(), reply, id));
+                    repliesSent++;
+                    return;
+                }
+                unmatchedCommands++;
+                ByteBuf error = ctx.alloc().buffer(JdwpConstants.HEADER_LENGTH);
+                error.writeInt(JdwpConstants.HEADER_LENGTH);
+                error.writeInt(id);
+                error.writeByte(JdwpConstants.FLAG_REPLY_PACKET);
+                error.writeShort(ERROR_NOT_IMPLEMENTED);
+                ctx.writeAndFlush(error);
+            } finally {
+                frame.release();
+            }
+        }
+    }
+}
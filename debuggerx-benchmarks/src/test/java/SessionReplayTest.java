@@ -0,0 +1,149 @@
+import io.debuggerx.benchmarks.replay.Recording;
+import io.debuggerx.benchmarks.replay.ReplayReport;
+import io.debuggerx.benchmarks.replay.SessionReplay;
+import io.debuggerx.common.config.DebuggerConfig;
+import io.debuggerx.core.capture.CaptureFormat;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @author ouwu
+ */
+public class SessionReplayTest {
+    private static final byte TYPE_TAG_CLASS = 1;
+    private static final byte CLASS_PREPARE = 8;
+    private static final int REQUEST_ID = 5;
+
+    private File recorded;
+    private File captured;
+
+    @Before
+    public void createFiles() throws IOException {
+        recorded = File.createTempFile("session-replay", ".dbxcap");
+        captured = File.createTempFile("session-replay-proxy", ".dbxcap");
+    }
+
+    @After
+    public void deleteFiles() {
+        recorded.delete();
+        captured.delete();
+    }
+
+    @Test
+    public void testReplayMatchesRecordingAndCanBeRecapturedByTheProxy() throws Exception {
+        writeSession(recorded);
+
+        DebuggerConfig config = DebuggerConfig.getDefault();
+        config.setCaptureFile(captured.getPath());
+        ReplayReport timed = new SessionReplay(Recording.load(recorded.getPath()), config, 1).run();
+        System.out.print(timed);
+        assertReplayed(timed);
+        Assert.assertTrue(timed.getDurationNanos() >= TimeUnit.MILLISECONDS.toNanos(30));
+
+        // 代理在回放时录下的会话(含代理自身发出的命令)再次全速回放，回复与录制一致
+        ReplayReport flat = new SessionReplay(Recording.load(captured.getPath()), DebuggerConfig.getDefault(), 0).run();
+        System.out.print(flat);
+        assertReplayed(flat);
+        Assert.assertEquals(0, flat.getUnmatchedJvmCommands());
+    }
+
+    private static void assertReplayed(ReplayReport report) {
+        Assert.assertEquals(1, report.getDebuggers());
+        Assert.assertEquals(3, report.getCommandsSent());
+        Assert.assertEquals(3, report.getReplies());
+        Assert.assertEquals(0, report.getUnanswered());
+        Assert.assertEquals(report.getMismatchSamples().toString(), 0, report.getMismatches());
+        Assert.assertEquals(1, report.getEventsSent());
+        Assert.assertEquals(1, report.getEventsDelivered());
+        Assert.assertEquals(3, report.getCommandLatencies().length);
+        Assert.assertEquals(1, report.getEventLatencies().length);
+    }
+
+    /**
+     * 一个调试器：IDSizes、Version、EventRequest.Set(CLASS_PREPARE)，之后JVM发出一个CLASS_PREPARE事件
+     */
+    private static void writeSession(File file) throws IOException {
+        try (DataOutputStream out = new DataOutputStream(new FileOutputStream(file))) {
+            out.write(CaptureFormat.MAGIC);
+            record(out, 0, CaptureFormat.CHANNEL, 1, "debugger /127.0.0.1:40000".getBytes(StandardCharsets.UTF_8));
+            record(out, 0, CaptureFormat.CHANNEL, 2, "jvm /127.0.0.1:5005".getBytes(StandardCharsets.UTF_8));
+
+            record(out, 1, CaptureFormat.FROM_DEBUGGER, 1, frame(1, false, 1, 7, new byte[0]));
+            record(out, 1, CaptureFormat.LINK, 1, link(1000, 1, 1, 7, 2));
+            ByteBuffer idSizes = ByteBuffer.allocate(20);
+            for (int i = 0; i < 5; i++) {
+                idSizes.putInt(8);
+            }
+            record(out, 2, CaptureFormat.FROM_JVM, 2, frame(1000, true, 0, 0, idSizes.array()));
+
+            record(out, 10, CaptureFormat.FROM_DEBUGGER, 1, frame(2, false, 1, 1, new byte[0]));
+            record(out, 10, CaptureFormat.LINK, 1, link(999, 2, 1, 1, 2));
+            ByteBuffer version = ByteBuffer.allocate(64);
+            putString(version, "Recorded JVM");
+            version.putInt(1).putInt(8);
+            putString(version, "1.8.0");
+            putString(version, "RecordedVM");
+            record(out, 11, CaptureFormat.FROM_JVM, 2, frame(999, true, 0, 0, slice(version)));
+
+            ByteBuffer set = ByteBuffer.allocate(6).put(CLASS_PREPARE).put((byte) 0).putInt(0);
+            record(out, 20, CaptureFormat.FROM_DEBUGGER, 1, frame(3, false, 15, 1, set.array()));
+            record(out, 20, CaptureFormat.LINK, 1, link(998, 3, 15, 1, 2));
+            record(out, 21, CaptureFormat.FROM_JVM, 2, frame(998, true, 0, 0, ByteBuffer.allocate(4).putInt(REQUEST_ID).array()));
+
+            ByteBuffer event = ByteBuffer.allocate(128);
+            event.put((byte) 0).putInt(1);
+            event.put(CLASS_PREPARE).putInt(REQUEST_ID).putLong(0x1000);
+            event.put(TYPE_TAG_CLASS).putLong(0x2000);
+            putString(event, "Lcom/example/Replayed;");
+            event.putInt(7);
+            record(out, 30, CaptureFormat.FROM_JVM, 2, frame(1, false, 64, 100, slice(event)));
+        }
+    }
+
+    private static void record(DataOutputStream out, long millis, byte direction, int channel, byte[] bytes) throws IOException {
+        out.writeLong(TimeUnit.MILLISECONDS.toNanos(millis));
+        out.writeByte(direction);
+        out.writeInt(channel);
+        out.writeInt(bytes.length);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static byte[] frame(int id, boolean reply, int commandSet, int command, byte[] data) {
+        ByteBuffer frame = ByteBuffer.allocate(11 + data.length);
+        frame.putInt(11 + data.length).putInt(id);
+        if (reply) {
+            frame.put((byte) 0x80).putShort((short) 0);
+        } else {
+            frame.put((byte) 0).put((byte) commandSet).put((byte) command);
+        }
+        return frame.put(data).array();
+    }
+
+    private static byte[] link(int newId, int originId, int commandSet, int command, int jvmChannel) {
+        return ByteBuffer.allocate(CaptureFormat.LINK_BYTES).putInt(newId).putInt(originId)
+                .put((byte) commandSet).put((byte) command).putInt(jvmChannel).array();
+    }
+
+    private static void putString(ByteBuffer out, String value) {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.putInt(bytes.length).put(bytes);
+    }
+
+    private static byte[] slice(ByteBuffer buffer) {
+        byte[] bytes = new byte[buffer.position()];
+        buffer.flip();
+        buffer.get(bytes);
+        return bytes;
+    }
+}
@@ -8,6 +8,9 @@ import ch.qos.logback.classic.spi.ILoggingEvent;
 import ch.qos.logback.core.ConsoleAppender;
 import io.debuggerx.bootstrap.config.BootstrapConfig;
 import io.debuggerx.common.config.DebuggerConfig;
+import io.debuggerx.common.enums.EventDelivery;
+import io.debuggerx.common.enums.SlowClientPolicy;
+import io.debuggerx.common.enums.TransportType;
 import io.debuggerx.transport.server.DebugProxyServer;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.lang3.StringUtils;
@@ -103,5 +106,110 @@ public class DebuggerXBootstrap {
         if (StringUtils.isNotEmpty(debuggerProxyPort)) {
             config.setDebuggerProxyPort(Integer.parseInt(debuggerProxyPort));
         }
+
+        String jvmTargets = System.getProperty(DebuggerConfig.Fields.jvmTargets);
+        if (StringUtils.isNotEmpty(jvmTargets)) {
+            config.setJvmTargets(jvmTargets);
+        }
+
+        String transport = System.getProperty(DebuggerConfig.Fields.transport);
+        if (StringUtils.isNotEmpty(transport)) {
+            config.setTransport(TransportType.valueOf(transport.toUpperCase()));
+        }
+
+        String sessionEventLoopAffinity = System.getProperty(DebuggerConfig.Fields.sessionEventLoopAffinity);
+        if (StringUtils.isNotEmpty(sessionEventLoopAffinity)) {
+            config.setSessionEventLoopAffinity(Boolean.parseBoolean(sessionEventLoopAffinity));
+        }
+
+        String flushConsolidationLimit = System.getProperty(DebuggerConfig.Fields.flushConsolidationLimit);
+        if (StringUtils.isNotEmpty(flushConsolidationLimit)) {
+            config.setFlushConsolidationLimit(Integer.parseInt(flushConsolidationLimit));
+        }
+
+        String debuggerProxySocketPath = System.getProperty(DebuggerConfig.Fields.debuggerProxySocketPath);
+        if (StringUtils.isNotEmpty(debuggerProxySocketPath)) {
+            config.setDebuggerProxySocketPath(debuggerProxySocketPath);
+        }
+
+        String inFlightRequestCapacity = System.getProperty(DebuggerConfig.Fields.inFlightRequestCapacity);
+        if (StringUtils.isNotEmpty(inFlightRequestCapacity)) {
+            config.setInFlightRequestCapacity(Integer.parseInt(inFlightRequestCapacity));
+        }
+
+        String inFlightRequestMaxAgeMillis = System.getProperty(DebuggerConfig.Fields.inFlightRequestMaxAgeMillis);
+        if (StringUtils.isNotEmpty(inFlightRequestMaxAgeMillis)) {
+            config.setInFlightRequestMaxAgeMillis(Long.parseLong(inFlightRequestMaxAgeMillis));
+        }
+
+        String replyCacheMaxBytes = System.getProperty(DebuggerConfig.Fields.replyCacheMaxBytes);
+        if (StringUtils.isNotEmpty(replyCacheMaxBytes)) {
+            config.setReplyCacheMaxBytes(Long.parseLong(replyCacheMaxBytes));
+        }
+
+        String replyStreamThreshold = System.getProperty(DebuggerConfig.Fields.replyStreamThreshold);
+        if (StringUtils.isNotEmpty(replyStreamThreshold)) {
+            config.setReplyStreamThreshold(Integer.parseInt(replyStreamThreshold));
+        }
+
+        String commandCoalescing = System.getProperty(DebuggerConfig.Fields.commandCoalescing);
+        if (StringUtils.isNotEmpty(commandCoalescing)) {
+            config.setCommandCoalescing(Boolean.parseBoolean(commandCoalescing));
+        }
+
+        String classIndex = System.getProperty(DebuggerConfig.Fields.classIndex);
+        if (StringUtils.isNotEmpty(classIndex)) {
+            config.setClassIndex(Boolean.parseBoolean(classIndex));
+        }
+
+        String debuggerWriteLowWaterMark = System.getProperty(DebuggerConfig.Fields.debuggerWriteLowWaterMark);
+        if (StringUtils.isNotEmpty(debuggerWriteLowWaterMark)) {
+            config.setDebuggerWriteLowWaterMark(Integer.parseInt(debuggerWriteLowWaterMark));
+        }
+
+        String debuggerWriteHighWaterMark = System.getProperty(DebuggerConfig.Fields.debuggerWriteHighWaterMark);
+        if (StringUtils.isNotEmpty(debuggerWriteHighWaterMark)) {
+            config.setDebuggerWriteHighWaterMark(Integer.parseInt(debuggerWriteHighWaterMark));
+        }
+
+        String debuggerMaxPendingBytes = System.getProperty(DebuggerConfig.Fields.debuggerMaxPendingBytes);
+        if (StringUtils.isNotEmpty(debuggerMaxPendingBytes)) {
+            config.setDebuggerMaxPendingBytes(Long.parseLong(debuggerMaxPendingBytes));
+        }
+
+        String slowClientPolicy = System.getProperty(DebuggerConfig.Fields.slowClientPolicy);
+        if (StringUtils.isNotEmpty(slowClientPolicy)) {
+            config.setSlowClientPolicy(SlowClientPolicy.valueOf(slowClientPolicy.toUpperCase()));
+        }
+
+        String eventDelivery = System.getProperty(DebuggerConfig.Fields.eventDelivery);
+        if (StringUtils.isNotEmpty(eventDelivery)) {
+            config.setEventDelivery(EventDelivery.valueOf(eventDelivery.toUpperCase()));
+        }
+
+        String captureFile = System.getProperty(DebuggerConfig.Fields.captureFile);
+        if (StringUtils.isNotEmpty(captureFile)) {
+            config.setCaptureFile(captureFile);
+        }
+
+        String captureSnapLength = System.getProperty(DebuggerConfig.Fields.captureSnapLength);
+        if (StringUtils.isNotEmpty(captureSnapLength)) {
+            config.setCaptureSnapLength(Integer.parseInt(captureSnapLength));
+        }
+
+        String captureRingCapacity = System.getProperty(DebuggerConfig.Fields.captureRingCapacity);
+        if (StringUtils.isNotEmpty(captureRingCapacity)) {
+            config.setCaptureRingCapacity(Integer.parseInt(captureRingCapacity));
+        }
+
+        String captureCommandSets = System.getProperty(DebuggerConfig.Fields.captureCommandSets);
+        if (StringUtils.isNotEmpty(captureCommandSets)) {
+            config.setCaptureCommandSets(captureCommandSets);
+        }
+
+        String captureSampleRate = System.getProperty(DebuggerConfig.Fields.captureSampleRate);
+        if (StringUtils.isNotEmpty(captureSampleRate)) {
+            config.setCaptureSampleRate(Integer.parseInt(captureSampleRate));
+        }
     }
 }
\ No newline at end of file
@@ -1,8 +1,19 @@
 package io.debuggerx.bootstrap.http;
 
 import com.sun.net.httpserver.HttpServer;
+import io.debuggerx.common.config.DebuggerConfig;
 import io.debuggerx.common.constants.JdwpConstants;
+import io.debuggerx.common.enums.EventDelivery;
+import io.debuggerx.common.exception.DebuggerException;
+import io.debuggerx.core.capture.CaptureSettings;
+import io.debuggerx.core.capture.CaptureStatus;
+import io.debuggerx.core.capture.PacketCapture;
+import io.debuggerx.core.metrics.ProxyMetrics;
+import io.debuggerx.core.service.ClassSearch;
+import io.debuggerx.core.session.ClassIndex;
 import io.debuggerx.core.session.DebugSession;
+import io.debuggerx.core.session.EventRouteTable;
+import io.debuggerx.core.session.NameQuery;
 import io.debuggerx.core.session.SessionManager;
 import io.debuggerx.protocol.packet.BreakpointInfo;
 import io.debuggerx.protocol.packet.JdwpHeader;
@@ -13,12 +24,14 @@ import lombok.extern.slf4j.Slf4j;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
 import java.net.InetSocketAddress;
+import java.net.URLDecoder;
 import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
 import java.util.Base64;
+import java.util.HashMap;
 import java.util.Map;
-import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * HTTP server exposing JDWP operations via REST API
@@ -26,7 +39,13 @@ import java.util.concurrent.atomic.AtomicInteger;
  */
 @Slf4j
 public class JdwpHttpServer {
-    private static final AtomicInteger packetIdGenerator = new AtomicInteger(200000);
+    private static final int DEFAULT_SEARCH_LIMIT = 100;
+    private static final int MAX_SEARCH_LIMIT = 10000;
+    /**
+     * 按方法名检索时等待尚未获取的Methods回复的时间
+     */
+    private static final long METHODS_TIMEOUT_MILLIS = 5000;
+
     private HttpServer server;
     private final int port;
 
@@ -41,9 +60,8 @@ public class JdwpHttpServer {
             // GET /breakpoints - List all global breakpoints
             server.createContext("/breakpoints", exchange -> {
                 if ("GET".equals(exchange.getRequestMethod())) {
-                    DebugSession session = SessionManager.getInstance().findJvmServerSession();
+                    DebugSession session = resolveSession(exchange);
                     if (session == null) {
-                        sendResponse(exchange, 500, "{\"error\": \"No debug session active\"}");
                         return;
                     }
 
@@ -106,9 +124,8 @@ public class JdwpHttpServer {
                             className, bytecode.length);
 
                         // Get debug session
-                        DebugSession session = SessionManager.getInstance().findJvmServerSession();
+                        DebugSession session = resolveSession(exchange);
                         if (session == null) {
-                            sendResponse(exchange, 500, "{\"error\": \"No debug session active\"}");
                             return;
                         }
 
@@ -137,9 +154,8 @@ public class JdwpHttpServer {
             // GET /current-thread - Get current thread stopped at breakpoint
             server.createContext("/current-thread", exchange -> {
                 if ("GET".equals(exchange.getRequestMethod())) {
-                    DebugSession session = SessionManager.getInstance().findJvmServerSession();
+                    DebugSession session = resolveSession(exchange);
                     if (session == null) {
-                        sendResponse(exchange, 500, "{\"error\": \"No debug session active\"}");
                         return;
                     }
 
@@ -184,9 +200,8 @@ public class JdwpHttpServer {
 
                         int requestId = Integer.parseInt(parts[2]);
 
-                        DebugSession session = SessionManager.getInstance().findJvmServerSession();
+                        DebugSession session = resolveSession(exchange);
                         if (session == null) {
-                            sendResponse(exchange, 500, "{\"error\": \"No debug session active\"}");
                             return;
                         }
 
@@ -255,6 +270,173 @@ public class JdwpHttpServer {
                 }
             });
 
+            // GET /clients - List debuggers with their event delivery mode and routed requestIds
+            // POST /clients/{slot}/delivery - Set event delivery mode, body {"mode": "owned|all"}
+            // POST|DELETE /clients/{slot}/subscriptions/{requestId} - Subscribe to / unsubscribe from a request's events
+            server.createContext("/clients", exchange -> {
+                try {
+                    DebugSession session = resolveSession(exchange);
+                    if (session == null) {
+                        return;
+                    }
+                    String[] parts = exchange.getRequestURI().getPath().split("/");
+                    String method = exchange.getRequestMethod();
+
+                    if (parts.length == 2 && "GET".equals(method)) {
+                        sendResponse(exchange, 200, clientsJson(session));
+                        return;
+                    }
+                    if (parts.length < 4) {
+                        sendResponse(exchange, 404, "{\"error\": \"Not found\"}");
+                        return;
+                    }
+                    int slot = Integer.parseInt(parts[2]);
+                    if (session.getDebuggerSource(slot) == null) {
+                        sendResponse(exchange, 404, String.format("{\"error\": \"Debugger slot %d not connected\"}", slot));
+                        return;
+                    }
+                    EventRouteTable routes = session.getEventRoutes();
+
+                    if (parts.length == 4 && "delivery".equals(parts[3]) && "POST".equals(method)) {
+                        InputStream is = exchange.getRequestBody();
+                        String body = new String(is.readAllBytes(), StandardCharsets.UTF_8);
+                        is.close();
+                        String mode = extractJsonValue(body, "mode");
+                        if (mode == null) {
+                            sendResponse(exchange, 400, "{\"error\": \"Missing mode in request body\"}");
+                            return;
+                        }
+                        EventDelivery delivery = EventDelivery.valueOf(mode.toUpperCase());
+                        routes.setObserver(slot, delivery == EventDelivery.ALL);
+                        log.info("[HTTP] Event delivery of debugger slot {} set to {}", slot, delivery);
+                        sendResponse(exchange, 200, String.format("{\"slot\": %d, \"delivery\": \"%s\"}", slot, delivery));
+                    } else if (parts.length == 5 && "subscriptions".equals(parts[3])) {
+                        int requestId = Integer.parseInt(parts[4]);
+                        if ("POST".equals(method)) {
+                            routes.subscribe(requestId, slot);
+                        } else if ("DELETE".equals(method)) {
+                            routes.unsubscribe(requestId, slot);
+                        } else {
+                            sendResponse(exchange, 405, "{\"error\": \"Method not allowed\"}");
+                            return;
+                        }
+                        sendResponse(exchange, 200, String.format("{\"slot\": %d, \"requestIds\": %s}", slot, routes.requestIdsOf(slot)));
+                    } else {
+                        sendResponse(exchange, 405, "{\"error\": \"Method not allowed\"}");
+                    }
+                } catch (IllegalArgumentException e) {
+                    // 含NumberFormatException
+                    sendResponse(exchange, 400, String.format("{\"error\": \"%s\"}", escapeJson(e.getMessage())));
+                } catch (Exception e) {
+                    log.error("[HTTP] Failed to handle clients request: {}", e.getMessage(), e);
+                    sendResponse(exchange, 500, String.format("{\"error\": \"%s\"}", escapeJson(e.getMessage())));
+                }
+            });
+
+            // GET /classes/search?q=...&mode=prefix|substring|glob&method=...&limit=... - Search loaded classes
+            server.createContext("/classes/search", exchange -> {
+                if ("GET".equals(exchange.getRequestMethod())) {
+                    try {
+                        Map<String, String> params = parseQuery(exchange.getRequestURI().getRawQuery());
+                        String query = params.get("q");
+                        if (query == null) {
+                            sendResponse(exchange, 400, "{\"error\": \"Missing q parameter\"}");
+                            return;
+                        }
+                        int limit = params.containsKey("limit") ? Integer.parseInt(params.get("limit")) : DEFAULT_SEARCH_LIMIT;
+                        if (limit <= 0) {
+                            sendResponse(exchange, 400, "{\"error\": \"limit must be positive\"}");
+                            return;
+                        }
+                        String mode = params.get("mode");
+                        NameQuery classQuery = NameQuery.className(query, mode);
+                        String method = params.get("method");
+                        NameQuery methodQuery = method == null ? null : NameQuery.methodName(method, mode);
+
+                        DebugSession session = resolveSession(exchange);
+                        if (session == null) {
+                            return;
+                        }
+                        if (!session.getClassIndex().isReady()) {
+                            sendResponse(exchange, 503, "{\"error\": \"Class index not ready\"}");
+                            return;
+                        }
+
+                        ClassSearch.Result result = ClassSearch.search(session, classQuery, methodQuery,
+                                Math.min(limit, MAX_SEARCH_LIMIT), METHODS_TIMEOUT_MILLIS);
+                        sendResponse(exchange, 200, searchResultJson(result));
+                    } catch (NumberFormatException e) {
+                        sendResponse(exchange, 400, "{\"error\": \"Invalid limit format\"}");
+                    } catch (DebuggerException e) {
+                        sendResponse(exchange, 400, String.format("{\"error\": \"%s\"}", escapeJson(e.getMessage())));
+                    } catch (Exception e) {
+                        log.error("[HTTP] Failed to search classes: {}", e.getMessage(), e);
+                        sendResponse(exchange, 500, String.format("{\"error\": \"%s\"}", escapeJson(e.getMessage())));
+                    }
+                } else {
+                    sendResponse(exchange, 405, "{\"error\": \"Method not allowed\"}");
+                }
+            });
+
+            // GET /sessions - List the JVM sessions; other endpoints select one with ?session=<id or target>
+            server.createContext("/sessions", exchange -> {
+                if ("GET".equals(exchange.getRequestMethod())) {
+                    sendResponse(exchange, 200, sessionsJson());
+                } else {
+                    sendResponse(exchange, 405, "{\"error\": \"Method not allowed\"}");
+                }
+            });
+
+            // GET /metrics - Prometheus text format metrics
+            server.createContext("/metrics", exchange -> {
+                if ("GET".equals(exchange.getRequestMethod())) {
+                    StringBuilder metrics = new StringBuilder(8192);
+                    ProxyMetrics.getInstance().writePrometheus(metrics);
+                    sendResponse(exchange, 200, metrics.toString(), "text/plain; version=0.0.4; charset=utf-8");
+                } else {
+                    sendResponse(exchange, 405, "{\"error\": \"Method not allowed\"}");
+                }
+            });
+
+            // GET /capture - Status of the running packet capture
+            // POST /capture/start?file=...&commandSets=1,15&sample=N&snapLength=N - Start capturing frames to a file
+            // POST /capture/stop - Stop the capture once the captured frames are written
+            server.createContext("/capture", exchange -> {
+                String path = exchange.getRequestURI().getPath();
+                String method = exchange.getRequestMethod();
+                PacketCapture capture = PacketCapture.getInstance();
+                try {
+                    if ("/capture".equals(path) && "GET".equals(method)) {
+                        sendResponse(exchange, 200, captureJson(capture.status()));
+                    } else if ("/capture/start".equals(path) && "POST".equals(method)) {
+                        if (capture.isEnabled()) {
+                            sendResponse(exchange, 409, "{\"error\": \"Capture already running\"}");
+                            return;
+                        }
+                        capture.start(captureSettings(parseQuery(exchange.getRequestURI().getRawQuery())));
+                        sendResponse(exchange, 200, captureJson(capture.status()));
+                    } else if ("/capture/stop".equals(path) && "POST".equals(method)) {
+                        CaptureStatus status = capture.stop();
+                        if (status == null) {
+                            sendResponse(exchange, 404, "{\"error\": \"No capture running\"}");
+                            return;
+                        }
+                        sendResponse(exchange, 200, captureJson(status));
+                    } else if ("/capture".equals(path) || "/capture/start".equals(path) || "/capture/stop".equals(path)) {
+                        sendResponse(exchange, 405, "{\"error\": \"Method not allowed\"}");
+                    } else {
+                        sendResponse(exchange, 404, "{\"error\": \"Not found\"}");
+                    }
+                } catch (NumberFormatException e) {
+                    sendResponse(exchange, 400, "{\"error\": \"Invalid number format\"}");
+                } catch (DebuggerException e) {
+                    sendResponse(exchange, 400, String.format("{\"error\": \"%s\"}", escapeJson(e.getMessage())));
+                } catch (Exception e) {
+                    log.error("[HTTP] Failed to handle capture request: {}", e.getMessage(), e);
+                    sendResponse(exchange, 500, String.format("{\"error\": \"%s\"}", escapeJson(e.getMessage())));
+                }
+            });
+
             server.setExecutor(null); // Use default executor
             server.start();
             log.info("[HTTP] JDWP HTTP API server started on port {}", port);
@@ -272,14 +454,156 @@ public class JdwpHttpServer {
     }
 
     private void sendResponse(com.sun.net.httpserver.HttpExchange exchange, int statusCode, String response) throws IOException {
+        sendResponse(exchange, statusCode, response, "application/json");
+    }
+
+    private void sendResponse(com.sun.net.httpserver.HttpExchange exchange, int statusCode, String response,
+                              String contentType) throws IOException {
         byte[] bytes = response.getBytes(StandardCharsets.UTF_8);
-        exchange.getResponseHeaders().add("Content-Type", "application/json");
+        exchange.getResponseHeaders().add("Content-Type", contentType);
         exchange.sendResponseHeaders(statusCode, bytes.length);
         OutputStream os = exchange.getResponseBody();
         os.write(bytes);
         os.close();
     }
 
+    /**
+     * Resolve the session named by the {@code session} query parameter (session id or target name),
+     * or the only session when the parameter is absent. Sends an error response if there is none.
+     *
+     * @return the session, or null if an error response was sent
+     */
+    private DebugSession resolveSession(com.sun.net.httpserver.HttpExchange exchange) throws IOException {
+        String selector = parseQuery(exchange.getRequestURI().getRawQuery()).get("session");
+        try {
+            SessionManager sessionManager = SessionManager.getInstance();
+            return selector == null ? sessionManager.findJvmServerSession() : sessionManager.findSession(selector);
+        } catch (DebuggerException e) {
+            sendResponse(exchange, selector == null ? 500 : 404, String.format("{\"error\": \"%s\"}", escapeJson(e.getMessage())));
+            return null;
+        }
+    }
+
+    /**
+     * 未指定的参数取代理配置中的捕获设置
+     */
+    private CaptureSettings captureSettings(Map<String, String> params) {
+        DebuggerConfig config = SessionManager.getInstance().getConfig();
+        String file = params.containsKey("file") ? params.get("file") : config.getCaptureFile();
+        if (file == null || file.isEmpty()) {
+            throw new DebuggerException("Missing file parameter");
+        }
+        return CaptureSettings.builder()
+                .file(file)
+                .snapLength(params.containsKey("snapLength") ? Integer.parseInt(params.get("snapLength")) : config.getCaptureSnapLength())
+                .ringCapacity(config.getCaptureRingCapacity())
+                .commandSets(CaptureSettings.parseCommandSets(params.containsKey("commandSets")
+                        ? params.get("commandSets") : config.getCaptureCommandSets()))
+                .sampleRate(params.containsKey("sample") ? Integer.parseInt(params.get("sample")) : config.getCaptureSampleRate())
+                .build();
+    }
+
+    private String captureJson(CaptureStatus status) {
+        if (status == null) {
+            return "{\"running\": false}";
+        }
+        CaptureSettings settings = status.getSettings();
+        return String.format("{\"running\": %b, \"file\": \"%s\", \"snapLength\": %d, \"commandSets\": %s, \"sample\": %d, "
+                        + "\"records\": %d, \"bytes\": %d, \"dropped\": %d, \"failed\": %b}",
+                PacketCapture.getInstance().status() != null && !status.isFailed(),
+                escapeJson(settings.getFile()),
+                settings.getSnapLength(),
+                settings.getCommandSets() == null ? "null" : "\"" + settings.getCommandSets() + "\"",
+                settings.getSampleRate(),
+                status.getRecords(),
+                status.getBytes(),
+                status.getDropped(),
+                status.isFailed());
+    }
+
+    private String sessionsJson() {
+        StringBuilder json = new StringBuilder("{\"sessions\": [");
+        boolean first = true;
+        for (DebugSession session : SessionManager.getInstance().getSessions()) {
+            if (!first) json.append(",");
+            first = false;
+            json.append(String.format("{\"id\": \"%s\", \"target\": \"%s\", \"jvm\": \"%s\", \"debuggers\": %d, \"breakpoints\": %d}",
+                session.getSessionId(),
+                escapeJson(session.getTarget()),
+                escapeJson(String.valueOf(session.getJvmServerChannel().remoteAddress())),
+                session.getDebuggerChannels().size(),
+                session.getGlobalBreakpoints().size()));
+        }
+        json.append("]}");
+        return json.toString();
+    }
+
+    private String clientsJson(DebugSession session) {
+        EventRouteTable routes = session.getEventRoutes();
+        StringBuilder json = new StringBuilder("{\"clients\": [");
+        boolean first = true;
+        for (Map.Entry<String, Channel> entry : session.getDebuggerChannels().entrySet()) {
+            int slot = session.slotOf(entry.getValue());
+            if (slot < 0) continue;
+            if (!first) json.append(",");
+            first = false;
+            json.append(String.format("{\"slot\": %d, \"address\": \"%s\", \"delivery\": \"%s\", \"requestIds\": %s}",
+                slot,
+                escapeJson(entry.getKey()),
+                routes.isObserver(slot) ? EventDelivery.ALL : EventDelivery.OWNED,
+                routes.requestIdsOf(slot)));
+        }
+        json.append("]}");
+        return json.toString();
+    }
+
+    private String searchResultJson(ClassSearch.Result result) {
+        StringBuilder json = new StringBuilder(256 + result.getHits().size() * 96);
+        json.append("{\"classes\": [");
+        boolean first = true;
+        for (ClassSearch.Hit hit : result.getHits()) {
+            if (!first) json.append(",");
+            first = false;
+
+            ClassIndex.ClassMatch type = hit.getType();
+            json.append("{\"id\": ").append(type.getId())
+                .append(", \"typeTag\": ").append(type.getTag())
+                .append(", \"name\": \"").append(escapeJson(type.getName()))
+                .append("\", \"signature\": \"").append(escapeJson(type.getSignature())).append("\"");
+            if (hit.getMethods() != null) {
+                json.append(", \"methods\": [");
+                for (int i = 0; i < hit.getMethods().size(); i++) {
+                    ClassIndex.MethodInfo method = hit.getMethods().get(i);
+                    if (i > 0) json.append(",");
+                    json.append("{\"name\": \"").append(escapeJson(method.getName()))
+                        .append("\", \"signature\": \"").append(escapeJson(method.getSignature())).append("\"}");
+                }
+                json.append("]");
+            }
+            json.append("}");
+        }
+        json.append("], \"truncated\": ").append(result.isTruncated())
+            .append(", \"incomplete\": ").append(result.isIncomplete()).append("}");
+        return json.toString();
+    }
+
+    /**
+     * Parse a URL query string into decoded parameters (last value wins)
+     */
+    private Map<String, String> parseQuery(String rawQuery) throws UnsupportedEncodingException {
+        Map<String, String> params = new HashMap<>();
+        if (rawQuery == null || rawQuery.isEmpty()) {
+            return params;
+        }
+        for (String pair : rawQuery.split("&")) {
+            int eq = pair.indexOf('=');
+            String key = eq < 0 ? pair : pair.substring(0, eq);
+            String value = eq < 0 ? "" : pair.substring(eq + 1);
+            params.put(URLDecoder.decode(key, "UTF-8"), URLDecoder.decode(value, "UTF-8"));
+        }
+        return params;
+    }
+
     /**
      * Escape special characters for JSON strings
      */
@@ -332,8 +656,6 @@ public class JdwpHttpServer {
                 return false;
             }
 
-            int packetId = packetIdGenerator.incrementAndGet();
-
             // Build JDWP packet: EventRequest.Clear (CommandSet=15, Command=2)
             // Data: byte eventKind (2 = BREAKPOINT) + int requestId
             ByteBuffer buffer = ByteBuffer.allocate(5);
@@ -341,15 +663,14 @@ public class JdwpHttpServer {
             buffer.putInt(requestId);
 
             JdwpHeader header = new JdwpHeader();
-            header.setId(packetId);
             header.setFlags(JdwpConstants.FLAG_COMMAND);
             header.setCommandSet((byte) 15); // EventRequest
             header.setCommand((byte) 2); // Clear
 
             JdwpPacket packet = new JdwpPacket(header, buffer.array());
 
-            // Register packet so response can be mapped
-            session.getPacketMap().put(packetId, packet);
+            // Register as in-flight internal request so the response can be mapped
+            session.saveInternalRequest(packet);
 
             jvmChannel.writeAndFlush(packet);
             log.info("[HTTP] Sent EventRequest.Clear for breakpoint requestId={}", requestId);
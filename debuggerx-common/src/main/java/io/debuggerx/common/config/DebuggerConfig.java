@@ -1,9 +1,16 @@
 package io.debuggerx.common.config;
 
+import io.debuggerx.common.enums.EventDelivery;
+import io.debuggerx.common.enums.SlowClientPolicy;
+import io.debuggerx.common.enums.TransportType;
 import lombok.Builder;
 import lombok.Data;
 import lombok.experimental.FieldNameConstants;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
 /**
  * debug代理配置
  *
@@ -25,19 +32,154 @@ public class DebuggerConfig {
      * 调试器代理端口
      */
     private int debuggerProxyPort;
+    /**
+     * 同一代理服务的其他JVM，格式name=host:port[@listenPort]，逗号分隔
+     */
+    private String jvmTargets;
+    /**
+     * 网络传输实现，默认NIO
+     */
+    private TransportType transport;
+    /**
+     * 是否将会话的JVM连接与其所有调试器连接固定在同一事件循环，会话间按事件循环分片
+     */
+    private boolean sessionEventLoopAffinity;
+    /**
+     * 合并flush：读周期内的写在channelReadComplete时统一flush，非读取中的连续flush超过该次数时立即flush，0表示禁用
+     */
+    private int flushConsolidationLimit;
+    /**
+     * 调试器代理Unix domain socket路径，为空时不监听(仅epoll传输支持)
+     */
+    private String debuggerProxySocketPath;
+    /**
+     * 在途命令表容量，满时淘汰最早的命令
+     */
+    private int inFlightRequestCapacity;
+    /**
+     * 在途命令最长等待回复时间(毫秒)，超时后释放
+     */
+    private long inFlightRequestMaxAgeMillis;
+    /**
+     * 只读元数据查询回复缓存的内存上限(字节)，0表示禁用
+     */
+    private long replyCacheMaxBytes;
+    /**
+     * 超过该长度(字节)且无需处理的JVM回复不等整帧到达，边读边转发给调试器，0表示禁用
+     */
+    private int replyStreamThreshold;
+    /**
+     * 是否合并多个调试器同时发出的相同只读命令
+     */
+    private boolean commandCoalescing;
+    /**
+     * 是否由代理维护已加载类索引并应答ClassesBySignature、AllClasses
+     */
+    private boolean classIndex;
+    /**
+     * 调试器写缓冲低水位(字节)，回落到此值以下恢复可写
+     */
+    private int debuggerWriteLowWaterMark;
+    /**
+     * 调试器写缓冲高水位(字节)，超过后视为慢调试器
+     */
+    private int debuggerWriteHighWaterMark;
+    /**
+     * 单个调试器待写字节数上限，超过后断开该调试器
+     */
+    private long debuggerMaxPendingBytes;
+    /**
+     * 慢调试器处理策略
+     */
+    private SlowClientPolicy slowClientPolicy;
+    /**
+     * 新连接调试器的事件接收方式，可通过HTTP接口按调试器修改
+     */
+    private EventDelivery eventDelivery;
+    /**
+     * 启动时开始捕获数据包的文件，为空时不捕获(可通过HTTP接口随时开启)
+     */
+    private String captureFile;
+    /**
+     * 每帧捕获的最大字节数(含header)
+     */
+    private int captureSnapLength;
+    /**
+     * 捕获环形缓冲区的slot数，写入线程跟不上时丢弃新帧
+     */
+    private int captureRingCapacity;
+    /**
+     * 只捕获这些命令集(逗号分隔)，为空时捕获全部
+     */
+    private String captureCommandSets;
+    /**
+     * 每N帧随机捕获一帧，1表示全部捕获
+     */
+    private int captureSampleRate;
     
     public static DebuggerConfig getDefault() {
         return DebuggerConfig.builder()
                 .jvmServerHost("localhost")
                 .jvmServerPort(5005)
                 .debuggerProxyPort(55005)
+                .transport(TransportType.NIO)
+                .sessionEventLoopAffinity(true)
+                .flushConsolidationLimit(256)
+                .inFlightRequestCapacity(16384)
+                .inFlightRequestMaxAgeMillis(TimeUnit.MINUTES.toMillis(10))
+                .replyCacheMaxBytes(32 * 1024 * 1024)
+                .replyStreamThreshold(1024 * 1024)
+                .commandCoalescing(true)
+                .classIndex(true)
+                .debuggerWriteLowWaterMark(256 * 1024)
+                .debuggerWriteHighWaterMark(1024 * 1024)
+                .debuggerMaxPendingBytes(16 * 1024 * 1024)
+                .slowClientPolicy(SlowClientPolicy.PAUSE_JVM_READ)
+                .eventDelivery(EventDelivery.OWNED)
+                .captureSnapLength(256)
+                .captureRingCapacity(16384)
+                .captureSampleRate(1)
                 .build();
     }
 
+    /**
+     * Lists every JVM the proxy serves: the default target of {@code jvmServerHost:jvmServerPort},
+     * listened for on {@code debuggerProxyPort}, followed by {@code jvmTargets}.
+     *
+     * @return the targets
+     */
+    public List<JvmTarget> targets() {
+        List<JvmTarget> targets = new ArrayList<>();
+        targets.add(new JvmTarget(JvmTarget.DEFAULT_NAME, jvmServerHost, jvmServerPort, debuggerProxyPort));
+        targets.addAll(JvmTarget.parseList(jvmTargets));
+        return targets;
+    }
+
     @Override
     public String toString() {
         return "DebuggerConfig{" + "jvmServerPort=" + jvmServerPort +
                 ", debuggerProxyPort=" + debuggerProxyPort +
+                ", jvmTargets=" + jvmTargets +
+                ", transport=" + transport +
+                ", sessionEventLoopAffinity=" + sessionEventLoopAffinity +
+                ", flushConsolidationLimit=" + flushConsolidationLimit +
+                ", debuggerProxySocketPath=" + debuggerProxySocketPath +
+                ", inFlightRequestCapacity=" + inFlightRequestCapacity +
+                ", inFlightRequestMaxAgeMillis=" + inFlightRequestMaxAgeMillis +
+                ", replyCacheMaxBytes=" + replyCacheMaxBytes +
+                ", replyStreamThreshold=" + replyStreamThreshold +
+                ", commandCoalescing=" + commandCoalescing +
+                ", classIndex=" + classIndex +
+                ", debuggerWriteLowWaterMark=" + debuggerWriteLowWaterMark +
+                ", debuggerWriteHighWaterMark=" + debuggerWriteHighWaterMark +
+                ", debuggerMaxPendingBytes=" + debuggerMaxPendingBytes +
+                ", slowClientPolicy=" + slowClientPolicy +
+                ", eventDelivery=" + eventDelivery +
+                ", captureFile=" + captureFile +
+                ", captureSnapLength=" + captureSnapLength +
+                ", captureRingCapacity=" + captureRingCapacity +
+                ", captureCommandSets=" + captureCommandSets +
+                ", captureSampleRate=" + captureSampleRate +
                 '}';
     }
 }
\ No newline at end of file
@@ -0,0 +1,84 @@
+package io.debuggerx.common.config;
+
+import io.debuggerx.common.exception.DebuggerException;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.ToString;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * A JVM the proxy connects to. Each target gets its own debug session; debuggers select it by the
+ * listener port of the target or by naming it in a selector line sent before the JDWP handshake.
+ *
+ * @author ouwu
+ */
+@Getter
+@ToString
+@AllArgsConstructor
+public class JvmTarget {
+    /**
+     * 由jvmServerHost、jvmServerPort、debuggerProxyPort配置的目标名称
+     */
+    public static final String DEFAULT_NAME = "default";
+
+    /**
+     * 目标名称
+     */
+    private final String name;
+    /**
+     * JVM调试服务地址
+     */
+    private final String host;
+    /**
+     * JVM调试服务端口
+     */
+    private final int port;
+    /**
+     * 该目标专用的调试器监听端口，0表示只能通过选择行选择
+     */
+    private final int listenPort;
+
+    /**
+     * Parses additional targets, in the form {@code name=host:port[@listenPort],...}.
+     *
+     * @param targets the target list, may be null or empty
+     * @return the targets, in the given order
+     * @throws DebuggerException if an entry is malformed or a name is used twice
+     */
+    public static List<JvmTarget> parseList(String targets) {
+        List<JvmTarget> result = new ArrayList<>();
+        if (targets == null || targets.trim().isEmpty()) {
+            return result;
+        }
+        Set<String> names = new HashSet<>();
+        names.add(DEFAULT_NAME);
+        for (String entry : targets.split(",")) {
+            JvmTarget target = parse(entry.trim());
+            if (!names.add(target.getName())) {
+                throw new DebuggerException("Duplicate jvm target name: " + target.getName());
+            }
+            result.add(target);
+        }
+        return result;
+    }
+
+    private static JvmTarget parse(String entry) {
+        int eq = entry.indexOf('=');
+        int colon = entry.lastIndexOf(':');
+        if (eq <= 0 || colon < eq + 2) {
+            throw new DebuggerException("Invalid jvm target, expected name=host:port[@listenPort]: " + entry);
+        }
+        int at = entry.indexOf('@', colon);
+        try {
+            int port = Integer.parseInt(entry.substring(colon + 1, at < 0 ? entry.length() : at));
+            int listenPort = at < 0 ? 0 : Integer.parseInt(entry.substring(at + 1));
+            return new JvmTarget(entry.substring(0, eq), entry.substring(eq + 1, colon), port, listenPort);
+        } catch (NumberFormatException e) {
+            throw new DebuggerException("Invalid port in jvm target: " + entry);
+        }
+    }
+}
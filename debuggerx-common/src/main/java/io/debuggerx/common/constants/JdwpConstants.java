@@ -21,6 +21,14 @@ public class JdwpConstants {
      * JDWP头部长度
      */
     public static final int HEADER_LENGTH = 11;
+    /**
+     * 调试器在握手前可发送的会话选择行前缀，后接会话ID或目标名称与换行符
+     */
+    public static final String SESSION_SELECTOR_PREFIX = "DEBUGGERX-SESSION ";
+    /**
+     * 会话选择行最大长度
+     */
+    public static final int SESSION_SELECTOR_MAX_BYTES = 256;
     /**
      * JDWP握手包
      */
@@ -40,6 +48,10 @@ public class JdwpConstants {
      * EVENT_REQUEST_COMMAND_SET
      */
     public static final byte EVENT_REQUEST_COMMAND_SET = (byte) 15;
+    /**
+     * EventRequest.Set command
+     */
+    public static final byte SET_EVENT_REQUEST_COMMAND = (byte) 1;
     /**
      * CLEAR_BREAK_POINT_COMMAND
      */
@@ -57,6 +69,10 @@ public class JdwpConstants {
      * ReferenceType.Methods command
      */
     public static final byte REFERENCE_TYPE_METHODS_COMMAND = (byte) 5;
+    /**
+     * ReferenceType.SignatureWithGeneric command
+     */
+    public static final byte REFERENCE_TYPE_SIGNATURE_WITH_GENERIC_COMMAND = (byte) 13;
 
     /**
      * Method command set
@@ -83,6 +99,10 @@ public class JdwpConstants {
      * VirtualMachine.AllThreads command
      */
     public static final byte ALL_THREADS_COMMAND = (byte) 4;
+    /**
+     * VirtualMachine.AllClassesWithGeneric command
+     */
+    public static final byte ALL_CLASSES_WITH_GENERIC_COMMAND = (byte) 20;
 
     /**
      * ClassType command set
@@ -0,0 +1,20 @@
+package io.debuggerx.common.enums;
+
+/**
+ * 调试器接收JVM事件的方式
+ * <p>
+ * requestId为0的自动事件(VM_START、VM_DEATH等)不属于任何调试器，总是发给所有调试器
+ *
+ * @author ouwu
+ */
+public enum EventDelivery {
+    /**
+     * 只接收自己创建或显式订阅的事件请求的事件
+     */
+    OWNED,
+    /**
+     * 观察者：接收所有事件
+     */
+    ALL
+
+}
@@ -0,0 +1,24 @@
+package io.debuggerx.common.enums;
+
+/**
+ * 调试器写缓冲超过高水位(写不过来)时的处理策略
+ * <p>
+ * 无论哪种策略，单个调试器待写字节数超过上限时都会被断开
+ *
+ * @author ouwu
+ */
+public enum SlowClientPolicy {
+    /**
+     * 暂停读取JVM数据，直到所有慢调试器回落到低水位；不丢数据，但慢调试器会拖慢其他调试器
+     */
+    PAUSE_JVM_READ,
+    /**
+     * 丢弃发给该调试器的非关键事件(suspendPolicy为NONE的事件)，回复和挂起线程的事件照常排队
+     */
+    DROP_EVENTS,
+    /**
+     * 断开该调试器
+     */
+    DISCONNECT
+
+}
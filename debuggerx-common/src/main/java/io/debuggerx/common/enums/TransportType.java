@@ -0,0 +1,28 @@
+package io.debuggerx.common.enums;
+
+/**
+ * 网络传输实现
+ * <p>
+ * 原生传输不可用时启动阶段自动回退到{@link #NIO}
+ *
+ * @author ouwu
+ */
+public enum TransportType {
+    /**
+     * JDK NIO，所有平台可用
+     */
+    NIO,
+    /**
+     * 自动选择: io_uring > epoll > NIO；配置了domain socket时优先epoll
+     */
+    AUTO,
+    /**
+     * Linux epoll，支持Unix domain socket监听
+     */
+    EPOLL,
+    /**
+     * Linux io_uring(内核5.9+)
+     */
+    IO_URING
+
+}
@@ -7,14 +7,28 @@ import java.nio.charset.StandardCharsets;
  * @author ouwu
  */
 public class ByteBufferUtils {
-    public static Long getLong(ByteBuffer buffer, int size) {
-        if (size > 8 || size < 0) {
-            throw new UnsupportedOperationException("malformed input");
+    /**
+     * 读取指定字节数的大端无符号整数，不分配临时数组
+     * @param buffer 数据
+     * @param size 字节数，0~8
+     * @return 读取的值
+     */
+    public static long getLong(ByteBuffer buffer, int size) {
+        switch (size) {
+            case 8:
+                return buffer.getLong();
+            case 4:
+                return buffer.getInt() & 0xFFFFFFFFL;
+            default:
+                if (size > 8 || size < 0) {
+                    throw new UnsupportedOperationException("malformed input");
+                }
+                long value = 0;
+                for (int i = 0; i < size; i++) {
+                    value = value << 8 | (buffer.get() & 0xFF);
+                }
+                return value;
         }
-        int offset = 8 - size;
-        byte[] bytes = new byte[]{0, 0, 0, 0, 0, 0, 0, 0};
-        buffer.get(bytes, offset, size);
-        return ByteBuffer.wrap(bytes).getLong();
     }
 
     public static String getString(ByteBuffer buffer) {
@@ -2,6 +2,9 @@ package io.debuggerx.common.utils;
 
 import io.netty.channel.Channel;
 
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+
 /**
  * ChannelUtils
  * @author ouwu
@@ -15,7 +18,12 @@ public class ChannelUtils {
      * @return 唯一的会话ID
      */
     public static String getDebugChannelId(Channel channel) {
-        return channel.remoteAddress().toString();
+        SocketAddress remoteAddress = channel.remoteAddress();
+        if (remoteAddress instanceof InetSocketAddress) {
+            return remoteAddress.toString();
+        }
+        // domain socket的对端地址不唯一，追加channel id区分
+        return remoteAddress + "#" + channel.id().asShortText();
     }
 
 } 
\ No newline at end of file
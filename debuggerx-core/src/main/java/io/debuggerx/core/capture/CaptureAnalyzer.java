@@ -0,0 +1,375 @@
+package io.debuggerx.core.capture;
+
+import io.debuggerx.common.constants.JdwpConstants;
+import io.debuggerx.common.exception.DebuggerException;
+import io.debuggerx.protocol.enums.CommandIdentifier;
+import io.debuggerx.protocol.enums.EventKind;
+import io.debuggerx.protocol.jdwp.IdSizes;
+import io.debuggerx.protocol.jdwp.JdwpCursor;
+
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Analyses a capture file offline, without replaying it.
+ * <p>
+ * The file is read in one streaming pass over a memory-mapped {@link CaptureReader}; only the
+ * commands still waiting for a reply and the per-command statistics are kept in memory. Replies
+ * are paired with commands through the {@link CaptureFormat#LINK} records, by the JVM channel and
+ * the packet ID the command was sent with. Composite events are
+ * walked with the ID sizes of their JVM, taken from its {@code IDSizes} reply when captured.
+ * <pre>
+ * java -cp debuggerx-bootstrap-1.0-SNAPSHOT.jar io.debuggerx.core.capture.CaptureAnalyzer session.dbxcap [--window=ms] [--storm=events] [--top=N]
+ * </pre>
+ *
+ * @author ouwu
+ */
+public class CaptureAnalyzer {
+    private static final long DEFAULT_WINDOW_MILLIS = 1000;
+    private static final int DEFAULT_STORM_EVENTS = 1000;
+    private static final int DEFAULT_TOP = 10;
+    private static final int COMPOSITE_HEADER_BYTES = JdwpConstants.HEADER_LENGTH + 1 + 4;
+    private static final int ID_SIZES_BYTES = 20;
+
+    private final long windowNanos;
+    private final int stormThreshold;
+    private final int top;
+
+    public CaptureAnalyzer() {
+        this(TimeUnit.MILLISECONDS.toNanos(DEFAULT_WINDOW_MILLIS), DEFAULT_STORM_EVENTS, DEFAULT_TOP);
+    }
+
+    /**
+     * @param windowNanos the width of the windows events are counted in
+     * @param stormThreshold the number of events of one kind in a window that makes it a storm
+     * @param top the number of command sets and slowest requests to report
+     */
+    public CaptureAnalyzer(long windowNanos, int stormThreshold, int top) {
+        if (windowNanos <= 0 || stormThreshold <= 0 || top <= 0) {
+            throw new IllegalArgumentException("window, storm threshold and top must be positive");
+        }
+        this.windowNanos = windowNanos;
+        this.stormThreshold = stormThreshold;
+        this.top = top;
+    }
+
+    public static void main(String[] args) throws IOException {
+        long windowMillis = DEFAULT_WINDOW_MILLIS;
+        int storm = DEFAULT_STORM_EVENTS;
+        int top = DEFAULT_TOP;
+        for (int i = 1; i < args.length; i++) {
+            if (args[i].startsWith("--window=")) {
+                windowMillis = Long.parseLong(args[i].substring("--window=".length()));
+            } else if (args[i].startsWith("--storm=")) {
+                storm = Integer.parseInt(args[i].substring("--storm=".length()));
+            } else if (args[i].startsWith("--top=")) {
+                top = Integer.parseInt(args[i].substring("--top=".length()));
+            } else {
+                args = new String[0];
+            }
+        }
+        if (args.length == 0) {
+            System.err.println("Usage: CaptureAnalyzer <capture file> [--window=ms] [--storm=events] [--top=N]");
+            System.exit(2);
+        }
+        System.out.print(new CaptureAnalyzer(TimeUnit.MILLISECONDS.toNanos(windowMillis), storm, top).analyze(args[0]));
+    }
+
+    /**
+     * Reads the whole file and reports on it.
+     *
+     * @param file the capture file
+     * @return the report
+     * @throws IOException if the file cannot be read or ends inside a record
+     * @throws DebuggerException if the file is not a capture or is corrupt
+     */
+    public CaptureReport analyze(String file) throws IOException {
+        Pass pass = new Pass();
+        try (CaptureReader reader = new CaptureReader(file)) {
+            while (reader.next()) {
+                pass.accept(reader);
+            }
+        }
+        return pass.report(file);
+    }
+
+    /**
+     * 转发到JVM、尚未收到回复的命令
+     */
+    private static final class Pending {
+        private final long timestamp;
+        private final int channel;
+        private final int originId;
+        private final byte commandSet;
+        private final byte command;
+
+        private Pending(long timestamp, int channel, int originId, byte commandSet, byte command) {
+            this.timestamp = timestamp;
+            this.channel = channel;
+            this.originId = originId;
+            this.commandSet = commandSet;
+            this.command = command;
+        }
+    }
+
+    /**
+     * 一次分析的状态
+     */
+    private final class Pass {
+        private long records;
+        private long frames;
+        private long truncatedFrames;
+        private long firstTimestamp = -1;
+        private long lastTimestamp;
+        private long roundTrips;
+        private long unpairedReplies;
+        private long unparsedEvents;
+
+        private final Map<Integer, CaptureReport.ClientStats> clients = new TreeMap<>();
+        /**
+         * (JVM channel, 新id) -> 在途命令；新id只在同一JVM内唯一
+         */
+        private final Map<Long, Pending> pending = new HashMap<>();
+        private long pendingCount;
+        private final Map<Integer, IdSizes> idSizes = new HashMap<>();
+        private final Map<Integer, CaptureReport.CommandStats> commands = new HashMap<>();
+        private final CaptureReport.CommandSetStats[] commandSets = new CaptureReport.CommandSetStats[256];
+        private final CaptureReport.EventStats[] events = new CaptureReport.EventStats[256];
+        private final PriorityQueue<CaptureReport.SlowRequest> slowest =
+                new PriorityQueue<>(Comparator.comparingLong(CaptureReport.SlowRequest::getLatencyNanos));
+
+        private void accept(CaptureReader reader) {
+            records++;
+            long timestamp = reader.getTimestamp();
+            if (firstTimestamp < 0) {
+                firstTimestamp = timestamp;
+            }
+            lastTimestamp = Math.max(lastTimestamp, timestamp);
+            switch (reader.getDirection()) {
+                case CaptureFormat.CHANNEL:
+                    ByteBuffer description = reader.data();
+                    byte[] bytes = new byte[description.remaining()];
+                    description.get(bytes);
+                    client(reader.getChannel()).describe(new String(bytes, StandardCharsets.UTF_8));
+                    break;
+                case CaptureFormat.LINK:
+                    onLink(timestamp, reader.getChannel(), reader.data());
+                    break;
+                case CaptureFormat.FROM_DEBUGGER:
+                case CaptureFormat.FROM_JVM:
+                    onFrame(timestamp, reader);
+                    break;
+                default:
+                    throw new DebuggerException("Unknown capture record direction " + reader.getDirection());
+            }
+        }
+
+        private void onLink(long timestamp, int channel, ByteBuffer data) {
+            Pending command = new Pending(timestamp, channel, data.getInt(4), data.get(8), data.get(9));
+            // 同一JVM的新id仍在途时被复用，旧命令计为未回复
+            pending.put(pendingKey(data.getInt(10), data.getInt(0)), command);
+            pendingCount++;
+            client(channel).forwarded();
+            if (channel == 0) {
+                // 代理自身的命令没有被捕获的帧，在此计数
+                command(command.commandSet, command.command).command();
+            }
+        }
+
+        private void onFrame(long timestamp, CaptureReader reader) {
+            frames++;
+            if (reader.isTruncated()) {
+                truncatedFrames++;
+            }
+            int length = reader.getLength();
+            client(reader.getChannel()).frame(length);
+            ByteBuffer data = reader.data();
+            if (data.remaining() < JdwpConstants.HEADER_LENGTH) {
+                return;
+            }
+            if ((data.get(8) & JdwpConstants.FLAG_REPLY_PACKET) != 0) {
+                if (reader.getDirection() == CaptureFormat.FROM_JVM) {
+                    onReply(timestamp, reader.getChannel(), data, length);
+                }
+                return;
+            }
+            byte commandSet = data.get(9);
+            byte command = data.get(10);
+            commandSet(commandSet).add(length);
+            if (reader.getDirection() == CaptureFormat.FROM_DEBUGGER) {
+                command(commandSet, command).command();
+            } else if (commandSet == CommandIdentifier.COMPOSITE_EVENT_COMMAND.getCommandSetId()
+                    && command == CommandIdentifier.COMPOSITE_EVENT_COMMAND.getCommandId()) {
+                onEvents(timestamp, reader.getChannel(), data);
+            }
+        }
+
+        private void onReply(long timestamp, int jvmChannel, ByteBuffer data, int length) {
+            Pending command = pending.remove(pendingKey(jvmChannel, data.getInt(4)));
+            if (command == null) {
+                unpairedReplies++;
+                return;
+            }
+            pendingCount--;
+            roundTrips++;
+            short errorCode = data.getShort(9);
+            long latency = timestamp - command.timestamp;
+            command(command.commandSet, command.command).reply(latency, errorCode);
+            commandSet(command.commandSet).add(length);
+            CaptureReport.ClientStats client = client(command.channel);
+            client.reply(length, latency);
+            slow(new CaptureReport.SlowRequest(command.timestamp, client.getDescription(), command.originId,
+                    command.commandSet & 0xFF, command.command & 0xFF, latency, errorCode));
+            if (command.commandSet == JdwpConstants.VIRTUAL_MACHINE_COMMAND_SET
+                    && command.command == CommandIdentifier.ID_SIZES_REPLY.getCommandId()
+                    && errorCode == 0 && data.remaining() >= JdwpConstants.HEADER_LENGTH + ID_SIZES_BYTES) {
+                data.position(JdwpConstants.HEADER_LENGTH);
+                idSizes.put(jvmChannel, IdSizes.read(data));
+            }
+        }
+
+        private long pendingKey(int jvmChannel, int newId) {
+            return (long) jvmChannel << 32 | newId & 0xFFFFFFFFL;
+        }
+
+        private void onEvents(long timestamp, int jvmChannel, ByteBuffer data) {
+            if (data.remaining() < COMPOSITE_HEADER_BYTES) {
+                return;
+            }
+            int count = data.getInt(JdwpConstants.HEADER_LENGTH + 1);
+            client(jvmChannel).events(count);
+            IdSizes sizes = idSizes.getOrDefault(jvmChannel, IdSizes.DEFAULT);
+            data.position(COMPOSITE_HEADER_BYTES);
+            int parsed = 0;
+            try {
+                while (parsed < count) {
+                    EventKind kind = EventKind.findByValue(data.get());
+                    if (kind == null) {
+                        break;
+                    }
+                    event(kind).add(timestamp);
+                    if (++parsed < count) {
+                        skipEvent(data, kind, sizes);
+                    }
+                }
+            } catch (BufferUnderflowException | IllegalArgumentException | DebuggerException e) {
+                // 帧被截断或ID长度与录制的JVM不符，其余事件无法归类
+            }
+            unparsedEvents += count - parsed;
+        }
+
+        private void skipEvent(ByteBuffer data, EventKind kind, IdSizes sizes) {
+            // requestID及固定长度字段
+            data.getInt();
+            JdwpCursor.skip(data, sizes.getEventLayout().fixedLength(kind));
+            switch (kind) {
+                case CLASS_PREPARE:
+                    JdwpCursor.skipString(data);
+                    data.getInt();
+                    break;
+                case CLASS_UNLOAD:
+                    JdwpCursor.skipString(data);
+                    break;
+                case FIELD_MODIFICATION:
+                case METHOD_EXIT_WITH_RETURN_VALUE:
+                    JdwpCursor.skipValue(data, sizes);
+                    break;
+                default:
+                    break;
+            }
+        }
+
+        private void slow(CaptureReport.SlowRequest request) {
+            if (slowest.size() < top) {
+                slowest.add(request);
+            } else if (request.getLatencyNanos() > slowest.peek().getLatencyNanos()) {
+                slowest.poll();
+                slowest.add(request);
+            }
+        }
+
+        private CaptureReport.ClientStats client(int channel) {
+            return clients.computeIfAbsent(channel,
+                    key -> new CaptureReport.ClientStats(key, key == 0 ? "proxy" : "channel " + key));
+        }
+
+        private CaptureReport.CommandStats command(byte commandSet, byte command) {
+            return commands.computeIfAbsent((commandSet & 0xFF) << 8 | command & 0xFF,
+                    key -> new CaptureReport.CommandStats(commandSet & 0xFF, command & 0xFF));
+        }
+
+        private CaptureReport.CommandSetStats commandSet(byte commandSet) {
+            CaptureReport.CommandSetStats stats = commandSets[commandSet & 0xFF];
+            if (stats == null) {
+                stats = commandSets[commandSet & 0xFF] = new CaptureReport.CommandSetStats(commandSet & 0xFF);
+            }
+            return stats;
+        }
+
+        private CaptureReport.EventStats event(EventKind kind) {
+            CaptureReport.EventStats stats = events[kind.id & 0xFF];
+            if (stats == null) {
+                stats = events[kind.id & 0xFF] = new CaptureReport.EventStats(kind, windowNanos, stormThreshold);
+            }
+            return stats;
+        }
+
+        private CaptureReport report(String file) {
+            List<CaptureReport.CommandSetStats> sets = new ArrayList<>();
+            List<CaptureReport.EventStats> kinds = new ArrayList<>();
+            for (int i = 0; i < 256; i++) {
+                if (commandSets[i] != null) {
+                    sets.add(commandSets[i]);
+                }
+                if (events[i] != null) {
+                    events[i].finish();
+                    kinds.add(events[i]);
+                }
+            }
+            kinds.sort(Comparator.comparingLong(CaptureReport.EventStats::getEvents).reversed());
+            List<CaptureReport.SlowRequest> requests = new ArrayList<>(slowest);
+            requests.sort(Comparator.comparingLong(CaptureReport.SlowRequest::getLatencyNanos).reversed());
+            return CaptureReport.builder()
+                    .file(file)
+                    .records(records)
+                    .frames(frames)
+                    .truncatedFrames(truncatedFrames)
+                    .firstTimestamp(Math.max(firstTimestamp, 0))
+                    .lastTimestamp(lastTimestamp)
+                    .windowNanos(windowNanos)
+                    .stormThreshold(stormThreshold)
+                    .roundTrips(roundTrips)
+                    .unanswered(pendingCount)
+                    .unpairedReplies(unpairedReplies)
+                    .unparsedEvents(unparsedEvents)
+                    .commands(commands.values().stream()
+                            .sorted(Comparator.comparingLong((CaptureReport.CommandStats stats) -> stats.getLatency().getSumNanos())
+                                    .reversed()
+                                    .thenComparing(Comparator.comparingLong(CaptureReport.CommandStats::getCommands).reversed()))
+                            .collect(Collectors.toList()))
+                    .commandSetsByBytes(sets.stream()
+                            .sorted(Comparator.comparingLong(CaptureReport.CommandSetStats::getBytes).reversed())
+                            .limit(top)
+                            .collect(Collectors.toList()))
+                    .commandSetsByCount(sets.stream()
+                            .sorted(Comparator.comparingLong(CaptureReport.CommandSetStats::getPackets).reversed())
+                            .limit(top)
+                            .collect(Collectors.toList()))
+                    .events(kinds)
+                    .slowestRequests(requests)
+                    .clients(new ArrayList<>(clients.values()))
+                    .build();
+        }
+    }
+}
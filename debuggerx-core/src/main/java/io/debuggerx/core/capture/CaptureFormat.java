@@ -0,0 +1,49 @@
+package io.debuggerx.core.capture;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Binary layout of a packet capture file. All numbers are big-endian.
+ * <pre>
+ * file   := MAGIC record*
+ * record := timestamp(8) direction(1) channel(4) length(4) captured(4) bytes[captured]
+ * </pre>
+ * {@code timestamp} is in nanoseconds since the epoch. {@code channel} numbers the proxy connections
+ * within one file, from 1. {@code length} is the original frame length, and {@code bytes} holds
+ * its first {@code captured} bytes (at most the snap length), header included. A
+ * {@link #CHANNEL} record comes before the first frame of each channel. Its bytes describe the
+ * connection in UTF-8, e.g. {@code "jvm /127.0.0.1:5005"}.
+ * <p>
+ * A {@link #LINK} record follows each command the proxy sends to the JVM and gives the packet ID
+ * it was assigned there, so a reply from the JVM can be paired with the debugger's command. Its
+ * bytes are {@code newId(4) originId(4) commandSet(1) command(1) jvmChannel(4)}. Its channel is the
+ * debugger that sent the command, or 0 for a command issued by the proxy itself; {@code jvmChannel}
+ * is the channel number of the JVM the command was sent to, since packet IDs are only unique per JVM.
+ *
+ * @author ouwu
+ */
+public final class CaptureFormat {
+    public static final byte[] MAGIC = "DBXCAP01".getBytes(StandardCharsets.US_ASCII);
+    public static final int RECORD_HEADER_BYTES = 21;
+
+    /**
+     * 调试器发给代理的帧
+     */
+    public static final byte FROM_DEBUGGER = 0;
+    /**
+     * JVM发给代理的帧
+     */
+    public static final byte FROM_JVM = 1;
+    /**
+     * channel描述记录，不是数据包
+     */
+    public static final byte CHANNEL = 2;
+    /**
+     * 命令转发到JVM时分配的新id，不是数据包
+     */
+    public static final byte LINK = 3;
+    public static final int LINK_BYTES = 14;
+
+    private CaptureFormat() {
+    }
+}
@@ -0,0 +1,165 @@
+package io.debuggerx.core.capture;
+
+import io.debuggerx.common.exception.DebuggerException;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Reads a capture file ({@link CaptureFormat}) one record at a time.
+ * <p>
+ * The reader is a cursor: {@link #next()} moves to the next record and the getters describe it.
+ * The file is memory-mapped a window at a time, so files larger than 2 GB can be read and the
+ * bytes of a record are never copied. The buffer returned by {@link #data()} is a view of the
+ * mapping and only valid until the next call.
+ *
+ * @author ouwu
+ */
+public class CaptureReader implements Closeable {
+    /**
+     * 每次映射的文件区间大小，记录跨越区间边界时从该记录起重新映射
+     */
+    private static final long WINDOW_BYTES = 64L * 1024 * 1024;
+
+    private final FileChannel file;
+    private final long size;
+    private MappedByteBuffer window;
+    /**
+     * 当前映射区间在文件中的起始偏移
+     */
+    private long windowStart;
+    private ByteBuffer data;
+
+    private long timestamp;
+    private byte direction;
+    private int channel;
+    private int length;
+    private int captured;
+
+    /**
+     * @param file the capture file
+     * @throws IOException if the file cannot be read
+     * @throws DebuggerException if the file is not a capture
+     */
+    public CaptureReader(String file) throws IOException {
+        this.file = FileChannel.open(Paths.get(file), StandardOpenOption.READ);
+        this.size = this.file.size();
+        byte[] magic = new byte[CaptureFormat.MAGIC.length];
+        if (size >= magic.length) {
+            map(0, magic.length);
+            window.get(magic);
+        }
+        if (!Arrays.equals(CaptureFormat.MAGIC, magic)) {
+            this.file.close();
+            throw new DebuggerException("Not a capture file: " + file);
+        }
+    }
+
+    /**
+     * Moves to the next record.
+     *
+     * @return false at the end of the file
+     * @throws IOException if the file cannot be read or ends inside a record
+     */
+    public boolean next() throws IOException {
+        long offset = windowStart + window.position();
+        if (offset == size) {
+            return false;
+        }
+        if (size - offset < CaptureFormat.RECORD_HEADER_BYTES) {
+            throw new EOFException("Capture ends inside a record header at offset " + offset);
+        }
+        if (window.remaining() < CaptureFormat.RECORD_HEADER_BYTES) {
+            map(offset, CaptureFormat.RECORD_HEADER_BYTES);
+        }
+        timestamp = window.getLong();
+        direction = window.get();
+        channel = window.getInt();
+        length = window.getInt();
+        captured = window.getInt();
+        if (captured < 0 || captured > length) {
+            throw new DebuggerException("Corrupt capture record: captured " + captured + " of " + length + " bytes");
+        }
+        if (window.remaining() < captured) {
+            long dataOffset = offset + CaptureFormat.RECORD_HEADER_BYTES;
+            if (size - dataOffset < captured) {
+                throw new EOFException("Capture ends inside a record at offset " + offset);
+            }
+            map(dataOffset, captured);
+        }
+        data = window.slice();
+        data.limit(captured);
+        window.position(window.position() + captured);
+        return true;
+    }
+
+    /**
+     * 从offset起映射一个区间，至少包含minBytes字节
+     */
+    private void map(long offset, int minBytes) throws IOException {
+        windowStart = offset;
+        window = file.map(FileChannel.MapMode.READ_ONLY, offset, Math.min(size - offset, Math.max(WINDOW_BYTES, minBytes)));
+    }
+
+    /**
+     * @return epoch nanoseconds
+     */
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    /**
+     * @return {@link CaptureFormat#FROM_DEBUGGER}, {@link CaptureFormat#FROM_JVM}, {@link CaptureFormat#CHANNEL}
+     *         or {@link CaptureFormat#LINK}
+     */
+    public byte getDirection() {
+        return direction;
+    }
+
+    /**
+     * @return the channel number, 0 for a command issued by the proxy
+     */
+    public int getChannel() {
+        return channel;
+    }
+
+    /**
+     * @return the original frame length
+     */
+    public int getLength() {
+        return length;
+    }
+
+    /**
+     * @return the number of bytes kept, at most {@link #getLength()}
+     */
+    public int getCaptured() {
+        return captured;
+    }
+
+    /**
+     * @return true if only part of the frame was kept
+     */
+    public boolean isTruncated() {
+        return captured < length;
+    }
+
+    /**
+     * @return the bytes of the record, big-endian, valid until the next call to {@link #next()}
+     */
+    public ByteBuffer data() {
+        return data.duplicate();
+    }
+
+    @Override
+    public void close() throws IOException {
+        file.close();
+    }
+}
@@ -0,0 +1,495 @@
+package io.debuggerx.core.capture;
+
+import io.debuggerx.protocol.enums.CommandIdentifier;
+import io.debuggerx.protocol.enums.EventKind;
+import lombok.AccessLevel;
+import lombok.Builder;
+import lombok.Getter;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Offline analysis of a capture file, produced by {@link CaptureAnalyzer}.
+ * Round trips are measured on the JVM side, from the moment the proxy forwards a command to the
+ * moment the JVM reply is read, since frames sent to the debuggers are not captured.
+ *
+ * @author ouwu
+ */
+@Getter
+@Builder
+public class CaptureReport {
+    /**
+     * 按命令集id索引的名称
+     */
+    private static final String[] COMMAND_SET_NAMES = new String[256];
+
+    static {
+        String[] names = {null, "VirtualMachine", "ReferenceType", "ClassType", "ArrayType", "InterfaceType",
+                "Method", null, "Field", "ObjectReference", "StringReference", "ThreadReference",
+                "ThreadGroupReference", "ArrayReference", "ClassLoaderReference", "EventRequest", "StackFrame",
+                "ClassObjectReference", "ModuleReference"};
+        System.arraycopy(names, 0, COMMAND_SET_NAMES, 0, names.length);
+        COMMAND_SET_NAMES[64] = "Event";
+    }
+
+    private final String file;
+    private final long records;
+    private final long frames;
+    private final long truncatedFrames;
+    /**
+     * 第一条和最后一条记录的时间(epoch纳秒)
+     */
+    private final long firstTimestamp;
+    private final long lastTimestamp;
+    private final long windowNanos;
+    private final int stormThreshold;
+    private final long roundTrips;
+    /**
+     * 捕获结束时仍未收到回复的转发命令数
+     */
+    private final long unanswered;
+    /**
+     * 找不到转发记录的回复数(命令早于捕获开始，或被命令集过滤)
+     */
+    private final long unpairedReplies;
+    /**
+     * 因帧被截断或事件类型未知而未能归类的事件数
+     */
+    private final long unparsedEvents;
+    /**
+     * 按总耗时降序
+     */
+    private final List<CommandStats> commands;
+    private final List<CommandSetStats> commandSetsByBytes;
+    private final List<CommandSetStats> commandSetsByCount;
+    /**
+     * 按事件数降序
+     */
+    private final List<EventStats> events;
+    /**
+     * 按往返时间降序
+     */
+    private final List<SlowRequest> slowestRequests;
+    /**
+     * 按channel编号升序，编号0为代理自身
+     */
+    private final List<ClientStats> clients;
+
+    /**
+     * @param commandSet the command set id
+     * @return the JDWP name of the command set, or its id if unknown
+     */
+    public static String commandSetName(int commandSet) {
+        String name = COMMAND_SET_NAMES[commandSet & 0xFF];
+        return name == null ? String.valueOf(commandSet & 0xFF) : name;
+    }
+
+    /**
+     * @param commandSet the command set id
+     * @param command the command id
+     * @return the command as {@code CommandSet.command}, followed by its {@link CommandIdentifier} if known
+     */
+    public static String commandName(int commandSet, int command) {
+        CommandIdentifier identifier = CommandIdentifier.of(commandSet, command, true);
+        if (identifier == null) {
+            identifier = CommandIdentifier.of(commandSet, command, false);
+        }
+        String name = commandSetName(commandSet) + "." + (command & 0xFF);
+        return identifier == null ? name : name + " " + identifier.name().replaceAll("_(COMMAND|REPLY)$", "");
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder out = new StringBuilder();
+        out.append(String.format("Capture %s: %d records, %d frames (%d truncated) over %s%n",
+                file, records, frames, truncatedFrames, seconds(lastTimestamp - firstTimestamp)));
+        out.append(String.format("Round trips: %d paired, %d unanswered, %d replies without a forwarded command%n",
+                roundTrips, unanswered, unpairedReplies));
+
+        out.append(String.format("%nCommand latency, by total time:%n"));
+        out.append(String.format("  %-50s %9s %7s %9s %9s %9s %11s%n", "command", "count", "errors", "p50", "p99", "max", "total"));
+        for (CommandStats command : commands) {
+            LatencyStats latency = command.getLatency();
+            out.append(String.format("  %-50s %9d %7d %9s %9s %9s %11s%n", command.getName(), command.getCommands(),
+                    command.getErrors(), micros(latency.percentileNanos(0.5)), micros(latency.percentileNanos(0.99)),
+                    micros(latency.getMaxNanos()), millis(latency.getSumNanos())));
+        }
+
+        out.append(String.format("%nTop command sets by bytes:%n"));
+        for (CommandSetStats set : commandSetsByBytes) {
+            out.append(String.format("  %-22s %12s %10d packets%n", set.getName(), bytes(set.getBytes()), set.getPackets()));
+        }
+        out.append(String.format("%nTop command sets by count:%n"));
+        for (CommandSetStats set : commandSetsByCount) {
+            out.append(String.format("  %-22s %10d packets %12s%n", set.getName(), set.getPackets(), bytes(set.getBytes())));
+        }
+
+        out.append(String.format("%nEvents, storms at %d or more per %d ms window:%n",
+                stormThreshold, TimeUnit.NANOSECONDS.toMillis(windowNanos)));
+        for (EventStats event : events) {
+            out.append(String.format("  %-30s %10d events, peak %d at %s%n", event.getKind(), event.getEvents(),
+                    event.getPeakWindowEvents(), offset(event.getPeakWindowStart())));
+            for (Storm storm : event.getStorms()) {
+                out.append(String.format("    storm %s to %s: %d events, peak %d per window%n", offset(storm.getStart()),
+                        offset(storm.getEnd()), storm.getEvents(), storm.getPeakWindowEvents()));
+            }
+        }
+        if (unparsedEvents > 0) {
+            out.append(String.format("  %d event(s) not classified: truncated frame or unknown kind%n", unparsedEvents));
+        }
+
+        out.append(String.format("%nSlowest requests:%n"));
+        for (SlowRequest request : slowestRequests) {
+            out.append(String.format("  %9s  %-50s %10s  %s id=%d%s%n", offset(request.getTimestamp()),
+                    commandName(request.getCommandSet(), request.getCommand()), micros(request.getLatencyNanos()),
+                    request.getClient(), request.getOriginId(),
+                    request.getErrorCode() == 0 ? "" : " error " + request.getErrorCode()));
+        }
+
+        out.append(String.format("%nTraffic per client:%n"));
+        for (ClientStats client : clients) {
+            out.append(String.format("  %-40s read %d frames (%s)", client.getDescription(), client.getFrames(), bytes(client.getBytes())));
+            if (client.getForwarded() > 0) {
+                out.append(String.format(", forwarded %d, replies %d (%s), p50 %s p99 %s", client.getForwarded(),
+                        client.getReplies(), bytes(client.getReplyBytes()), micros(client.getLatency().percentileNanos(0.5)),
+                        micros(client.getLatency().percentileNanos(0.99))));
+            }
+            if (client.getEventPackets() > 0) {
+                out.append(String.format(", %d events in %d packets", client.getEvents(), client.getEventPackets()));
+            }
+            out.append(System.lineSeparator());
+        }
+        return out.toString();
+    }
+
+    /**
+     * 相对第一条记录的时间；事件窗口按epoch对齐，可能早于第一条记录
+     */
+    private String offset(long timestamp) {
+        return "+" + seconds(Math.max(timestamp - firstTimestamp, 0));
+    }
+
+    private static String seconds(long nanos) {
+        return String.format(Locale.ROOT, "%.3fs", nanos / 1e9);
+    }
+
+    private static String millis(long nanos) {
+        return String.format(Locale.ROOT, "%.1fms", nanos / 1e6);
+    }
+
+    private static String micros(long nanos) {
+        return TimeUnit.NANOSECONDS.toMicros(nanos) + "us";
+    }
+
+    private static String bytes(long bytes) {
+        if (bytes < 1024) {
+            return bytes + " B";
+        }
+        return bytes < 1024 * 1024
+                ? String.format(Locale.ROOT, "%.1f KB", bytes / 1024.0)
+                : String.format(Locale.ROOT, "%.1f MB", bytes / (1024.0 * 1024));
+    }
+
+    /**
+     * Latency distribution with eight log-linear buckets per power of two, so percentiles are
+     * within about 12% whatever the number of samples.
+     */
+    @Getter
+    public static final class LatencyStats {
+        /**
+         * 小于该值的延迟各占一个桶
+         */
+        private static final int LINEAR = 16;
+        private static final int SUB_BUCKET_BITS = 3;
+        private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+
+        private long count;
+        private long sumNanos;
+        private long maxNanos;
+        @Getter(AccessLevel.NONE)
+        private final long[] buckets = new long[LINEAR + (63 - 4) * SUB_BUCKETS];
+
+        void record(long nanos) {
+            long value = Math.max(nanos, 0);
+            buckets[bucketIndex(value)]++;
+            count++;
+            sumNanos += value;
+            maxNanos = Math.max(maxNanos, value);
+        }
+
+        static int bucketIndex(long nanos) {
+            if (nanos < LINEAR) {
+                return (int) nanos;
+            }
+            int exponent = 63 - Long.numberOfLeadingZeros(nanos);
+            int mantissa = (int) (nanos >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+            return LINEAR + (exponent - 4) * SUB_BUCKETS + mantissa;
+        }
+
+        /**
+         * 桶内的最大值
+         */
+        static long bucketUpperBound(int index) {
+            if (index < LINEAR) {
+                return index;
+            }
+            int exponent = (index - LINEAR) / SUB_BUCKETS + 4;
+            long mantissa = (index - LINEAR) % SUB_BUCKETS + SUB_BUCKETS;
+            return ((mantissa + 1) << (exponent - SUB_BUCKET_BITS)) - 1;
+        }
+
+        /**
+         * @param percentile between 0 and 1
+         * @return the upper bound of the bucket holding the percentile, at most the maximum; 0 if empty
+         */
+        public long percentileNanos(double percentile) {
+            long rank = Math.max(1, (long) Math.ceil(percentile * count));
+            long seen = 0;
+            for (int i = 0; i < buckets.length; i++) {
+                seen += buckets[i];
+                if (seen >= rank) {
+                    return Math.min(bucketUpperBound(i), maxNanos);
+                }
+            }
+            return maxNanos;
+        }
+
+        public long getMeanNanos() {
+            return count == 0 ? 0 : sumNanos / count;
+        }
+    }
+
+    /**
+     * Commands of one kind, with the round trips of those forwarded to the JVM.
+     */
+    @Getter
+    public static final class CommandStats {
+        private final int commandSet;
+        private final int command;
+        /**
+         * 调试器发出的命令帧数，加上代理自身转发的命令数
+         */
+        private long commands;
+        private long replies;
+        /**
+         * 错误码非0的回复数
+         */
+        private long errors;
+        private final LatencyStats latency = new LatencyStats();
+
+        CommandStats(int commandSet, int command) {
+            this.commandSet = commandSet;
+            this.command = command;
+        }
+
+        public String getName() {
+            return commandName(commandSet, command);
+        }
+
+        void command() {
+            commands++;
+        }
+
+        void reply(long latencyNanos, short errorCode) {
+            replies++;
+            if (errorCode != 0) {
+                errors++;
+            }
+            latency.record(latencyNanos);
+        }
+    }
+
+    /**
+     * Command, reply and event packets of one command set. A reply counts in the command set of
+     * its command.
+     */
+    @Getter
+    public static final class CommandSetStats {
+        private final int commandSet;
+        private long packets;
+        private long bytes;
+
+        CommandSetStats(int commandSet) {
+            this.commandSet = commandSet;
+        }
+
+        public String getName() {
+            return commandSetName(commandSet) + " (" + commandSet + ")";
+        }
+
+        void add(int length) {
+            packets++;
+            bytes += length;
+        }
+    }
+
+    /**
+     * Events of one kind, counted in fixed windows aligned on the epoch. Consecutive windows with
+     * at least the storm threshold of events form one storm.
+     */
+    @Getter
+    public static final class EventStats {
+        private final EventKind kind;
+        private long events;
+        private long peakWindowStart;
+        private long peakWindowEvents;
+        private final List<Storm> storms = new ArrayList<>();
+
+        @Getter(AccessLevel.NONE)
+        private final long windowNanos;
+        @Getter(AccessLevel.NONE)
+        private final int stormThreshold;
+        /**
+         * 当前窗口序号及其事件数
+         */
+        @Getter(AccessLevel.NONE)
+        private long window = -1;
+        @Getter(AccessLevel.NONE)
+        private long windowEvents;
+        @Getter(AccessLevel.NONE)
+        private Storm storm;
+
+        EventStats(EventKind kind, long windowNanos, int stormThreshold) {
+            this.kind = kind;
+            this.windowNanos = windowNanos;
+            this.stormThreshold = stormThreshold;
+        }
+
+        void add(long timestamp) {
+            events++;
+            long index = timestamp / windowNanos;
+            // 捕获记录的时间大体有序，略早于当前窗口的事件计入当前窗口
+            if (index > window) {
+                closeWindow();
+                window = index;
+                windowEvents = 0;
+            }
+            windowEvents++;
+        }
+
+        void finish() {
+            closeWindow();
+            window = -1;
+            storm = null;
+        }
+
+        private void closeWindow() {
+            if (window < 0) {
+                return;
+            }
+            long start = window * windowNanos;
+            if (windowEvents > peakWindowEvents) {
+                peakWindowEvents = windowEvents;
+                peakWindowStart = start;
+            }
+            if (windowEvents < stormThreshold) {
+                storm = null;
+                return;
+            }
+            if (storm == null || storm.end != start) {
+                storm = new Storm(start);
+                storms.add(storm);
+            }
+            storm.end = start + windowNanos;
+            storm.events += windowEvents;
+            storm.peakWindowEvents = Math.max(storm.peakWindowEvents, windowEvents);
+        }
+    }
+
+    /**
+     * Consecutive windows of one event kind over the storm threshold.
+     */
+    @Getter
+    public static final class Storm {
+        private final long start;
+        private long end;
+        private long events;
+        private long peakWindowEvents;
+
+        Storm(long start) {
+            this.start = start;
+        }
+    }
+
+    /**
+     * One forwarded command and its round trip.
+     */
+    @Getter
+    public static final class SlowRequest {
+        private final long timestamp;
+        private final String client;
+        private final int originId;
+        private final int commandSet;
+        private final int command;
+        private final long latencyNanos;
+        private final short errorCode;
+
+        SlowRequest(long timestamp, String client, int originId, int commandSet, int command, long latencyNanos, short errorCode) {
+            this.timestamp = timestamp;
+            this.client = client;
+            this.originId = originId;
+            this.commandSet = commandSet;
+            this.command = command;
+            this.latencyNanos = latencyNanos;
+            this.errorCode = errorCode;
+        }
+    }
+
+    /**
+     * Traffic of one proxy connection. Channel 0 stands for the commands the proxy issues itself.
+     */
+    @Getter
+    public static final class ClientStats {
+        private final int channel;
+        private String description;
+        /**
+         * 代理从该连接读到的帧数和字节数
+         */
+        private long frames;
+        private long bytes;
+        /**
+         * 转发到JVM的命令数，及JVM对这些命令的回复
+         */
+        private long forwarded;
+        private long replies;
+        private long replyBytes;
+        private final LatencyStats latency = new LatencyStats();
+        /**
+         * JVM连接上的事件包数及其中的事件数
+         */
+        private long eventPackets;
+        private long events;
+
+        ClientStats(int channel, String description) {
+            this.channel = channel;
+            this.description = description;
+        }
+
+        void describe(String description) {
+            this.description = description;
+        }
+
+        void frame(int length) {
+            frames++;
+            bytes += length;
+        }
+
+        void forwarded() {
+            forwarded++;
+        }
+
+        void reply(int length, long latencyNanos) {
+            replies++;
+            replyBytes += length;
+            latency.record(latencyNanos);
+        }
+
+        void events(int count) {
+            eventPackets++;
+            events += count;
+        }
+    }
+}
@@ -0,0 +1,194 @@
+package io.debuggerx.core.capture;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.Channel;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Bounded multi-producer, single-consumer ring of captured frames.
+ * <p>
+ * Every slot is preallocated with room for one snap length of bytes, so offering a frame is a CAS
+ * on the claim sequence plus one bounded copy, and never allocates or blocks. Producers (the event
+ * loops) claim slots in order and publish them with a per-slot sequence. The consumer (the capture
+ * writer thread) drains published slots in claim order. When the consumer falls behind and the
+ * ring is full, frames are dropped and counted.
+ *
+ * @author ouwu
+ */
+public class CaptureRing {
+    private final int mask;
+    private final int snapLength;
+    private final byte[] data;
+    private final long[] timestamps;
+    private final byte[] directions;
+    private final Channel[] channels;
+    /**
+     * LINK记录的命令发往的JVM channel，由写入线程编号
+     */
+    private final Channel[] jvmChannels;
+    private final int[] lengths;
+    private final int[] captured;
+    /**
+     * 每个slot已发布的序号+1，消费者据此判断slot是否写完
+     */
+    private final AtomicLongArray published;
+    /**
+     * 下一个待占用的序号
+     */
+    private final AtomicLong tail = new AtomicLong();
+    /**
+     * 下一个待消费的序号，仅消费者写入
+     */
+    private volatile long head;
+    private final LongAdder dropped = new LongAdder();
+
+    /**
+     * @param capacity the number of slots, rounded up to a power of two
+     * @param snapLength the maximum number of bytes kept per frame
+     */
+    public CaptureRing(int capacity, int snapLength) {
+        int size = Integer.highestOneBit(Math.max(capacity, 2) - 1) << 1;
+        this.mask = size - 1;
+        this.snapLength = snapLength;
+        this.data = new byte[size * snapLength];
+        this.timestamps = new long[size];
+        this.directions = new byte[size];
+        this.channels = new Channel[size];
+        this.jvmChannels = new Channel[size];
+        this.lengths = new int[size];
+        this.captured = new int[size];
+        this.published = new AtomicLongArray(size);
+    }
+
+    /**
+     * Copies the first snap length bytes of a frame into the next free slot.
+     *
+     * @param timestamp epoch nanoseconds
+     * @param direction {@link CaptureFormat#FROM_DEBUGGER} or {@link CaptureFormat#FROM_JVM}
+     * @param channel the channel the frame was read from
+     * @param frame the frame, header included; not modified
+     * @param length the original frame length, larger than the readable bytes for a streamed frame
+     * @return false if the ring was full and the frame was dropped
+     */
+    public boolean offer(long timestamp, byte direction, Channel channel, ByteBuf frame, int length) {
+        long seq = claim();
+        if (seq < 0) {
+            return false;
+        }
+        int index = (int) seq & mask;
+        int copy = Math.min(frame.readableBytes(), snapLength);
+        frame.getBytes(frame.readerIndex(), data, index * snapLength, copy);
+        publish(seq, index, timestamp, direction, channel, length, copy);
+        return true;
+    }
+
+    /**
+     * Records the packet ID a command was assigned towards the JVM ({@link CaptureFormat#LINK}).
+     *
+     * @param timestamp epoch nanoseconds
+     * @param channel the debugger that sent the command, null for a command issued by the proxy
+     * @param jvmChannel the JVM the command was sent to
+     * @param newId the packet ID used towards the JVM
+     * @param originId the packet ID assigned by the debugger
+     * @param commandSet the JDWP command set
+     * @param command the JDWP command
+     * @return false if the ring was full and the record was dropped
+     */
+    public boolean offerLink(long timestamp, Channel channel, Channel jvmChannel, int newId, int originId,
+                             byte commandSet, byte command) {
+        long seq = claim();
+        if (seq < 0) {
+            return false;
+        }
+        int index = (int) seq & mask;
+        int offset = index * snapLength;
+        writeInt(offset, newId);
+        writeInt(offset + 4, originId);
+        data[offset + 8] = commandSet;
+        data[offset + 9] = command;
+        jvmChannels[index] = jvmChannel;
+        publish(seq, index, timestamp, CaptureFormat.LINK, channel, CaptureFormat.LINK_BYTES, CaptureFormat.LINK_BYTES);
+        return true;
+    }
+
+    /**
+     * @return the claimed sequence, or -1 if the ring is full
+     */
+    private long claim() {
+        long seq;
+        do {
+            seq = tail.get();
+            if (seq - head > mask) {
+                dropped.increment();
+                return -1;
+            }
+        } while (!tail.compareAndSet(seq, seq + 1));
+        return seq;
+    }
+
+    private void publish(long seq, int index, long timestamp, byte direction, Channel channel, int length, int copied) {
+        timestamps[index] = timestamp;
+        directions[index] = direction;
+        channels[index] = channel;
+        lengths[index] = length;
+        captured[index] = copied;
+        published.lazySet(index, seq + 1);
+    }
+
+    private void writeInt(int offset, int value) {
+        data[offset] = (byte) (value >>> 24);
+        data[offset + 1] = (byte) (value >>> 16);
+        data[offset + 2] = (byte) (value >>> 8);
+        data[offset + 3] = (byte) value;
+    }
+
+    /**
+     * Hands published frames to the consumer in claim order. Must only be called by one thread.
+     *
+     * @param handler receives each frame; the bytes are only valid during the call
+     * @param max the maximum number of frames to drain
+     * @return the number of frames drained
+     */
+    public int drain(RecordHandler handler, int max) {
+        long seq = head;
+        int drained = 0;
+        while (drained < max) {
+            int index = (int) seq & mask;
+            if (published.get(index) != seq + 1) {
+                break;
+            }
+            handler.accept(timestamps[index], directions[index], channels[index], jvmChannels[index], lengths[index],
+                    data, index * snapLength, captured[index]);
+            channels[index] = null;
+            jvmChannels[index] = null;
+            seq++;
+            drained++;
+            head = seq;
+        }
+        return drained;
+    }
+
+    public boolean isEmpty() {
+        return tail.get() == head;
+    }
+
+    public long getDroppedCount() {
+        return dropped.sum();
+    }
+
+    public int getSnapLength() {
+        return snapLength;
+    }
+
+    /**
+     * 消费一条捕获记录，jvmChannel仅LINK记录非null，其编号由消费者写入记录的最后4字节
+     */
+    @FunctionalInterface
+    public interface RecordHandler {
+        void accept(long timestamp, byte direction, Channel channel, Channel jvmChannel, int length, byte[] bytes,
+                    int offset, int captured);
+    }
+}
@@ -0,0 +1,89 @@
+package io.debuggerx.core.capture;
+
+import io.debuggerx.common.config.DebuggerConfig;
+import io.debuggerx.common.exception.DebuggerException;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.ToString;
+
+import java.util.BitSet;
+
+/**
+ * What a packet capture records and where.
+ *
+ * @author ouwu
+ */
+@Getter
+@Builder
+@ToString
+public class CaptureSettings {
+    /**
+     * 捕获文件路径
+     */
+    private final String file;
+    /**
+     * 每帧最多保留的字节数(含header)
+     */
+    private final int snapLength;
+    /**
+     * 环形缓冲区的slot数
+     */
+    private final int ringCapacity;
+    /**
+     * 只捕获这些命令集的命令、回复和事件，null表示全部
+     */
+    private final BitSet commandSets;
+    /**
+     * 每N帧随机捕获一帧，1表示全部捕获
+     */
+    private final int sampleRate;
+
+    /**
+     * Reads the capture settings of the proxy configuration.
+     *
+     * @param config the proxy configuration
+     * @param file the capture file
+     * @return the settings
+     */
+    public static CaptureSettings of(DebuggerConfig config, String file) {
+        return CaptureSettings.builder()
+                .file(file)
+                .snapLength(config.getCaptureSnapLength())
+                .ringCapacity(config.getCaptureRingCapacity())
+                .commandSets(parseCommandSets(config.getCaptureCommandSets()))
+                .sampleRate(config.getCaptureSampleRate())
+                .build();
+    }
+
+    /**
+     * @param commandSets comma separated command set numbers, e.g. {@code "1,15,64"}; null or empty for all
+     * @return the command sets, or null for all
+     * @throws DebuggerException if a number is invalid
+     */
+    public static BitSet parseCommandSets(String commandSets) {
+        if (commandSets == null || commandSets.trim().isEmpty()) {
+            return null;
+        }
+        BitSet result = new BitSet(256);
+        for (String commandSet : commandSets.split(",")) {
+            try {
+                int value = Integer.parseInt(commandSet.trim());
+                if (value < 0 || value > 255) {
+                    throw new DebuggerException("Command set out of range: " + value);
+                }
+                result.set(value);
+            } catch (NumberFormatException e) {
+                throw new DebuggerException("Invalid command set: " + commandSet);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @param commandSet the command set of a frame, -1 if unknown
+     * @return true if frames of the command set are captured
+     */
+    public boolean accepts(int commandSet) {
+        return commandSets == null || commandSet >= 0 && commandSets.get(commandSet);
+    }
+}
@@ -0,0 +1,33 @@
+package io.debuggerx.core.capture;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.ToString;
+
+/**
+ * 捕获的设置与进度快照
+ *
+ * @author ouwu
+ */
+@Getter
+@ToString
+@AllArgsConstructor
+public class CaptureStatus {
+    private final CaptureSettings settings;
+    /**
+     * 已写入文件的帧数
+     */
+    private final long records;
+    /**
+     * 已写入文件的字节数(不含文件头)
+     */
+    private final long bytes;
+    /**
+     * 写入线程跟不上、环形缓冲区满而丢弃的帧数
+     */
+    private final long dropped;
+    /**
+     * 是否因写文件失败而停止写入
+     */
+    private final boolean failed;
+}
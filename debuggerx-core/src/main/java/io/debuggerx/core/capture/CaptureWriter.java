@@ -0,0 +1,155 @@
+package io.debuggerx.core.capture;
+
+import io.debuggerx.common.utils.ChannelUtils;
+import io.netty.channel.Channel;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * 捕获文件写入线程：从环形缓冲区取出帧并按{@link CaptureFormat}写入文件，所有格式化都在此线程完成
+ *
+ * @author ouwu
+ */
+@Slf4j
+class CaptureWriter implements Runnable {
+    private static final int DRAIN_BATCH = 1024;
+    private static final long IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    private final CaptureRing ring;
+    private final String file;
+    private final DataOutputStream out;
+    private final Thread thread;
+    /**
+     * 本文件中已分配编号的channel，仅写入线程访问
+     */
+    private final Map<Channel, Integer> channelNumbers = new WeakHashMap<>();
+    private int lastChannelNumber;
+    private volatile boolean running = true;
+    private volatile long records;
+    private volatile long bytes;
+    private volatile IOException failure;
+
+    CaptureWriter(CaptureRing ring, String file) throws IOException {
+        this.ring = ring;
+        this.file = file;
+        this.out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file), 64 * 1024));
+        this.out.write(CaptureFormat.MAGIC);
+        this.thread = new Thread(this, "debuggerx-capture");
+        this.thread.setDaemon(true);
+    }
+
+    void start() {
+        thread.start();
+    }
+
+    /**
+     * 写完环形缓冲区中剩余的帧后关闭文件
+     */
+    void stop() throws InterruptedException {
+        running = false;
+        LockSupport.unpark(thread);
+        thread.join();
+    }
+
+    @Override
+    public void run() {
+        try {
+            while (failure == null) {
+                if (ring.drain(this::write, DRAIN_BATCH) > 0) {
+                    continue;
+                }
+                if (!running && ring.isEmpty()) {
+                    break;
+                }
+                // 空闲时刷盘，文件内容最多落后一个空闲周期
+                out.flush();
+                LockSupport.parkNanos(IDLE_PARK_NANOS);
+            }
+        } catch (IOException e) {
+            failure = e;
+        } finally {
+            if (failure != null) {
+                log.error("[Capture] Failed to write {}, capture stopped: {}", file, failure.getMessage());
+            }
+            try {
+                out.close();
+            } catch (IOException e) {
+                log.warn("[Capture] Failed to close {}: {}", file, e.getMessage());
+            }
+        }
+    }
+
+    private void write(long timestamp, byte direction, Channel channel, Channel jvmChannel, int length, byte[] data,
+                       int offset, int captured) {
+        if (failure != null) {
+            return;
+        }
+        try {
+            // 代理自身发出的命令没有channel，编号为0
+            int number = channel == null ? 0 : numberOf(timestamp, channel, direction == CaptureFormat.FROM_JVM);
+            if (direction == CaptureFormat.LINK) {
+                int jvmNumber = jvmChannel == null ? 0 : numberOf(timestamp, jvmChannel, true);
+                int at = offset + CaptureFormat.LINK_BYTES - 4;
+                data[at] = (byte) (jvmNumber >>> 24);
+                data[at + 1] = (byte) (jvmNumber >>> 16);
+                data[at + 2] = (byte) (jvmNumber >>> 8);
+                data[at + 3] = (byte) jvmNumber;
+            }
+            writeRecord(timestamp, direction, number, length, data, offset, captured);
+            records++;
+        } catch (IOException e) {
+            failure = e;
+        }
+    }
+
+    /**
+     * 首次出现的channel分配编号并写出描述记录
+     */
+    private int numberOf(long timestamp, Channel channel, boolean jvm) throws IOException {
+        Integer number = channelNumbers.get(channel);
+        if (number != null) {
+            return number;
+        }
+        number = ++lastChannelNumber;
+        channelNumbers.put(channel, number);
+        byte[] description = ((jvm ? "jvm " : "debugger ") + ChannelUtils.getDebugChannelId(channel)).getBytes(StandardCharsets.UTF_8);
+        writeRecord(timestamp, CaptureFormat.CHANNEL, number, description.length, description, 0, description.length);
+        return number;
+    }
+
+    private void writeRecord(long timestamp, byte direction, int channel, int length, byte[] data, int offset, int captured)
+            throws IOException {
+        out.writeLong(timestamp);
+        out.writeByte(direction);
+        out.writeInt(channel);
+        out.writeInt(length);
+        out.writeInt(captured);
+        out.write(data, offset, captured);
+        bytes += CaptureFormat.RECORD_HEADER_BYTES + captured;
+    }
+
+    String getFile() {
+        return file;
+    }
+
+    long getRecords() {
+        return records;
+    }
+
+    long getBytes() {
+        return bytes;
+    }
+
+    boolean isFailed() {
+        return failure != null;
+    }
+}
@@ -0,0 +1,182 @@
+package io.debuggerx.core.capture;
+
+import io.debuggerx.common.constants.JdwpConstants;
+import io.debuggerx.common.enums.ConnectionType;
+import io.debuggerx.common.exception.DebuggerException;
+import io.debuggerx.core.session.DebugSession;
+import io.debuggerx.core.session.SessionManager;
+import io.debuggerx.protocol.packet.JdwpFrames;
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.Channel;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Records the frames read by the proxy to a binary capture file ({@link CaptureFormat}).
+ * <p>
+ * On the event loop, capturing a frame is a filter check, a sampling draw and a bounded copy into
+ * a {@link CaptureRing}. Nothing is formatted and nothing is written there. A background thread
+ * writes the ring to the file. While no capture is running, the only cost is one volatile read.
+ * Captures are started and stopped at runtime, e.g. from the HTTP API.
+ *
+ * @author ouwu
+ */
+@Slf4j
+public class PacketCapture {
+    private static final PacketCapture INSTANCE = new PacketCapture();
+
+    /**
+     * 正在进行的捕获，null表示未开启
+     */
+    private volatile Capture active;
+
+    /**
+     * 纪元纳秒时间戳的基准，避免每帧调用{@link System#currentTimeMillis()}
+     */
+    private final long epochNanosBase = TimeUnit.MILLISECONDS.toNanos(System.currentTimeMillis()) - System.nanoTime();
+
+    private PacketCapture() {
+    }
+
+    public static PacketCapture getInstance() {
+        return INSTANCE;
+    }
+
+    public boolean isEnabled() {
+        return active != null;
+    }
+
+    /**
+     * Captures a frame read from a proxy connection, if a capture is running and the frame passes
+     * its filter and sampling. Only the first snap length bytes are copied. Call this before the
+     * frame's packet ID is rewritten.
+     *
+     * @param channel the channel the frame was read from
+     * @param source the side of the connection
+     * @param frame the frame, or the header of a streamed frame; not modified
+     */
+    public void capture(Channel channel, ConnectionType source, ByteBuf frame) {
+        Capture capture = active;
+        if (capture == null) {
+            return;
+        }
+        CaptureSettings settings = capture.settings;
+        if (settings.getSampleRate() > 1 && ThreadLocalRandom.current().nextInt(settings.getSampleRate()) != 0) {
+            return;
+        }
+        if (settings.getCommandSets() != null && !settings.accepts(commandSetOf(channel, frame))) {
+            return;
+        }
+        capture.ring.offer(System.nanoTime() + epochNanosBase,
+                source == ConnectionType.JVM_SERVER ? CaptureFormat.FROM_JVM : CaptureFormat.FROM_DEBUGGER,
+                channel, frame, JdwpFrames.length(frame));
+    }
+
+    /**
+     * Records the packet ID a command was assigned towards the JVM, so replies in the capture can
+     * be paired with the command that caused them. Not sampled, only filtered by command set.
+     *
+     * @param debuggerChannel the debugger that sent the command, null for a command issued by the proxy
+     * @param jvmChannel the JVM the command is sent to
+     * @param newId the packet ID used towards the JVM
+     * @param originId the packet ID assigned by the debugger
+     * @param commandSet the JDWP command set
+     * @param command the JDWP command
+     */
+    public void link(Channel debuggerChannel, Channel jvmChannel, int newId, int originId, byte commandSet, byte command) {
+        Capture capture = active;
+        if (capture == null || !capture.settings.accepts(commandSet & 0xFF)) {
+            return;
+        }
+        capture.ring.offerLink(System.nanoTime() + epochNanosBase, debuggerChannel, jvmChannel, newId, originId,
+                commandSet, command);
+    }
+
+    /**
+     * 回复包不含命令集，按在途命令查找
+     */
+    private static int commandSetOf(Channel channel, ByteBuf frame) {
+        if (JdwpFrames.isCommand(frame)) {
+            return JdwpFrames.commandSet(frame) & 0xFF;
+        }
+        DebugSession session = SessionManager.getInstance().sessionOf(channel);
+        int command = session == null ? -1 : session.findInFlightCommand(JdwpFrames.id(frame));
+        return command < 0 ? -1 : command >>> 8;
+    }
+
+    /**
+     * Starts capturing to a new file.
+     *
+     * @param settings the capture settings
+     * @throws DebuggerException if a capture is already running or the file cannot be created
+     */
+    public synchronized void start(CaptureSettings settings) {
+        if (active != null) {
+            throw new DebuggerException("Capture already running to " + active.writer.getFile());
+        }
+        if (settings.getSnapLength() < Math.max(JdwpConstants.HEADER_LENGTH, CaptureFormat.LINK_BYTES) || settings.getRingCapacity() <= 0 || settings.getSampleRate() <= 0) {
+            throw new DebuggerException("Invalid capture settings: " + settings);
+        }
+        CaptureRing ring = new CaptureRing(settings.getRingCapacity(), settings.getSnapLength());
+        CaptureWriter writer;
+        try {
+            writer = new CaptureWriter(ring, settings.getFile());
+        } catch (IOException e) {
+            throw new DebuggerException("Cannot create capture file " + settings.getFile() + ": " + e.getMessage());
+        }
+        writer.start();
+        active = new Capture(settings, ring, writer);
+        log.info("[Capture] Started {}", settings);
+    }
+
+    /**
+     * Stops the running capture once the frames already captured are written.
+     *
+     * @return the final status of the capture, or null if none was running
+     */
+    public synchronized CaptureStatus stop() {
+        Capture capture = active;
+        if (capture == null) {
+            return null;
+        }
+        active = null;
+        try {
+            capture.writer.stop();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        CaptureStatus status = capture.status();
+        log.info("[Capture] Stopped {}", status);
+        return status;
+    }
+
+    /**
+     * @return the status of the running capture, or null if none is running
+     */
+    public CaptureStatus status() {
+        Capture capture = active;
+        return capture == null ? null : capture.status();
+    }
+
+    /**
+     * 一次捕获的设置、缓冲区与写入线程
+     */
+    private static final class Capture {
+        private final CaptureSettings settings;
+        private final CaptureRing ring;
+        private final CaptureWriter writer;
+
+        private Capture(CaptureSettings settings, CaptureRing ring, CaptureWriter writer) {
+            this.settings = settings;
+            this.ring = ring;
+            this.writer = writer;
+        }
+
+        private CaptureStatus status() {
+            return new CaptureStatus(settings, writer.getRecords(), writer.getBytes(), ring.getDroppedCount(), writer.isFailed());
+        }
+    }
+}
@@ -0,0 +1,74 @@
+package io.debuggerx.core.metrics;
+
+import lombok.Getter;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 单个channel的收发字节计数
+ *
+ * @author ouwu
+ */
+@Getter
+public class ChannelTraffic {
+    /**
+     * 连接角色: jvm / debugger
+     */
+    private final String role;
+    /**
+     * channel标识(对端地址)
+     */
+    private final String channelId;
+    private final LongAdder bytesIn = new LongAdder();
+    private final LongAdder bytesOut = new LongAdder();
+    /**
+     * 写入socket的包数
+     */
+    private final LongAdder packetsOut = new LongAdder();
+    /**
+     * 到达socket的flush次数
+     */
+    private final LongAdder flushes = new LongAdder();
+    /**
+     * 写缓冲超过高水位的次数
+     */
+    private final LongAdder stalls = new LongAdder();
+    /**
+     * 因写不过来而暂停读取JVM的次数
+     */
+    private final LongAdder jvmReadPauses = new LongAdder();
+    /**
+     * 因写不过来而丢弃的事件数
+     */
+    private final LongAdder eventsDropped = new LongAdder();
+
+    public ChannelTraffic(String role, String channelId) {
+        this.role = role;
+        this.channelId = channelId;
+    }
+
+    public void addBytesIn(long bytes) {
+        bytesIn.add(bytes);
+    }
+
+    public void addBytesOut(long bytes) {
+        bytesOut.add(bytes);
+        packetsOut.increment();
+    }
+
+    public void incrementFlushes() {
+        flushes.increment();
+    }
+
+    public void incrementStalls() {
+        stalls.increment();
+    }
+
+    public void incrementJvmReadPauses() {
+        jvmReadPauses.increment();
+    }
+
+    public void incrementEventsDropped() {
+        eventsDropped.increment();
+    }
+}
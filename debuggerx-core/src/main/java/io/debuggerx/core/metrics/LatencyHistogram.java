@@ -0,0 +1,64 @@
+package io.debuggerx.core.metrics;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Lock-free latency histogram with power-of-two nanosecond buckets (about 1µs up to about 17s).
+ * Recording is a bucket index computation plus three atomic increments, so it is cheap enough
+ * for the per-packet path.
+ *
+ * @author ouwu
+ */
+public class LatencyHistogram {
+    /**
+     * 第一个桶的上界为 2^10 ns (约1µs)
+     */
+    private static final int MIN_SHIFT = 10;
+    /**
+     * 有上界的桶数，最后一个上界为 2^34 ns (约17s)
+     */
+    static final int BUCKET_COUNT = 25;
+
+    /**
+     * 下标BUCKET_COUNT为+Inf桶
+     */
+    private final AtomicLongArray buckets = new AtomicLongArray(BUCKET_COUNT + 1);
+    private final LongAdder count = new LongAdder();
+    private final LongAdder sumNanos = new LongAdder();
+
+    public void record(long nanos) {
+        long value = Math.max(nanos, 0);
+        buckets.incrementAndGet(bucketIndex(value));
+        count.increment();
+        sumNanos.add(value);
+    }
+
+    static int bucketIndex(long nanos) {
+        if (nanos <= 1L << MIN_SHIFT) {
+            return 0;
+        }
+        // ceil(log2(nanos))
+        int bits = 64 - Long.numberOfLeadingZeros(nanos - 1);
+        return Math.min(bits - MIN_SHIFT, BUCKET_COUNT);
+    }
+
+    /**
+     * 第index个桶的上界(秒)
+     */
+    static double upperBoundSeconds(int index) {
+        return (1L << (index + MIN_SHIFT)) / 1e9;
+    }
+
+    long bucket(int index) {
+        return buckets.get(index);
+    }
+
+    public long getCount() {
+        return count.sum();
+    }
+
+    public long getSumNanos() {
+        return sumNanos.sum();
+    }
+}
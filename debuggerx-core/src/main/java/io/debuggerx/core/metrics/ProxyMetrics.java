@@ -0,0 +1,466 @@
+package io.debuggerx.core.metrics;
+
+import io.debuggerx.core.capture.CaptureStatus;
+import io.debuggerx.core.capture.PacketCapture;
+import io.debuggerx.core.session.ClassIndex;
+import io.debuggerx.core.session.CommandCoalescer;
+import io.debuggerx.core.session.DebugSession;
+import io.debuggerx.core.session.InFlightRequest;
+import io.debuggerx.core.session.InFlightRequestTable;
+import io.debuggerx.core.session.ReplyCache;
+import io.debuggerx.core.session.SessionManager;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelFutureListener;
+import io.netty.channel.ChannelOutboundBuffer;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Proxy-wide metrics: per-command round-trip latency, event fan-out, per-channel traffic and
+ * debugger write backpressure.
+ * <p>
+ * Every command is timed at three points: when it is forwarded to the JVM (the in-flight table
+ * timestamp), when its reply is received back from the JVM, and when the reply has been flushed to
+ * the debugger. From these it records three stages: {@code jvm} (forward to reply), {@code proxy}
+ * (reply to flush) and {@code total} (forward to flush). All recording is lock-free. The snapshot
+ * is rendered in Prometheus text format by {@link #writePrometheus(StringBuilder)}.
+ *
+ * @author ouwu
+ */
+public class ProxyMetrics {
+    private static final ProxyMetrics INSTANCE = new ProxyMetrics();
+
+    /**
+     * 按 commandSet << 8 | command 索引，首次记录时创建
+     */
+    private final AtomicReferenceArray<CommandLatency> commandLatencies = new AtomicReferenceArray<>(1 << 16);
+    private final LongAdder eventsReceived = new LongAdder();
+    private final LongAdder eventDeliveries = new LongAdder();
+    private final LongAdder eventsDropped = new LongAdder();
+    /**
+     * 拆分复合事件时从各调试器的副本中剔除的事件数
+     */
+    private final LongAdder eventsFiltered = new LongAdder();
+    private final LongAdder slowClientDisconnects = new LongAdder();
+    /**
+     * 握手时迁移到所选会话JVM事件循环的调试器数
+     */
+    private final LongAdder loopMigrations = new LongAdder();
+    /**
+     * 未等整帧到达即分段转发的大回复数及其字节数
+     */
+    private final LongAdder streamedReplies = new LongAdder();
+    private final LongAdder streamedReplyBytes = new LongAdder();
+    /**
+     * 已关闭channel的写包数与flush次数，按角色累计，使比值不随连接断开而重置
+     */
+    private final Map<String, long[]> closedWrites = new ConcurrentHashMap<>();
+    private final Map<Channel, ChannelTraffic> channelTraffic = new ConcurrentHashMap<>();
+
+    private ProxyMetrics() {
+    }
+
+    public static ProxyMetrics getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Records the JVM round trip of a command when its reply is received.
+     *
+     * @param request the in-flight command the reply belongs to
+     * @param receivedAt {@link System#nanoTime()} when the reply was received
+     */
+    public void recordReply(InFlightRequest request, long receivedAt) {
+        latencyOf(request.getCommandSet(), request.getCommand()).jvm.record(receivedAt - request.getSentAt());
+    }
+
+    /**
+     * Creates a listener for the write of a reply to its debugger that records the proxy and total stages on flush.
+     *
+     * @param request the in-flight command the reply belongs to
+     * @param receivedAt {@link System#nanoTime()} when the reply was received
+     * @return the write listener
+     */
+    public ChannelFutureListener replyFlushListener(InFlightRequest request, long receivedAt) {
+        CommandLatency latency = latencyOf(request.getCommandSet(), request.getCommand());
+        long sentAt = request.getSentAt();
+        return future -> {
+            if (future.isSuccess()) {
+                long flushedAt = System.nanoTime();
+                latency.proxy.record(flushedAt - receivedAt);
+                latency.total.record(flushedAt - sentAt);
+            }
+        };
+    }
+
+    /**
+     * Records an event received from the JVM and the number of debuggers it was delivered to.
+     *
+     * @param deliveries the number of debugger channels the event was written to, 0 if dropped
+     */
+    public void recordEvent(int deliveries) {
+        eventsReceived.increment();
+        if (deliveries == 0) {
+            eventsDropped.increment();
+        } else {
+            eventDeliveries.add(deliveries);
+        }
+    }
+
+    /**
+     * Records events left out of the copy of a composite event written to a debugger.
+     *
+     * @param events the number of events the debugger does not receive
+     */
+    public void recordFilteredEvents(int events) {
+        eventsFiltered.add(events);
+    }
+
+    public ChannelTraffic registerChannel(Channel channel, String role, String channelId) {
+        ChannelTraffic traffic = new ChannelTraffic(role, channelId);
+        channelTraffic.put(channel, traffic);
+        return traffic;
+    }
+
+    public void unregisterChannel(Channel channel) {
+        ChannelTraffic traffic = channelTraffic.remove(channel);
+        if (traffic != null) {
+            long packets = traffic.getPacketsOut().sum();
+            long flushes = traffic.getFlushes().sum();
+            closedWrites.merge(traffic.getRole(), new long[]{packets, flushes},
+                    (total, closed) -> new long[]{total[0] + closed[0], total[1] + closed[1]});
+        }
+    }
+
+    /**
+     * @param channel a proxy channel
+     * @return its traffic counters, or null if the channel is not registered
+     */
+    public ChannelTraffic trafficOf(Channel channel) {
+        return channelTraffic.get(channel);
+    }
+
+    /**
+     * Records a debugger disconnected because its write buffer exceeded the pending bytes limit or the
+     * {@code DISCONNECT} slow client policy applied.
+     */
+    public void recordSlowClientDisconnect() {
+        slowClientDisconnects.increment();
+    }
+
+    /**
+     * Records a debugger moved to the event loop of its session's JVM channel during the handshake.
+     */
+    public void recordLoopMigration() {
+        loopMigrations.increment();
+    }
+
+    /**
+     * Records a large reply forwarded to its debugger piece by piece as it arrived.
+     *
+     * @param frameLength the length of the reply frame
+     */
+    public void recordStreamedReply(int frameLength) {
+        streamedReplies.increment();
+        streamedReplyBytes.add(frameLength);
+    }
+
+    private CommandLatency latencyOf(byte commandSet, byte command) {
+        int key = (commandSet & 0xFF) << 8 | (command & 0xFF);
+        CommandLatency latency = commandLatencies.get(key);
+        if (latency == null) {
+            commandLatencies.compareAndSet(key, null, new CommandLatency());
+            latency = commandLatencies.get(key);
+        }
+        return latency;
+    }
+
+    /**
+     * Renders all metrics in Prometheus text exposition format (version 0.0.4).
+     *
+     * @param out the output buffer
+     */
+    public void writePrometheus(StringBuilder out) {
+        writeCommandLatencies(out);
+        writeEvents(out);
+        writeInFlight(out);
+        writeReplyCache(out);
+        writeCoalescing(out);
+        writeClassIndex(out);
+        writeTraffic(out);
+        writeBackpressure(out);
+        writeCapture(out);
+    }
+
+    private void writeCommandLatencies(StringBuilder out) {
+        String name = "debuggerx_command_latency_seconds";
+        out.append("# HELP ").append(name)
+                .append(" JDWP command latency by stage: jvm (forward to reply), proxy (reply to flush), total (forward to flush)\n");
+        out.append("# TYPE ").append(name).append(" histogram\n");
+        for (int key = 0; key < commandLatencies.length(); key++) {
+            CommandLatency latency = commandLatencies.get(key);
+            if (latency == null) {
+                continue;
+            }
+            String labels = "command_set=\"" + (key >>> 8) + "\",command=\"" + (key & 0xFF) + "\"";
+            writeHistogram(out, name, "stage=\"jvm\"," + labels, latency.jvm);
+            writeHistogram(out, name, "stage=\"proxy\"," + labels, latency.proxy);
+            writeHistogram(out, name, "stage=\"total\"," + labels, latency.total);
+        }
+    }
+
+    private static void writeHistogram(StringBuilder out, String name, String labels, LatencyHistogram histogram) {
+        long cumulative = 0;
+        for (int i = 0; i < LatencyHistogram.BUCKET_COUNT; i++) {
+            cumulative += histogram.bucket(i);
+            out.append(name).append("_bucket{").append(labels).append(",le=\"")
+                    .append(LatencyHistogram.upperBoundSeconds(i)).append("\"} ").append(cumulative).append('\n');
+        }
+        cumulative += histogram.bucket(LatencyHistogram.BUCKET_COUNT);
+        out.append(name).append("_bucket{").append(labels).append(",le=\"+Inf\"} ").append(cumulative).append('\n');
+        out.append(name).append("_sum{").append(labels).append("} ").append(histogram.getSumNanos() / 1e9).append('\n');
+        out.append(name).append("_count{").append(labels).append("} ").append(cumulative).append('\n');
+    }
+
+    private void writeEvents(StringBuilder out) {
+        writeCounter(out, "debuggerx_events_received_total", "Events received from the JVM", eventsReceived.sum());
+        writeCounter(out, "debuggerx_event_deliveries_total", "Event packets written to debuggers (fan-out)", eventDeliveries.sum());
+        writeCounter(out, "debuggerx_events_dropped_total", "Events without any debugger to deliver to", eventsDropped.sum());
+        writeCounter(out, "debuggerx_events_filtered_total", "Events removed from composite packets for debuggers not receiving them", eventsFiltered.sum());
+    }
+
+    private static void writeCounter(StringBuilder out, String name, String help, long value) {
+        out.append("# HELP ").append(name).append(' ').append(help).append('\n');
+        out.append("# TYPE ").append(name).append(" counter\n");
+        out.append(name).append(' ').append(value).append('\n');
+    }
+
+    private static void writeInFlight(StringBuilder out) {
+        StringBuilder size = new StringBuilder();
+        StringBuilder capacity = new StringBuilder();
+        StringBuilder expired = new StringBuilder();
+        StringBuilder evicted = new StringBuilder();
+        StringBuilder orphaned = new StringBuilder();
+        for (DebugSession session : SessionManager.getInstance().getSessions()) {
+            InFlightRequestTable table = session.getInFlightRequests();
+            String labels = sessionLabels(session);
+            size.append("debuggerx_inflight_requests").append(labels).append(table.size()).append('\n');
+            capacity.append("debuggerx_inflight_capacity").append(labels).append(table.getCapacity()).append('\n');
+            expired.append("debuggerx_inflight_expired_total").append(labels).append(table.getExpiredCount()).append('\n');
+            evicted.append("debuggerx_inflight_evicted_total").append(labels).append(table.getEvictedCount()).append('\n');
+            orphaned.append("debuggerx_inflight_orphaned_total").append(labels).append(table.getOrphanedCount()).append('\n');
+        }
+        writeFamily(out, "debuggerx_inflight_requests", "gauge", "Commands waiting for a JVM reply", size);
+        writeFamily(out, "debuggerx_inflight_capacity", "gauge", "Capacity of the in-flight table", capacity);
+        writeFamily(out, "debuggerx_inflight_expired_total", "counter", "In-flight commands expired without reply", expired);
+        writeFamily(out, "debuggerx_inflight_evicted_total", "counter", "In-flight commands evicted because the table was full", evicted);
+        writeFamily(out, "debuggerx_inflight_orphaned_total", "counter", "In-flight commands dropped because their debugger disconnected", orphaned);
+    }
+
+    private static void writeReplyCache(StringBuilder out) {
+        StringBuilder entries = new StringBuilder();
+        StringBuilder bytes = new StringBuilder();
+        StringBuilder hits = new StringBuilder();
+        StringBuilder misses = new StringBuilder();
+        StringBuilder evicted = new StringBuilder();
+        StringBuilder invalidated = new StringBuilder();
+        for (DebugSession session : SessionManager.getInstance().getSessions()) {
+            ReplyCache cache = session.getReplyCache();
+            String labels = sessionLabels(session);
+            entries.append("debuggerx_reply_cache_entries").append(labels).append(cache.size()).append('\n');
+            bytes.append("debuggerx_reply_cache_bytes").append(labels).append(cache.getBytes()).append('\n');
+            hits.append("debuggerx_reply_cache_hits_total").append(labels).append(cache.getHitCount()).append('\n');
+            misses.append("debuggerx_reply_cache_misses_total").append(labels).append(cache.getMissCount()).append('\n');
+            evicted.append("debuggerx_reply_cache_evicted_total").append(labels).append(cache.getEvictedCount()).append('\n');
+            invalidated.append("debuggerx_reply_cache_invalidated_total").append(labels).append(cache.getInvalidatedCount()).append('\n');
+        }
+        writeFamily(out, "debuggerx_reply_cache_entries", "gauge", "Cached replies to read-only metadata queries", entries);
+        writeFamily(out, "debuggerx_reply_cache_bytes", "gauge", "Estimated memory held by the reply cache", bytes);
+        writeFamily(out, "debuggerx_reply_cache_hits_total", "counter", "Queries answered from the reply cache", hits);
+        writeFamily(out, "debuggerx_reply_cache_misses_total", "counter", "Cacheable queries forwarded to the JVM", misses);
+        writeFamily(out, "debuggerx_reply_cache_evicted_total", "counter", "Replies evicted to stay within the memory bound", evicted);
+        writeFamily(out, "debuggerx_reply_cache_invalidated_total", "counter", "Replies invalidated by class redefinition or unloading", invalidated);
+    }
+
+    private static void writeCoalescing(StringBuilder out) {
+        StringBuilder leaders = new StringBuilder();
+        StringBuilder coalesced = new StringBuilder();
+        StringBuilder reissued = new StringBuilder();
+        for (DebugSession session : SessionManager.getInstance().getSessions()) {
+            CommandCoalescer coalescer = session.getCoalescer();
+            if (coalescer == null) {
+                continue;
+            }
+            String labels = sessionLabels(session);
+            leaders.append("debuggerx_coalescing_leaders").append(labels).append(coalescer.size()).append('\n');
+            coalesced.append("debuggerx_coalesced_commands_total").append(labels).append(coalescer.getCoalescedCount()).append('\n');
+            reissued.append("debuggerx_coalesced_reissued_total").append(labels).append(coalescer.getReissuedCount()).append('\n');
+        }
+        writeFamily(out, "debuggerx_coalescing_leaders", "gauge", "Read-only commands in flight that identical commands can join", leaders);
+        writeFamily(out, "debuggerx_coalesced_commands_total", "counter", "Commands answered by the reply of an identical in-flight command", coalesced);
+        writeFamily(out, "debuggerx_coalesced_reissued_total", "counter", "Coalesced commands re-sent because the shared reply carried objectIDs", reissued);
+    }
+
+    private static void writeClassIndex(StringBuilder out) {
+        StringBuilder classes = new StringBuilder();
+        StringBuilder bytes = new StringBuilder();
+        StringBuilder replies = new StringBuilder();
+        for (DebugSession session : SessionManager.getInstance().getSessions()) {
+            ClassIndex index = session.getClassIndex();
+            String labels = sessionLabels(session);
+            classes.append("debuggerx_class_index_classes").append(labels).append(index.size()).append('\n');
+            bytes.append("debuggerx_class_index_bytes").append(labels).append(index.getArenaBytes()).append('\n');
+            replies.append("debuggerx_class_index_replies_total").append(labels).append(index.getLocalReplyCount()).append('\n');
+        }
+        writeFamily(out, "debuggerx_class_index_classes", "gauge", "Loaded classes known to the proxy class index", classes);
+        writeFamily(out, "debuggerx_class_index_bytes", "gauge", "Bytes held by the interned class signatures", bytes);
+        writeFamily(out, "debuggerx_class_index_replies_total", "counter", "Class queries answered from the class index", replies);
+    }
+
+    private void writeTraffic(StringBuilder out) {
+        StringBuilder in = new StringBuilder();
+        StringBuilder outBytes = new StringBuilder();
+        for (ChannelTraffic traffic : channelTraffic.values()) {
+            String labels = "{role=\"" + traffic.getRole() + "\",channel=\"" + traffic.getChannelId() + "\"} ";
+            in.append("debuggerx_channel_bytes_in_total").append(labels).append(traffic.getBytesIn().sum()).append('\n');
+            outBytes.append("debuggerx_channel_bytes_out_total").append(labels).append(traffic.getBytesOut().sum()).append('\n');
+        }
+        writeFamily(out, "debuggerx_channel_bytes_in_total", "counter", "Bytes received per channel", in);
+        writeFamily(out, "debuggerx_channel_bytes_out_total", "counter", "Bytes written per channel", outBytes);
+        writeFlushes(out);
+    }
+
+    /**
+     * 按角色输出写包数、flush次数及平均每次flush的包数，用于确认合并flush减少了系统调用
+     */
+    private void writeFlushes(StringBuilder out) {
+        Map<String, long[]> writes = new TreeMap<>();
+        closedWrites.forEach((role, total) -> writes.put(role, total.clone()));
+        for (ChannelTraffic traffic : channelTraffic.values()) {
+            long[] total = writes.computeIfAbsent(traffic.getRole(), role -> new long[2]);
+            total[0] += traffic.getPacketsOut().sum();
+            total[1] += traffic.getFlushes().sum();
+        }
+        StringBuilder packets = new StringBuilder();
+        StringBuilder flushes = new StringBuilder();
+        StringBuilder ratio = new StringBuilder();
+        writes.forEach((role, total) -> {
+            String labels = "{role=\"" + role + "\"} ";
+            packets.append("debuggerx_packets_written_total").append(labels).append(total[0]).append('\n');
+            flushes.append("debuggerx_flushes_total").append(labels).append(total[1]).append('\n');
+            ratio.append("debuggerx_packets_per_flush").append(labels)
+                    .append(total[1] == 0 ? 0 : (double) total[0] / total[1]).append('\n');
+        });
+        writeFamily(out, "debuggerx_packets_written_total", "counter", "Packets written to sockets, by connection role", packets);
+        writeFamily(out, "debuggerx_flushes_total", "counter", "Flushes reaching the sockets, by connection role", flushes);
+        writeFamily(out, "debuggerx_packets_per_flush", "gauge", "Average packets written per socket flush, by connection role", ratio);
+        writeCounter(out, "debuggerx_streamed_replies_total", "Large replies forwarded in chunks without waiting for the whole frame", streamedReplies.sum());
+        writeCounter(out, "debuggerx_streamed_reply_bytes_total", "Bytes of the replies forwarded in chunks", streamedReplyBytes.sum());
+    }
+
+    private void writeBackpressure(StringBuilder out) {
+        StringBuilder pending = new StringBuilder();
+        StringBuilder writable = new StringBuilder();
+        StringBuilder stalls = new StringBuilder();
+        StringBuilder pauses = new StringBuilder();
+        StringBuilder dropped = new StringBuilder();
+        for (Map.Entry<Channel, ChannelTraffic> entry : channelTraffic.entrySet()) {
+            ChannelTraffic traffic = entry.getValue();
+            if (!"debugger".equals(traffic.getRole())) {
+                continue;
+            }
+            Channel channel = entry.getKey();
+            ChannelOutboundBuffer outboundBuffer = channel.unsafe().outboundBuffer();
+            String labels = "{channel=\"" + traffic.getChannelId() + "\"} ";
+            pending.append("debuggerx_debugger_pending_bytes").append(labels)
+                    .append(outboundBuffer == null ? 0 : outboundBuffer.totalPendingWriteBytes()).append('\n');
+            writable.append("debuggerx_debugger_writable").append(labels).append(channel.isWritable() ? 1 : 0).append('\n');
+            stalls.append("debuggerx_debugger_stalls_total").append(labels).append(traffic.getStalls().sum()).append('\n');
+            pauses.append("debuggerx_debugger_jvm_read_pauses_total").append(labels).append(traffic.getJvmReadPauses().sum()).append('\n');
+            dropped.append("debuggerx_debugger_events_dropped_total").append(labels).append(traffic.getEventsDropped().sum()).append('\n');
+        }
+        writeFamily(out, "debuggerx_debugger_pending_bytes", "gauge", "Bytes queued for a debugger but not yet written to its socket", pending);
+        writeFamily(out, "debuggerx_debugger_writable", "gauge", "1 while the debugger write buffer is below its high watermark", writable);
+        writeFamily(out, "debuggerx_debugger_stalls_total", "counter", "Times the debugger write buffer went above its high watermark", stalls);
+        writeFamily(out, "debuggerx_debugger_jvm_read_pauses_total", "counter", "Times this debugger paused reading from the JVM", pauses);
+        writeFamily(out, "debuggerx_debugger_events_dropped_total", "counter", "Non-essential events dropped because this debugger fell behind", dropped);
+
+        StringBuilder paused = new StringBuilder();
+        for (DebugSession session : SessionManager.getInstance().getSessions()) {
+            paused.append("debuggerx_jvm_read_paused").append(sessionLabels(session))
+                    .append(session.isJvmReadPaused() ? 1 : 0).append('\n');
+        }
+        writeFamily(out, "debuggerx_jvm_read_paused", "gauge", "1 while reading from the JVM is paused for a slow debugger", paused);
+        writeCounter(out, "debuggerx_slow_client_disconnects_total", "Debuggers disconnected for falling behind", slowClientDisconnects.sum());
+        writeCounter(out, "debuggerx_debugger_loop_migrations_total", "Debuggers moved to the event loop of their session's JVM at handshake", loopMigrations.sum());
+    }
+
+    private static String sessionLabels(DebugSession session) {
+        return "{session=\"" + escapeLabelValue(session.getSessionId())
+                + "\",target=\"" + escapeLabelValue(session.getTarget()) + "\"} ";
+    }
+
+    /**
+     * Escapes a label value for the Prometheus text exposition format: backslash, double quote and
+     * line feed become {@code \\}, {@code \"} and {@code \n}.
+     *
+     * @param value the raw label value, may be null
+     * @return the escaped value
+     */
+    public static String escapeLabelValue(String value) {
+        if (value == null) {
+            return "";
+        }
+        StringBuilder escaped = null;
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            String replacement = c == '\\' ? "\\\\" : c == '"' ? "\\\"" : c == '\n' ? "\\n" : null;
+            if (replacement == null) {
+                if (escaped != null) {
+                    escaped.append(c);
+                }
+                continue;
+            }
+            if (escaped == null) {
+                // 绝大多数值无需转义，遇到首个特殊字符才复制
+                escaped = new StringBuilder(value.length() + 8).append(value, 0, i);
+            }
+            escaped.append(replacement);
+        }
+        return escaped == null ? value : escaped.toString();
+    }
+
+    /**
+     * 当前捕获的记录数与丢弃数，丢弃数持续增长说明写入线程跟不上，应增大环形缓冲区或降低采样率
+     */
+    private static void writeCapture(StringBuilder out) {
+        CaptureStatus status = PacketCapture.getInstance().status();
+        writeFamily(out, "debuggerx_capture_running", "gauge", "Whether a packet capture is running",
+                "debuggerx_capture_running " + (status == null ? 0 : 1) + "\n");
+        if (status != null) {
+            writeFamily(out, "debuggerx_capture_records", "gauge", "Frames written by the running capture",
+                    "debuggerx_capture_records " + status.getRecords() + "\n");
+            writeFamily(out, "debuggerx_capture_dropped", "gauge", "Frames dropped by the running capture because its ring was full",
+                    "debuggerx_capture_dropped " + status.getDropped() + "\n");
+        }
+    }
+
+    private static void writeFamily(StringBuilder out, String name, String type, String help, CharSequence samples) {
+        out.append("# HELP ").append(name).append(' ').append(help).append('\n');
+        out.append("# TYPE ").append(name).append(' ').append(type).append('\n');
+        out.append(samples);
+    }
+
+    /**
+     * 单个命令的三段延迟
+     */
+    private static final class CommandLatency {
+        private final LatencyHistogram jvm = new LatencyHistogram();
+        private final LatencyHistogram proxy = new LatencyHistogram();
+        private final LatencyHistogram total = new LatencyHistogram();
+    }
+}
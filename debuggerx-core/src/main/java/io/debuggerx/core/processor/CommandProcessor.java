@@ -1,5 +1,6 @@
 package io.debuggerx.core.processor;
 
+import io.debuggerx.core.session.DebugSession;
 import io.debuggerx.protocol.packet.JdwpPacket;
 
 import java.nio.ByteBuffer;
@@ -17,7 +18,18 @@ public interface CommandProcessor {
      *
      * @param byteBuffer the data buffer containing command payload
      * @param packet the JDWP packet being processed
+     * @param session the session of the JVM the packet is exchanged with, or null when parsed offline
      * @return list of request IDs extracted from the command, or empty list if none
      */
-    List<Integer> process(ByteBuffer byteBuffer, JdwpPacket packet);
+    List<Integer> process(ByteBuffer byteBuffer, JdwpPacket packet, DebugSession session);
+
+    /**
+     * Whether this reply processor reads the data of the original command.
+     * Only then is the command packet kept in the in-flight table until its reply arrives.
+     *
+     * @return true if the command packet must be held for the reply
+     */
+    default boolean requiresCommandData() {
+        return false;
+    }
 }
\ No newline at end of file
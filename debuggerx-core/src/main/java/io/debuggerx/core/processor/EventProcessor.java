@@ -1,10 +1,12 @@
 package io.debuggerx.core.processor;
 
 import io.debuggerx.common.exception.DebuggerException;
+import io.debuggerx.core.session.DebugSession;
 import io.debuggerx.protocol.enums.EventKind;
 import io.debuggerx.protocol.jdwp.IdSizes;
 
 import java.nio.ByteBuffer;
+import java.util.Collections;
 import java.util.List;
 
 /**
@@ -23,6 +25,19 @@ public interface EventProcessor {
      */
     boolean supports(EventKind eventKind);
 
+    /**
+     * Reads a JDWP event, leaving the buffer positioned after it. Fields not needed for routing are
+     * skipped using {@link IdSizes#getEventLayout()} rather than decoded into objects.
+     *
+     * @param buffer the data buffer positioned after the event kind
+     * @param idSizes the JVM's ID size configuration
+     * @param eventKind the JDWP event type being processed
+     * @param session the session of the JVM that sent the event, or null when parsed offline
+     * @return the request ID of the event, 0 if generated automatically
+     * @throws DebuggerException if event processing fails
+     */
+    int readEvent(ByteBuffer buffer, IdSizes idSizes, EventKind eventKind, DebugSession session) throws DebuggerException;
+
     /**
      * Processes a JDWP event and extracts associated request IDs.
      *
@@ -32,5 +47,7 @@ public interface EventProcessor {
      * @return list of request IDs extracted from the event
      * @throws DebuggerException if event processing fails
      */
-    List<Integer> processEvent(ByteBuffer buffer, IdSizes idSizes, EventKind eventKind) throws DebuggerException;
+    default List<Integer> processEvent(ByteBuffer buffer, IdSizes idSizes, EventKind eventKind) throws DebuggerException {
+        return Collections.singletonList(readEvent(buffer, idSizes, eventKind, null));
+    }
 }
@@ -0,0 +1,24 @@
+package io.debuggerx.core.processor;
+
+import io.debuggerx.core.processor.registry.CommandProcessorRegistry;
+import io.debuggerx.core.processor.registry.EventProcessorRegistry;
+
+/**
+ * Service provider interface for additional packet processors, discovered with
+ * {@link java.util.ServiceLoader} through
+ * {@code META-INF/services/io.debuggerx.core.processor.ProcessorProvider}.
+ * A provider may bind processors to any command set and command, including commands that
+ * {@link io.debuggerx.protocol.enums.CommandIdentifier} does not name, and may replace the built-in ones.
+ *
+ * @author ouwu
+ */
+public interface ProcessorProvider {
+
+    /**
+     * Registers processors; called once per registry after the built-in processors are registered.
+     *
+     * @param commandProcessors the command and reply processors
+     * @param eventProcessors the event processors used by composite events
+     */
+    void registerProcessors(CommandProcessorRegistry commandProcessors, EventProcessorRegistry eventProcessors);
+}
@@ -0,0 +1,105 @@
+package io.debuggerx.core.processor.command.impl;
+
+import io.debuggerx.core.processor.CommandProcessor;
+import io.debuggerx.core.service.ClassIndexLoader;
+import io.debuggerx.core.session.ClassIndex;
+import io.debuggerx.core.session.DebugSession;
+import io.debuggerx.protocol.enums.CommandIdentifier;
+import io.debuggerx.protocol.jdwp.IdSizes;
+import io.debuggerx.protocol.packet.JdwpHeader;
+import io.debuggerx.protocol.packet.JdwpPacket;
+import lombok.extern.slf4j.Slf4j;
+
+import java.nio.ByteBuffer;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Processes the replies to the queries {@link ClassIndexLoader} sends for the session's
+ * {@link ClassIndex}: the {@code AllClassesWithGeneric} seed and resyncs, {@code SignatureWithGeneric}
+ * of newly prepared classes, {@code ClassesBySignature} re-queries and
+ * {@code ReferenceType.Methods} of classes matched by a method search, each matched by packet ID. It is
+ * registered for internal replies only, so debuggers' own queries of the same commands stay on the
+ * unparsed path.
+ *
+ * @author ouwu
+ */
+@Slf4j
+public class ClassIndexReplyProcessor implements CommandProcessor {
+
+    @Override
+    public List<Integer> process(ByteBuffer byteBuffer, JdwpPacket packet, DebugSession session) {
+        ClassIndex index = session.getClassIndex();
+        JdwpHeader header = packet.getHeader();
+        int id = header.getId();
+        boolean failed = header.getErrorCode() != 0;
+        IdSizes idSizes = session.getVmInfo().getIdSizes();
+        CommandIdentifier reply = CommandIdentifier.of(header);
+        if (reply == null) {
+            return Collections.emptyList();
+        }
+        switch (reply) {
+            case ALL_CLASSES_WITH_GENERIC_REPLY:
+                if (index.isResyncReply(id)) {
+                    index.resynced(failed || idSizes == null ? null : byteBuffer, idSizes);
+                    log.debug("[ClassIndex] Resynced loaded class index, {} classes", index.size());
+                    break;
+                }
+                if (!index.isSeedReply(id)) {
+                    break;
+                }
+                if (failed || idSizes == null) {
+                    log.warn("[ClassIndex] Seed query failed with error {}, class queries will go to the JVM", header.getErrorCode());
+                    index.abandon();
+                    break;
+                }
+                ClassIndexLoader.refresh(session, index.seed(byteBuffer, idSizes));
+                log.info("[ClassIndex] Indexed {} loaded classes ({} bytes of signatures)", index.size(), index.getArenaBytes());
+                break;
+            case REFERENCE_TYPE_SIGNATURE_WITH_GENERIC_REPLY: {
+                Long referenceTypeId = index.genericQuery(id);
+                if (referenceTypeId == null) {
+                    break;
+                }
+                if (failed) {
+                    // 类已卸载或无效
+                    index.genericSignature(referenceTypeId, null);
+                    break;
+                }
+                skipString(byteBuffer);
+                byte[] generic = new byte[byteBuffer.getInt()];
+                byteBuffer.get(generic);
+                index.genericSignature(referenceTypeId, generic);
+                break;
+            }
+            case REFERENCE_TYPE_METHODS_REPLY: {
+                Long referenceTypeId = index.methodsQuery(id);
+                if (referenceTypeId != null) {
+                    index.methodsReplied(referenceTypeId, failed || idSizes == null ? null : byteBuffer, idSizes);
+                }
+                break;
+            }
+            case CLASSES_BY_SIGNATURE_REPLY: {
+                byte[] signature = index.refreshQuery(id);
+                if (signature == null) {
+                    break;
+                }
+                if (failed || idSizes == null) {
+                    log.warn("[ClassIndex] Re-query of unloaded signature failed with error {}, dropping the index", header.getErrorCode());
+                    index.abandon();
+                    break;
+                }
+                index.refreshed(signature, byteBuffer, idSizes);
+                break;
+            }
+            default:
+                break;
+        }
+        return Collections.emptyList();
+    }
+
+    private static void skipString(ByteBuffer buffer) {
+        int length = buffer.getInt();
+        buffer.position(buffer.position() + length);
+    }
+}
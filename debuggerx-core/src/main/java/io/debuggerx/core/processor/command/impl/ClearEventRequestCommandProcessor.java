@@ -1,6 +1,7 @@
 package io.debuggerx.core.processor.command.impl;
 
 import io.debuggerx.core.processor.CommandProcessor;
+import io.debuggerx.core.session.DebugSession;
 import io.debuggerx.protocol.packet.JdwpPacket;
 
 import java.nio.ByteBuffer;
@@ -15,7 +16,7 @@ import java.util.List;
  */
 public class ClearEventRequestCommandProcessor implements CommandProcessor {
     @Override
-    public List<Integer> process(ByteBuffer byteBuffer, JdwpPacket packet) {
+    public List<Integer> process(ByteBuffer byteBuffer, JdwpPacket packet, DebugSession session) {
         // eventKind
         byteBuffer.get();
         return Collections.singletonList(byteBuffer.getInt());
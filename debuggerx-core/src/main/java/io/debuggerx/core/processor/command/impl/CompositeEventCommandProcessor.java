@@ -5,8 +5,9 @@ import io.debuggerx.common.utils.CollectionUtils;
 import io.debuggerx.core.processor.CommandProcessor;
 import io.debuggerx.core.processor.EventProcessor;
 import io.debuggerx.core.processor.registry.EventProcessorRegistry;
-import io.debuggerx.core.session.SessionManager;
+import io.debuggerx.core.session.DebugSession;
 import io.debuggerx.protocol.enums.EventKind;
+import io.debuggerx.protocol.jdwp.IdSizes;
 import io.debuggerx.protocol.packet.JdwpPacket;
 import lombok.extern.slf4j.Slf4j;
 
@@ -18,6 +19,7 @@ import java.util.Objects;
 /**
  * Processes JDWP composite events containing multiple event occurrences.
  * Delegates individual event parsing to registered EventProcessors and aggregates request IDs.
+ * The offset of every event is recorded on the packet so that the composite can be split per debugger.
  *
  * @author wuou
  */
@@ -31,30 +33,35 @@ public class CompositeEventCommandProcessor implements CommandProcessor {
     }
 
     @Override
-    public List<Integer> process(ByteBuffer byteBuffer, JdwpPacket packet) {
-        return this.compositeEventHandle(byteBuffer, packet);
+    public List<Integer> process(ByteBuffer byteBuffer, JdwpPacket packet, DebugSession session) {
+        return this.compositeEventHandle(byteBuffer, packet, session);
     }
 
-    private List<Integer> compositeEventHandle(ByteBuffer byteBuffer, JdwpPacket packet) {
+    private List<Integer> compositeEventHandle(ByteBuffer byteBuffer, JdwpPacket packet, DebugSession session) {
         // suspendPolicy
         byteBuffer.get();
         int events = byteBuffer.getInt();
         List<Integer> requestIds = new ArrayList<>(events);
+        int[] offsets = new int[events + 1];
+        IdSizes idSizes = session == null ? null : session.getVmInfo().getIdSizes();
+        if (idSizes == null) {
+            idSizes = IdSizes.DEFAULT;
+        }
 
         for (int i = 0; i < events; i++) {
+            offsets[i] = byteBuffer.position();
             byte eventKind = byteBuffer.get();
-            EventKind event = EventKind.findByValue(eventKind);
-            if (Objects.isNull(event)) {
+            EventProcessor eventProcessor = eventProcessors.getProcessor(eventKind);
+            if (Objects.isNull(eventProcessor)) {
                 log.error("UnKnow EventKind:{}, packet string:{}", eventKind, packet.toString());
                 log.error("UnKnow EventKind:{}, packet byte:{}", eventKind, packet.toBytes());
+                throw new DebuggerException("UnKnow Event.");
             }
-
-            EventProcessor eventProcessor = eventProcessors.getProcessor(event).orElseThrow(() -> new DebuggerException("UnKnow Event."));
-            List<Integer> ids = eventProcessor.processEvent(byteBuffer, SessionManager.getInstance().getIdSizes(), event);
-            if (!CollectionUtils.isEmpty(ids)) {
-                requestIds.addAll(ids);
-            }
+            EventKind event = EventKind.findByValue(eventKind);
+            requestIds.add(eventProcessor.readEvent(byteBuffer, idSizes, event, session));
         }
+        offsets[events] = byteBuffer.position();
+        packet.setEventOffsets(offsets);
         return CollectionUtils.isEmpty(requestIds) ? null : requestIds;
     }
 }
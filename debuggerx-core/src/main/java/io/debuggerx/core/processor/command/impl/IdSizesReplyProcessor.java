@@ -1,7 +1,8 @@
 package io.debuggerx.core.processor.command.impl;
 
 import io.debuggerx.core.processor.CommandProcessor;
-import io.debuggerx.core.session.SessionManager;
+import io.debuggerx.core.service.ClassIndexLoader;
+import io.debuggerx.core.session.DebugSession;
 import io.debuggerx.protocol.jdwp.IdSizes;
 import io.debuggerx.protocol.packet.JdwpPacket;
 
@@ -10,20 +11,22 @@ import java.util.List;
 
 /**
  * Processes VirtualMachine.IDSizes reply to configure JVM ID size constants.
- * Stores fieldID, methodID, objectID, referenceTypeID, and frameID sizes globally for packet parsing.
+ * Stores fieldID, methodID, objectID, referenceTypeID, and frameID sizes in the session for packet parsing.
  *
  * @author ouwu
  */
 public class IdSizesReplyProcessor implements CommandProcessor {
 
     @Override
-    public List<Integer> process(ByteBuffer byteBuffer, JdwpPacket packet) {
-        this.handleIdSizes(packet);
+    public List<Integer> process(ByteBuffer byteBuffer, JdwpPacket packet, DebugSession session) {
+        this.handleIdSizes(packet, session);
         return null;
     }
 
-    public void handleIdSizes(JdwpPacket packet) {
-        IdSizes read = IdSizes.read(ByteBuffer.wrap(packet.getData()));
-        SessionManager.getInstance().setIdSizes(read);
+    public void handleIdSizes(JdwpPacket packet, DebugSession session) {
+        IdSizes read = IdSizes.read(packet.dataBuffer());
+        session.getVmInfo().setIdSizes(read);
+        // 解析类加载事件与类查询回复需要ID长度
+        ClassIndexLoader.start(session);
     }
 }
@@ -0,0 +1,58 @@
+package io.debuggerx.core.processor.command.impl;
+
+import io.debuggerx.common.utils.ByteBufferUtils;
+import io.debuggerx.core.processor.CommandProcessor;
+import io.debuggerx.core.session.DebugSession;
+import io.debuggerx.core.session.InFlightRequest;
+import io.debuggerx.protocol.jdwp.IdSizes;
+import io.debuggerx.protocol.packet.JdwpPacket;
+import lombok.extern.slf4j.Slf4j;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Processes successful VirtualMachine.RedefineClasses replies to invalidate cached metadata of the
+ * redefined classes. The JVM has applied the redefinition once it replies, so replies to queries sent
+ * before it are no longer cached either.
+ * Out Data of the original command: int classes, then per class: referenceTypeID refType,
+ * int classfile length, byte[] classfile
+ *
+ * @author ouwu
+ */
+@Slf4j
+public class RedefineClassesReplyProcessor implements CommandProcessor {
+
+    @Override
+    public List<Integer> process(ByteBuffer byteBuffer, JdwpPacket packet, DebugSession session) {
+        if (session == null || packet.getHeader().getErrorCode() != 0) {
+            return Collections.emptyList();
+        }
+        IdSizes idSizes = session.getVmInfo().getIdSizes();
+        InFlightRequest request = session.findInFlightRequest(packet.getHeader().getId());
+        if (idSizes == null || request == null || request.getPacket() == null) {
+            log.warn("[RedefineClasses] No redefine command found for reply id {}", packet.getHeader().getId());
+            return Collections.emptyList();
+        }
+        ByteBuffer command = request.getPacket().dataBuffer();
+        int classes = command.getInt();
+        List<Long> referenceTypeIds = new ArrayList<>(classes);
+        for (int i = 0; i < classes; i++) {
+            referenceTypeIds.add(ByteBufferUtils.getLong(command, idSizes.getReferenceTypeIdSize()));
+            int classFileLength = command.getInt();
+            command.position(command.position() + classFileLength);
+        }
+
+        int invalidated = session.classesRedefined(referenceTypeIds);
+        log.info("[RedefineClasses] Redefined {} classes, invalidated {} cached replies", classes, invalidated);
+        return Collections.emptyList();
+    }
+
+    @Override
+    public boolean requiresCommandData() {
+        // 需要原命令中的referenceTypeID
+        return true;
+    }
+}
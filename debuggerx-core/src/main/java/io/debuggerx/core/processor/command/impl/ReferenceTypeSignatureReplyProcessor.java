@@ -2,7 +2,6 @@ package io.debuggerx.core.processor.command.impl;
 
 import io.debuggerx.core.processor.CommandProcessor;
 import io.debuggerx.core.session.DebugSession;
-import io.debuggerx.core.session.SessionManager;
 import io.debuggerx.protocol.packet.BreakpointInfo;
 import io.debuggerx.protocol.packet.JdwpPacket;
 import lombok.extern.slf4j.Slf4j;
@@ -20,9 +19,8 @@ import java.util.List;
 public class ReferenceTypeSignatureReplyProcessor implements CommandProcessor {
 
     @Override
-    public List<Integer> process(ByteBuffer byteBuffer, JdwpPacket packet) {
+    public List<Integer> process(ByteBuffer byteBuffer, JdwpPacket packet, DebugSession session) {
         try {
-            DebugSession session = SessionManager.getInstance().findJvmServerSession();
             Integer breakpointRequestId = session.getPendingResolutions().get(packet.getHeader().getId());
 
             if (breakpointRequestId == null) {
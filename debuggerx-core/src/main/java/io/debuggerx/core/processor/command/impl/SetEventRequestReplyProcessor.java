@@ -3,7 +3,7 @@ package io.debuggerx.core.processor.command.impl;
 import io.debuggerx.core.processor.CommandProcessor;
 import io.debuggerx.core.service.BreakpointResolver;
 import io.debuggerx.core.session.DebugSession;
-import io.debuggerx.core.session.SessionManager;
+import io.debuggerx.core.session.InFlightRequest;
 import io.debuggerx.protocol.enums.EventKind;
 import io.debuggerx.protocol.jdwp.IdSizes;
 import io.debuggerx.protocol.jdwp.Location;
@@ -13,7 +13,6 @@ import io.debuggerx.protocol.packet.JdwpPacket;
 import io.debuggerx.protocol.packet.PacketSource;
 import io.netty.channel.Channel;
 import lombok.extern.slf4j.Slf4j;
-import org.apache.commons.lang3.tuple.Pair;
 
 import java.nio.ByteBuffer;
 import java.util.*;
@@ -29,23 +28,39 @@ import java.util.concurrent.CopyOnWriteArraySet;
 public class SetEventRequestReplyProcessor implements CommandProcessor {
 
     @Override
-    public List<Integer> process(ByteBuffer byteBuffer, JdwpPacket packet) {
+    public List<Integer> process(ByteBuffer byteBuffer, JdwpPacket packet, DebugSession session) {
+        if (packet.getHeader().getErrorCode() != 0) {
+            return Collections.emptyList();
+        }
         int requestId = byteBuffer.getInt();
-        cacheBreakpointRequestId(requestId, packet);
+        // 代理自身的类加载/卸载事件请求
+        if (session.getClassIndex().eventRequestReplied(packet.getHeader().getId(), requestId)) {
+            return Collections.singletonList(requestId);
+        }
+        cacheBreakpointRequestId(requestId, packet, session);
         return Collections.singletonList(requestId);
     }
 
-    private void cacheBreakpointRequestId(int requestId, JdwpPacket packet) {
-        DebugSession session = SessionManager.getInstance().findJvmServerSession();
-        Pair<Integer, PacketSource> packetSourcePair = session.getPacketIdMap().get(packet.getHeader().getId());
+    @Override
+    public boolean requiresCommandData() {
+        // 需要原EventRequest.Set命令中的eventKind和LocationOnly
+        return true;
+    }
+
+    private void cacheBreakpointRequestId(int requestId, JdwpPacket packet, DebugSession session) {
+        InFlightRequest request = session.findInFlightRequest(packet.getHeader().getId());
         // 原命令包channel
-        PacketSource source = packetSourcePair.getRight();
+        PacketSource source = request == null ? null : session.getOriginSource(request);
+        if (source == null || request.getPacket() == null) {
+            log.warn("Cache Breakpoint requestId found no origin command for reply id {}.", packet.getHeader().getId());
+            return;
+        }
         Map<Channel, Set<BreakpointRequestRelation>> breakpointRequestMap = session.getBreakpointRequestMap();
         breakpointRequestMap.computeIfAbsent(source.getChannel(), id -> new CopyOnWriteArraySet<>());
         Set<BreakpointRequestRelation> breakpointRequestRelations = breakpointRequestMap.get(source.getChannel());
         // 找到原命令包EventKind类型
-        JdwpPacket originPacket = session.findPacketByNewId(packet.getHeader().getId());
-        EventKind eventKind = EventKind.findByValue(originPacket.getData()[0]);
+        JdwpPacket originPacket = request.getPacket();
+        EventKind eventKind = EventKind.findByValue(originPacket.dataByte(0));
         if (Objects.isNull(eventKind)) {
             log.error("Cache Breakpoint requestId found event kind is null.");
             return;
@@ -73,7 +88,7 @@ public class SetEventRequestReplyProcessor implements CommandProcessor {
      */
     private void storeGlobalBreakpoint(int requestId, JdwpPacket originPacket, PacketSource source, DebugSession session) {
         try {
-            ByteBuffer buffer = ByteBuffer.wrap(originPacket.getData());
+            ByteBuffer buffer = originPacket.dataBuffer();
             // Skip eventKind (1 byte) and suspendPolicy (1 byte)
             buffer.get();
             buffer.get();
@@ -82,7 +97,7 @@ public class SetEventRequestReplyProcessor implements CommandProcessor {
             int modifiersCount = buffer.getInt();
 
             // Get IdSizes to parse Location correctly
-            io.debuggerx.protocol.jdwp.IdSizes idSizes = SessionManager.getInstance().getIdSizes();
+            io.debuggerx.protocol.jdwp.IdSizes idSizes = session.getVmInfo().getIdSizes();
             if (idSizes == null) {
                 log.warn("[GlobalBreakpoint] IdSizes not available yet, skipping breakpoint registration");
                 return;
@@ -111,7 +126,7 @@ public class SetEventRequestReplyProcessor implements CommandProcessor {
                         location.getIndex(), source.getChannel());
 
                     // Asynchronously resolve breakpoint to get className, methodName, lineNumber
-                    BreakpointResolver.resolveBreakpoint(info);
+                    BreakpointResolver.resolveBreakpoint(session, info);
                     return;
                 }
                 // Skip other modifier types (not implemented yet)
@@ -1,19 +1,20 @@
 package io.debuggerx.core.processor.event.impl;
 
-import io.debuggerx.common.utils.ByteBufferUtils;
 import io.debuggerx.core.processor.EventProcessor;
+import io.debuggerx.core.service.ClassIndexLoader;
+import io.debuggerx.core.session.DebugSession;
 import io.debuggerx.protocol.enums.EventKind;
 import io.debuggerx.protocol.jdwp.IdSizes;
-import io.debuggerx.protocol.jdwp.ReferenceTypeId;
-import io.debuggerx.protocol.jdwp.ThreadId;
+import io.debuggerx.protocol.jdwp.JdwpCursor;
 
 import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
 import java.util.Collections;
-import java.util.List;
 
 /**
  * Processes class lifecycle events (CLASS_PREPARE, CLASS_UNLOAD).
- * Extracts request IDs and parses class metadata from event payloads.
+ * Extracts request IDs and keeps the session's loaded-class index up to date; unloaded classes are
+ * also dropped from the reply cache.
  *
  * @author ouwu
  */
@@ -25,18 +26,42 @@ public class ClassLifecycleEventProcessor implements EventProcessor {
     }
 
     @Override
-    public List<Integer> processEvent(ByteBuffer buffer, IdSizes idSizes, EventKind eventKind) {
+    public int readEvent(ByteBuffer buffer, IdSizes idSizes, EventKind eventKind, DebugSession session) {
         int requestId = buffer.getInt();
-        
+
         if (eventKind == EventKind.CLASS_PREPARE) {
-            ThreadId.read(buffer, idSizes);
-            buffer.get();
-            ReferenceTypeId.read(buffer, idSizes);
-            ByteBufferUtils.getString(buffer);
-            buffer.getInt();
+            // thread
+            JdwpCursor.skip(buffer, idSizes.getObjectIdSize());
+            byte refTypeTag = buffer.get();
+            long referenceTypeId = JdwpCursor.readReferenceTypeId(buffer, idSizes);
+            if (session == null) {
+                JdwpCursor.skipString(buffer);
+                buffer.getInt();
+                return requestId;
+            }
+            byte[] signature = readString(buffer);
+            int status = buffer.getInt();
+            if (session.getClassIndex().classPrepared(refTypeTag, referenceTypeId, signature, status)) {
+                ClassIndexLoader.fetchGenericSignature(session, referenceTypeId);
+            }
         } else {
-            ByteBufferUtils.getString(buffer);
+            if (session == null) {
+                JdwpCursor.skipString(buffer);
+                return requestId;
+            }
+            byte[] signature = readString(buffer);
+            // 卸载的类不会再被查询，释放其缓存的元数据
+            session.getReplyCache().invalidateSignature(new String(signature, StandardCharsets.UTF_8));
+            if (session.getClassIndex().classUnloaded(signature)) {
+                ClassIndexLoader.refresh(session, Collections.singletonList(signature));
+            }
         }
-        return Collections.singletonList(requestId);
+        return requestId;
+    }
+
+    private static byte[] readString(ByteBuffer buffer) {
+        byte[] bytes = new byte[buffer.getInt()];
+        buffer.get(bytes);
+        return bytes;
     }
 }
@@ -1,15 +1,12 @@
 package io.debuggerx.core.processor.event.impl;
 
 import io.debuggerx.core.processor.EventProcessor;
+import io.debuggerx.core.session.DebugSession;
 import io.debuggerx.protocol.enums.EventKind;
 import io.debuggerx.protocol.jdwp.IdSizes;
-import io.debuggerx.protocol.jdwp.Location;
-import io.debuggerx.protocol.jdwp.TaggedObjectId;
-import io.debuggerx.protocol.jdwp.ThreadId;
+import io.debuggerx.protocol.jdwp.JdwpCursor;
 
 import java.nio.ByteBuffer;
-import java.util.Collections;
-import java.util.List;
 
 /**
  * Processes EXCEPTION events from the JVM.
@@ -24,13 +21,10 @@ public class ExceptionEventProcessor implements EventProcessor {
     }
 
     @Override
-    public List<Integer> processEvent(ByteBuffer buffer, IdSizes idSizes, EventKind eventKind) {
+    public int readEvent(ByteBuffer buffer, IdSizes idSizes, EventKind eventKind, DebugSession session) {
         int requestId = buffer.getInt();
-        ThreadId.read(buffer, idSizes);
-        Location.read(buffer, idSizes);
-        TaggedObjectId.read(buffer, idSizes);
-        Location.read(buffer, idSizes);
-
-        return Collections.singletonList(requestId);
+        // thread、location、exception、catchLocation
+        JdwpCursor.skip(buffer, idSizes.getEventLayout().fixedLength(eventKind));
+        return requestId;
     }
 }
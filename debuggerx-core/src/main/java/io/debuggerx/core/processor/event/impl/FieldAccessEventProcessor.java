@@ -1,12 +1,11 @@
 package io.debuggerx.core.processor.event.impl;
 
 import io.debuggerx.core.processor.EventProcessor;
+import io.debuggerx.core.session.DebugSession;
 import io.debuggerx.protocol.enums.EventKind;
 import io.debuggerx.protocol.jdwp.*;
 
 import java.nio.ByteBuffer;
-import java.util.Collections;
-import java.util.List;
 
 /**
  * Processes field watch events (FIELD_ACCESS, FIELD_MODIFICATION).
@@ -22,18 +21,13 @@ public class FieldAccessEventProcessor implements EventProcessor {
     }
 
     @Override
-    public List<Integer> processEvent(ByteBuffer buffer, IdSizes idSizes, EventKind eventKind) {
+    public int readEvent(ByteBuffer buffer, IdSizes idSizes, EventKind eventKind, DebugSession session) {
         int requestId = buffer.getInt();
-        ThreadId.read(buffer, idSizes);
-        Location.read(buffer, idSizes);
-        buffer.get();
-        ReferenceTypeId.read(buffer, idSizes);
-        FieldId.read(buffer, idSizes);
-        TaggedObjectId.read(buffer, idSizes);
-        
+        // thread、location、refTypeTag、typeID、fieldID、object
+        JdwpCursor.skip(buffer, idSizes.getEventLayout().fixedLength(eventKind));
         if (eventKind == EventKind.FIELD_MODIFICATION) {
-            Value.read(buffer, idSizes);
+            JdwpCursor.skipValue(buffer, idSizes);
         }
-        return Collections.singletonList(requestId);
+        return requestId;
     }
 }
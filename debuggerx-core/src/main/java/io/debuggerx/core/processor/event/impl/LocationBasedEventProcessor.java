@@ -2,17 +2,13 @@ package io.debuggerx.core.processor.event.impl;
 
 import io.debuggerx.core.processor.EventProcessor;
 import io.debuggerx.core.session.DebugSession;
-import io.debuggerx.core.session.SessionManager;
 import io.debuggerx.protocol.enums.EventKind;
 import io.debuggerx.protocol.jdwp.IdSizes;
-import io.debuggerx.protocol.jdwp.Location;
-import io.debuggerx.protocol.jdwp.ThreadId;
+import io.debuggerx.protocol.jdwp.JdwpCursor;
 import io.debuggerx.protocol.packet.BreakpointEventInfo;
 import lombok.extern.slf4j.Slf4j;
 
 import java.nio.ByteBuffer;
-import java.util.Collections;
-import java.util.List;
 
 /**
  * Processes location-based JDWP events (breakpoint, step, method entry/exit).
@@ -31,32 +27,32 @@ public class LocationBasedEventProcessor implements EventProcessor {
     }
 
     @Override
-    public List<Integer> processEvent(ByteBuffer buffer, IdSizes idSizes, EventKind eventKind) {
+    public int readEvent(ByteBuffer buffer, IdSizes idSizes, EventKind eventKind, DebugSession session) {
         int requestId = buffer.getInt();
-        //threadID	thread	Stepped thread
-        //location	location	Location stepped to
-        ThreadId threadId = ThreadId.read(buffer, idSizes);
-        Location location = Location.read(buffer, idSizes);
+        if (eventKind != EventKind.BREAKPOINT) {
+            //threadID	thread	Stepped thread
+            //location	location	Location stepped to
+            JdwpCursor.skip(buffer, idSizes.getEventLayout().fixedLength(eventKind));
+            return requestId;
+        }
+        long threadId = JdwpCursor.readObjectId(buffer, idSizes);
+        JdwpCursor.skip(buffer, idSizes.getEventLayout().getLocationLength());
 
         // For BREAKPOINT events, capture threadId and reference existing breakpoint (non-intrusive observer)
-        if (eventKind == EventKind.BREAKPOINT) {
-            try {
-                DebugSession session = SessionManager.getInstance().findJvmServerSession();
-                if (session != null) {
-                    io.debuggerx.protocol.packet.BreakpointInfo breakpoint = session.getGlobalBreakpoints().get(requestId);
-                    if (breakpoint != null) {
-                        BreakpointEventInfo eventInfo = new BreakpointEventInfo();
-                        eventInfo.setThreadId(threadId.asLong());
-                        eventInfo.setBreakpoint(breakpoint);
+        try {
+            if (session != null) {
+                io.debuggerx.protocol.packet.BreakpointInfo breakpoint = session.getGlobalBreakpoints().get(requestId);
+                if (breakpoint != null) {
+                    BreakpointEventInfo eventInfo = new BreakpointEventInfo();
+                    eventInfo.setThreadId(threadId);
+                    eventInfo.setBreakpoint(breakpoint);
 
-                        session.setCurrentBreakpointEvent(eventInfo);
-                    }
+                    session.setCurrentBreakpointEvent(eventInfo);
                 }
-            } catch (Exception e) {
-                log.error("[LocationBasedEventProcessor] Failed to process BREAKPOINT event: {}", e.getMessage(), e);
             }
+        } catch (Exception e) {
+            log.error("[LocationBasedEventProcessor] Failed to process BREAKPOINT event: {}", e.getMessage(), e);
         }
-
-        return Collections.singletonList(requestId);
+        return requestId;
     }
 }
@@ -1,13 +1,12 @@
 package io.debuggerx.core.processor.event.impl;
 
 import io.debuggerx.core.processor.EventProcessor;
+import io.debuggerx.core.session.DebugSession;
 import io.debuggerx.protocol.enums.EventKind;
 import io.debuggerx.protocol.jdwp.IdSizes;
-import io.debuggerx.protocol.jdwp.ThreadId;
+import io.debuggerx.protocol.jdwp.JdwpCursor;
 
 import java.nio.ByteBuffer;
-import java.util.Collections;
-import java.util.List;
 
 /**
  * Processes thread lifecycle events (VM_START, THREAD_START, THREAD_DEATH).
@@ -24,11 +23,11 @@ public class ThreadLifecycleEventProcessor implements EventProcessor {
     }
 
     @Override
-    public List<Integer> processEvent(ByteBuffer buffer, IdSizes idSizes, EventKind eventKind) {
+    public int readEvent(ByteBuffer buffer, IdSizes idSizes, EventKind eventKind, DebugSession session) {
         //int	requestID	Request that generated event (or 0 if this event is automatically generated.
         int requestId = buffer.getInt();
         //threadID	thread  Initial thread
-        ThreadId.read(buffer, idSizes);
-        return Collections.singletonList(requestId);
+        JdwpCursor.skip(buffer, idSizes.getEventLayout().fixedLength(eventKind));
+        return requestId;
     }
 }
@@ -1,25 +1,56 @@
 package io.debuggerx.core.processor.registry;
 
 import io.debuggerx.core.processor.CommandProcessor;
+import io.debuggerx.core.processor.command.impl.ClassIndexReplyProcessor;
 import io.debuggerx.core.processor.command.impl.ClearEventRequestCommandProcessor;
 import io.debuggerx.core.processor.command.impl.CompositeEventCommandProcessor;
 import io.debuggerx.core.processor.command.impl.IdSizesReplyProcessor;
 import io.debuggerx.core.processor.command.impl.MethodLineTableReplyProcessor;
+import io.debuggerx.core.processor.command.impl.RedefineClassesReplyProcessor;
 import io.debuggerx.core.processor.command.impl.ReferenceTypeSignatureReplyProcessor;
 import io.debuggerx.core.processor.command.impl.SetEventRequestReplyProcessor;
+import io.debuggerx.core.processor.ProcessorProvider;
 import io.debuggerx.protocol.enums.CommandIdentifier;
+import io.debuggerx.protocol.enums.CommandType;
+import io.debuggerx.protocol.packet.JdwpHeader;
+import lombok.extern.slf4j.Slf4j;
 
-import java.util.EnumMap;
-import java.util.Map;
+import java.util.BitSet;
+import java.util.ServiceLoader;
 
 /**
  * Registry for command processors mapped by CommandIdentifier.
- * Registers processors for ID sizes, event requests, composite events, and breakpoint resolution.
+ * Registers processors for ID sizes, event requests, composite events, breakpoint resolution,
+ * class redefinition and the loaded-class index, then those of every {@link ProcessorProvider} found
+ * on the class path. Lookups index arrays by command set and command and do not allocate.
+ * <p>
+ * Processors of internal replies only see the replies to the proxy's own commands: debuggers' commands
+ * of the same kind keep being forwarded without parsing.
  *
  * @author ouwu
  */
+@Slf4j
 public class CommandProcessorRegistry {
-    private final Map<CommandIdentifier, CommandProcessor> processorMap = new EnumMap<>(CommandIdentifier.class);
+    /**
+     * 命令处理器，按 [commandSet][command] 索引，按commandSet懒分配
+     */
+    private final CommandProcessor[][] commandProcessors = new CommandProcessor[256][];
+    /**
+     * 回复处理器，索引同上
+     */
+    private final CommandProcessor[][] replyProcessors = new CommandProcessor[256][];
+    /**
+     * 代理内部命令的回复处理器，索引同上，不计入registeredCommands
+     */
+    private final CommandProcessor[][] internalReplyProcessors = new CommandProcessor[256][];
+    /**
+     * 已注册处理器(命令或回复)的commandSet/command组合，按 commandSet << 8 | command 索引
+     */
+    private final BitSet registeredCommands = new BitSet(1 << 16);
+    /**
+     * 回复处理需要原命令数据的commandSet/command组合
+     */
+    private final BitSet commandDataRequired = new BitSet(1 << 16);
 
     public CommandProcessorRegistry(EventProcessorRegistry eventProcessors) {
         register(CommandIdentifier.ID_SIZES_REPLY, new IdSizesReplyProcessor());
@@ -28,13 +59,112 @@ public class CommandProcessorRegistry {
         register(CommandIdentifier.COMPOSITE_EVENT_COMMAND, new CompositeEventCommandProcessor(eventProcessors));
         register(CommandIdentifier.REFERENCE_TYPE_SIGNATURE_REPLY, new ReferenceTypeSignatureReplyProcessor());
         register(CommandIdentifier.METHOD_LINE_TABLE_REPLY, new MethodLineTableReplyProcessor());
+        register(CommandIdentifier.REDEFINE_CLASSES_REPLY, new RedefineClassesReplyProcessor());
+        ClassIndexReplyProcessor classIndexReplies = new ClassIndexReplyProcessor();
+        registerInternalReply(CommandIdentifier.ALL_CLASSES_WITH_GENERIC_REPLY, classIndexReplies);
+        registerInternalReply(CommandIdentifier.REFERENCE_TYPE_SIGNATURE_WITH_GENERIC_REPLY, classIndexReplies);
+        registerInternalReply(CommandIdentifier.CLASSES_BY_SIGNATURE_REPLY, classIndexReplies);
+        registerInternalReply(CommandIdentifier.REFERENCE_TYPE_METHODS_REPLY, classIndexReplies);
+
+        for (ProcessorProvider provider : ServiceLoader.load(ProcessorProvider.class)) {
+            provider.registerProcessors(this, eventProcessors);
+            log.info("[CommandProcessorRegistry] Registered processors of {}", provider.getClass().getName());
+        }
     }
 
     public void register(CommandIdentifier id, CommandProcessor processor) {
-        processorMap.put(id, processor);
+        register(id.getCommandSetId(), id.getCommandId(), id.getType(), processor);
+    }
+
+    /**
+     * Registers the processor of a command or of its reply, replacing any previous one.
+     *
+     * @param commandSet the JDWP command set
+     * @param command the JDWP command
+     * @param type whether the processor handles the command or its reply
+     * @param processor the processor
+     */
+    public void register(int commandSet, int command, CommandType type, CommandProcessor processor) {
+        CommandProcessor[][] table = type == CommandType.COMMAND ? commandProcessors : replyProcessors;
+        CommandProcessor[] processors = table[commandSet & 0xFF];
+        if (processors == null) {
+            processors = table[commandSet & 0xFF] = new CommandProcessor[256];
+        }
+        processors[command & 0xFF] = processor;
+        registeredCommands.set(commandKey(commandSet, command));
+        if (processor.requiresCommandData()) {
+            commandDataRequired.set(commandKey(commandSet, command));
+        }
+    }
+
+    /**
+     * Registers the processor of the replies to a command when the proxy itself sent it. Debuggers'
+     * commands of that kind are not parsed on its account.
+     *
+     * @param id the reply identifier
+     * @param processor the processor
+     */
+    public void registerInternalReply(CommandIdentifier id, CommandProcessor processor) {
+        CommandProcessor[] processors = internalReplyProcessors[id.getCommandSetId() & 0xFF];
+        if (processors == null) {
+            processors = internalReplyProcessors[id.getCommandSetId() & 0xFF] = new CommandProcessor[256];
+        }
+        processors[id.getCommandId() & 0xFF] = processor;
+    }
+
+    /**
+     * Checks whether the reply processor of a command needs the command's data.
+     *
+     * @param commandSet the JDWP command set
+     * @param command the JDWP command
+     * @return true if the command packet must be kept until its reply is processed
+     */
+    public boolean requiresCommandData(int commandSet, int command) {
+        return commandDataRequired.get(commandKey(commandSet, command));
+    }
+
+    /**
+     * Checks whether the command or its reply has a registered processor.
+     * Packets of any other command can be forwarded without being parsed.
+     *
+     * @param commandSet the JDWP command set
+     * @param command the JDWP command
+     * @return true if a processor is registered for the command or for its reply
+     */
+    public boolean hasProcessor(int commandSet, int command) {
+        return registeredCommands.get(commandKey(commandSet, command));
+    }
+
+    private static int commandKey(int commandSet, int command) {
+        return (commandSet & 0xFF) << 8 | (command & 0xFF);
     }
     
     public CommandProcessor getProcessor(CommandIdentifier id) {
-        return processorMap.get(id);
+        return getProcessor(id.getCommandSetId(), id.getCommandId(), id.getType() == CommandType.COMMAND);
+    }
+
+    /**
+     * @param header the header of a command, or of a reply whose command set and command were mapped
+     *               from its in-flight command
+     * @return the processor, or null if the packet needs no processing
+     */
+    public CommandProcessor getProcessor(JdwpHeader header) {
+        return getProcessor(header.getCommandSet(), header.getCommand(), header.isCommand());
+    }
+
+    /**
+     * @param header the header of a reply to a command sent by the proxy itself, with its command set
+     *               and command mapped from the in-flight command
+     * @return the internal reply processor, falling back to the regular one, or null if none
+     */
+    public CommandProcessor getInternalReplyProcessor(JdwpHeader header) {
+        CommandProcessor[] processors = internalReplyProcessors[header.getCommandSet() & 0xFF];
+        CommandProcessor processor = processors == null ? null : processors[header.getCommand() & 0xFF];
+        return processor != null ? processor : getProcessor(header);
+    }
+
+    private CommandProcessor getProcessor(int commandSet, int command, boolean isCommand) {
+        CommandProcessor[] processors = (isCommand ? commandProcessors : replyProcessors)[commandSet & 0xFF];
+        return processors == null ? null : processors[command & 0xFF];
     }
 }
\ No newline at end of file
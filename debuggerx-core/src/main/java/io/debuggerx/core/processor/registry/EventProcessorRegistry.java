@@ -4,18 +4,20 @@ import io.debuggerx.core.processor.EventProcessor;
 import io.debuggerx.core.processor.event.impl.*;
 import io.debuggerx.protocol.enums.EventKind;
 
-import java.util.EnumMap;
-import java.util.Map;
 import java.util.Optional;
 
 /**
  * Registry for event processors mapped by EventKind.
- * Auto-registers all event processors and provides lookup by event type.
+ * Auto-registers all event processors and provides lookup by event type; a
+ * {@link io.debuggerx.core.processor.ProcessorProvider} may register more.
  *
  * @author wuou
  */
 public class EventProcessorRegistry {
-    private final Map<EventKind, EventProcessor> processorMap = new EnumMap<>(EventKind.class);
+    /**
+     * 按事件类型id(无符号)索引
+     */
+    private final EventProcessor[] processors = new EventProcessor[256];
 
     public EventProcessorRegistry() {
         this.registerProcessor(new ClassLifecycleEventProcessor());
@@ -32,13 +34,31 @@ public class EventProcessorRegistry {
     public void registerProcessor(EventProcessor processor) {
         for (EventKind kind : EventKind.values()) {
             if (processor.supports(kind)) {
-                processorMap.put(kind, processor);
+                register(kind, processor);
             }
         }
     }
 
+    /**
+     * Registers the processor of an event kind, replacing any previous one.
+     *
+     * @param kind the event kind
+     * @param processor the processor
+     */
+    public void register(EventKind kind, EventProcessor processor) {
+        processors[kind.id & 0xFF] = processor;
+    }
+
     public Optional<EventProcessor> getProcessor(EventKind kind) {
-        return Optional.ofNullable(processorMap.get(kind));
+        return Optional.ofNullable(processors[kind.id & 0xFF]);
+    }
+
+    /**
+     * @param eventKind the event kind byte of an event
+     * @return the processor, or null if the event kind is unknown
+     */
+    public EventProcessor getProcessor(byte eventKind) {
+        return processors[eventKind & 0xFF];
     }
 
 }
@@ -1,17 +1,18 @@
 package io.debuggerx.core.service;
 
 import io.debuggerx.common.constants.JdwpConstants;
+import io.debuggerx.common.enums.ConnectionType;
 import io.debuggerx.core.session.DebugSession;
-import io.debuggerx.core.session.SessionManager;
 import io.debuggerx.protocol.jdwp.IdSizes;
 import io.debuggerx.protocol.packet.BreakpointInfo;
 import io.debuggerx.protocol.packet.JdwpHeader;
 import io.debuggerx.protocol.packet.JdwpPacket;
+import io.debuggerx.protocol.packet.PacketSource;
+import io.netty.buffer.Unpooled;
 import io.netty.channel.Channel;
 import lombok.extern.slf4j.Slf4j;
 
 import java.nio.ByteBuffer;
-import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Resolves breakpoint raw JDWP IDs (classId, methodId, codeIndex) to human-readable names.
@@ -22,17 +23,15 @@ import java.util.concurrent.atomic.AtomicInteger;
  */
 @Slf4j
 public class BreakpointResolver {
-    private static final AtomicInteger packetIdGenerator = new AtomicInteger(100000);
-
     /**
      * Asynchronously resolves breakpoint metadata via JDWP queries.
      * Sends ReferenceType.Signature and Method.LineTable commands to populate human-readable fields.
      *
+     * @param session the session of the JVM the breakpoint was set in
      * @param breakpointInfo the breakpoint to resolve (updated asynchronously when replies arrive)
      */
-    public static void resolveBreakpoint(BreakpointInfo breakpointInfo) {
+    public static void resolveBreakpoint(DebugSession session, BreakpointInfo breakpointInfo) {
         try {
-            DebugSession session = SessionManager.getInstance().findJvmServerSession();
             Channel jvmChannel = session.getJvmServerChannel();
 
             if (!jvmChannel.isActive()) {
@@ -62,30 +61,30 @@ public class BreakpointResolver {
      */
     private static void sendReferenceTypeSignatureQuery(BreakpointInfo breakpointInfo, Channel jvmChannel, DebugSession session) {
         try {
-            int packetId = packetIdGenerator.incrementAndGet();
-
             // Build JDWP packet: ReferenceType.Signature (CommandSet=2, Command=1)
             // Data: referenceTypeID (classId)
-            IdSizes idSizes = SessionManager.getInstance().getIdSizes();
+            IdSizes idSizes = session.getVmInfo().getIdSizes();
             int referenceTypeIdSize = idSizes.getReferenceTypeIdSize();
 
             ByteBuffer buffer = ByteBuffer.allocate(referenceTypeIdSize);
             writeId(buffer, breakpointInfo.getClassId(), referenceTypeIdSize);
 
             JdwpHeader header = new JdwpHeader();
-            header.setId(packetId);
             header.setFlags(JdwpConstants.FLAG_COMMAND);
             header.setCommandSet(JdwpConstants.REFERENCE_TYPE_COMMAND_SET);
             header.setCommand(JdwpConstants.REFERENCE_TYPE_SIGNATURE_COMMAND);
 
             JdwpPacket packet = new JdwpPacket(header, buffer.array());
 
+            // Register as in-flight internal request so mapResponseCommand can find it
+            int packetId = session.saveInternalRequest(packet);
+
             // Store mapping so reply processor can find the breakpoint
             session.getPendingResolutions().put(packetId, breakpointInfo.getRequestId());
 
-            // Register packet in packetMap so mapResponseCommand can find it
-            session.getPacketMap().put(packetId, packet);
-
+            if (answerFromCache(packet, jvmChannel, session)) {
+                return;
+            }
             jvmChannel.writeAndFlush(packet);
             log.debug("[BreakpointResolver] Sent ReferenceType.Signature query for breakpoint requestId={} classId={} packetId={}",
                 breakpointInfo.getRequestId(), breakpointInfo.getClassId(), packetId);
@@ -104,11 +103,9 @@ public class BreakpointResolver {
      */
     private static void sendMethodLineTableQuery(BreakpointInfo breakpointInfo, Channel jvmChannel, DebugSession session) {
         try {
-            int packetId = packetIdGenerator.incrementAndGet();
-
             // Build JDWP packet: Method.LineTable (CommandSet=6, Command=1)
             // Data: refType (classId) + methodID
-            IdSizes idSizes = SessionManager.getInstance().getIdSizes();
+            IdSizes idSizes = session.getVmInfo().getIdSizes();
             int referenceTypeIdSize = idSizes.getReferenceTypeIdSize();
             int methodIdSize = idSizes.getMethodIdSize();
 
@@ -117,19 +114,21 @@ public class BreakpointResolver {
             writeId(buffer, breakpointInfo.getMethodId(), methodIdSize);
 
             JdwpHeader header = new JdwpHeader();
-            header.setId(packetId);
             header.setFlags(JdwpConstants.FLAG_COMMAND);
             header.setCommandSet(JdwpConstants.METHOD_COMMAND_SET);
             header.setCommand(JdwpConstants.METHOD_LINE_TABLE_COMMAND);
 
             JdwpPacket packet = new JdwpPacket(header, buffer.array());
 
+            // Register as in-flight internal request so mapResponseCommand can find it
+            int packetId = session.saveInternalRequest(packet);
+
             // Store mapping so reply processor can find the breakpoint
             session.getPendingResolutions().put(packetId, breakpointInfo.getRequestId());
 
-            // Register packet in packetMap so mapResponseCommand can find it
-            session.getPacketMap().put(packetId, packet);
-
+            if (answerFromCache(packet, jvmChannel, session)) {
+                return;
+            }
             jvmChannel.writeAndFlush(packet);
             log.debug("[BreakpointResolver] Sent Method.LineTable query for breakpoint requestId={} classId={} methodId={} packetId={}",
                 breakpointInfo.getRequestId(), breakpointInfo.getClassId(), breakpointInfo.getMethodId(), packetId);
@@ -139,6 +138,38 @@ public class BreakpointResolver {
         }
     }
 
+    /**
+     * Answers a resolution query from the session's reply cache, when another debugger or an earlier
+     * resolution already asked the same question. The cached reply goes through the same reply
+     * processing as one received from the JVM.
+     *
+     * @param query the registered internal query
+     * @param jvmChannel the JVM connection channel
+     * @param session the debug session
+     * @return true if the query was answered locally and must not be sent
+     */
+    private static boolean answerFromCache(JdwpPacket query, Channel jvmChannel, DebugSession session) {
+        byte[] cached = session.getReplyCache().get(query);
+        if (cached == null) {
+            return false;
+        }
+        int packetId = query.getHeader().getId();
+        JdwpHeader header = new JdwpHeader();
+        header.setId(packetId);
+        header.setFlags(JdwpConstants.FLAG_REPLY_PACKET);
+        header.setErrorCode((short) 0);
+        JdwpPacket reply = new JdwpPacket(header, Unpooled.wrappedBuffer(cached));
+        try {
+            DebuggerService.getInstance().cacheRequestId(new PacketSource(ConnectionType.JVM_SERVER, jvmChannel), reply);
+        } finally {
+            session.removeOriginLink(packetId);
+            reply.release();
+            query.release();
+        }
+        log.debug("[BreakpointResolver] Answered query packetId={} from reply cache", packetId);
+        return true;
+    }
+
     /**
      * Writes a JDWP ID (4 or 8 bytes) to a buffer based on JVM's ID size configuration.
      *
@@ -0,0 +1,168 @@
+package io.debuggerx.core.service;
+
+import io.debuggerx.common.constants.JdwpConstants;
+import io.debuggerx.core.session.ClassIndex;
+import io.debuggerx.core.session.DebugSession;
+import io.debuggerx.core.session.SessionManager;
+import io.debuggerx.protocol.enums.EventKind;
+import io.debuggerx.protocol.jdwp.IdSizes;
+import io.debuggerx.protocol.packet.JdwpHeader;
+import io.debuggerx.protocol.packet.JdwpPacket;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.Channel;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Sends the JDWP commands that build and maintain a session's {@link ClassIndex}: the proxy's own
+ * {@code CLASS_PREPARE}/{@code CLASS_UNLOAD} requests (suspend policy NONE), the
+ * {@code AllClassesWithGeneric} seed and resyncs, the generic signature of each newly prepared class,
+ * the re-query of classes sharing an unloaded signature, and the methods of classes matched by a search.
+ * Replies are consumed by
+ * {@code ClassIndexReplyProcessor} and {@code SetEventRequestReplyProcessor}.
+ *
+ * @author ouwu
+ */
+@Slf4j
+public class ClassIndexLoader {
+    private static final byte SUSPEND_POLICY_NONE = 0;
+
+    private ClassIndexLoader() {
+    }
+
+    /**
+     * Starts indexing the classes of a session, once the JVM ID sizes are known.
+     * The event requests are sent before the seed: the JVM handles commands in order, so no class
+     * prepared after the seed snapshot is missed.
+     *
+     * @param session the debug session
+     */
+    public static void start(DebugSession session) {
+        Channel jvmChannel = session.getJvmServerChannel();
+        if (!SessionManager.getInstance().getConfig().isClassIndex() || !jvmChannel.isActive()
+                || !session.getClassIndex().startSeeding()) {
+            return;
+        }
+        ClassIndex index = session.getClassIndex();
+        for (EventKind kind : new EventKind[]{EventKind.CLASS_PREPARE, EventKind.CLASS_UNLOAD}) {
+            ByteBuf data = Unpooled.buffer(6)
+                    .writeByte(kind.id)
+                    .writeByte(SUSPEND_POLICY_NONE)
+                    .writeInt(0);
+            JdwpPacket request = command(JdwpConstants.EVENT_REQUEST_COMMAND_SET, JdwpConstants.SET_EVENT_REQUEST_COMMAND, data);
+            index.awaitEventRequest(session.saveInternalRequest(request));
+            jvmChannel.write(request);
+        }
+        JdwpPacket seed = command(JdwpConstants.VIRTUAL_MACHINE_COMMAND_SET, JdwpConstants.ALL_CLASSES_WITH_GENERIC_COMMAND,
+                Unpooled.EMPTY_BUFFER);
+        index.awaitSeed(session.saveInternalRequest(seed));
+        jvmChannel.writeAndFlush(seed);
+        log.info("[ClassIndex] Seeding loaded class index of session {}", session.getSessionId());
+    }
+
+    /**
+     * Fetches the generic signature of a class reported by {@code CLASS_PREPARE}.
+     *
+     * @param session the debug session
+     * @param referenceTypeId the prepared class
+     */
+    public static void fetchGenericSignature(DebugSession session, long referenceTypeId) {
+        IdSizes idSizes = session.getVmInfo().getIdSizes();
+        ByteBuf data = Unpooled.buffer(idSizes.getReferenceTypeIdSize());
+        writeId(data, referenceTypeId, idSizes.getReferenceTypeIdSize());
+        JdwpPacket query = command(JdwpConstants.REFERENCE_TYPE_COMMAND_SET,
+                JdwpConstants.REFERENCE_TYPE_SIGNATURE_WITH_GENERIC_COMMAND, data);
+        session.getClassIndex().awaitGeneric(session.saveInternalRequest(query), referenceTypeId);
+        session.getJvmServerChannel().writeAndFlush(query);
+    }
+
+    /**
+     * Re-queries every loaded class in the background after {@code AllClasses} was answered locally,
+     * to add the array classes and unprepared classes created since, which report no event. At most
+     * one resync is in flight.
+     *
+     * @param session the debug session
+     */
+    public static void resync(DebugSession session) {
+        ClassIndex index = session.getClassIndex();
+        Channel jvmChannel = session.getJvmServerChannel();
+        if (!jvmChannel.isActive() || !index.startResync()) {
+            return;
+        }
+        JdwpPacket query = command(JdwpConstants.VIRTUAL_MACHINE_COMMAND_SET, JdwpConstants.ALL_CLASSES_WITH_GENERIC_COMMAND,
+                Unpooled.EMPTY_BUFFER);
+        index.awaitResync(session.saveInternalRequest(query));
+        jvmChannel.writeAndFlush(query);
+    }
+
+    /**
+     * Re-queries the loaded classes with a signature after one of them was unloaded.
+     *
+     * @param session the debug session
+     * @param signatures the signatures to re-query
+     */
+    public static void refresh(DebugSession session, List<byte[]> signatures) {
+        if (signatures.isEmpty()) {
+            return;
+        }
+        Channel jvmChannel = session.getJvmServerChannel();
+        for (byte[] signature : signatures) {
+            ByteBuf data = Unpooled.buffer(4 + signature.length).writeInt(signature.length).writeBytes(signature);
+            JdwpPacket query = command(JdwpConstants.VIRTUAL_MACHINE_COMMAND_SET, JdwpConstants.CLASSES_BY_SIGNATURE_COMMAND, data);
+            session.getClassIndex().awaitRefresh(session.saveInternalRequest(query), signature);
+            jvmChannel.write(query);
+        }
+        jvmChannel.flush();
+    }
+
+    /**
+     * Fetches the methods of classes whose methods are not known yet. Queries already in flight are
+     * shared.
+     *
+     * @param session the debug session
+     * @param referenceTypeIds the classes
+     * @return completed once every class's methods are known or its query failed
+     */
+    public static CompletableFuture<Void> fetchMethods(DebugSession session, List<Long> referenceTypeIds) {
+        ClassIndex index = session.getClassIndex();
+        IdSizes idSizes = session.getVmInfo().getIdSizes();
+        Channel jvmChannel = session.getJvmServerChannel();
+        List<CompletableFuture<Void>> pending = new ArrayList<>();
+        for (long referenceTypeId : referenceTypeIds) {
+            if (index.hasMethods(referenceTypeId)) {
+                continue;
+            }
+            CompletableFuture<Void> fetch = index.pendingMethods(referenceTypeId);
+            if (fetch == null) {
+                ByteBuf data = Unpooled.buffer(idSizes.getReferenceTypeIdSize());
+                writeId(data, referenceTypeId, idSizes.getReferenceTypeIdSize());
+                JdwpPacket query = command(JdwpConstants.REFERENCE_TYPE_COMMAND_SET, JdwpConstants.REFERENCE_TYPE_METHODS_COMMAND, data);
+                fetch = index.awaitMethods(session.saveInternalRequest(query), referenceTypeId);
+                jvmChannel.write(query);
+            }
+            pending.add(fetch);
+        }
+        if (!pending.isEmpty()) {
+            jvmChannel.flush();
+        }
+        return CompletableFuture.allOf(pending.toArray(new CompletableFuture[0]));
+    }
+
+    private static JdwpPacket command(byte commandSet, byte command, ByteBuf data) {
+        JdwpHeader header = new JdwpHeader();
+        header.setFlags(JdwpConstants.FLAG_COMMAND);
+        header.setCommandSet(commandSet);
+        header.setCommand(command);
+        return new JdwpPacket(header, data);
+    }
+
+    private static void writeId(ByteBuf out, long value, int size) {
+        for (int shift = (size - 1) * 8; shift >= 0; shift -= 8) {
+            out.writeByte((int) (value >>> shift));
+        }
+    }
+}
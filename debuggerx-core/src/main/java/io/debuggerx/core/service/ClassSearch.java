@@ -0,0 +1,109 @@
+package io.debuggerx.core.service;
+
+import io.debuggerx.core.session.ClassIndex;
+import io.debuggerx.core.session.DebugSession;
+import io.debuggerx.core.session.NameQuery;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.stream.Collectors;
+
+/**
+ * Searches the loaded classes of a session, and optionally their methods, from the session's
+ * {@link ClassIndex}. Class names are matched in memory; the methods of matched classes are fetched
+ * from the JVM the first time a search filters on them and answered from the index afterwards.
+ *
+ * @author ouwu
+ */
+@Slf4j
+public class ClassSearch {
+    /**
+     * 按方法名过滤时最多检查的类数，避免宽泛的类名条件触发大量Methods查询
+     */
+    private static final int MAX_METHOD_CANDIDATES = 2000;
+
+    private ClassSearch() {
+    }
+
+    /**
+     * Searches classes by name, and by method name when a method query is given.
+     *
+     * @param session the debug session
+     * @param classQuery the class name query
+     * @param methodQuery the method name query, or null to match classes only
+     * @param limit the maximum number of classes to return
+     * @param timeoutMillis how long to wait for methods not fetched yet
+     * @return the matching classes
+     */
+    public static Result search(DebugSession session, NameQuery classQuery, NameQuery methodQuery, int limit,
+                                long timeoutMillis) {
+        ClassIndex index = session.getClassIndex();
+        if (methodQuery == null) {
+            List<ClassIndex.ClassMatch> classes = index.search(classQuery, limit + 1);
+            boolean truncated = classes.size() > limit;
+            List<Hit> hits = classes.stream().limit(limit).map(c -> new Hit(c, null)).collect(Collectors.toList());
+            return new Result(hits, truncated, false);
+        }
+
+        List<ClassIndex.ClassMatch> candidates = index.search(classQuery, MAX_METHOD_CANDIDATES);
+        List<Long> referenceTypeIds = candidates.stream().map(ClassIndex.ClassMatch::getId).collect(Collectors.toList());
+        boolean incomplete = false;
+        try {
+            ClassIndexLoader.fetchMethods(session, referenceTypeIds).get(timeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            // 超时的类不出现在结果中，下次检索时回复多半已到达
+            incomplete = true;
+        } catch (ExecutionException e) {
+            incomplete = true;
+            log.warn("[ClassSearch] Failed to fetch methods: {}", e.getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            incomplete = true;
+        }
+
+        List<Hit> hits = new ArrayList<>();
+        boolean truncated = candidates.size() >= MAX_METHOD_CANDIDATES;
+        for (ClassIndex.ClassMatch candidate : candidates) {
+            List<ClassIndex.MethodInfo> methods = index.methods(candidate.getId(), methodQuery);
+            if (methods == null || methods.isEmpty()) {
+                continue;
+            }
+            if (hits.size() == limit) {
+                truncated = true;
+                break;
+            }
+            hits.add(new Hit(candidate, methods));
+        }
+        return new Result(hits, truncated, incomplete);
+    }
+
+    /**
+     * A matched class, with its matching methods when the search filtered on methods.
+     */
+    @Getter
+    @AllArgsConstructor
+    public static final class Hit {
+        private final ClassIndex.ClassMatch type;
+        private final List<ClassIndex.MethodInfo> methods;
+    }
+
+    @Getter
+    @AllArgsConstructor
+    public static final class Result {
+        private final List<Hit> hits;
+        /**
+         * 结果超过limit或候选类数上限
+         */
+        private final boolean truncated;
+        /**
+         * 部分类的方法未能在超时前获取
+         */
+        private final boolean incomplete;
+    }
+}
@@ -0,0 +1,180 @@
+package io.debuggerx.core.service;
+
+import io.debuggerx.common.config.DebuggerConfig;
+import io.debuggerx.common.enums.SlowClientPolicy;
+import io.debuggerx.core.metrics.ChannelTraffic;
+import io.debuggerx.core.metrics.ProxyMetrics;
+import io.debuggerx.core.session.DebugSession;
+import io.debuggerx.core.session.SessionManager;
+import io.debuggerx.protocol.packet.JdwpPacket;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelOutboundBuffer;
+import io.netty.util.AttributeKey;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Keeps a slow debugger from stalling the JVM pipeline.
+ * <p>
+ * Every write from the JVM side to a debugger is admitted here first. While the debugger's write
+ * buffer is below its high watermark the write always goes through. Above it, the configured
+ * {@link SlowClientPolicy} decides: pause reading from the JVM until the debugger drains below its
+ * low watermark, drop events that do not suspend any thread, or disconnect the debugger. Whatever
+ * the policy, a debugger whose queued bytes exceed {@link DebuggerConfig#getDebuggerMaxPendingBytes()}
+ * is disconnected so the proxy cannot run out of memory.
+ *
+ * @author ouwu
+ */
+@Slf4j
+public class DebuggerBackpressure {
+    private static final DebuggerBackpressure INSTANCE = new DebuggerBackpressure();
+    /**
+     * 已因写不过来而关闭的调试器，避免关闭完成前重复处理
+     */
+    private static final AttributeKey<Boolean> DISCONNECTING = AttributeKey.valueOf("debuggerx.slowClientDisconnecting");
+    /**
+     * Event.Composite中suspendPolicy为NONE
+     */
+    private static final byte SUSPEND_POLICY_NONE = 0;
+
+    private final SessionManager sessionManager = SessionManager.getInstance();
+    private final ProxyMetrics metrics = ProxyMetrics.getInstance();
+
+    private DebuggerBackpressure() {
+    }
+
+    public static DebuggerBackpressure getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Decides whether a message from the JVM may be queued on a debugger channel.
+     *
+     * @param session the session the debugger belongs to
+     * @param debuggerChannel the debugger to write to
+     * @param essential false for messages the debugger can afford to miss (see {@link #isEssential(JdwpPacket)})
+     * @return true if the message should be written
+     */
+    public boolean admit(DebugSession session, Channel debuggerChannel, boolean essential) {
+        if (debuggerChannel.isWritable()) {
+            return true;
+        }
+        if (debuggerChannel.hasAttr(DISCONNECTING)) {
+            return false;
+        }
+        DebuggerConfig config = sessionManager.getConfig();
+        long pendingBytes = pendingBytes(debuggerChannel);
+        if (pendingBytes >= config.getDebuggerMaxPendingBytes()) {
+            disconnect(debuggerChannel, "pending bytes " + pendingBytes + " over limit " + config.getDebuggerMaxPendingBytes());
+            return false;
+        }
+        switch (config.getSlowClientPolicy()) {
+            case DISCONNECT:
+                disconnect(debuggerChannel, "write buffer above high watermark");
+                return false;
+            case DROP_EVENTS:
+                if (essential) {
+                    return true;
+                }
+                ChannelTraffic traffic = metrics.trafficOf(debuggerChannel);
+                if (traffic != null) {
+                    traffic.incrementEventsDropped();
+                }
+                return false;
+            case PAUSE_JVM_READ:
+            default:
+                pauseJvmRead(session, debuggerChannel);
+                return true;
+        }
+    }
+
+    /**
+     * Decides whether the next piece of a reply that is already partly written to a debugger may be
+     * queued. The rest of the reply cannot be dropped without corrupting the debugger's stream, so
+     * above the high watermark reads from the JVM are paused whatever the policy (the
+     * {@link SlowClientPolicy#DISCONNECT} policy disconnects instead), and a debugger over
+     * {@link DebuggerConfig#getDebuggerMaxPendingBytes()} is disconnected.
+     *
+     * @param session the session the debugger belongs to
+     * @param debuggerChannel the debugger receiving the reply
+     * @return true if the piece should be written, false if the debugger is being disconnected
+     */
+    public boolean admitContinuation(DebugSession session, Channel debuggerChannel) {
+        if (debuggerChannel.isWritable()) {
+            return true;
+        }
+        if (debuggerChannel.hasAttr(DISCONNECTING)) {
+            return false;
+        }
+        DebuggerConfig config = sessionManager.getConfig();
+        long pendingBytes = pendingBytes(debuggerChannel);
+        if (pendingBytes >= config.getDebuggerMaxPendingBytes()) {
+            disconnect(debuggerChannel, "pending bytes " + pendingBytes + " over limit " + config.getDebuggerMaxPendingBytes());
+            return false;
+        }
+        if (config.getSlowClientPolicy() == SlowClientPolicy.DISCONNECT) {
+            disconnect(debuggerChannel, "write buffer above high watermark");
+            return false;
+        }
+        pauseJvmRead(session, debuggerChannel);
+        return true;
+    }
+
+    /**
+     * Replies are always essential; an event is essential when it suspends threads, since the debugger
+     * must see it to resume them.
+     *
+     * @param packet a packet received from the JVM
+     * @return true if the packet must not be dropped for a slow debugger
+     */
+    public boolean isEssential(JdwpPacket packet) {
+        return !packet.getHeader().isCommand() || packet.dataLength() == 0 || packet.dataByte(0) != SUSPEND_POLICY_NONE;
+    }
+
+    /**
+     * Called when a debugger's writability changes: counts stalls and releases the JVM read pause
+     * once the debugger has drained below its low watermark.
+     *
+     * @param debuggerChannel the debugger channel
+     */
+    public void writabilityChanged(Channel debuggerChannel) {
+        if (!debuggerChannel.isWritable()) {
+            ChannelTraffic traffic = metrics.trafficOf(debuggerChannel);
+            if (traffic != null) {
+                traffic.incrementStalls();
+            }
+            return;
+        }
+        DebugSession session = sessionManager.sessionOf(debuggerChannel);
+        if (session != null) {
+            session.resumeJvmRead(debuggerChannel);
+        }
+    }
+
+    private void pauseJvmRead(DebugSession session, Channel debuggerChannel) {
+        if (session.pauseJvmRead(debuggerChannel)) {
+            log.debug("[Backpressure] Debugger {} above high watermark, pausing JVM reads", debuggerChannel);
+            ChannelTraffic traffic = metrics.trafficOf(debuggerChannel);
+            if (traffic != null) {
+                traffic.incrementJvmReadPauses();
+            }
+        }
+        // 暂停前调试器可能已回落到低水位，可写事件已错过，这里补一次检查
+        if (debuggerChannel.isWritable() || !debuggerChannel.isActive()) {
+            session.resumeJvmRead(debuggerChannel);
+        }
+    }
+
+    private void disconnect(Channel debuggerChannel, String reason) {
+        if (debuggerChannel.attr(DISCONNECTING).setIfAbsent(Boolean.TRUE) != null) {
+            return;
+        }
+        log.warn("[Backpressure] Disconnecting slow debugger {}: {}", debuggerChannel, reason);
+        metrics.recordSlowClientDisconnect();
+        debuggerChannel.close();
+    }
+
+    private static long pendingBytes(Channel channel) {
+        ChannelOutboundBuffer outboundBuffer = channel.unsafe().outboundBuffer();
+        return outboundBuffer == null ? 0 : outboundBuffer.totalPendingWriteBytes();
+    }
+}
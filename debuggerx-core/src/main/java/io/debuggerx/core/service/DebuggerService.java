@@ -7,24 +7,30 @@ import io.debuggerx.core.processor.CommandProcessor;
 import io.debuggerx.core.processor.registry.CommandProcessorRegistry;
 import io.debuggerx.core.processor.registry.EventProcessorRegistry;
 import io.debuggerx.core.session.DebugSession;
+import io.debuggerx.core.session.EventRouteTable;
+import io.debuggerx.core.session.InFlightRequest;
+import io.debuggerx.core.session.InFlightRequestTable;
+import io.debuggerx.core.session.ReplyCache;
 import io.debuggerx.core.session.SessionManager;
 import io.debuggerx.protocol.enums.CommandIdentifier;
+import io.debuggerx.protocol.packet.JdwpFrames;
+import io.debuggerx.protocol.packet.JdwpHeader;
 import io.debuggerx.protocol.packet.JdwpPacket;
 import io.debuggerx.protocol.packet.PacketSource;
+import io.netty.buffer.ByteBuf;
 import io.netty.channel.Channel;
+import io.netty.util.concurrent.FastThreadLocal;
 import lombok.extern.slf4j.Slf4j;
-import org.apache.commons.lang3.tuple.Pair;
 
 import java.nio.ByteBuffer;
 import java.util.Collections;
 import java.util.List;
 import java.util.Objects;
-import java.util.Set;
-import java.util.stream.Collectors;
 
 /**
  * Core debugging service that manages communication between the JVM and multiple debugger clients.
- * Handles packet routing, request ID mapping, and event broadcasting to all connected debuggers.
+ * Handles packet routing, request ID mapping, and event delivery to the debuggers that own or
+ * subscribe to each event request.
  * Implements singleton pattern for global access across the proxy.
  *
  * @author ouwu
@@ -33,6 +39,15 @@ import java.util.stream.Collectors;
 public class DebuggerService {
 
     private static volatile DebuggerService instance;
+    /**
+     * 解析路径上查询在途命令复用的视图，每个事件循环一个
+     */
+    private static final FastThreadLocal<InFlightRequest> REPLY_VIEW = new FastThreadLocal<InFlightRequest>() {
+        @Override
+        protected InFlightRequest initialValue() {
+            return new InFlightRequest();
+        }
+    };
     private final SessionManager sessionManager = SessionManager.getInstance();
 
     private final EventProcessorRegistry eventProcessors = new EventProcessorRegistry();
@@ -55,27 +70,55 @@ public class DebuggerService {
         return instance;
     }
 
-    public List<PacketSource> handlePacket(PacketSource packetSource, JdwpPacket packet, DebugSession session) {
-        Pair<Integer, PacketSource> origin = session.getOriginIdByNewId(packet.getHeader().getId());
+    /**
+     * Decides whether a command frame must be parsed into a {@link JdwpPacket} or can be forwarded as-is.
+     * Only commands whose command or reply has a registered processor, cacheable queries and the
+     * dispose command (which the proxy intercepts) need full parsing.
+     *
+     * @param frame the raw command frame
+     * @return true if the frame needs full parsing
+     */
+    public boolean requiresParsing(ByteBuf frame) {
+        byte commandSet = JdwpFrames.commandSet(frame);
+        byte command = JdwpFrames.command(frame);
+        return commandProcessors.hasProcessor(commandSet, command)
+                || (ReplyCache.isCacheable(commandSet, command) && sessionManager.getConfig().getReplyCacheMaxBytes() > 0)
+                || (commandSet == CommandIdentifier.DISPOSE_COMMAND.getCommandSetId()
+                    && command == CommandIdentifier.DISPOSE_COMMAND.getCommandId());
+    }
 
-        return Objects.isNull(origin)
-                ? handleNewPacket(packetSource, packet, session)
-                : handleResponsePacket(packet, origin);
+    public List<PacketSource> handlePacket(PacketSource packetSource, JdwpPacket packet, DebugSession session) {
+        if (!packet.getHeader().isCommand()) {
+            // 回复包: 释放在途命令并路由回原始调试器，代理内部请求的回复无需转发
+            InFlightRequest request = REPLY_VIEW.get();
+            PacketSource origin = session.removeOriginLink(packet.getHeader().getId(), request)
+                    ? session.getOriginSource(request) : null;
+            return Objects.isNull(origin)
+                    ? Collections.emptyList()
+                    : handleResponsePacket(packet, request.getOriginId(), origin);
+        }
+        return handleNewPacket(packetSource, packet, session);
     }
 
     private List<PacketSource> handleNewPacket(PacketSource source, JdwpPacket packet, DebugSession session) {
-        // 来源数据包不存在 判断当前数据包是否是特殊事件
-        int newId = session.getNewIdAndSaveOriginLink(packet, source);
-        packet.getHeader().setId(newId);
-        cacheRequestId(source, packet);
+        // 调试器命令需要分配全局唯一id; JVM事件包不会被回复，保留原id即可
+        if (source.getSourceType() == ConnectionType.DEBUGGER_PROXY) {
+            JdwpHeader header = packet.getHeader();
+            // 可缓存的查询也保留命令包，回复到达时作为缓存key
+            boolean retainData = commandProcessors.requiresCommandData(header.getCommandSet(), header.getCommand())
+                    || (session.getReplyCache().isEnabled() && ReplyCache.isCacheable(header.getCommandSet(), header.getCommand()));
+            int newId = session.getNewIdAndSaveOriginLink(packet, source.getChannel(), retainData);
+            packet.getHeader().setId(newId);
+        }
+        cacheRequestId(source, packet, session);
 
         return extractEventSources(packet, session);
     }
 
-    private List<PacketSource> handleResponsePacket(JdwpPacket packet, Pair<Integer, PacketSource> origin) {
+    private List<PacketSource> handleResponsePacket(JdwpPacket packet, int originId, PacketSource origin) {
         // 来源数据包存在 即当前数据包为回复包
-        packet.getHeader().setId(origin.getLeft());
-        return Collections.singletonList(origin.getRight());
+        packet.getHeader().setId(originId);
+        return Collections.singletonList(origin);
     }
 
     private List<PacketSource> extractEventSources(JdwpPacket packet, DebugSession session) {
@@ -83,11 +126,7 @@ public class DebuggerService {
             return Collections.emptyList();
         }
 
-        return packet.getRequestIds().stream()
-                .map(session::findSourceChannelByRequestId)
-                .filter(Objects::nonNull)
-                .flatMap(Set::stream)
-                .collect(Collectors.toList());
+        return session.findEventTargets(packet.getRequestIds());
     }
 
 
@@ -98,9 +137,10 @@ public class DebuggerService {
                 session.setHandshakeCompleted(true);
                 break;
             case DEBUGGER_PROXY:
-                DebugSession debugSession = sessionManager.findJvmServerSession();
-                debugSession.addDebugger(channel);
-                log.info("[DebuggerHandShake] Debugger register to jvm server: {}", ChannelUtils.getDebugChannelId(channel));
+                DebugSession debugSession = sessionManager.selectSession(channel);
+                debugSession.addDebugger(channel, sessionManager.getConfig().getEventDelivery());
+                log.info("[DebuggerHandShake] Debugger {} register to jvm server session {} ({})",
+                        ChannelUtils.getDebugChannelId(channel), debugSession.getSessionId(), debugSession.getTarget());
                 break;
             default:
                 break;
@@ -108,7 +148,11 @@ public class DebuggerService {
     }
 
     public void handleDisconnect(Channel channel, ConnectionType connectionType) {
-        DebugSession jvmServerSession = sessionManager.findJvmServerSession();
+        DebugSession jvmServerSession = sessionManager.sessionOf(channel);
+        if (jvmServerSession == null) {
+            // 握手前断开，或会话已随JVM断开而移除
+            return;
+        }
         switch (connectionType) {
             case JVM_SERVER:
                 // 被调试程序断开，关闭整个会话
@@ -126,65 +170,75 @@ public class DebuggerService {
     }
 
     /**
-     * Caches request IDs from JDWP packets for event routing.
-     * Only event-related commands contain request IDs (e.g., EventRequest.Set, EventRequest.Clear).
-     * Request IDs are broadcast to all connected debugger clients for proper event distribution.
+     * Runs the processor of a parsed packet and updates event routing with the request IDs it found.
+     * The debugger whose {@code EventRequest.Set} created a request receives its events;
+     * {@code EventRequest.Clear} removes the request from the routing index.
      *
      * @param packetSource the packet source (JVM or debugger client)
      * @param packet the JDWP packet to process
      */
     public void cacheRequestId(PacketSource packetSource, JdwpPacket packet) {
-        // 处理回复包的命令集映射
-        if (!packet.getHeader().isCommand()) {
-            mapResponseCommand(packet);
+        DebugSession session = sessionManager.sessionOf(packetSource.getChannel());
+        if (session != null) {
+            cacheRequestId(packetSource, packet, session);
         }
+    }
 
-        // 获取命令处理器
-        CommandIdentifier commandId = CommandIdentifier.of(packet.getHeader());
-        CommandProcessor processor = commandProcessors.getProcessor(commandId);
+    private void cacheRequestId(PacketSource packetSource, JdwpPacket packet, DebugSession session) {
+        // 处理回复包的命令集映射
+        InFlightRequest request = packet.getHeader().isCommand() ? null : mapResponseCommand(packet, session);
+        // 处理器可能重入本方法并覆盖复用的视图，先取出来源slot
+        int slot = request == null ? InFlightRequestTable.NO_SLOT : request.getSlot();
+
+        // 获取命令处理器，代理内部命令的回复另有处理器
+        CommandProcessor processor = request != null && request.isInternal()
+                ? commandProcessors.getInternalReplyProcessor(packet.getHeader())
+                : commandProcessors.getProcessor(packet.getHeader());
         if (processor == null) {
             // 无需处理
             return;
         }
 
         // 执行命令处理
-        ByteBuffer buffer = ByteBuffer.wrap(packet.getData());
-        List<Integer> requestIds = processor.process(buffer, packet);
+        ByteBuffer buffer = packet.dataBuffer();
+        List<Integer> requestIds = processor.process(buffer, packet, session);
         packet.setRequestIds(requestIds);
 
         // 缓存结果
-        cacheRequestIds(packetSource, packet, requestIds);
+        cacheRequestIds(packetSource, packet, slot, requestIds, session);
     }
 
-    private void mapResponseCommand(JdwpPacket packet) {
-        DebugSession session = SessionManager.getInstance().findJvmServerSession();
-        JdwpPacket originPacket = session.findPacketByNewId(packet.getHeader().getId());
+    private InFlightRequest mapResponseCommand(JdwpPacket packet, DebugSession session) {
+        InFlightRequest request = REPLY_VIEW.get();
 
-        // Guard against null for unexpected cases
-        if (originPacket == null) {
-            log.warn("[mapResponseCommand] No origin packet found for ID {}, cannot map command",
+        // Guard against null for unexpected cases (reply of an expired or orphaned command)
+        if (!session.findInFlightRequest(packet.getHeader().getId(), request)) {
+            log.warn("[mapResponseCommand] No in-flight command found for ID {}, cannot map command",
                 packet.getHeader().getId());
-            return;
+            return null;
         }
 
-        packet.getHeader().setCommandSet(originPacket.getHeader().getCommandSet());
-        packet.getHeader().setCommand(originPacket.getHeader().getCommand());
+        packet.getHeader().setCommandSet(request.getCommandSet());
+        packet.getHeader().setCommand(request.getCommand());
+        return request;
     }
 
-    private void cacheRequestIds(PacketSource source, JdwpPacket packet, List<Integer> requestIds) {
+    private void cacheRequestIds(PacketSource source, JdwpPacket packet, int slot, List<Integer> requestIds,
+                                 DebugSession session) {
         if (CollectionUtils.isEmpty(requestIds)) {
             return;
         }
 
-        DebugSession session = sessionManager.findJvmServerSession();
-
-        // ALL JDWP events are global to the JVM and should be broadcast to ALL clients
-        // Register each requestId for ALL connected debugger clients
-        requestIds.forEach(id -> {
-            session.getDebuggerChannels().values().forEach(channel -> {
-                PacketSource clientSource = new PacketSource(source.getSourceType(), channel);
-                session.cacheRequestIdSourceChannel(id, clientSource, packet);
-            });
-        });
+        JdwpHeader header = packet.getHeader();
+        EventRouteTable routes = session.getEventRoutes();
+        if (!header.isCommand()) {
+            // EventRequest.Set的回复: 发出命令的调试器拥有新的requestId，代理内部请求无人接收
+            if (slot != InFlightRequestTable.NO_SLOT) {
+                requestIds.forEach(id -> routes.subscribe(id, slot));
+            }
+        } else if (source.getSourceType() == ConnectionType.DEBUGGER_PROXY
+                && CommandIdentifier.of(header) == CommandIdentifier.CLEAR_EVENT_REQUEST_COMMAND) {
+            requestIds.forEach(routes::removeRequest);
+        }
     }
 }
\ No newline at end of file
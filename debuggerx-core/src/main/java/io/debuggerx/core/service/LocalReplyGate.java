@@ -0,0 +1,130 @@
+package io.debuggerx.core.service;
+
+import io.netty.channel.Channel;
+import io.netty.util.AttributeKey;
+import io.netty.util.ReferenceCountUtil;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayDeque;
+import java.util.Queue;
+
+/**
+ * Keeps replies the proxy answers itself out of a reply that is being streamed to the same debugger.
+ * <p>
+ * A streamed reply is written as its header followed by chunks as they arrive from the JVM, while
+ * local replies (from {@code VmInfo}, the class index or the reply cache) are written from the
+ * debugger's own reads. A local reply written between two chunks would land inside the frame, so
+ * while a stream is open on a debugger its local replies are held and written after the last chunk.
+ * <p>
+ * All state is touched on the debugger channel's event loop only. Stream writes from the JVM side
+ * that are not on that loop are handed to it in order, like Netty's own writes, so the header,
+ * chunks and held replies keep their order without locking.
+ *
+ * @author ouwu
+ */
+@Slf4j
+public class LocalReplyGate {
+    private static final LocalReplyGate INSTANCE = new LocalReplyGate();
+    private static final AttributeKey<Gate> GATE = AttributeKey.valueOf("debuggerx.localReplyGate");
+
+    private LocalReplyGate() {
+    }
+
+    public static LocalReplyGate getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Writes the header of a streamed reply and holds local replies from now on.
+     *
+     * @param debuggerChannel the debugger receiving the reply
+     * @param header the rewritten reply header; ownership passes to this method
+     */
+    public void openStream(Channel debuggerChannel, Object header) {
+        runOnLoop(debuggerChannel, () -> {
+            gateOf(debuggerChannel).streaming = true;
+            debuggerChannel.writeAndFlush(header);
+        });
+    }
+
+    /**
+     * Ends a streamed reply after its last chunk was written, or when the rest of it is dropped,
+     * and writes the local replies held meanwhile.
+     *
+     * @param debuggerChannel the debugger that received the reply
+     */
+    public void closeStream(Channel debuggerChannel) {
+        runOnLoop(debuggerChannel, () -> {
+            Gate gate = debuggerChannel.attr(GATE).get();
+            if (gate == null) {
+                return;
+            }
+            gate.streaming = false;
+            if (gate.held.isEmpty()) {
+                return;
+            }
+            log.debug("[LocalReplyGate] Writing {} local replies held during streamed reply to {}",
+                    gate.held.size(), debuggerChannel);
+            Object reply;
+            while ((reply = gate.held.poll()) != null) {
+                debuggerChannel.write(reply);
+            }
+            debuggerChannel.flush();
+        });
+    }
+
+    /**
+     * Writes a reply answered by the proxy, holding it while a streamed reply is open on the channel.
+     * Called on the debugger channel's event loop.
+     *
+     * @param debuggerChannel the debugger that sent the command
+     * @param reply the reply frame or packet; ownership passes to this method
+     */
+    public void writeLocalReply(Channel debuggerChannel, Object reply) {
+        Gate gate = debuggerChannel.attr(GATE).get();
+        if (gate == null || !gate.streaming) {
+            debuggerChannel.writeAndFlush(reply);
+            return;
+        }
+        if (!debuggerChannel.isActive()) {
+            ReferenceCountUtil.release(reply);
+            return;
+        }
+        gate.held.add(reply);
+    }
+
+    private static Gate gateOf(Channel debuggerChannel) {
+        Gate existing = debuggerChannel.attr(GATE).get();
+        if (existing != null) {
+            return existing;
+        }
+        Gate gate = new Gate();
+        debuggerChannel.attr(GATE).set(gate);
+        // 回复流未结束就断开时释放暂存的回复
+        debuggerChannel.closeFuture().addListener(future -> gate.releaseHeld());
+        return gate;
+    }
+
+    private static void runOnLoop(Channel channel, Runnable task) {
+        if (channel.eventLoop().inEventLoop()) {
+            task.run();
+        } else {
+            channel.eventLoop().execute(task);
+        }
+    }
+
+    /**
+     * 调试器channel上的回复流状态，仅在其事件循环上访问
+     */
+    private static final class Gate {
+        private final Queue<Object> held = new ArrayDeque<>();
+        private boolean streaming;
+
+        private void releaseHeld() {
+            Object reply;
+            while ((reply = held.poll()) != null) {
+                ReferenceCountUtil.release(reply);
+            }
+        }
+    }
+}
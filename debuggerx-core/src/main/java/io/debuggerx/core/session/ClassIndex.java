@@ -0,0 +1,717 @@
+package io.debuggerx.core.session;
+
+import io.debuggerx.common.constants.JdwpConstants;
+import io.debuggerx.protocol.jdwp.IdSizes;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Predicate;
+
+/**
+ * Proxy-side index of the classes loaded in the JVM of a session, so that
+ * {@code VirtualMachine.ClassesBySignature}, {@code AllClasses} and {@code AllClassesWithGeneric} can be
+ * answered without a JVM round trip (the latter is several megabytes on large applications and is
+ * sent by every IDE on attach).
+ * <p>
+ * The index is seeded once with {@code AllClassesWithGeneric}, after the proxy's own
+ * {@code CLASS_PREPARE} and {@code CLASS_UNLOAD} requests are installed, and then follows those
+ * events. {@code CLASS_PREPARE} carries no generic signature: it is fetched for each new class with
+ * {@code ReferenceType.SignatureWithGeneric}, and {@code AllClassesWithGeneric} is only answered
+ * locally while no fetch is outstanding. {@code CLASS_UNLOAD} carries only the signature; when
+ * several loaded classes share it, the survivors are re-queried with {@code ClassesBySignature}.
+ * <p>
+ * The JVM sends no {@code CLASS_PREPARE} for array classes, nor for classes loaded but not yet
+ * prepared. A {@code ClassesBySignature} lookup that misses, or for an array signature, therefore
+ * goes to the JVM. {@code AllClasses} is answered from the index as JDI itself would from its own
+ * class list, and each local answer starts a background {@code AllClassesWithGeneric} resync (one at
+ * a time) that adds the classes created since, so the next answer includes them.
+ * <p>
+ * Class status is the one reported when the class was seeded or prepared; JDI re-queries the status
+ * of classes not yet known to be initialized. Signatures are interned in a {@link Utf8Arena} and
+ * indexed by a {@link SignatureTrie}; the arena is rebuilt once more classes were unloaded than
+ * are loaded. The network side lives in {@code ClassIndexLoader}.
+ * <p>
+ * The index also serves the class search endpoint: prefix queries walk the trie, substring and glob
+ * queries scan the interned signatures. The methods of a class are only fetched
+ * ({@code ReferenceType.Methods}) when a search filters on method names, and kept until the class is
+ * unloaded or redefined.
+ *
+ * @author ouwu
+ */
+public class ClassIndex {
+    /**
+     * 泛型签名尚未获取
+     */
+    private static final int UNKNOWN = -1;
+    /**
+     * 卸载过的类少于此数时不重建arena
+     */
+    private static final int MIN_COMPACTION_UNLOADS = 1024;
+
+    private enum State {
+        /**
+         * 未启动或已放弃，不应答任何查询
+         */
+        IDLE,
+        /**
+         * 已发出事件请求与种子查询，等待种子回复
+         */
+        SEEDING,
+        READY
+    }
+
+    private Utf8Arena arena = new Utf8Arena();
+    private SignatureTrie<ClassEntry> trie = new SignatureTrie<>(arena);
+    private final Map<Long, ClassEntry> byId = new HashMap<>();
+
+    private State state = State.IDLE;
+    private boolean started;
+    private int seedPacketId;
+    /**
+     * 是否有在途的AllClassesWithGeneric重新同步查询，及其数据包id
+     */
+    private boolean resyncing;
+    private int resyncPacketId;
+    /**
+     * 代理自身EventRequest.Set的数据包id，及JVM分配的requestId
+     */
+    private final Set<Integer> eventRequestPackets = new HashSet<>();
+    private final Set<Integer> eventRequestIds = new HashSet<>();
+    /**
+     * 在途SignatureWithGeneric查询: 数据包id -> referenceTypeID
+     */
+    private final Map<Integer, Long> genericQueries = new HashMap<>();
+    /**
+     * 在途ClassesBySignature刷新查询: 数据包id -> 签名
+     */
+    private final Map<Integer, byte[]> refreshQueries = new HashMap<>();
+    /**
+     * 种子回复前收到的CLASS_UNLOAD，种子应用后再处理
+     */
+    private final List<byte[]> deferredUnloads = new ArrayList<>();
+    /**
+     * 在途ReferenceType.Methods查询: 数据包id -> referenceTypeID，及等待其结果的检索
+     */
+    private final Map<Integer, Long> methodQueries = new HashMap<>();
+    private final Map<Long, CompletableFuture<Void>> pendingMethods = new HashMap<>();
+    private int missingGenerics;
+    private long unloadsSinceCompaction;
+    private long localReplyCount;
+
+    /**
+     * Marks the index as being seeded; called once before the proxy sends its seed queries.
+     *
+     * @return false if seeding was already started
+     */
+    public synchronized boolean startSeeding() {
+        if (started) {
+            return false;
+        }
+        started = true;
+        state = State.SEEDING;
+        return true;
+    }
+
+    public synchronized void awaitEventRequest(int packetId) {
+        eventRequestPackets.add(packetId);
+    }
+
+    /**
+     * Records the request ID the JVM assigned to one of the proxy's event requests.
+     *
+     * @param packetId the packet ID of the {@code EventRequest.Set} reply
+     * @param requestId the assigned request ID
+     * @return true if the request was the index's own
+     */
+    public synchronized boolean eventRequestReplied(int packetId, int requestId) {
+        if (!eventRequestPackets.remove(packetId)) {
+            return false;
+        }
+        eventRequestIds.add(requestId);
+        return true;
+    }
+
+    /**
+     * @param requestIds the request IDs of a composite event
+     * @return true if every request ID belongs to the index, so nobody else receives the event
+     */
+    public synchronized boolean ownsAll(List<Integer> requestIds) {
+        return requestIds != null && !requestIds.isEmpty() && eventRequestIds.containsAll(requestIds);
+    }
+
+    public synchronized void awaitSeed(int packetId) {
+        seedPacketId = packetId;
+    }
+
+    public synchronized boolean isSeedReply(int packetId) {
+        return state == State.SEEDING && packetId == seedPacketId;
+    }
+
+    /**
+     * Loads the {@code AllClassesWithGeneric} reply and applies the unloads received meanwhile.
+     *
+     * @param data the reply data
+     * @param idSizes the JVM ID sizes
+     * @return signatures whose loaded classes must be re-queried
+     */
+    public synchronized List<byte[]> seed(ByteBuffer data, IdSizes idSizes) {
+        merge(data, idSizes);
+        state = State.READY;
+        List<byte[]> refresh = new ArrayList<>();
+        for (byte[] signature : deferredUnloads) {
+            if (classUnloaded(signature)) {
+                refresh.add(signature);
+            }
+        }
+        deferredUnloads.clear();
+        return refresh;
+    }
+
+    /**
+     * Claims the background resync after a local {@code AllClasses} answer.
+     *
+     * @return true if the caller must send the resync query, false if one is in flight or the index is not ready
+     */
+    public synchronized boolean startResync() {
+        if (state != State.READY || resyncing) {
+            return false;
+        }
+        resyncing = true;
+        return true;
+    }
+
+    public synchronized void awaitResync(int packetId) {
+        resyncPacketId = packetId;
+    }
+
+    public synchronized boolean isResyncReply(int packetId) {
+        return resyncing && packetId == resyncPacketId;
+    }
+
+    /**
+     * Adds the classes of an {@code AllClassesWithGeneric} resync reply that the index does not know:
+     * array classes, and classes loaded without being prepared. Classes unloaded meanwhile were
+     * reported by {@code CLASS_UNLOAD} before the reply, so known classes are never removed.
+     *
+     * @param data the reply data, or null if the query failed
+     * @param idSizes the JVM ID sizes
+     */
+    public synchronized void resynced(ByteBuffer data, IdSizes idSizes) {
+        resyncing = false;
+        if (data != null && state == State.READY) {
+            merge(data, idSizes);
+        }
+    }
+
+    /**
+     * Gives up on the index, e.g. when the JVM rejected a seed or refresh query.
+     */
+    public synchronized void abandon() {
+        state = State.IDLE;
+        resyncing = false;
+        clearClasses();
+        deferredUnloads.clear();
+    }
+
+    /**
+     * Adds a class from a {@code CLASS_PREPARE} event.
+     *
+     * @return true if the class is new and its generic signature must be fetched
+     */
+    public synchronized boolean classPrepared(byte tag, long id, byte[] signature, int status) {
+        if (state == State.IDLE || byId.containsKey(id)) {
+            return false;
+        }
+        add(new ClassEntry(id, tag, status, arena.intern(signature), UNKNOWN), signature);
+        missingGenerics++;
+        return true;
+    }
+
+    public synchronized void awaitGeneric(int packetId, long id) {
+        genericQueries.put(packetId, id);
+    }
+
+    /**
+     * @param packetId the packet ID of a {@code SignatureWithGeneric} reply
+     * @return the reference type it was sent for, or null if not the index's query
+     */
+    public synchronized Long genericQuery(int packetId) {
+        return genericQueries.remove(packetId);
+    }
+
+    /**
+     * Completes a class with its generic signature, or drops it when the JVM no longer knows it.
+     *
+     * @param id the reference type
+     * @param generic the generic signature (empty if none), or null if the query failed
+     */
+    public synchronized void genericSignature(long id, byte[] generic) {
+        ClassEntry entry = byId.get(id);
+        if (entry == null || entry.generic != UNKNOWN) {
+            return;
+        }
+        missingGenerics--;
+        if (generic == null) {
+            remove(entry);
+            return;
+        }
+        entry.generic = arena.intern(generic);
+    }
+
+    /**
+     * Removes the classes of a {@code CLASS_UNLOAD} event.
+     *
+     * @param signature the signature of the unloaded class
+     * @return true if several classes share the signature and the survivors must be re-queried
+     */
+    public synchronized boolean classUnloaded(byte[] signature) {
+        if (state == State.SEEDING) {
+            deferredUnloads.add(signature);
+            return false;
+        }
+        if (state == State.IDLE) {
+            return false;
+        }
+        List<ClassEntry> entries = trie.get(signature);
+        if (entries.size() == 1) {
+            remove(entries.get(0));
+            compactIfNeeded();
+        }
+        return entries.size() > 1;
+    }
+
+    public synchronized void awaitRefresh(int packetId, byte[] signature) {
+        refreshQueries.put(packetId, signature);
+    }
+
+    /**
+     * @param packetId the packet ID of a {@code ClassesBySignature} reply
+     * @return the signature it was sent for, or null if not the index's query
+     */
+    public synchronized byte[] refreshQuery(int packetId) {
+        return refreshQueries.remove(packetId);
+    }
+
+    /**
+     * Keeps only the classes of a signature that the JVM still reports as loaded.
+     *
+     * @param signature the signature that was re-queried
+     * @param data the {@code ClassesBySignature} reply data
+     * @param idSizes the JVM ID sizes
+     */
+    public synchronized void refreshed(byte[] signature, ByteBuffer data, IdSizes idSizes) {
+        Set<Long> loaded = new HashSet<>();
+        int classes = data.getInt();
+        for (int i = 0; i < classes; i++) {
+            data.get();
+            loaded.add(readId(data, idSizes.getReferenceTypeIdSize()));
+            data.getInt();
+        }
+        for (ClassEntry entry : new ArrayList<>(trie.get(signature))) {
+            if (!loaded.contains(entry.id)) {
+                remove(entry);
+            }
+        }
+        compactIfNeeded();
+    }
+
+    /**
+     * Answers a class query locally: {@code ClassesBySignature} when the index knows classes of the
+     * signature, {@code AllClasses} and {@code AllClassesWithGeneric} from every indexed class.
+     *
+     * @param frame the complete command frame
+     * @param idSizes the JVM ID sizes
+     * @param allocator the buffer allocator
+     * @return the reply frame owned by the caller, or null if the query must go to the JVM
+     */
+    public synchronized ByteBuf reply(ByteBuf frame, IdSizes idSizes, ByteBufAllocator allocator) {
+        if (state != State.READY || !refreshQueries.isEmpty() || idSizes == null
+                || frame.getByte(frame.readerIndex() + 9) != JdwpConstants.VIRTUAL_MACHINE_COMMAND_SET) {
+            return null;
+        }
+        int command = frame.getByte(frame.readerIndex() + 10);
+        int id = frame.getInt(frame.readerIndex() + 4);
+        int idSize = idSizes.getReferenceTypeIdSize();
+        ByteBuf reply;
+        switch (command) {
+            case JdwpConstants.CLASSES_BY_SIGNATURE_COMMAND: {
+                int start = frame.readerIndex() + JdwpConstants.HEADER_LENGTH;
+                if (frame.writerIndex() - start < 5 || frame.getInt(start) != frame.writerIndex() - start - 4
+                        || frame.getByte(start + 4) == '[') {
+                    // 数组类没有CLASS_PREPARE事件，索引中可能缺失
+                    return null;
+                }
+                byte[] signature = new byte[frame.getInt(start)];
+                frame.getBytes(start + 4, signature);
+                List<ClassEntry> entries = trie.get(signature);
+                if (entries.isEmpty()) {
+                    // 已加载但尚未准备的类也没有事件，未命中时以JVM为准
+                    return null;
+                }
+                reply = header(allocator, id, entries.size() * (5 + idSize));
+                reply.writeInt(entries.size());
+                for (ClassEntry entry : entries) {
+                    reply.writeByte(entry.tag);
+                    writeId(reply, entry.id, idSize);
+                    reply.writeInt(entry.status);
+                }
+                break;
+            }
+            case JdwpConstants.ALL_CLASSES_COMMAND:
+            case JdwpConstants.ALL_CLASSES_WITH_GENERIC_COMMAND: {
+                boolean withGeneric = command == JdwpConstants.ALL_CLASSES_WITH_GENERIC_COMMAND;
+                if (withGeneric && missingGenerics > 0) {
+                    return null;
+                }
+                reply = header(allocator, id, byId.size() * (64 + idSize));
+                reply.writeInt(byId.size());
+                for (ClassEntry entry : byId.values()) {
+                    reply.writeByte(entry.tag);
+                    writeId(reply, entry.id, idSize);
+                    arena.writeString(entry.signature, reply);
+                    if (withGeneric) {
+                        arena.writeString(entry.generic, reply);
+                    }
+                    reply.writeInt(entry.status);
+                }
+                break;
+            }
+            default:
+                return null;
+        }
+        reply.setInt(reply.readerIndex(), reply.readableBytes());
+        localReplyCount++;
+        return reply;
+    }
+
+    /**
+     * Finds loaded classes by name.
+     *
+     * @param query the class name query
+     * @param max the maximum number of classes to return
+     * @return the matching classes, at most {@code max}; empty unless the index is ready
+     */
+    public synchronized List<ClassMatch> search(NameQuery query, int max) {
+        List<ClassMatch> matches = new ArrayList<>();
+        if (state != State.READY || max <= 0) {
+            return matches;
+        }
+        Predicate<ClassEntry> collect = entry -> {
+            matches.add(new ClassMatch(entry.id, entry.tag, arena.toString(entry.signature)));
+            return matches.size() < max;
+        };
+        if (query.getMode() == NameQuery.Mode.PREFIX) {
+            byte[] pattern = query.getPattern();
+            byte[] prefix = new byte[pattern.length + 1];
+            prefix[0] = 'L';
+            System.arraycopy(pattern, 0, prefix, 1, pattern.length);
+            trie.visitPrefix(prefix, collect);
+            return matches;
+        }
+        for (ClassEntry entry : byId.values()) {
+            // 只检索类与接口，跳过数组与基本类型
+            if (arena.byteAt(entry.signature, 0) == 'L' && arena.matches(entry.signature, 1, 1, query)
+                    && !collect.test(entry)) {
+                break;
+            }
+        }
+        return matches;
+    }
+
+    /**
+     * @param id the reference type
+     * @return true if the methods of the class are known, or the class is not loaded
+     */
+    public synchronized boolean hasMethods(long id) {
+        ClassEntry entry = byId.get(id);
+        return entry == null || entry.methods != null;
+    }
+
+    /**
+     * @param id the reference type
+     * @return the outstanding fetch of the methods of a class, or null if none was sent
+     */
+    public synchronized CompletableFuture<Void> pendingMethods(long id) {
+        return pendingMethods.get(id);
+    }
+
+    /**
+     * Registers a {@code ReferenceType.Methods} query sent for the index.
+     *
+     * @param packetId the packet ID of the query
+     * @param id the reference type
+     * @return completed when the reply has been applied
+     */
+    public synchronized CompletableFuture<Void> awaitMethods(int packetId, long id) {
+        methodQueries.put(packetId, id);
+        return pendingMethods.computeIfAbsent(id, k -> new CompletableFuture<>());
+    }
+
+    /**
+     * @param packetId the packet ID of a {@code ReferenceType.Methods} reply
+     * @return the reference type it was sent for, or null if not the index's query
+     */
+    public synchronized Long methodsQuery(int packetId) {
+        return methodQueries.remove(packetId);
+    }
+
+    /**
+     * Stores the methods of a class.
+     *
+     * @param id the reference type
+     * @param data the {@code ReferenceType.Methods} reply data, or null if the query failed
+     * @param idSizes the JVM ID sizes
+     */
+    public synchronized void methodsReplied(long id, ByteBuffer data, IdSizes idSizes) {
+        ClassEntry entry = byId.get(id);
+        if (entry != null && data != null) {
+            int declared = data.getInt();
+            int[] methods = new int[declared * 2];
+            for (int i = 0; i < declared; i++) {
+                data.position(data.position() + idSizes.getMethodIdSize());
+                methods[i * 2] = arena.intern(readString(data));
+                methods[i * 2 + 1] = arena.intern(readString(data));
+                data.getInt();
+            }
+            entry.methods = methods;
+        }
+        CompletableFuture<Void> pending = pendingMethods.remove(id);
+        if (pending != null) {
+            pending.complete(null);
+        }
+    }
+
+    /**
+     * Lists the methods of a class whose names match a query.
+     *
+     * @param id the reference type
+     * @param query the method name query
+     * @return the matching methods, or null if the methods of the class are not known
+     */
+    public synchronized List<MethodInfo> methods(long id, NameQuery query) {
+        ClassEntry entry = byId.get(id);
+        if (entry == null || entry.methods == null) {
+            return null;
+        }
+        List<MethodInfo> methods = new ArrayList<>();
+        for (int i = 0; i < entry.methods.length; i += 2) {
+            if (arena.matches(entry.methods[i], 0, 0, query)) {
+                methods.add(new MethodInfo(arena.toString(entry.methods[i]), arena.toString(entry.methods[i + 1])));
+            }
+        }
+        return methods;
+    }
+
+    /**
+     * Forgets the methods of redefined classes (redefinition may add or remove methods).
+     *
+     * @param referenceTypeIds the redefined reference types
+     */
+    public synchronized void classesRedefined(Collection<Long> referenceTypeIds) {
+        for (Long id : referenceTypeIds) {
+            ClassEntry entry = byId.get(id);
+            if (entry != null) {
+                entry.methods = null;
+            }
+        }
+    }
+
+    public synchronized boolean isReady() {
+        return state == State.READY;
+    }
+
+    public synchronized int size() {
+        return byId.size();
+    }
+
+    /**
+     * @return the bytes used by interned signatures
+     */
+    public synchronized int getArenaBytes() {
+        return arena.getUsedBytes();
+    }
+
+    public synchronized long getLocalReplyCount() {
+        return localReplyCount;
+    }
+
+    public synchronized void clear() {
+        abandon();
+        eventRequestPackets.clear();
+        eventRequestIds.clear();
+        genericQueries.clear();
+        refreshQueries.clear();
+        methodQueries.clear();
+        // 会话关闭，等待中的检索不再有回复
+        pendingMethods.values().forEach(pending -> pending.complete(null));
+        pendingMethods.clear();
+    }
+
+    /**
+     * 加入AllClassesWithGeneric回复中索引未知的类，已由CLASS_PREPARE加入的类补全泛型签名
+     */
+    private void merge(ByteBuffer data, IdSizes idSizes) {
+        int classes = data.getInt();
+        for (int i = 0; i < classes; i++) {
+            byte tag = data.get();
+            long id = readId(data, idSizes.getReferenceTypeIdSize());
+            byte[] signature = readString(data);
+            byte[] generic = readString(data);
+            int status = data.getInt();
+            ClassEntry known = byId.get(id);
+            if (known == null) {
+                add(new ClassEntry(id, tag, status, arena.intern(signature), arena.intern(generic)), signature);
+            } else if (known.generic == UNKNOWN) {
+                known.generic = arena.intern(generic);
+                missingGenerics--;
+            }
+        }
+    }
+
+    private void add(ClassEntry entry, byte[] signature) {
+        byId.put(entry.id, entry);
+        trie.add(signature, entry);
+    }
+
+    private void remove(ClassEntry entry) {
+        byId.remove(entry.id);
+        trie.remove(signatureBytes(entry), e -> e == entry);
+        if (entry.generic == UNKNOWN) {
+            missingGenerics--;
+        }
+        unloadsSinceCompaction++;
+    }
+
+    /**
+     * arena只追加，卸载的类累计多于存活的类时按存活的类重建
+     */
+    private void compactIfNeeded() {
+        if (unloadsSinceCompaction < MIN_COMPACTION_UNLOADS || unloadsSinceCompaction < byId.size()) {
+            return;
+        }
+        List<ClassEntry> live = new ArrayList<>(byId.values());
+        Utf8Arena oldArena = arena;
+        arena = new Utf8Arena(oldArena.getUsedBytes() / 2);
+        trie = new SignatureTrie<>(arena);
+        byId.clear();
+        for (ClassEntry entry : live) {
+            byte[] signature = signatureBytes(oldArena, entry.signature);
+            int generic = entry.generic == UNKNOWN ? UNKNOWN : arena.intern(signatureBytes(oldArena, entry.generic));
+            ClassEntry copy = new ClassEntry(entry.id, entry.tag, entry.status, arena.intern(signature), generic);
+            if (entry.methods != null) {
+                copy.methods = new int[entry.methods.length];
+                for (int i = 0; i < entry.methods.length; i++) {
+                    copy.methods[i] = arena.intern(signatureBytes(oldArena, entry.methods[i]));
+                }
+            }
+            add(copy, signature);
+        }
+        unloadsSinceCompaction = 0;
+    }
+
+    private void clearClasses() {
+        arena = new Utf8Arena();
+        trie = new SignatureTrie<>(arena);
+        byId.clear();
+        missingGenerics = 0;
+        unloadsSinceCompaction = 0;
+    }
+
+    private byte[] signatureBytes(ClassEntry entry) {
+        return signatureBytes(arena, entry.signature);
+    }
+
+    private static byte[] signatureBytes(Utf8Arena arena, int handle) {
+        return arena.toBytes(handle);
+    }
+
+    private static ByteBuf header(ByteBufAllocator allocator, int id, int estimatedData) {
+        return allocator.buffer(JdwpConstants.HEADER_LENGTH + 4 + estimatedData)
+                .writeInt(0)
+                .writeInt(id)
+                .writeByte(JdwpConstants.FLAG_REPLY_PACKET)
+                .writeShort(0);
+    }
+
+    private static long readId(ByteBuffer data, int size) {
+        long value = 0;
+        for (int i = 0; i < size; i++) {
+            value = value << 8 | (data.get() & 0xFF);
+        }
+        return value;
+    }
+
+    private static void writeId(ByteBuf out, long value, int size) {
+        for (int shift = (size - 1) * 8; shift >= 0; shift -= 8) {
+            out.writeByte((int) (value >>> shift));
+        }
+    }
+
+    private static byte[] readString(ByteBuffer data) {
+        byte[] bytes = new byte[data.getInt()];
+        data.get(bytes);
+        return bytes;
+    }
+
+    /**
+     * 已加载的类，签名与泛型签名为arena句柄
+     */
+    private static final class ClassEntry {
+        private final long id;
+        private final byte tag;
+        private final int status;
+        private final int signature;
+        private int generic;
+        /**
+         * 方法名与签名句柄交替排列，未获取时为null
+         */
+        private int[] methods;
+
+        private ClassEntry(long id, byte tag, int status, int signature, int generic) {
+            this.id = id;
+            this.tag = tag;
+            this.status = status;
+            this.signature = signature;
+            this.generic = generic;
+        }
+    }
+
+    /**
+     * A class found by {@link #search}.
+     */
+    @Getter
+    @AllArgsConstructor
+    public static final class ClassMatch {
+        private final long id;
+        private final byte tag;
+        private final String signature;
+
+        /**
+         * @return the Java name of the class, e.g. {@code com.example.Foo$Bar}
+         */
+        public String getName() {
+            return signature.substring(1, signature.length() - 1).replace('/', '.');
+        }
+    }
+
+    /**
+     * A method of a class found by {@link #methods}.
+     */
+    @Getter
+    @AllArgsConstructor
+    public static final class MethodInfo {
+        private final String name;
+        private final String signature;
+    }
+}
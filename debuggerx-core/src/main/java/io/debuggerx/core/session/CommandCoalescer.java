@@ -0,0 +1,365 @@
+package io.debuggerx.core.session;
+
+import io.debuggerx.protocol.jdwp.IdSizes;
+import io.netty.buffer.ByteBuf;
+import io.netty.util.collection.IntObjectHashMap;
+import io.netty.util.collection.IntObjectMap;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/**
+ * Coalesces identical side-effect-free commands sent by several debuggers at almost the same moment,
+ * e.g. {@code ThreadReference.Frames} from both the IDE and the MCP agent when a breakpoint hits.
+ * <p>
+ * The first command (the leader) is forwarded to the JVM; while it is in flight, identical commands
+ * (same command set, command and data) only record their debugger slot and packet ID. The single reply
+ * is then written to every waiter with its own packet ID.
+ * <p>
+ * The JVM counts how many times it sent each objectID so that {@code VirtualMachine.DisposeObjects}
+ * can free it; a fanned-out objectID would be counted once for several debuggers. Commands whose reply
+ * may carry objectIDs ({@code GetValues}) are therefore coalesced optimistically: if the reply does
+ * contain non-null objects, the waiters' commands are re-issued to the JVM instead.
+ *
+ * @author ouwu
+ */
+public class CommandCoalescer {
+    private static final int REFERENCE_TYPE = 2;
+    private static final int METHOD = 6;
+    private static final int OBJECT_REFERENCE = 9;
+    private static final int STRING_REFERENCE = 10;
+    private static final int THREAD_REFERENCE = 11;
+    private static final int ARRAY_REFERENCE = 13;
+    private static final int STACK_FRAME = 16;
+    private static final int CLASS_OBJECT_REFERENCE = 17;
+    /**
+     * 可合并的命令，按 commandSet << 8 | command 索引
+     */
+    private static final BitSet COALESCABLE = new BitSet(1 << 16);
+    /**
+     * 回复为tagged values、可能包含objectID的命令
+     */
+    private static final BitSet TAGGED_VALUES_REPLY = new BitSet(1 << 16);
+
+    static {
+        // VirtualMachine: ClassesBySignature、AllClasses、AllClassesWithGeneric(只返回referenceTypeID)，
+        // 以及调试器接入时的Version、IDSizes、Capabilities、ClassPaths、CapabilitiesNew
+        coalescable(1, 1, 2, 3, 7, 12, 13, 17, 20);
+        // ReferenceType.GetValues
+        coalescable(REFERENCE_TYPE, 6);
+        // Method.IsObsolete
+        coalescable(METHOD, 4);
+        // ObjectReference: ReferenceType、GetValues、IsCollected
+        coalescable(OBJECT_REFERENCE, 1, 2, 9);
+        // StringReference.Value
+        coalescable(STRING_REFERENCE, 1);
+        // ThreadReference: Name、Status、Frames、FrameCount、SuspendCount、IsVirtual
+        coalescable(THREAD_REFERENCE, 1, 4, 6, 7, 12, 15);
+        // ArrayReference.Length
+        coalescable(ARRAY_REFERENCE, 1);
+        // StackFrame.GetValues
+        coalescable(STACK_FRAME, 1);
+        // ClassObjectReference.ReflectedType
+        coalescable(CLASS_OBJECT_REFERENCE, 1);
+
+        TAGGED_VALUES_REPLY.set(commandKey(REFERENCE_TYPE, 6));
+        TAGGED_VALUES_REPLY.set(commandKey(OBJECT_REFERENCE, 2));
+        TAGGED_VALUES_REPLY.set(commandKey(STACK_FRAME, 1));
+    }
+
+    private final long maxAgeNanos;
+    private final LongSupplier clock;
+    private final Map<CommandKey, CoalescedCommand> byKey = new HashMap<>();
+    private final IntObjectMap<CoalescedCommand> byLeaderId = new IntObjectHashMap<>();
+
+    private long nextSweepAt;
+    private long coalescedCount;
+    private long reissuedCount;
+
+    public CommandCoalescer(long maxAgeMillis) {
+        this(maxAgeMillis, System::nanoTime);
+    }
+
+    /**
+     * @param maxAgeMillis 首个命令超过此时间仍无回复时不再合并，与在途命令过期时间一致
+     * @param clock 纳秒时钟
+     */
+    public CommandCoalescer(long maxAgeMillis, LongSupplier clock) {
+        this.maxAgeNanos = TimeUnit.MILLISECONDS.toNanos(maxAgeMillis);
+        this.clock = clock;
+        this.nextSweepAt = clock.getAsLong() + sweepInterval();
+    }
+
+    private static void coalescable(int commandSet, int... commands) {
+        for (int command : commands) {
+            COALESCABLE.set(commandKey(commandSet, command));
+        }
+    }
+
+    /**
+     * Checks whether identical in-flight instances of a command may share one JVM round trip.
+     * Cacheable metadata queries ({@link ReplyCache#isCacheable}) are side-effect free too.
+     *
+     * @param commandSet the JDWP command set
+     * @param command the JDWP command
+     * @return true if the command has no side effects
+     */
+    public static boolean isCoalescable(int commandSet, int command) {
+        return COALESCABLE.get(commandKey(commandSet, command)) || ReplyCache.isCacheable(commandSet, command);
+    }
+
+    /**
+     * Attaches a command to an identical one in flight, or claims the lead for it. A claimed command
+     * already collects waiters; the caller registers it as in flight, passes its packet ID to
+     * {@link #lead} and only then sends it, so that its reply cannot arrive before it is indexed.
+     *
+     * @param key the command
+     * @param slot the slot of the debugger that sent it
+     * @param originId the packet ID assigned by the debugger
+     * @return the claimed leader, or null if the command joined an in-flight one and must not be forwarded
+     */
+    public synchronized CoalescedCommand joinOrClaim(CommandKey key, int slot, int originId) {
+        long now = clock.getAsLong();
+        if (now - nextSweepAt >= 0) {
+            expire(now);
+        }
+        CoalescedCommand leader = byKey.get(key);
+        if (leader != null && now - leader.sentAt <= maxAgeNanos) {
+            leader.waiters.add(new Waiter(slot, originId));
+            coalescedCount++;
+            return null;
+        }
+        if (leader != null) {
+            // 首个命令迟迟没有回复，后续命令不再等待它
+            byKey.remove(key);
+            unindex(leader);
+        }
+        CoalescedCommand command = new CoalescedCommand(key, now);
+        byKey.put(key, command);
+        return command;
+    }
+
+    /**
+     * Indexes a claimed leader by the packet ID it is sent to the JVM with. Must be called before the
+     * command is written.
+     *
+     * @param command the leader returned by {@link #joinOrClaim}
+     * @param leaderId the packet ID of the command towards the JVM
+     */
+    public synchronized void lead(CoalescedCommand command, int leaderId) {
+        command.leaderId = leaderId;
+        // 认领期间被清理(会话关闭)的命令不再索引
+        if (byKey.get(command.key) == command) {
+            byLeaderId.put(leaderId, command);
+        }
+    }
+
+    /**
+     * Ends coalescing for a leader whose reply has arrived.
+     *
+     * @param leaderId the packet ID of the leader towards the JVM
+     * @return the coalesced command with at least one waiter, or null if nobody joined it
+     */
+    public synchronized CoalescedCommand complete(int leaderId) {
+        CoalescedCommand command = byLeaderId.remove(leaderId);
+        if (command == null) {
+            return null;
+        }
+        byKey.remove(command.key, command);
+        return command.waiters.isEmpty() ? null : command;
+    }
+
+    /**
+     * @param leaderId the packet ID of a leader towards the JVM
+     * @return true if identical commands are waiting for its reply
+     */
+    public synchronized boolean hasWaiters(int leaderId) {
+        CoalescedCommand command = byLeaderId.get(leaderId);
+        return command != null && !command.waiters.isEmpty();
+    }
+
+    /**
+     * Drops the waiters of a debugger that disconnected, before its slot is reused.
+     *
+     * @param slot the slot of the disconnected debugger
+     */
+    public synchronized void removeSlot(int slot) {
+        // 包含尚未发出的已认领命令
+        for (CoalescedCommand command : byKey.values()) {
+            command.waiters.removeIf(waiter -> waiter.slot == slot);
+        }
+    }
+
+    /**
+     * Counts waiters whose command had to be sent to the JVM after all.
+     *
+     * @param count the number of re-issued commands
+     */
+    public synchronized void recordReissued(int count) {
+        reissuedCount += count;
+    }
+
+    public synchronized void clear() {
+        byKey.clear();
+        byLeaderId.clear();
+    }
+
+    public synchronized int size() {
+        return byLeaderId.size();
+    }
+
+    public synchronized long getCoalescedCount() {
+        return coalescedCount;
+    }
+
+    public synchronized long getReissuedCount() {
+        return reissuedCount;
+    }
+
+    /**
+     * 回复丢失(JVM未应答、在途命令过期)的首个命令不会被complete，定期清理
+     */
+    private void expire(long now) {
+        nextSweepAt = now + sweepInterval();
+        byKey.values().removeIf(command -> {
+            if (now - command.sentAt <= maxAgeNanos) {
+                return false;
+            }
+            unindex(command);
+            return true;
+        });
+    }
+
+    /**
+     * 认领后尚未lead的命令没有leaderId索引
+     */
+    private void unindex(CoalescedCommand command) {
+        if (byLeaderId.get(command.leaderId) == command) {
+            byLeaderId.remove(command.leaderId);
+        }
+    }
+
+    private long sweepInterval() {
+        return Math.max(maxAgeNanos / 4, 1);
+    }
+
+    /**
+     * Checks whether a reply must not be fanned out because it carries objectIDs.
+     *
+     * @param key the command the reply answers
+     * @param reply the complete reply frame
+     * @param idSizes the JVM ID sizes
+     * @return true if the waiters' commands must be re-issued
+     */
+    public static boolean carriesObjectIds(CommandKey key, ByteBuf reply, IdSizes idSizes) {
+        if (!TAGGED_VALUES_REPLY.get(commandKey(key.commandSet(), key.command()))) {
+            return false;
+        }
+        if (idSizes == null) {
+            return true;
+        }
+        // header 11字节，随后 int values + values个tagged value
+        int index = reply.readerIndex() + 11;
+        int end = reply.writerIndex();
+        if (end - index < 4) {
+            return false;
+        }
+        int values = reply.getInt(index);
+        index += 4;
+        for (int i = 0; i < values && index < end; i++) {
+            byte tag = reply.getByte(index++);
+            int size = valueSize(tag, idSizes);
+            if (size < 0) {
+                // 未知tag，保守起见不合并
+                return true;
+            }
+            if (isObjectTag(tag) && !isZero(reply, index, size)) {
+                return true;
+            }
+            index += size;
+        }
+        return false;
+    }
+
+    private static boolean isObjectTag(byte tag) {
+        switch (tag) {
+            case '[':
+            case 'L':
+            case 's':
+            case 't':
+            case 'g':
+            case 'l':
+            case 'c':
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    private static int valueSize(byte tag, IdSizes idSizes) {
+        switch (tag) {
+            case 'B':
+            case 'Z':
+                return 1;
+            case 'C':
+            case 'S':
+                return 2;
+            case 'F':
+            case 'I':
+                return 4;
+            case 'D':
+            case 'J':
+                return 8;
+            case 'V':
+                return 0;
+            default:
+                return isObjectTag(tag) ? idSizes.getObjectIdSize() : -1;
+        }
+    }
+
+    private static boolean isZero(ByteBuf buf, int index, int size) {
+        for (int i = 0; i < size; i++) {
+            if (buf.getByte(index + i) != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int commandKey(int commandSet, int command) {
+        return (commandSet & 0xFF) << 8 | (command & 0xFF);
+    }
+
+    /**
+     * 已转发的首个命令及等待其回复的相同命令
+     */
+    @Getter
+    public static final class CoalescedCommand {
+        private final CommandKey key;
+        private final long sentAt;
+        private final List<Waiter> waiters = new ArrayList<>(2);
+        private int leaderId;
+
+        private CoalescedCommand(CommandKey key, long sentAt) {
+            this.key = key;
+            this.sentAt = sentAt;
+        }
+    }
+
+    /**
+     * 等待首个命令回复的调试器slot及其原始数据包id
+     */
+    @Getter
+    @AllArgsConstructor
+    public static final class Waiter {
+        private final int slot;
+        private final int originId;
+    }
+}
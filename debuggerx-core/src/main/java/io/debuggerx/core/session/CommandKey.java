@@ -0,0 +1,102 @@
+package io.debuggerx.core.session;
+
+import io.debuggerx.common.constants.JdwpConstants;
+import io.debuggerx.protocol.packet.JdwpFrames;
+import io.debuggerx.protocol.packet.JdwpPacket;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+
+import java.util.Arrays;
+
+/**
+ * Identity of a JDWP command independent of its packet ID: command set, command and a copy of the
+ * command data. Two commands with equal keys get the same answer from the JVM.
+ *
+ * @author ouwu
+ */
+public final class CommandKey {
+    /**
+     * commandSet << 8 | command
+     */
+    private final int command;
+    private final byte[] data;
+    private final int hash;
+
+    private CommandKey(int command, byte[] data) {
+        this.command = command;
+        this.data = data;
+        this.hash = 31 * command + Arrays.hashCode(data);
+    }
+
+    /**
+     * @param packet a parsed command packet
+     * @return the key of the command
+     */
+    public static CommandKey of(JdwpPacket packet) {
+        ByteBuf content = packet.content();
+        byte[] data = new byte[content.readableBytes()];
+        content.getBytes(content.readerIndex(), data);
+        return new CommandKey((packet.getHeader().getCommandSet() & 0xFF) << 8 | (packet.getHeader().getCommand() & 0xFF), data);
+    }
+
+    /**
+     * @param frame a complete command frame (header included)
+     * @return the key of the command
+     */
+    public static CommandKey of(ByteBuf frame) {
+        int dataIndex = frame.readerIndex() + JdwpConstants.HEADER_LENGTH;
+        byte[] data = new byte[frame.writerIndex() - dataIndex];
+        frame.getBytes(dataIndex, data);
+        return new CommandKey((JdwpFrames.commandSet(frame) & 0xFF) << 8 | (JdwpFrames.command(frame) & 0xFF), data);
+    }
+
+    public int commandSet() {
+        return command >>> 8;
+    }
+
+    public int command() {
+        return command & 0xFF;
+    }
+
+    /**
+     * @return the command data; shared, must not be modified
+     */
+    byte[] data() {
+        return data;
+    }
+
+    /**
+     * Encodes the command as a new frame.
+     *
+     * @param id the packet ID of the frame
+     * @param allocator the buffer allocator
+     * @return the frame, owned by the caller
+     */
+    public ByteBuf toFrame(int id, ByteBufAllocator allocator) {
+        int length = JdwpConstants.HEADER_LENGTH + data.length;
+        return allocator.buffer(length)
+                .writeInt(length)
+                .writeInt(id)
+                .writeByte(JdwpConstants.FLAG_COMMAND)
+                .writeByte(commandSet())
+                .writeByte(command())
+                .writeBytes(data);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof CommandKey)) {
+            return false;
+        }
+        CommandKey other = (CommandKey) o;
+        return command == other.command && Arrays.equals(data, other.data);
+    }
+
+    @Override
+    public int hashCode() {
+        return hash;
+    }
+}
@@ -1,26 +1,37 @@
 package io.debuggerx.core.session;
 
 
+import io.debuggerx.common.enums.ConnectionType;
+import io.debuggerx.common.enums.EventDelivery;
 import io.debuggerx.common.utils.ChannelUtils;
 import io.debuggerx.common.utils.SessionUtils;
+import io.debuggerx.core.capture.PacketCapture;
 import io.debuggerx.protocol.packet.BreakpointRequestRelation;
+import io.debuggerx.protocol.packet.JdwpHeader;
 import io.debuggerx.protocol.packet.JdwpPacket;
 import io.debuggerx.protocol.packet.PacketSource;
 import io.netty.channel.Channel;
+import io.netty.util.AttributeKey;
 import lombok.Data;
 import lombok.Getter;
 import lombok.extern.slf4j.Slf4j;
-import org.apache.commons.lang3.tuple.Pair;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.IntConsumer;
+import java.util.function.IntSupplier;
 
 /**
  * Represents a debug session connecting one JVM to multiple debugger clients.
- * Manages packet ID mapping, request ID tracking, breakpoint registry, and event routing.
+ * Manages packet ID mapping, request ID tracking, breakpoint registry, and event routing
+ * ({@link EventRouteTable}).
  * Thread-safe for concurrent access from multiple debugger clients.
  *
  * @author ouwu
@@ -28,10 +39,23 @@ import java.util.concurrent.atomic.AtomicInteger;
 @Data
 @Slf4j
 public class DebugSession {
+    /**
+     * 调试器channel在会话中的slot
+     */
+    private static final AttributeKey<Integer> DEBUGGER_SLOT = AttributeKey.valueOf("debuggerx.debuggerSlot");
+    /**
+     * JVM channel或调试器channel所属的会话
+     */
+    static final AttributeKey<DebugSession> SESSION = AttributeKey.valueOf("debuggerx.session");
+
     /**
      * 会话ID
      */
     private final String sessionId;
+    /**
+     * JVM目标名称，调试器可按名称或会话ID选择会话
+     */
+    private final String target;
     /**
      * 提供调试服务的channel
      */
@@ -51,22 +75,35 @@ public class DebugSession {
      */
     private final AtomicInteger jvmServerPacketId;
     /**
-     * 数据包id映射
-     * key:全局唯一id
-     * value:Pair<原数据包id, 原数据包Channel>
+     * 调试器slot，在途命令只记录slot，断开后置空复用
      */
-    private final Map<Integer, Pair<Integer, PacketSource>> packetIdMap;
+    private final List<PacketSource> debuggerSlots;
     /**
+     * 在途命令表
      * key:全局唯一id
-     * value:数据包
+     * value:原数据包id、来源slot、命令集/命令
+     */
+    private final InFlightRequestTable inFlightRequests;
+    /**
+     * JVM对调试器接入时启动查询的回复(含ID长度)
      */
-    private final Map<Integer, JdwpPacket> packetMap;
+    private final VmInfo vmInfo;
     /**
-     * 请求ID映射
-     * key:请求ID
-     * value:请求通道
+     * 代理维护的已加载类索引
      */
-    private final Map<Integer, Set<PacketSource>> eventRequestIdSourceMap;
+    private final ClassIndex classIndex;
+    /**
+     * 只读元数据查询的回复缓存
+     */
+    private final ReplyCache replyCache;
+    /**
+     * 相同只读命令合并，未启用时为null
+     */
+    private final CommandCoalescer coalescer;
+    /**
+     * 事件路由: requestId -> 接收其事件的调试器slot
+     */
+    private final EventRouteTable eventRoutes;
     /**
      * 客户端断点类型
      * key: 客户端channel
@@ -74,6 +111,10 @@ public class DebugSession {
      */
     @Getter
     private final Map<Channel, Set<BreakpointRequestRelation>> breakpointRequestMap;
+    /**
+     * 断开的调试器遗留请求的清除命令: 命令packetId -> requestId，回复到达后删除其路由
+     */
+    private final Map<Integer, Integer> orphanClears;
     /**
      * Global breakpoint registry - tracks ALL breakpoints from ALL clients
      * key: requestId
@@ -93,23 +134,175 @@ public class DebugSession {
      */
     @Getter
     private volatile io.debuggerx.protocol.packet.BreakpointEventInfo currentBreakpointEvent;
+    /**
+     * 写缓冲超过高水位而暂停读取JVM的调试器，非空时JVM channel关闭autoRead
+     */
+    private final Set<Channel> stalledDebuggers;
 
-    public DebugSession(Channel jvmServerChannel) {
+    public DebugSession(String target, Channel jvmServerChannel, InFlightRequestTable inFlightRequests,
+                        ReplyCache replyCache, CommandCoalescer coalescer) {
         this.sessionId = SessionUtils.generateSessionId();
+        this.target = target;
         this.jvmServerChannel = jvmServerChannel;
         this.debuggerChannels = new ConcurrentHashMap<>();
         this.handshakeCompleted = false;
         this.jvmServerPacketId = new AtomicInteger(Integer.MAX_VALUE);
-        this.packetIdMap = new ConcurrentHashMap<>();
-        this.eventRequestIdSourceMap = new ConcurrentHashMap<>();
-        this.packetMap = new ConcurrentHashMap<>();
+        this.debuggerSlots = new CopyOnWriteArrayList<>();
+        this.inFlightRequests = inFlightRequests;
+        this.vmInfo = new VmInfo();
+        this.classIndex = new ClassIndex();
+        this.replyCache = replyCache;
+        this.coalescer = coalescer;
+        this.eventRoutes = new EventRouteTable();
         this.breakpointRequestMap = new ConcurrentHashMap<>();
+        this.orphanClears = new ConcurrentHashMap<>();
         this.globalBreakpoints = new ConcurrentHashMap<>();
         this.pendingResolutions = new ConcurrentHashMap<>();
+        this.stalledDebuggers = new HashSet<>();
+        jvmServerChannel.attr(SESSION).set(this);
     }
 
     public void addDebugger(Channel debuggerChannel) {
+        addDebugger(debuggerChannel, EventDelivery.OWNED);
+    }
+
+    /**
+     * Adds a debugger client connection to this session.
+     *
+     * @param debuggerChannel the debugger channel
+     * @param delivery which events the debugger receives
+     */
+    public void addDebugger(Channel debuggerChannel, EventDelivery delivery) {
         debuggerChannels.put(ChannelUtils.getDebugChannelId(debuggerChannel), debuggerChannel);
+        int slot = allocateSlot(debuggerChannel);
+        eventRoutes.connect(slot, delivery == EventDelivery.ALL);
+        debuggerChannel.attr(DEBUGGER_SLOT).set(slot);
+        debuggerChannel.attr(SESSION).set(this);
+    }
+
+    private int allocateSlot(Channel debuggerChannel) {
+        PacketSource source = new PacketSource(ConnectionType.DEBUGGER_PROXY, debuggerChannel);
+        synchronized (debuggerSlots) {
+            int slot = debuggerSlots.indexOf(null);
+            if (slot < 0) {
+                debuggerSlots.add(source);
+                return debuggerSlots.size() - 1;
+            }
+            debuggerSlots.set(slot, source);
+            return slot;
+        }
+    }
+
+    private void releaseSlot(Channel debuggerChannel) {
+        Integer slot = debuggerChannel.attr(DEBUGGER_SLOT).getAndSet(null);
+        if (slot == null) {
+            return;
+        }
+        // 先丢弃在途命令和合并等待者再让slot可复用，避免回复被投递给新调试器
+        int orphaned = inFlightRequests.removeSlot(slot);
+        if (coalescer != null) {
+            coalescer.removeSlot(slot);
+        }
+        clearEventRequests(debuggerChannel, eventRoutes.disconnect(slot));
+        if (orphaned > 0) {
+            log.info("[DebugSession] Dropped {} in-flight requests of disconnected debugger {}", orphaned, debuggerChannel);
+        }
+        synchronized (debuggerSlots) {
+            debuggerSlots.set(slot, null);
+        }
+    }
+
+    /**
+     * 清除断开的调试器独占的事件请求，避免其断点或单步继续挂起JVM而无人恢复；其他调试器订阅的请求保留。
+     * 清除命令回复前到达的事件由路由表转发给其余调试器
+     */
+    private void clearEventRequests(Channel debuggerChannel, List<Integer> requestIds) {
+        Set<BreakpointRequestRelation> relations = breakpointRequestMap.remove(debuggerChannel);
+        if (relations == null || requestIds.isEmpty() || !jvmServerChannel.isActive()) {
+            return;
+        }
+        Set<Integer> orphaned = new HashSet<>(requestIds);
+        int cleared = 0;
+        for (BreakpointRequestRelation relation : relations) {
+            if (!orphaned.contains(relation.getRequestId())) {
+                continue;
+            }
+            JdwpPacket packet = JdwpPacket.createClearBreakpointsPacket(relation.toByteArray());
+            orphanClears.put(saveInternalRequest(packet), relation.getRequestId());
+            jvmServerChannel.write(packet);
+            cleared++;
+        }
+        if (cleared > 0) {
+            jvmServerChannel.flush();
+            log.info("[DebugSession] Clearing {} event requests of disconnected debugger {}", cleared, debuggerChannel);
+        }
+    }
+
+    /**
+     * @param debuggerChannel a debugger channel
+     * @return the slot of the debugger, or {@link InFlightRequestTable#NO_SLOT} if it is not connected
+     */
+    public int slotOf(Channel debuggerChannel) {
+        Integer slot = debuggerChannel.attr(DEBUGGER_SLOT).get();
+        return slot == null ? InFlightRequestTable.NO_SLOT : slot;
+    }
+
+    /**
+     * Resolves the debugger that sent an in-flight command.
+     *
+     * @param request the in-flight command
+     * @return the origin debugger, or null for the proxy's own requests or a debugger that has left
+     */
+    public PacketSource getOriginSource(InFlightRequest request) {
+        return getDebuggerSource(request.getSlot());
+    }
+
+    /**
+     * Resolves the debugger occupying a slot.
+     *
+     * @param slot the debugger slot
+     * @return the debugger, or null if the slot is free or invalid
+     */
+    public PacketSource getDebuggerSource(int slot) {
+        return slot >= 0 && slot < debuggerSlots.size() ? debuggerSlots.get(slot) : null;
+    }
+
+    /**
+     * Lets a side-effect-free command share the JVM round trip of an identical command already in
+     * flight, or makes it the one that is forwarded. The command is registered and sent outside the
+     * coalescer lock.
+     *
+     * @param key the command
+     * @param debuggerChannel the debugger that sent it
+     * @param originId the packet ID assigned by the debugger
+     * @param register registers the command as in flight and returns its packet ID towards the JVM;
+     *                 not called if the command joins an identical one
+     * @param send writes the command with the given packet ID to the JVM
+     * @return true if the command joined an in-flight one
+     */
+    public boolean coalesce(CommandKey key, Channel debuggerChannel, int originId, IntSupplier register, IntConsumer send) {
+        CommandCoalescer.CoalescedCommand leader = coalescer == null
+                ? null : coalescer.joinOrClaim(key, slotOf(debuggerChannel), originId);
+        if (coalescer != null && leader == null) {
+            return true;
+        }
+        int id = register.getAsInt();
+        if (leader != null) {
+            // 发出前建立索引，回复不会早于索引到达
+            coalescer.lead(leader, id);
+        }
+        send.accept(id);
+        return false;
+    }
+
+    /**
+     * Ends coalescing for a command whose reply has arrived.
+     *
+     * @param id the packet ID used towards the JVM
+     * @return the commands waiting for the same reply, or null if none
+     */
+    public CommandCoalescer.CoalescedCommand completeCoalesced(int id) {
+        return coalescer == null ? null : coalescer.complete(id);
     }
     
     /**
@@ -124,6 +317,8 @@ public class DebugSession {
             if (ChannelUtils.getDebugChannelId(entry.getValue()).equals(ChannelUtils.getDebugChannelId(debuggerChannel))) {
                 removedChannelId = entry.getKey();
                 Channel channel = debuggerChannels.remove(removedChannelId);
+                releaseSlot(channel);
+                resumeJvmRead(channel);
                 channel.close();
                 break;
             }
@@ -131,54 +326,231 @@ public class DebugSession {
         return removedChannelId;
     }
 
-    public int getNewIdAndSaveOriginLink(JdwpPacket packet, PacketSource originPacketSource) {
-        int originId = packet.getHeader().getId();
+    /**
+     * Stops reading from the JVM until the given debugger drains below its low watermark.
+     *
+     * @param debuggerChannel the debugger whose write buffer is above the high watermark
+     * @return true if the debugger was not already stalled
+     */
+    public boolean pauseJvmRead(Channel debuggerChannel) {
+        synchronized (stalledDebuggers) {
+            if (!stalledDebuggers.add(debuggerChannel)) {
+                return false;
+            }
+            jvmServerChannel.config().setAutoRead(false);
+            return true;
+        }
+    }
+
+    /**
+     * Releases the JVM read pause held by a debugger; reading resumes once no debugger is stalled.
+     *
+     * @param debuggerChannel the debugger that became writable again or disconnected
+     */
+    public void resumeJvmRead(Channel debuggerChannel) {
+        synchronized (stalledDebuggers) {
+            if (stalledDebuggers.remove(debuggerChannel) && stalledDebuggers.isEmpty()) {
+                jvmServerChannel.config().setAutoRead(true);
+            }
+        }
+    }
+
+    /**
+     * @return true while at least one slow debugger holds the JVM read pause
+     */
+    public boolean isJvmReadPaused() {
+        synchronized (stalledDebuggers) {
+            return !stalledDebuggers.isEmpty();
+        }
+    }
+
+    /**
+     * Allocates a proxy-wide packet ID for a parsed command and records it as in flight.
+     *
+     * @param packet the command being forwarded
+     * @param debuggerChannel the client that sent the command
+     * @param retainData whether the reply processor needs the command data; the packet is then
+     *                   retained until the reply arrives
+     * @return the new packet ID to use towards the JVM
+     */
+    public int getNewIdAndSaveOriginLink(JdwpPacket packet, Channel debuggerChannel, boolean retainData) {
+        JdwpHeader header = packet.getHeader();
+        int newId = jvmServerPacketId.decrementAndGet();
+        inFlightRequests.put(newId, header.getId(), slotOf(debuggerChannel), header.getCommandSet(), header.getCommand(),
+                true, retainData ? packet.retain() : null);
+        PacketCapture.getInstance().link(debuggerChannel, jvmServerChannel, newId, header.getId(), header.getCommandSet(),
+                header.getCommand());
+        return newId;
+    }
+
+    /**
+     * Allocates a proxy-wide packet ID for a command forwarded without parsing.
+     *
+     * @param originId the packet ID assigned by the debugger
+     * @param debuggerChannel the client that sent the command
+     * @param commandSet the JDWP command set
+     * @param command the JDWP command
+     * @return the new packet ID to use towards the JVM
+     */
+    public int getNewIdAndSaveOriginLink(int originId, Channel debuggerChannel, byte commandSet, byte command) {
         int newId = jvmServerPacketId.decrementAndGet();
-        packetIdMap.put(newId, Pair.of(originId, originPacketSource));
-        packetMap.put(newId, packet);
+        inFlightRequests.put(newId, originId, slotOf(debuggerChannel), commandSet, command, false, null);
+        PacketCapture.getInstance().link(debuggerChannel, jvmServerChannel, newId, originId, commandSet, command);
         return newId;
     }
 
-    public JdwpPacket findPacketByNewId(int newId) {
-        return packetMap.get(newId);
+    /**
+     * Checks whether the command behind a packet ID was fully parsed (and so its reply must be too).
+     *
+     * @param newId the packet ID used towards the JVM
+     * @return true if the command was parsed or issued by the proxy itself
+     */
+    public boolean isParsedRequest(int newId) {
+        return inFlightRequests.isParsed(newId);
     }
 
-    public Pair<Integer, PacketSource> getOriginIdByNewId(int newId) {
-        return packetIdMap.getOrDefault(newId, null);
+    /**
+     * Checks whether the reply to a command can be forwarded piece by piece as it arrives: a
+     * debugger's command that was not parsed, is not recorded in {@link VmInfo} and has no coalesced
+     * waiters, so no processor needs to inspect the reply.
+     *
+     * @param newId the packet ID used towards the JVM
+     * @return true if the reply needs no processing
+     */
+    public boolean isStreamableReply(int newId) {
+        // 代理内部请求总是按已解析登记
+        int command = inFlightRequests.commandOf(newId);
+        return command >= 0 && !inFlightRequests.isParsed(newId)
+                && !VmInfo.isRecorded(command >>> 8, command & 0xFF)
+                && (coalescer == null || !coalescer.hasWaiters(newId));
     }
 
-    public void cacheRequestIdSourceChannel(Integer requestId, PacketSource packetSource, JdwpPacket packet) {
-        if (!packet.getHeader().isCommand()) {
-            // 如果是回复包 找到原始的命令包 找到原始的命令包来源
-            Pair<Integer, PacketSource> packetSourcePair = packetIdMap.get(packet.getHeader().getId());
-            packetSource = packetSourcePair.getRight();
-        }
-        eventRequestIdSourceMap.computeIfAbsent(requestId, id -> new CopyOnWriteArraySet<>());
-        Set<PacketSource> sourceChannels = eventRequestIdSourceMap.get(requestId);
-        if (sourceChannels.contains(packetSource)) {
-            return;
+    /**
+     * Applies a successful {@code VirtualMachine.RedefineClasses}: cached metadata of the redefined
+     * classes is dropped, and replies to commands registered before now are no longer cached.
+     *
+     * @param referenceTypeIds the redefined reference types
+     * @return the number of cached replies invalidated
+     */
+    public int classesRedefined(Collection<Long> referenceTypeIds) {
+        // 先切换代数，之后到达的旧命令回复不会再写入缓存
+        inFlightRequests.nextGeneration();
+        classIndex.classesRedefined(referenceTypeIds);
+        return replyCache.invalidateReferenceTypes(referenceTypeIds);
+    }
+
+    /**
+     * @param request an in-flight command
+     * @return true if the reply to the command may be cached, i.e. no class was redefined since it was sent
+     */
+    public boolean isCacheableGeneration(InFlightRequest request) {
+        return request.getGeneration() == inFlightRequests.getGeneration();
+    }
+
+    /**
+     * Registers a command generated by the proxy itself (breakpoint resolution, HTTP API) and
+     * assigns its packet ID, so its reply can be mapped back to the command set and is not routed
+     * to any debugger.
+     *
+     * @param packet the command packet; its header ID is overwritten
+     * @return the packet ID used towards the JVM
+     */
+    public int saveInternalRequest(JdwpPacket packet) {
+        JdwpHeader header = packet.getHeader();
+        int newId = jvmServerPacketId.decrementAndGet();
+        header.setId(newId);
+        // 可缓存的查询保留命令包，回复到达时作为缓存key
+        boolean cacheable = replyCache.isEnabled() && ReplyCache.isCacheable(header.getCommandSet(), header.getCommand());
+        inFlightRequests.put(newId, newId, InFlightRequestTable.NO_SLOT, header.getCommandSet(), header.getCommand(),
+                true, cacheable ? packet.retain() : null);
+        PacketCapture.getInstance().link(null, jvmServerChannel, newId, newId, header.getCommandSet(), header.getCommand());
+        return newId;
+    }
+
+    /**
+     * Looks up an in-flight command, e.g. to map a reply back to its command set.
+     *
+     * @param newId the packet ID used towards the JVM
+     * @return the in-flight command, or null if unknown
+     */
+    public InFlightRequest findInFlightRequest(int newId) {
+        InFlightRequest request = new InFlightRequest();
+        return findInFlightRequest(newId, request) ? request : null;
+    }
+
+    /**
+     * Looks up an in-flight command without allocating.
+     *
+     * @param newId the packet ID used towards the JVM
+     * @param view filled with the command if found
+     * @return true if the command is in flight
+     */
+    public boolean findInFlightRequest(int newId, InFlightRequest view) {
+        return inFlightRequests.get(newId, view);
+    }
+
+    /**
+     * @param newId the packet ID used towards the JVM
+     * @return {@code commandSet << 8 | command} of the in-flight command, or -1 if unknown
+     */
+    public int findInFlightCommand(int newId) {
+        return inFlightRequests.commandOf(newId);
+    }
+
+    /**
+     * Frees the in-flight entry of a command once its reply has been received.
+     *
+     * @param newId the packet ID used towards the JVM
+     * @return the removed command, or null if unknown (already expired or orphaned)
+     */
+    public InFlightRequest removeOriginLink(int newId) {
+        InFlightRequest request = new InFlightRequest();
+        return removeOriginLink(newId, request) ? request : null;
+    }
+
+    /**
+     * Frees the in-flight entry of a command once its reply has been received, without allocating.
+     *
+     * @param newId the packet ID used towards the JVM
+     * @param view filled with the removed command if found
+     * @return true if the command was in flight
+     */
+    public boolean removeOriginLink(int newId, InFlightRequest view) {
+        if (!orphanClears.isEmpty()) {
+            Integer requestId = orphanClears.remove(newId);
+            if (requestId != null) {
+                eventRoutes.removeRequest(requestId);
+            }
         }
-        sourceChannels.add(packetSource);
+        return inFlightRequests.remove(newId, view);
     }
 
-    public Set<PacketSource> findSourceChannelByRequestId(Integer requestId) {
-        return eventRequestIdSourceMap.get(requestId);
+    /**
+     * Releases every command still waiting for a reply (used when the session is torn down).
+     */
+    public void releasePendingPackets() {
+        inFlightRequests.clear();
+        orphanClears.clear();
     }
 
     /**
-     * Caches a request ID for a specific channel without replacing existing sources.
-     * Used for broadcasting events to multiple debugger clients.
+     * Finds the debuggers that receive an event.
      *
-     * @param requestId the JDWP request ID
-     * @param packetSource the packet source to associate with this request ID
+     * @param requestIds the request IDs of the events in a composite event
+     * @return the debuggers, each once
      */
-    public void cacheRequestIdForChannel(Integer requestId, PacketSource packetSource) {
-        eventRequestIdSourceMap.computeIfAbsent(requestId, id -> new CopyOnWriteArraySet<>());
-        Set<PacketSource> sourceChannels = eventRequestIdSourceMap.get(requestId);
-        if (sourceChannels.contains(packetSource)) {
-            return;
+    public List<PacketSource> findEventTargets(List<Integer> requestIds) {
+        long[] slots = eventRoutes.route(requestIds);
+        List<PacketSource> targets = new ArrayList<>(Math.min(debuggerSlots.size(), 4));
+        for (int word = 0; word < slots.length; word++) {
+            for (long bits = slots[word]; bits != 0; bits &= bits - 1) {
+                PacketSource source = getDebuggerSource(word << 6 | Long.numberOfTrailingZeros(bits));
+                if (source != null) {
+                    targets.add(source);
+                }
+            }
         }
-        sourceChannels.add(packetSource);
+        return targets;
     }
 
     /**
@@ -0,0 +1,230 @@
+package io.debuggerx.core.session;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Routing index of JVM events: for each event request ID, the bitset of debugger slots that receive
+ * its events (the debugger that created the request and those that explicitly subscribed to it), plus
+ * the slots of observers that receive every event.
+ * <p>
+ * Bitsets are immutable {@code long[]} replaced on every change, so routing an event reads them
+ * without locking and, in the common case of one request ID and no observer, without allocating.
+ * Events of request ID 0 (automatically generated, e.g. {@code VM_DEATH}) go to every connected
+ * debugger.
+ *
+ * @author ouwu
+ */
+public class EventRouteTable {
+    private static final long[] EMPTY = new long[0];
+
+    /**
+     * requestId -> 接收其事件的调试器slot位图
+     */
+    private final Map<Integer, long[]> routes = new ConcurrentHashMap<>();
+    /**
+     * 接收所有事件的调试器slot位图
+     */
+    private volatile long[] observers = EMPTY;
+    /**
+     * 已连接的调试器slot位图
+     */
+    private volatile long[] connected = EMPTY;
+
+    /**
+     * Registers a connected debugger.
+     *
+     * @param slot the debugger slot
+     * @param observer whether the debugger receives every event
+     */
+    public synchronized void connect(int slot, boolean observer) {
+        connected = with(connected, slot);
+        observers = observer ? with(observers, slot) : without(observers, slot);
+    }
+
+    /**
+     * Forgets a disconnected debugger before its slot is reused. Requests nobody else receives are
+     * routed to every remaining debugger until they are removed, so that an event already queued in
+     * the JVM, possibly suspending it, still reaches a debugger able to resume it.
+     *
+     * @param slot the debugger slot
+     * @return the request IDs the debugger was the only one to receive
+     */
+    public synchronized List<Integer> disconnect(int slot) {
+        connected = without(connected, slot);
+        observers = without(observers, slot);
+        long[] remaining = connected;
+        List<Integer> orphaned = new ArrayList<>();
+        for (Integer requestId : routes.keySet()) {
+            routes.computeIfPresent(requestId, (id, bits) -> {
+                if (!get(bits, slot)) {
+                    return bits;
+                }
+                long[] rest = without(bits, slot);
+                if (!isEmpty(rest)) {
+                    return rest;
+                }
+                orphaned.add(id);
+                return isEmpty(remaining) ? null : remaining;
+            });
+        }
+        return orphaned;
+    }
+
+    /**
+     * Routes the events of a request to a debugger, either the one that created the request or one
+     * that subscribed to it.
+     *
+     * @param requestId the event request ID
+     * @param slot the debugger slot
+     */
+    public void subscribe(int requestId, int slot) {
+        routes.compute(requestId, (id, bits) -> with(bits == null ? EMPTY : bits, slot));
+    }
+
+    /**
+     * @param requestId the event request ID
+     * @param slot the debugger slot
+     */
+    public void unsubscribe(int requestId, int slot) {
+        routes.computeIfPresent(requestId, (id, bits) -> {
+            long[] remaining = without(bits, slot);
+            return isEmpty(remaining) ? null : remaining;
+        });
+    }
+
+    /**
+     * Drops a request cleared in the JVM.
+     *
+     * @param requestId the event request ID
+     */
+    public void removeRequest(int requestId) {
+        routes.remove(requestId);
+    }
+
+    public synchronized void setObserver(int slot, boolean observer) {
+        if (get(connected, slot)) {
+            observers = observer ? with(observers, slot) : without(observers, slot);
+        }
+    }
+
+    public boolean isObserver(int slot) {
+        return get(observers, slot);
+    }
+
+    /**
+     * Computes the debuggers that receive an event.
+     *
+     * @param requestIds the request IDs of the events in a composite event
+     * @return the bitset of debugger slots; shared, must not be modified
+     */
+    public long[] route(List<Integer> requestIds) {
+        long[] result = observers;
+        boolean owned = false;
+        for (Integer requestId : requestIds) {
+            long[] bits = requestId == 0 ? connected : routes.get(requestId);
+            if (bits == null || covers(result, bits)) {
+                continue;
+            }
+            if (!owned && covers(bits, result)) {
+                // 已有的接收者是该请求接收者的子集，直接共享其位图
+                result = bits;
+                continue;
+            }
+            if (!owned) {
+                result = Arrays.copyOf(result, Math.max(result.length, bits.length));
+                owned = true;
+            } else if (result.length < bits.length) {
+                result = Arrays.copyOf(result, bits.length);
+            }
+            for (int i = 0; i < bits.length; i++) {
+                result[i] |= bits[i];
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @param requestId the request ID of an event
+     * @param slot the debugger slot
+     * @return true if the debugger receives the event
+     */
+    public boolean receives(int requestId, int slot) {
+        return get(observers, slot) || get(requestId == 0 ? connected : routes.getOrDefault(requestId, EMPTY), slot);
+    }
+
+    /**
+     * @param slot the debugger slot
+     * @return the request IDs routed to the debugger, excluding events it receives as an observer
+     */
+    public List<Integer> requestIdsOf(int slot) {
+        List<Integer> requestIds = new ArrayList<>();
+        routes.forEach((requestId, bits) -> {
+            if (get(bits, slot)) {
+                requestIds.add(requestId);
+            }
+        });
+        return requestIds;
+    }
+
+    public int size() {
+        return routes.size();
+    }
+
+    public void clear() {
+        routes.clear();
+        synchronized (this) {
+            observers = EMPTY;
+            connected = EMPTY;
+        }
+    }
+
+    /**
+     * @param bits a bitset
+     * @param slot a slot
+     * @return true if the slot is set
+     */
+    public static boolean get(long[] bits, int slot) {
+        int word = slot >>> 6;
+        return word < bits.length && (bits[word] & 1L << slot) != 0;
+    }
+
+    private static long[] with(long[] bits, int slot) {
+        if (get(bits, slot)) {
+            return bits;
+        }
+        long[] copy = Arrays.copyOf(bits, Math.max(bits.length, (slot >>> 6) + 1));
+        copy[slot >>> 6] |= 1L << slot;
+        return copy;
+    }
+
+    private static long[] without(long[] bits, int slot) {
+        if (!get(bits, slot)) {
+            return bits;
+        }
+        long[] copy = bits.clone();
+        copy[slot >>> 6] &= ~(1L << slot);
+        return copy;
+    }
+
+    private static boolean covers(long[] bits, long[] other) {
+        for (int i = 0; i < other.length; i++) {
+            if ((other[i] & ~(i < bits.length ? bits[i] : 0)) != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean isEmpty(long[] bits) {
+        for (long word : bits) {
+            if (word != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,58 @@
+package io.debuggerx.core.session;
+
+import io.debuggerx.protocol.packet.JdwpPacket;
+import lombok.Getter;
+import lombok.ToString;
+
+/**
+ * 在途命令的视图，由{@link InFlightRequestTable}查询时填充；调用方可复用同一实例避免每次查询分配
+ *
+ * @author ouwu
+ */
+@Getter
+@ToString
+public class InFlightRequest {
+    /**
+     * 发往JVM的全局唯一id
+     */
+    private int id;
+    /**
+     * 调试器分配的原始id
+     */
+    private int originId;
+    /**
+     * 来源调试器的slot，代理内部请求为{@link InFlightRequestTable#NO_SLOT}
+     */
+    private int slot;
+    private byte commandSet;
+    private byte command;
+    /**
+     * 转发给JVM时的{@link System#nanoTime()}
+     */
+    private long sentAt;
+    /**
+     * 登记时的回复缓存代数，见{@link InFlightRequestTable#nextGeneration()}
+     */
+    private int generation;
+    /**
+     * 回复处理需要命令数据时保留的命令包，否则为null；仅在表内持有期间有效
+     */
+    @ToString.Exclude
+    private JdwpPacket packet;
+
+    public boolean isInternal() {
+        return slot == InFlightRequestTable.NO_SLOT;
+    }
+
+    void set(int id, int originId, int slot, byte commandSet, byte command, long sentAt, int generation,
+             JdwpPacket packet) {
+        this.id = id;
+        this.originId = originId;
+        this.slot = slot;
+        this.commandSet = commandSet;
+        this.command = command;
+        this.sentAt = sentAt;
+        this.generation = generation;
+        this.packet = packet;
+    }
+}
@@ -0,0 +1,395 @@
+package io.debuggerx.core.session;
+
+import io.debuggerx.protocol.packet.JdwpPacket;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/**
+ * Bounded table of commands forwarded to the JVM and still waiting for their reply.
+ * <p>
+ * Keys are the proxy-wide packet IDs; entries hold only the origin ID, the origin debugger slot
+ * and the command set/command, in parallel primitive arrays (open addressing, linear probing,
+ * backward-shift deletion), so no per-entry objects are kept alive. Lookups copy an entry into a
+ * caller-owned {@link InFlightRequest} view instead of allocating one. A command packet is held
+ * only when its reply processor needs the command data, and is released with the entry.
+ * <p>
+ * Entries are freed when the reply arrives. Entries are also linked in insertion order, so the
+ * oldest one is found in constant time: entries older than the configured age are expired on
+ * insertion, and when the table is full the oldest entry is evicted. Entries whose debugger
+ * disconnected before the reply are dropped as orphaned.
+ *
+ * @author ouwu
+ */
+@Slf4j
+public class InFlightRequestTable {
+    /**
+     * 代理内部请求没有来源调试器
+     */
+    public static final int NO_SLOT = -1;
+
+    private static final int PARSED_FLAG = 1 << 16;
+    private static final int MIN_TABLE_SIZE = 16;
+    private static final int NONE = -1;
+
+    private final int capacity;
+    private final long maxAgeNanos;
+    private final LongSupplier clock;
+    private final int mask;
+
+    private final boolean[] used;
+    private final int[] keys;
+    private final int[] originIds;
+    private final int[] slots;
+    /**
+     * commandSet << 8 | command，附带是否已解析标志位
+     */
+    private final int[] commands;
+    private final long[] timestamps;
+    private final JdwpPacket[] packets;
+    /**
+     * 登记时的回复缓存代数
+     */
+    private final int[] generations;
+    /**
+     * 按插入顺序的双向链表: 前一个(更早)与后一个(更晚)条目的下标，时间戳随插入顺序递增
+     */
+    private final int[] older;
+    private final int[] newer;
+    private int oldest = NONE;
+    private int newest = NONE;
+    /**
+     * 回复缓存代数，类重定义生效后递增；之前登记的命令回复可能是重定义前的元数据
+     */
+    private int generation;
+
+    private int size;
+    private long expiredCount;
+    private long orphanedCount;
+    private long evictedCount;
+
+    public InFlightRequestTable(int capacity, long maxAgeMillis) {
+        this(capacity, maxAgeMillis, System::nanoTime);
+    }
+
+    /**
+     * @param capacity 最大在途命令数
+     * @param maxAgeMillis 在途命令最长存活时间，超过后过期释放
+     * @param clock 纳秒时钟
+     */
+    public InFlightRequestTable(int capacity, long maxAgeMillis, LongSupplier clock) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("capacity must be positive: " + capacity);
+        }
+        this.capacity = capacity;
+        this.maxAgeNanos = TimeUnit.MILLISECONDS.toNanos(maxAgeMillis);
+        this.clock = clock;
+
+        int tableSize = MIN_TABLE_SIZE;
+        while (tableSize < capacity * 2) {
+            tableSize <<= 1;
+        }
+        this.mask = tableSize - 1;
+        this.used = new boolean[tableSize];
+        this.keys = new int[tableSize];
+        this.originIds = new int[tableSize];
+        this.slots = new int[tableSize];
+        this.commands = new int[tableSize];
+        this.timestamps = new long[tableSize];
+        this.packets = new JdwpPacket[tableSize];
+        this.generations = new int[tableSize];
+        this.older = new int[tableSize];
+        this.newer = new int[tableSize];
+    }
+
+    /**
+     * Records a command forwarded to the JVM.
+     *
+     * @param id the packet ID used towards the JVM
+     * @param originId the packet ID assigned by the debugger
+     * @param slot the origin debugger slot, or {@link #NO_SLOT} for the proxy's own requests
+     * @param commandSet the JDWP command set
+     * @param command the JDWP command
+     * @param parsed whether the command was parsed, so its reply must be parsed too
+     * @param packet the command packet to hold until the reply (ownership is transferred), or null
+     */
+    public synchronized void put(int id, int originId, int slot, byte commandSet, byte command,
+                                 boolean parsed, JdwpPacket packet) {
+        long now = clock.getAsLong();
+        expire(now);
+        if (size >= capacity) {
+            evictOldest();
+        }
+
+        int index = indexFor(id);
+        while (used[index]) {
+            if (keys[index] == id) {
+                // id回绕后复用，旧条目已不可能收到回复
+                releasePacket(index);
+                unlink(index);
+                size--;
+                break;
+            }
+            index = (index + 1) & mask;
+        }
+        used[index] = true;
+        keys[index] = id;
+        originIds[index] = originId;
+        slots[index] = slot;
+        commands[index] = (commandSet & 0xFF) << 8 | (command & 0xFF) | (parsed ? PARSED_FLAG : 0);
+        timestamps[index] = now;
+        packets[index] = packet;
+        generations[index] = generation;
+        link(index);
+        size++;
+    }
+
+    /**
+     * Looks up a command without removing it.
+     *
+     * @param id the packet ID used towards the JVM
+     * @param view filled with the command, including its held packet, if found
+     * @return true if the command is in flight
+     */
+    public synchronized boolean get(int id, InFlightRequest view) {
+        int index = find(id);
+        if (index < 0) {
+            return false;
+        }
+        fill(index, view, packets[index]);
+        return true;
+    }
+
+    /**
+     * Looks up the command set and command of an in-flight command.
+     *
+     * @param id the packet ID used towards the JVM
+     * @return {@code commandSet << 8 | command}, or -1 if unknown
+     */
+    public synchronized int commandOf(int id) {
+        int index = find(id);
+        return index < 0 ? -1 : commands[index] & 0xFFFF;
+    }
+
+    /**
+     * Checks whether the command behind a packet ID was parsed.
+     *
+     * @param id the packet ID used towards the JVM
+     * @return true if the command is in flight and was parsed
+     */
+    public synchronized boolean isParsed(int id) {
+        int index = find(id);
+        return index >= 0 && (commands[index] & PARSED_FLAG) != 0;
+    }
+
+    /**
+     * Frees the entry of a command whose reply has arrived, releasing the held packet if any.
+     *
+     * @param id the packet ID used towards the JVM
+     * @param view filled with the removed command, without its packet, if found
+     * @return true if the command was in flight
+     */
+    public synchronized boolean remove(int id, InFlightRequest view) {
+        int index = find(id);
+        if (index < 0) {
+            return false;
+        }
+        fill(index, view, null);
+        delete(index);
+        return true;
+    }
+
+    /**
+     * Drops every command sent by a debugger that disconnected; their replies will not be routed.
+     *
+     * @param slot the slot of the disconnected debugger
+     * @return the number of orphaned entries
+     */
+    public synchronized int removeSlot(int slot) {
+        int removed = 0;
+        int index = 0;
+        while (index <= mask) {
+            if (used[index] && slots[index] == slot) {
+                // 删除会把后续条目回移到当前位置，需要重新检查
+                delete(index);
+                removed++;
+            } else {
+                index++;
+            }
+        }
+        orphanedCount += removed;
+        return removed;
+    }
+
+    /**
+     * Releases every entry (used when the session is torn down).
+     */
+    public synchronized void clear() {
+        for (int i = 0; i <= mask; i++) {
+            if (used[i]) {
+                releasePacket(i);
+                used[i] = false;
+            }
+        }
+        oldest = NONE;
+        newest = NONE;
+        size = 0;
+    }
+
+    /**
+     * Starts a new reply cache generation. Replies to commands registered before this call must not
+     * be cached: the JVM may have answered them with metadata that is now stale.
+     */
+    public synchronized void nextGeneration() {
+        generation++;
+    }
+
+    public synchronized int getGeneration() {
+        return generation;
+    }
+
+    public synchronized int size() {
+        return size;
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    public synchronized long getExpiredCount() {
+        return expiredCount;
+    }
+
+    public synchronized long getOrphanedCount() {
+        return orphanedCount;
+    }
+
+    public synchronized long getEvictedCount() {
+        return evictedCount;
+    }
+
+    private void expire(long now) {
+        int expired = 0;
+        while (oldest != NONE && now - timestamps[oldest] > maxAgeNanos) {
+            delete(oldest);
+            expired++;
+        }
+        if (expired > 0) {
+            expiredCount += expired;
+            log.warn("[InFlightRequestTable] Expired {} requests without reply", expired);
+        }
+    }
+
+    private void evictOldest() {
+        if (oldest != NONE) {
+            log.warn("[InFlightRequestTable] Table full ({}), evicting request id={}", capacity, keys[oldest]);
+            delete(oldest);
+            evictedCount++;
+        }
+    }
+
+    private void fill(int index, InFlightRequest view, JdwpPacket packet) {
+        int cmd = commands[index];
+        view.set(keys[index], originIds[index], slots[index], (byte) (cmd >>> 8), (byte) cmd, timestamps[index],
+                generations[index], packet);
+    }
+
+    private int find(int id) {
+        int index = indexFor(id);
+        while (used[index]) {
+            if (keys[index] == id) {
+                return index;
+            }
+            index = (index + 1) & mask;
+        }
+        return -1;
+    }
+
+    private void delete(int index) {
+        releasePacket(index);
+        unlink(index);
+        size--;
+        // backward-shift: 把探测链上后续条目前移，避免留下墓碑
+        int hole = index;
+        int next = (hole + 1) & mask;
+        while (used[next]) {
+            int home = indexFor(keys[next]);
+            if (((next - home) & mask) >= ((next - hole) & mask)) {
+                used[hole] = true;
+                keys[hole] = keys[next];
+                originIds[hole] = originIds[next];
+                slots[hole] = slots[next];
+                commands[hole] = commands[next];
+                timestamps[hole] = timestamps[next];
+                generations[hole] = generations[next];
+                packets[hole] = packets[next];
+                packets[next] = null;
+                move(next, hole);
+                hole = next;
+            }
+            next = (next + 1) & mask;
+        }
+        used[hole] = false;
+        packets[hole] = null;
+    }
+
+    private void link(int index) {
+        older[index] = newest;
+        newer[index] = NONE;
+        if (newest == NONE) {
+            oldest = index;
+        } else {
+            newer[newest] = index;
+        }
+        newest = index;
+    }
+
+    private void unlink(int index) {
+        int before = older[index];
+        int after = newer[index];
+        if (before == NONE) {
+            oldest = after;
+        } else {
+            newer[before] = after;
+        }
+        if (after == NONE) {
+            newest = before;
+        } else {
+            older[after] = before;
+        }
+    }
+
+    /**
+     * 条目被回移到新下标后，更新链表中指向它的链接
+     */
+    private void move(int from, int to) {
+        int before = older[from];
+        int after = newer[from];
+        older[to] = before;
+        newer[to] = after;
+        if (before == NONE) {
+            oldest = to;
+        } else {
+            newer[before] = to;
+        }
+        if (after == NONE) {
+            newest = to;
+        } else {
+            older[after] = to;
+        }
+    }
+
+    private void releasePacket(int index) {
+        JdwpPacket packet = packets[index];
+        if (packet != null) {
+            packets[index] = null;
+            packet.release();
+        }
+    }
+
+    private int indexFor(int id) {
+        int hash = id * 0x9E3779B9;
+        return (hash ^ (hash >>> 16)) & mask;
+    }
+}
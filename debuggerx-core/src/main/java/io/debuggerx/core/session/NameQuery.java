@@ -0,0 +1,141 @@
+package io.debuggerx.core.session;
+
+import io.debuggerx.common.exception.DebuggerException;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * A name pattern of the class search: a prefix, a substring or a glob ({@code *} matches any
+ * characters, {@code ?} one character). Class names are given in Java form
+ * ({@code com.example.*Service}) and matched against the JNI signature without its {@code L} and
+ * {@code ;}, directly on the interned UTF-8 bytes. Method names are matched as they are.
+ *
+ * @author ouwu
+ */
+public final class NameQuery {
+
+    public enum Mode {
+        PREFIX,
+        SUBSTRING,
+        GLOB
+    }
+
+    private final Mode mode;
+    private final byte[] pattern;
+
+    private NameQuery(Mode mode, byte[] pattern) {
+        this.mode = mode;
+        this.pattern = pattern;
+    }
+
+    /**
+     * Creates a query over class names.
+     *
+     * @param query the Java class name pattern, e.g. {@code com.example.} or {@code *Service}
+     * @param mode {@code prefix}, {@code substring} or {@code glob}; null for glob when the query has
+     *             wildcards and prefix otherwise
+     * @return the query
+     * @throws DebuggerException if the mode is unknown
+     */
+    public static NameQuery className(String query, String mode) {
+        return of(query.replace('.', '/'), mode);
+    }
+
+    /**
+     * Creates a query over method names.
+     *
+     * @param query the method name pattern
+     * @param mode see {@link #className(String, String)}
+     * @return the query
+     * @throws DebuggerException if the mode is unknown
+     */
+    public static NameQuery methodName(String query, String mode) {
+        return of(query, mode);
+    }
+
+    private static NameQuery of(String query, String mode) {
+        Mode parsed;
+        if (mode == null || mode.isEmpty()) {
+            parsed = query.indexOf('*') >= 0 || query.indexOf('?') >= 0 ? Mode.GLOB : Mode.PREFIX;
+        } else {
+            try {
+                parsed = Mode.valueOf(mode.toUpperCase());
+            } catch (IllegalArgumentException e) {
+                throw new DebuggerException("Unknown search mode: " + mode);
+            }
+        }
+        return new NameQuery(parsed, query.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public Mode getMode() {
+        return mode;
+    }
+
+    /**
+     * @return the pattern in UTF-8, with {@code /} as package separator for class names
+     */
+    byte[] getPattern() {
+        return pattern;
+    }
+
+    /**
+     * Matches a name.
+     *
+     * @param bytes the UTF-8 bytes holding the name
+     * @param offset the start of the name
+     * @param length the length of the name in bytes
+     * @return true if the name matches
+     */
+    public boolean matches(byte[] bytes, int offset, int length) {
+        switch (mode) {
+            case PREFIX:
+                return length >= pattern.length && regionMatches(bytes, offset, 0, pattern.length);
+            case SUBSTRING:
+                for (int start = 0; start + pattern.length <= length; start++) {
+                    if (regionMatches(bytes, offset + start, 0, pattern.length)) {
+                        return true;
+                    }
+                }
+                return false;
+            default:
+                return glob(bytes, offset, length);
+        }
+    }
+
+    private boolean regionMatches(byte[] bytes, int offset, int patternOffset, int length) {
+        for (int i = 0; i < length; i++) {
+            if (bytes[offset + i] != pattern[patternOffset + i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 贪婪匹配，遇到不匹配时回溯到上一个*多吞一个字节
+     */
+    private boolean glob(byte[] bytes, int offset, int length) {
+        int p = 0;
+        int n = 0;
+        int star = -1;
+        int starMatch = 0;
+        while (n < length) {
+            if (p < pattern.length && (pattern[p] == '?' || pattern[p] == bytes[offset + n])) {
+                p++;
+                n++;
+            } else if (p < pattern.length && pattern[p] == '*') {
+                star = p++;
+                starMatch = n;
+            } else if (star >= 0) {
+                p = star + 1;
+                n = ++starMatch;
+            } else {
+                return false;
+            }
+        }
+        while (p < pattern.length && pattern[p] == '*') {
+            p++;
+        }
+        return p == pattern.length;
+    }
+}
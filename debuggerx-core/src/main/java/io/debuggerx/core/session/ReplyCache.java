@@ -0,0 +1,292 @@
+package io.debuggerx.core.session;
+
+import io.debuggerx.protocol.jdwp.IdSizes;
+import io.debuggerx.protocol.packet.JdwpPacket;
+import io.netty.buffer.ByteBuf;
+
+import java.nio.charset.StandardCharsets;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Proxy-side cache of replies to read-only JDWP queries whose answer never changes for a given
+ * request, such as {@code ReferenceType.Signature}, {@code Methods}, {@code Fields} or
+ * {@code Method.LineTable}.
+ * <p>
+ * Entries are keyed by command set, command and the exact command data, and hold the reply data
+ * only, so a hit can be answered with any debugger's original packet ID. The cache is bounded by an
+ * estimate of its memory footprint and evicts the least recently used entries first.
+ * <p>
+ * JDWP never reuses an ID for a different object, so cached answers only go stale when a class is
+ * redefined; entries of the redefined reference types are then invalidated. Entries of unloaded
+ * classes are dropped on {@code CLASS_UNLOAD} when the class signature is known to the cache.
+ *
+ * @author ouwu
+ */
+public class ReplyCache {
+    /**
+     * 无法确定所属referenceTypeID的命令
+     */
+    private static final long NO_REFERENCE_TYPE = Long.MIN_VALUE;
+    /**
+     * 每个条目除key与回复数据外的估算开销(对象头、链表节点、数组头)
+     */
+    private static final int ENTRY_OVERHEAD = 96;
+    private static final int REFERENCE_TYPE = 2;
+    private static final int CLASS_TYPE = 3;
+    private static final int METHOD = 6;
+    /**
+     * 可缓存的命令，按 commandSet << 8 | command 索引
+     */
+    private static final BitSet CACHEABLE = new BitSet(1 << 16);
+
+    static {
+        // VirtualMachine的启动查询由VmInfo按会话记录，不受缓存淘汰影响
+        // ReferenceType: Signature、Modifiers、Fields、Methods、SourceFile、Interfaces、SourceDebugExtension、
+        // SignatureWithGeneric、FieldsWithGeneric、MethodsWithGeneric、ClassFileVersion、ConstantPool。
+        // ClassLoader回复的是objectID，JVM按发给调试器的次数计数，由缓存应答会让DisposeObjects提前释放
+        cacheable(REFERENCE_TYPE, 1, 3, 4, 5, 7, 10, 12, 13, 14, 15, 17, 18);
+        // ClassType: Superclass
+        cacheable(CLASS_TYPE, 1);
+        // Method: LineTable、VariableTable、Bytecodes、VariableTableWithGeneric
+        cacheable(METHOD, 1, 2, 3, 5);
+    }
+
+    private final long maxBytes;
+    /**
+     * 按访问顺序排列，头部为最久未使用
+     */
+    private final LinkedHashMap<CommandKey, Entry> entries = new LinkedHashMap<>(64, 0.75f, true);
+    /**
+     * 类签名 -> 已缓存Signature回复的referenceTypeID，用于CLASS_UNLOAD失效
+     */
+    private final Map<String, Set<Long>> signatureIndex = new HashMap<>();
+
+    private long bytes;
+    private long hitCount;
+    private long missCount;
+    private long evictedCount;
+    private long invalidatedCount;
+
+    /**
+     * @param maxBytes 缓存内存上限(估算)，0表示禁用
+     */
+    public ReplyCache(long maxBytes) {
+        this.maxBytes = maxBytes;
+    }
+
+    private static void cacheable(int commandSet, int... commands) {
+        for (int command : commands) {
+            CACHEABLE.set(commandKey(commandSet, command));
+        }
+    }
+
+    /**
+     * Checks whether replies to a command may be cached.
+     *
+     * @param commandSet the JDWP command set
+     * @param command the JDWP command
+     * @return true if the command is a read-only query with an immutable answer
+     */
+    public static boolean isCacheable(int commandSet, int command) {
+        return CACHEABLE.get(commandKey(commandSet, command));
+    }
+
+    public boolean isEnabled() {
+        return maxBytes > 0;
+    }
+
+    /**
+     * Looks up the cached reply to a command.
+     *
+     * @param command a cacheable command packet
+     * @return the reply data, or null on a miss; the array is shared and must not be modified
+     */
+    public synchronized byte[] get(JdwpPacket command) {
+        if (!isEnabled()) {
+            return null;
+        }
+        Entry entry = entries.get(CommandKey.of(command));
+        if (entry == null) {
+            missCount++;
+            return null;
+        }
+        hitCount++;
+        return entry.reply;
+    }
+
+    /**
+     * Caches the successful reply to a command, evicting least recently used entries as needed.
+     *
+     * @param command the cacheable command packet
+     * @param reply its reply packet (error code 0)
+     * @param idSizes the JVM ID sizes, used to read the reference type the command refers to
+     */
+    public synchronized void put(JdwpPacket command, JdwpPacket reply, IdSizes idSizes) {
+        if (!isEnabled()) {
+            return;
+        }
+        CommandKey key = CommandKey.of(command);
+        long referenceTypeId = referenceTypeOf(key, idSizes);
+        if (referenceTypeId == NO_REFERENCE_TYPE) {
+            // 无法确定所属类的条目无法在重定义时失效，不缓存
+            return;
+        }
+        Entry entry = new Entry(copyData(reply), referenceTypeId);
+        long entrySize = ENTRY_OVERHEAD + key.data().length + entry.reply.length;
+        if (entrySize > maxBytes) {
+            return;
+        }
+        Entry previous = entries.put(key, entry);
+        if (previous != null) {
+            bytes -= ENTRY_OVERHEAD + key.data().length + previous.reply.length;
+        }
+        bytes += entrySize;
+        String signature = signatureOf(key, entry);
+        if (signature != null) {
+            signatureIndex.computeIfAbsent(signature, s -> new HashSet<>()).add(referenceTypeId);
+        }
+
+        Iterator<Map.Entry<CommandKey, Entry>> iterator = entries.entrySet().iterator();
+        while (bytes > maxBytes && iterator.hasNext()) {
+            Map.Entry<CommandKey, Entry> eldest = iterator.next();
+            iterator.remove();
+            unlinked(eldest.getKey(), eldest.getValue());
+            evictedCount++;
+        }
+    }
+
+    /**
+     * Drops every entry about the given reference types (after {@code VirtualMachine.RedefineClasses}).
+     *
+     * @param referenceTypeIds the redefined reference types
+     * @return the number of entries removed
+     */
+    public synchronized int invalidateReferenceTypes(Collection<Long> referenceTypeIds) {
+        if (entries.isEmpty() || referenceTypeIds.isEmpty()) {
+            return 0;
+        }
+        int removed = 0;
+        Iterator<Map.Entry<CommandKey, Entry>> iterator = entries.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<CommandKey, Entry> cached = iterator.next();
+            if (referenceTypeIds.contains(cached.getValue().referenceTypeId)) {
+                iterator.remove();
+                unlinked(cached.getKey(), cached.getValue());
+                removed++;
+            }
+        }
+        invalidatedCount += removed;
+        return removed;
+    }
+
+    /**
+     * Drops every entry about the classes with the given signature (on {@code CLASS_UNLOAD}).
+     *
+     * @param signature the JNI signature of the unloaded class
+     * @return the number of entries removed
+     */
+    public synchronized int invalidateSignature(String signature) {
+        Set<Long> referenceTypeIds = signatureIndex.get(signature);
+        return referenceTypeIds == null ? 0 : invalidateReferenceTypes(new HashSet<>(referenceTypeIds));
+    }
+
+    public synchronized void clear() {
+        entries.clear();
+        signatureIndex.clear();
+        bytes = 0;
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    public synchronized long getBytes() {
+        return bytes;
+    }
+
+    public long getMaxBytes() {
+        return maxBytes;
+    }
+
+    public synchronized long getHitCount() {
+        return hitCount;
+    }
+
+    public synchronized long getMissCount() {
+        return missCount;
+    }
+
+    public synchronized long getEvictedCount() {
+        return evictedCount;
+    }
+
+    public synchronized long getInvalidatedCount() {
+        return invalidatedCount;
+    }
+
+    private void unlinked(CommandKey key, Entry entry) {
+        bytes -= ENTRY_OVERHEAD + key.data().length + entry.reply.length;
+        String signature = signatureOf(key, entry);
+        if (signature != null) {
+            Set<Long> referenceTypeIds = signatureIndex.get(signature);
+            if (referenceTypeIds != null && referenceTypeIds.remove(entry.referenceTypeId) && referenceTypeIds.isEmpty()) {
+                signatureIndex.remove(signature);
+            }
+        }
+    }
+
+    private static long referenceTypeOf(CommandKey key, IdSizes idSizes) {
+        int commandSet = key.commandSet();
+        if (commandSet != REFERENCE_TYPE && commandSet != CLASS_TYPE && commandSet != METHOD) {
+            return NO_REFERENCE_TYPE;
+        }
+        if (idSizes == null || key.data().length < idSizes.getReferenceTypeIdSize()) {
+            return NO_REFERENCE_TYPE;
+        }
+        long value = 0;
+        for (int i = 0; i < idSizes.getReferenceTypeIdSize(); i++) {
+            value = value << 8 | (key.data()[i] & 0xFF);
+        }
+        return value;
+    }
+
+    /**
+     * Signature与SignatureWithGeneric回复以类签名开头
+     */
+    private static String signatureOf(CommandKey key, Entry entry) {
+        if (key.commandSet() != REFERENCE_TYPE || (key.command() != 1 && key.command() != 13) || entry.reply.length < 4) {
+            return null;
+        }
+        byte[] reply = entry.reply;
+        int length = (reply[0] & 0xFF) << 24 | (reply[1] & 0xFF) << 16 | (reply[2] & 0xFF) << 8 | (reply[3] & 0xFF);
+        return length < 0 || length > reply.length - 4 ? null : new String(reply, 4, length, StandardCharsets.UTF_8);
+    }
+
+    private static byte[] copyData(JdwpPacket packet) {
+        ByteBuf data = packet.content();
+        byte[] bytes = new byte[data.readableBytes()];
+        data.getBytes(data.readerIndex(), bytes);
+        return bytes;
+    }
+
+    private static int commandKey(int commandSet, int command) {
+        return (commandSet & 0xFF) << 8 | (command & 0xFF);
+    }
+
+    private static final class Entry {
+        private final byte[] reply;
+        private final long referenceTypeId;
+
+        private Entry(byte[] reply, long referenceTypeId) {
+            this.reply = reply;
+            this.referenceTypeId = referenceTypeId;
+        }
+    }
+}
@@ -1,27 +1,47 @@
 package io.debuggerx.core.session;
 
+import io.debuggerx.common.config.DebuggerConfig;
+import io.debuggerx.common.config.JvmTarget;
 import io.debuggerx.common.exception.DebuggerException;
-import io.debuggerx.protocol.jdwp.IdSizes;
 import io.netty.channel.Channel;
+import io.netty.util.AttributeKey;
 import lombok.Getter;
+import lombok.Setter;
 import lombok.extern.slf4j.Slf4j;
 
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 
 /**
- * Manages debug sessions across all JVM connections.
+ * Manages debug sessions across all JVM connections, one session per JVM target.
  * Implements singleton pattern to provide global access to session state.
- * Handles session lifecycle (creation, lookup, removal) and ID size configuration.
+ * Handles session lifecycle (creation, lookup, removal). The session of a JVM or debugger channel
+ * is stored on the channel itself, so packet handling never searches the session table.
  *
  * @author ouwu
  */
 @Slf4j
 public class SessionManager {
     private static final SessionManager INSTANCE = new SessionManager();
+    /**
+     * JVM channel连接的目标名称；调试器channel为接入的监听端口所属的目标名称
+     */
+    public static final AttributeKey<String> TARGET = AttributeKey.valueOf("debuggerx.target");
+    /**
+     * 调试器在握手前通过选择行指定的会话ID或目标名称
+     */
+    public static final AttributeKey<String> SESSION_SELECTOR = AttributeKey.valueOf("debuggerx.sessionSelector");
+
     private final Map<Channel, DebugSession> sessions = new ConcurrentHashMap<>();
+    /**
+     * 代理配置，由服务启动时设置
+     */
     @Getter
-    private IdSizes idSizes;
+    @Setter
+    private DebuggerConfig config = DebuggerConfig.getDefault();
     
     private SessionManager() {}
     
@@ -29,39 +49,107 @@ public class SessionManager {
         return INSTANCE;
     }
 
-    public void setIdSizes(IdSizes idSizes) {
-        this.idSizes = idSizes;
-    }
-
     /**
-     * Creates a new debug session for a JVM server connection.
+     * Creates a new debug session for a JVM server connection. The session is named after the
+     * {@link #TARGET} of the channel, {@link JvmTarget#DEFAULT_NAME} if it has none.
      *
      * @param jvmServerChannel the channel connected to the JVM
      * @return the newly created debug session
      */
     public DebugSession createJvmServerSession(Channel jvmServerChannel) {
-        DebugSession session = new DebugSession(jvmServerChannel);
+        String target = jvmServerChannel.attr(TARGET).get();
+        InFlightRequestTable inFlightRequests = new InFlightRequestTable(
+                config.getInFlightRequestCapacity(), config.getInFlightRequestMaxAgeMillis());
+        DebugSession session = new DebugSession(target == null ? JvmTarget.DEFAULT_NAME : target, jvmServerChannel,
+                inFlightRequests, new ReplyCache(config.getReplyCacheMaxBytes()),
+                config.isCommandCoalescing() ? new CommandCoalescer(config.getInFlightRequestMaxAgeMillis()) : null);
         sessions.put(jvmServerChannel, session);
         return session;
     }
+
+    /**
+     * Returns the session a channel belongs to.
+     *
+     * @param channel a JVM channel, or a debugger channel that completed its handshake
+     * @return the session, or null if the channel belongs to none
+     */
+    public DebugSession sessionOf(Channel channel) {
+        return channel.attr(DebugSession.SESSION).get();
+    }
+
+    /**
+     * Selects the session of a debugger that is completing its handshake: the one named by its
+     * {@link #SESSION_SELECTOR} line, else the target of the port it connected to, else the only session.
+     *
+     * @param debuggerChannel the debugger channel
+     * @return the selected session
+     * @throws DebuggerException if no session matches
+     */
+    public DebugSession selectSession(Channel debuggerChannel) {
+        String selector = debuggerChannel.attr(SESSION_SELECTOR).get();
+        if (selector == null) {
+            selector = debuggerChannel.attr(TARGET).get();
+        }
+        return selector == null ? findJvmServerSession() : findSession(selector);
+    }
+
+    /**
+     * Finds a session by ID or by target name.
+     *
+     * @param idOrTarget the session ID or the target name
+     * @return the session
+     * @throws DebuggerException if no session matches
+     */
+    public DebugSession findSession(String idOrTarget) {
+        for (DebugSession session : sessions.values()) {
+            if (session.getSessionId().equals(idOrTarget) || session.getTarget().equals(idOrTarget)) {
+                return session;
+            }
+        }
+        throw new DebuggerException("No jvm server session found for " + idOrTarget);
+    }
     
     public void removeSession(Channel channel) {
         DebugSession session = sessions.remove(channel);
         if (session != null) {
-            log.info("[Disconnect] Removed debugger session");
+            log.info("[Disconnect] Removed debugger session {} ({})", session.getSessionId(), session.getTarget());
+            session.releasePendingPackets();
+            session.getReplyCache().clear();
+            session.getClassIndex().clear();
+            if (session.getCoalescer() != null) {
+                session.getCoalescer().clear();
+            }
             // 关闭所有相关的调试器连接
             session.getDebuggerChannels().values().forEach(Channel::close);
         }
     }
 
     /**
-     * Finds the active JVM server debug session.
+     * Finds the JVM server debug session when the proxy serves a single JVM.
      *
-     * @return the active debug session
-     * @throws DebuggerException if no session exists
+     * @return the only debug session
+     * @throws DebuggerException if no session exists, or several do and one must be chosen by
+     *                           {@link #findSession(String)}
      */
     public DebugSession findJvmServerSession() {
-        return sessions.values().stream().findAny().orElseThrow(() -> new DebuggerException("No available jvm server session found"));
+        Iterator<DebugSession> iterator = sessions.values().iterator();
+        if (!iterator.hasNext()) {
+            throw new DebuggerException("No available jvm server session found");
+        }
+        DebugSession session = iterator.next();
+        if (iterator.hasNext()) {
+            throw new DebuggerException("Several jvm server sessions are active, select one by session id or target name");
+        }
+        return session;
+    }
+
+    /**
+     * Returns all live debug sessions (e.g. for metrics export).
+     *
+     * @return an unmodifiable view of the sessions
+     */
+    public Collection<DebugSession> getSessions() {
+        return Collections.unmodifiableCollection(sessions.values());
     }
 
     /**
@@ -84,6 +172,12 @@ public class SessionManager {
                     channel.close();
                 }
 
+                session.releasePendingPackets();
+                session.getReplyCache().clear();
+                session.getClassIndex().clear();
+                if (session.getCoalescer() != null) {
+                    session.getCoalescer().clear();
+                }
                 log.info("[SessionManager] Closed session: {}", session.getSessionId());
             } catch (Exception e) {
                 log.error("[SessionManager] Error closing session: {}", e.getMessage(), e);
@@ -0,0 +1,173 @@
+package io.debuggerx.core.session;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Predicate;
+
+/**
+ * Prefix trie of JNI type signatures. Signatures are split into package segments
+ * ({@code "Ljava/"}, {@code "util/"}, {@code "Map;"}), each interned once in a {@link Utf8Arena},
+ * so classes of the same package share their path. Several values may share a signature (one class
+ * name in several class loaders). Not thread-safe.
+ *
+ * @param <T> the value stored for a signature
+ * @author ouwu
+ */
+class SignatureTrie<T> {
+    private final Utf8Arena arena;
+    private final Node<T> root = new Node<>(-1);
+
+    SignatureTrie(Utf8Arena arena) {
+        this.arena = arena;
+    }
+
+    void add(byte[] signature, T value) {
+        Node<T> node = root;
+        for (int start = 0; start < signature.length; ) {
+            int end = segmentEnd(signature, start);
+            int segment = arena.intern(signature, start, end - start);
+            if (node.children == null) {
+                node.children = new HashMap<>(4);
+            }
+            node = node.children.computeIfAbsent(segment, Node::new);
+            start = end;
+        }
+        if (node.values == null) {
+            node.values = new ArrayList<>(1);
+        }
+        node.values.add(value);
+    }
+
+    /**
+     * @return the values of the exact signature; the list must not be modified
+     */
+    List<T> get(byte[] signature) {
+        Node<T> node = find(signature);
+        return node == null || node.values == null ? Collections.emptyList() : node.values;
+    }
+
+    /**
+     * Removes the values of a signature that match a filter, pruning emptied nodes.
+     *
+     * @return the number of values removed
+     */
+    int remove(byte[] signature, Predicate<T> filter) {
+        Deque<Node<T>> path = new ArrayDeque<>();
+        Node<T> node = root;
+        for (int start = 0; start < signature.length && node != null; ) {
+            int end = segmentEnd(signature, start);
+            path.push(node);
+            node = child(node, signature, start, end);
+            start = end;
+        }
+        if (node == null || node.values == null) {
+            return 0;
+        }
+        int before = node.values.size();
+        node.values.removeIf(filter);
+        int removed = before - node.values.size();
+        if (node.values.isEmpty()) {
+            node.values = null;
+        }
+        while (!path.isEmpty() && node.values == null && (node.children == null || node.children.isEmpty())) {
+            Node<T> parent = path.pop();
+            parent.children.remove(node.segment);
+            node = parent;
+        }
+        return removed;
+    }
+
+    /**
+     * Visits the values of every signature starting with a prefix, in no particular order.
+     *
+     * @param prefix the signature prefix, e.g. {@code "Lcom/example/Fo"}
+     * @param visitor receives values until it returns false
+     */
+    void visitPrefix(byte[] prefix, Predicate<T> visitor) {
+        Node<T> node = root;
+        int start = 0;
+        while (start < prefix.length) {
+            int end = segmentEnd(prefix, start);
+            if (end == prefix.length && prefix[end - 1] != '/') {
+                // 最后一段不完整，匹配以其开头的子节点
+                if (node.children != null) {
+                    for (Node<T> child : node.children.values()) {
+                        if (arena.startsWith(child.segment, prefix, start, end - start) && !visit(child, visitor)) {
+                            return;
+                        }
+                    }
+                }
+                return;
+            }
+            node = child(node, prefix, start, end);
+            if (node == null) {
+                return;
+            }
+            start = end;
+        }
+        visit(node, visitor);
+    }
+
+    private boolean visit(Node<T> node, Predicate<T> visitor) {
+        if (node.values != null) {
+            for (T value : node.values) {
+                if (!visitor.test(value)) {
+                    return false;
+                }
+            }
+        }
+        if (node.children != null) {
+            for (Node<T> child : node.children.values()) {
+                if (!visit(child, visitor)) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    private Node<T> find(byte[] signature) {
+        Node<T> node = root;
+        for (int start = 0; start < signature.length && node != null; ) {
+            int end = segmentEnd(signature, start);
+            node = child(node, signature, start, end);
+            start = end;
+        }
+        return node;
+    }
+
+    private Node<T> child(Node<T> node, byte[] signature, int start, int end) {
+        if (node.children == null) {
+            return null;
+        }
+        int segment = arena.find(signature, start, end - start);
+        return segment < 0 ? null : node.children.get(segment);
+    }
+
+    /**
+     * 段以'/'结尾(含)，最后一段到签名末尾
+     */
+    private static int segmentEnd(byte[] signature, int start) {
+        for (int i = start; i < signature.length; i++) {
+            if (signature[i] == '/') {
+                return i + 1;
+            }
+        }
+        return signature.length;
+    }
+
+    private static final class Node<T> {
+        private final int segment;
+        private Map<Integer, Node<T>> children;
+        private List<T> values;
+
+        private Node(int segment) {
+            this.segment = segment;
+        }
+    }
+}
@@ -0,0 +1,199 @@
+package io.debuggerx.core.session;
+
+import io.netty.buffer.ByteBuf;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Append-only arena of interned UTF-8 strings. Each string is stored once, in its JDWP wire form
+ * (a 4-byte big-endian length followed by the bytes), and is referred to by its offset (handle), so
+ * it can be copied into a reply without re-encoding. Not thread-safe.
+ *
+ * @author ouwu
+ */
+public class Utf8Arena {
+    private static final int EMPTY = -1;
+
+    private byte[] bytes;
+    private int size;
+    /**
+     * 开放寻址哈希表，值为句柄，EMPTY为空槽
+     */
+    private int[] table;
+    private int count;
+
+    public Utf8Arena() {
+        this(4096);
+    }
+
+    public Utf8Arena(int initialBytes) {
+        this.bytes = new byte[Math.max(initialBytes, 16)];
+        this.table = new int[64];
+        Arrays.fill(table, EMPTY);
+    }
+
+    /**
+     * Interns a string.
+     *
+     * @param utf8 the UTF-8 bytes
+     * @param offset the start of the string in {@code utf8}
+     * @param length the length in bytes
+     * @return the handle of the string, the same for equal strings
+     */
+    public int intern(byte[] utf8, int offset, int length) {
+        int hash = hash(utf8, offset, length);
+        int mask = table.length - 1;
+        for (int slot = hash & mask; ; slot = (slot + 1) & mask) {
+            int handle = table[slot];
+            if (handle == EMPTY) {
+                break;
+            }
+            if (equals(handle, utf8, offset, length)) {
+                return handle;
+            }
+        }
+        int handle = append(utf8, offset, length);
+        if (++count * 2 > table.length) {
+            rehash();
+        }
+        insert(handle, hash);
+        return handle;
+    }
+
+    public int intern(byte[] utf8) {
+        return intern(utf8, 0, utf8.length);
+    }
+
+    /**
+     * Looks up a string without interning it.
+     *
+     * @param utf8 the UTF-8 bytes
+     * @param offset the start of the string in {@code utf8}
+     * @param length the length in bytes
+     * @return the handle of the string, or -1 if it is not in the arena
+     */
+    public int find(byte[] utf8, int offset, int length) {
+        int mask = table.length - 1;
+        for (int slot = hash(utf8, offset, length) & mask; ; slot = (slot + 1) & mask) {
+            int handle = table[slot];
+            if (handle == EMPTY || equals(handle, utf8, offset, length)) {
+                return handle;
+            }
+        }
+    }
+
+    public int length(int handle) {
+        return (bytes[handle] & 0xFF) << 24 | (bytes[handle + 1] & 0xFF) << 16
+                | (bytes[handle + 2] & 0xFF) << 8 | (bytes[handle + 3] & 0xFF);
+    }
+
+    /**
+     * Writes a string in JDWP form (length + bytes).
+     *
+     * @param handle the string
+     * @param out the buffer to write to
+     */
+    public void writeString(int handle, ByteBuf out) {
+        out.writeBytes(bytes, handle, 4 + length(handle));
+    }
+
+    public byte[] toBytes(int handle) {
+        return Arrays.copyOfRange(bytes, handle + 4, handle + 4 + length(handle));
+    }
+
+    public String toString(int handle) {
+        return new String(bytes, handle + 4, length(handle), StandardCharsets.UTF_8);
+    }
+
+    public boolean startsWith(int handle, byte[] prefix, int offset, int length) {
+        if (length(handle) < length) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            if (bytes[handle + 4 + i] != prefix[offset + i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public byte byteAt(int handle, int index) {
+        return bytes[handle + 4 + index];
+    }
+
+    /**
+     * Matches part of a string against a name query without copying it.
+     *
+     * @param handle the string
+     * @param skipStart the bytes to ignore at the start
+     * @param skipEnd the bytes to ignore at the end
+     * @param query the query
+     * @return true if the remaining bytes match
+     */
+    public boolean matches(int handle, int skipStart, int skipEnd, NameQuery query) {
+        int length = length(handle) - skipStart - skipEnd;
+        return length >= 0 && query.matches(bytes, handle + 4 + skipStart, length);
+    }
+
+    /**
+     * @return the number of distinct strings
+     */
+    public int size() {
+        return count;
+    }
+
+    /**
+     * @return the bytes used by the strings, excluding the hash table
+     */
+    public int getUsedBytes() {
+        return size;
+    }
+
+    private boolean equals(int handle, byte[] utf8, int offset, int length) {
+        return length(handle) == length && startsWith(handle, utf8, offset, length);
+    }
+
+    private int append(byte[] utf8, int offset, int length) {
+        int required = size + 4 + length;
+        if (required > bytes.length) {
+            bytes = Arrays.copyOf(bytes, Math.max(required, bytes.length * 2));
+        }
+        int handle = size;
+        bytes[handle] = (byte) (length >>> 24);
+        bytes[handle + 1] = (byte) (length >>> 16);
+        bytes[handle + 2] = (byte) (length >>> 8);
+        bytes[handle + 3] = (byte) length;
+        System.arraycopy(utf8, offset, bytes, handle + 4, length);
+        size = required;
+        return handle;
+    }
+
+    private void rehash() {
+        int[] old = table;
+        table = new int[old.length * 2];
+        Arrays.fill(table, EMPTY);
+        for (int handle : old) {
+            if (handle != EMPTY) {
+                insert(handle, hash(bytes, handle + 4, length(handle)));
+            }
+        }
+    }
+
+    private void insert(int handle, int hash) {
+        int mask = table.length - 1;
+        int slot = hash & mask;
+        while (table[slot] != EMPTY) {
+            slot = (slot + 1) & mask;
+        }
+        table[slot] = handle;
+    }
+
+    private static int hash(byte[] utf8, int offset, int length) {
+        int hash = 1;
+        for (int i = 0; i < length; i++) {
+            hash = 31 * hash + utf8[offset + i];
+        }
+        return hash ^ (hash >>> 16);
+    }
+}
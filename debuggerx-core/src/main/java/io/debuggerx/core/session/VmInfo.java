@@ -0,0 +1,197 @@
+package io.debuggerx.core.session;
+
+import io.debuggerx.common.constants.JdwpConstants;
+import io.debuggerx.protocol.jdwp.IdSizes;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * What the JVM of a session answered to the {@code VirtualMachine} queries every debugger sends
+ * while attaching: {@code Version}, {@code IDSizes}, {@code Capabilities}, {@code CapabilitiesNew},
+ * {@code ClassPaths} and {@code TopLevelThreadGroups}. None of them changes during the life of the
+ * JVM, so the first successful reply is recorded and later debuggers are answered by the proxy.
+ * <p>
+ * {@code TopLevelThreadGroups} returns objectIDs, which the JVM counts per send and frees on
+ * {@code VirtualMachine.DisposeObjects}. Once its reply is recorded those IDs are pinned: they are
+ * removed from every {@code DisposeObjects} command so that one debugger cannot invalidate them for
+ * the others.
+ *
+ * @author ouwu
+ */
+public class VmInfo {
+    private static final int VIRTUAL_MACHINE = 1;
+    private static final int TOP_LEVEL_THREAD_GROUPS = 5;
+    private static final int DISPOSE_OBJECTS = 14;
+    /**
+     * 可记录的VirtualMachine命令: Version、TopLevelThreadGroups、IDSizes、Capabilities、ClassPaths、CapabilitiesNew
+     */
+    private static final int[] RECORDED_COMMANDS = {1, TOP_LEVEL_THREAD_GROUPS, 7, 12, 13, 17};
+
+    /**
+     * 回复数据，按命令索引
+     */
+    private final byte[][] replies = new byte[18][];
+    /**
+     * 调试器不可释放的objectID(顶层线程组)
+     */
+    private final Set<Long> pinnedObjects = new HashSet<>();
+
+    private volatile IdSizes idSizes;
+
+    /**
+     * Checks whether a command is a bootstrap query answered from this record.
+     *
+     * @param commandSet the JDWP command set
+     * @param command the JDWP command
+     * @return true for the recorded {@code VirtualMachine} queries
+     */
+    public static boolean isRecorded(int commandSet, int command) {
+        if (commandSet != VIRTUAL_MACHINE) {
+            return false;
+        }
+        for (int recorded : RECORDED_COMMANDS) {
+            if (recorded == command) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @param commandSet the JDWP command set
+     * @param command the JDWP command
+     * @return true for {@code VirtualMachine.DisposeObjects}
+     */
+    public static boolean isDisposeObjects(int commandSet, int command) {
+        return commandSet == VIRTUAL_MACHINE && command == DISPOSE_OBJECTS;
+    }
+
+    public IdSizes getIdSizes() {
+        return idSizes;
+    }
+
+    public void setIdSizes(IdSizes idSizes) {
+        this.idSizes = idSizes;
+    }
+
+    /**
+     * Returns the recorded reply to a bootstrap query.
+     *
+     * @param commandSet the JDWP command set
+     * @param command the JDWP command
+     * @return the reply data, or null if not recorded yet; the array is shared and must not be modified
+     */
+    public synchronized byte[] get(int commandSet, int command) {
+        return isRecorded(commandSet, command) ? replies[command] : null;
+    }
+
+    /**
+     * Records the successful reply to a bootstrap query; later replies to the same query are ignored.
+     *
+     * @param commandSet the JDWP command set of the query
+     * @param command the JDWP command of the query
+     * @param data the reply data
+     */
+    public synchronized void record(int commandSet, int command, ByteBuf data) {
+        if (!isRecorded(commandSet, command) || replies[command] != null) {
+            return;
+        }
+        if (command == TOP_LEVEL_THREAD_GROUPS && !pin(data)) {
+            return;
+        }
+        byte[] bytes = new byte[data.readableBytes()];
+        data.getBytes(data.readerIndex(), bytes);
+        replies[command] = bytes;
+    }
+
+    /**
+     * Removes the pinned objectIDs from a {@code VirtualMachine.DisposeObjects} command.
+     *
+     * @param frame the complete command frame; not modified
+     * @param allocator allocator for the rewritten frame
+     * @return a new frame owned by the caller, or null if the command does not dispose a pinned object
+     */
+    public synchronized ByteBuf filterDisposeObjects(ByteBuf frame, ByteBufAllocator allocator) {
+        IdSizes sizes = idSizes;
+        if (pinnedObjects.isEmpty() || sizes == null) {
+            return null;
+        }
+        int objectIdSize = sizes.getObjectIdSize();
+        int entrySize = objectIdSize + 4;
+        int start = frame.readerIndex() + JdwpConstants.HEADER_LENGTH;
+        int requests = frame.readableBytes() >= JdwpConstants.HEADER_LENGTH + 4 ? frame.getInt(start) : 0;
+        if (requests <= 0 || frame.writerIndex() - start - 4 < (long) requests * entrySize) {
+            return null;
+        }
+        int kept = 0;
+        for (int i = 0; i < requests; i++) {
+            if (!pinnedObjects.contains(readId(frame, start + 4 + i * entrySize, objectIdSize))) {
+                kept++;
+            }
+        }
+        if (kept == requests) {
+            return null;
+        }
+        int length = JdwpConstants.HEADER_LENGTH + 4 + kept * entrySize;
+        ByteBuf filtered = allocator.buffer(length)
+                .writeInt(length)
+                .writeBytes(frame, frame.readerIndex() + 4, JdwpConstants.HEADER_LENGTH - 4)
+                .writeInt(kept);
+        for (int i = 0; i < requests; i++) {
+            int index = start + 4 + i * entrySize;
+            if (!pinnedObjects.contains(readId(frame, index, objectIdSize))) {
+                filtered.writeBytes(frame, index, entrySize);
+            }
+        }
+        return filtered;
+    }
+
+    /**
+     * Builds a reply frame from recorded data.
+     *
+     * @param id the packet ID of the debugger's command
+     * @param data the recorded reply data
+     * @param allocator the buffer allocator
+     * @return the reply frame, owned by the caller
+     */
+    public static ByteBuf replyFrame(int id, byte[] data, ByteBufAllocator allocator) {
+        int length = JdwpConstants.HEADER_LENGTH + data.length;
+        return allocator.buffer(length)
+                .writeInt(length)
+                .writeInt(id)
+                .writeByte(JdwpConstants.FLAG_REPLY_PACKET)
+                .writeShort(0)
+                .writeBytes(data);
+    }
+
+    /**
+     * TopLevelThreadGroups回复: int groups + groups个threadGroupID
+     */
+    private boolean pin(ByteBuf data) {
+        IdSizes sizes = idSizes;
+        if (sizes == null || data.readableBytes() < 4) {
+            // 无法解析出objectID时不记录，交由JVM应答
+            return false;
+        }
+        int objectIdSize = sizes.getObjectIdSize();
+        int groups = data.getInt(data.readerIndex());
+        if (groups < 0 || data.readableBytes() - 4 < (long) groups * objectIdSize) {
+            return false;
+        }
+        for (int i = 0; i < groups; i++) {
+            pinnedObjects.add(readId(data, data.readerIndex() + 4 + i * objectIdSize, objectIdSize));
+        }
+        return true;
+    }
+
+    private static long readId(ByteBuf buf, int index, int size) {
+        long value = 0;
+        for (int i = 0; i < size; i++) {
+            value = value << 8 | (buf.getByte(index + i) & 0xFF);
+        }
+        return value;
+    }
+}
@@ -1,7 +1,10 @@
 package io.debuggerx.core.strategy;
 
+import io.debuggerx.common.exception.DebuggerException;
 import io.debuggerx.core.service.DebuggerService;
+import io.debuggerx.protocol.packet.JdwpFrameChunk;
 import io.debuggerx.protocol.packet.JdwpPacket;
+import io.netty.buffer.ByteBuf;
 import io.netty.channel.ChannelHandlerContext;
 
 /**
@@ -19,4 +22,29 @@ public interface ConnectionHandlerStrategy {
      * @param service the debugger service instance for packet routing
      */
     void handle(ChannelHandlerContext ctx, JdwpPacket packet, DebuggerService service);
+
+    /**
+     * Tries to forward a raw frame without parsing it, rewriting only its packet ID in place.
+     * The caller keeps ownership of the frame; implementations retain it for any write.
+     *
+     * @param ctx the Netty channel context
+     * @param frame the complete JDWP frame, header included
+     * @param service the debugger service instance for packet routing
+     * @return true if the frame was handled, false if it needs full parsing via {@link #handle}
+     */
+    boolean forward(ChannelHandlerContext ctx, ByteBuf frame, DebuggerService service);
+
+    /**
+     * Forwards a part of a large frame passed on before it has fully arrived. Chunks of a frame come
+     * in order, the header first, and no other frame is interleaved with them.
+     * The caller keeps ownership of the chunk; implementations retain it for any write.
+     *
+     * @param ctx the Netty channel context
+     * @param chunk the header or the next data bytes of the frame
+     * @param service the debugger service instance for packet routing
+     * @throws DebuggerException if the connection type does not stream frames
+     */
+    default void forwardChunk(ChannelHandlerContext ctx, JdwpFrameChunk chunk, DebuggerService service) {
+        throw new DebuggerException("Streamed frames are not supported on " + ctx.channel());
+    }
 }
@@ -1,70 +1,188 @@
 package io.debuggerx.core.strategy.impl;
 
+import io.debuggerx.common.constants.JdwpConstants;
 import io.debuggerx.common.enums.ConnectionType;
-import io.debuggerx.common.utils.CollectionUtils;
+import io.debuggerx.core.service.ClassIndexLoader;
 import io.debuggerx.core.service.DebuggerService;
+import io.debuggerx.core.service.LocalReplyGate;
+import io.debuggerx.core.session.CommandCoalescer;
+import io.debuggerx.core.session.CommandKey;
 import io.debuggerx.core.session.DebugSession;
+import io.debuggerx.core.session.ReplyCache;
 import io.debuggerx.core.session.SessionManager;
+import io.debuggerx.core.session.VmInfo;
 import io.debuggerx.core.strategy.ConnectionHandlerStrategy;
-import io.debuggerx.protocol.packet.BreakpointRequestRelation;
+import io.debuggerx.protocol.packet.JdwpFrames;
+import io.debuggerx.protocol.packet.JdwpHeader;
 import io.debuggerx.protocol.packet.JdwpPacket;
 import io.debuggerx.protocol.packet.PacketSource;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
 import io.netty.channel.Channel;
 import io.netty.channel.ChannelFuture;
 import io.netty.channel.ChannelHandlerContext;
 import lombok.extern.slf4j.Slf4j;
 
-import java.util.Set;
+import java.util.function.IntConsumer;
+import java.util.function.IntSupplier;
 
 /**
  * Handles packets from debugger clients (IntelliJ, Eclipse, MCP, etc.).
- * Forwards commands to JVM and clears client breakpoints on disconnect.
+ * Forwards commands to JVM, answering bootstrap and cached metadata queries locally and coalescing identical read-only
+ * commands, and clears client breakpoints on disconnect.
  *
  * @author ouwu
  */
 @Slf4j
 public class DebuggerProxyStrategy implements ConnectionHandlerStrategy {
+    private final LocalReplyGate localReplies = LocalReplyGate.getInstance();
+
     @Override
     public void handle(ChannelHandlerContext ctx, JdwpPacket packet, DebuggerService service) {
         this.handleDebuggerProxyPacket(ctx.channel(), packet, service);
     }
 
+    @Override
+    public boolean forward(ChannelHandlerContext ctx, ByteBuf frame, DebuggerService service) {
+        DebugSession session = SessionManager.getInstance().sessionOf(ctx.channel());
+        if (session == null) {
+            return true;
+        }
+        if (this.replyFromVmInfo(ctx.channel(), frame, session) || this.replyFromClassIndex(ctx.channel(), frame, session)) {
+            return true;
+        }
+        if (service.requiresParsing(frame)) {
+            return false;
+        }
+        if (session.getJvmServerChannel().isActive()) {
+            Channel channel = ctx.channel();
+            int originId = JdwpFrames.id(frame);
+            byte commandSet = JdwpFrames.commandSet(frame);
+            byte command = JdwpFrames.command(frame);
+            IntSupplier register = () -> session.getNewIdAndSaveOriginLink(originId, channel, commandSet, command);
+            IntConsumer send = newId -> {
+                // 调试器不得释放会话共享的objectID
+                ByteBuf filtered = VmInfo.isDisposeObjects(commandSet, command)
+                        ? session.getVmInfo().filterDisposeObjects(frame, channel.alloc()) : null;
+                ByteBuf out = filtered == null ? frame.retain() : filtered;
+                JdwpFrames.setId(out, newId);
+                this.writeToJvm(session, out);
+            };
+            if (CommandCoalescer.isCoalescable(commandSet, command)) {
+                session.coalesce(CommandKey.of(frame), channel, originId, register, send);
+            } else {
+                send.accept(register.getAsInt());
+            }
+        }
+        return true;
+    }
+
     public void handleDebuggerProxyPacket(Channel channel, JdwpPacket packet, DebuggerService service) {
         if (packet.getHeader().isDisposeCommand()) {
+            // 断开时会话清除该调试器独占的事件请求
             log.info("[Dispose command] Dispose command received, closing debugger channel: {}", channel);
-            sendClearAllBreakpointsCommand(channel);
             channel.close();
             return;
         }
         // 查找对应的调试目标会话并转发
-        DebugSession session = SessionManager.getInstance().findJvmServerSession();
+        DebugSession session = SessionManager.getInstance().sessionOf(channel);
         // 检查channel状态
-        if (session.getJvmServerChannel().isActive()) {
-            service.handlePacket(new PacketSource(ConnectionType.DEBUGGER_PROXY, channel), packet, session);
-
-            ChannelFuture future = session.getJvmServerChannel().writeAndFlush(packet);
-            future.addListener(f -> {
-                if (!f.isSuccess()) {
-                    log.error("[JvmServer]Failed to forward packet to jvm server", f.cause());
-                }
-            });
+        if (session != null && session.getJvmServerChannel().isActive()) {
+            if (this.replyFromCache(channel, packet, session)) {
+                return;
+            }
+            JdwpHeader header = packet.getHeader();
+            IntSupplier register = () -> {
+                service.handlePacket(new PacketSource(ConnectionType.DEBUGGER_PROXY, channel), packet, session);
+                return header.getId();
+            };
+            // 入站数据包由DebugProxyHandler释放，转发需持有一份引用
+            IntConsumer send = newId -> this.writeToJvm(session, packet.retain());
+            if (CommandCoalescer.isCoalescable(header.getCommandSet(), header.getCommand())) {
+                session.coalesce(CommandKey.of(packet), channel, header.getId(), register, send);
+            } else {
+                send.accept(register.getAsInt());
+            }
         }
     }
 
-    private void sendClearAllBreakpointsCommand(Channel channel) {
-        DebugSession session = SessionManager.getInstance().findJvmServerSession();
+    private void writeToJvm(DebugSession session, Object msg) {
+        ChannelFuture future = session.getJvmServerChannel().writeAndFlush(msg);
+        future.addListener(f -> {
+            if (!f.isSuccess()) {
+                log.error("[JvmServer]Failed to forward packet to jvm server", f.cause());
+            }
+        });
+    }
 
-        Set<BreakpointRequestRelation> breakpointRequestRelations = session.getBreakpointRequestMap().get(channel);
-        if (CollectionUtils.isEmpty(breakpointRequestRelations)) {
-            return;
+    /**
+     * Answers a {@code VirtualMachine} bootstrap query from what the JVM of the session already
+     * replied to an earlier debugger, with this debugger's own packet ID.
+     *
+     * @param channel the debugger that sent the query
+     * @param frame the query frame
+     * @param session the debug session
+     * @return true if the reply was served locally and the query must not be forwarded
+     */
+    private boolean replyFromVmInfo(Channel channel, ByteBuf frame, DebugSession session) {
+        byte commandSet = JdwpFrames.commandSet(frame);
+        byte command = JdwpFrames.command(frame);
+        byte[] recorded = VmInfo.isRecorded(commandSet, command) ? session.getVmInfo().get(commandSet, command) : null;
+        if (recorded == null) {
+            return false;
+        }
+        localReplies.writeLocalReply(channel, VmInfo.replyFrame(JdwpFrames.id(frame), recorded, channel.alloc()));
+        return true;
+    }
+
+    /**
+     * Answers {@code ClassesBySignature}, {@code AllClasses} and {@code AllClassesWithGeneric} from the
+     * session's loaded-class index; a local class list starts a background resync of the index.
+     *
+     * @param channel the debugger that sent the query
+     * @param frame the query frame
+     * @param session the debug session
+     * @return true if the reply was served locally and the query must not be forwarded
+     */
+    private boolean replyFromClassIndex(Channel channel, ByteBuf frame, DebugSession session) {
+        if (JdwpFrames.commandSet(frame) != JdwpConstants.VIRTUAL_MACHINE_COMMAND_SET) {
+            return false;
+        }
+        ByteBuf reply = session.getClassIndex().reply(frame, session.getVmInfo().getIdSizes(), channel.alloc());
+        if (reply == null) {
+            return false;
+        }
+        localReplies.writeLocalReply(channel, reply);
+        if (JdwpFrames.command(frame) != JdwpConstants.CLASSES_BY_SIGNATURE_COMMAND) {
+            ClassIndexLoader.resync(session);
         }
+        return true;
+    }
 
-        for (BreakpointRequestRelation breakpointRequestRelation : breakpointRequestRelations) {
-            JdwpPacket packet = JdwpPacket.createClearBreakpointsPacket(breakpointRequestRelation.toByteArray());
-            int newId = session.getNewIdAndSaveOriginLink(packet, new PacketSource(ConnectionType.DEBUGGER_PROXY, channel));
-            packet.getHeader().setId(newId);
-            session.getJvmServerChannel().writeAndFlush(packet);
+    /**
+     * Answers a read-only metadata query from the session's reply cache, with the debugger's own packet ID.
+     *
+     * @param channel the debugger that sent the query
+     * @param packet the query
+     * @param session the debug session
+     * @return true if the reply was served from the cache and the query must not be forwarded
+     */
+    private boolean replyFromCache(Channel channel, JdwpPacket packet, DebugSession session) {
+        JdwpHeader header = packet.getHeader();
+        if (!ReplyCache.isCacheable(header.getCommandSet(), header.getCommand())) {
+            return false;
+        }
+        byte[] cached = session.getReplyCache().get(packet);
+        if (cached == null) {
+            return false;
         }
+        JdwpHeader replyHeader = new JdwpHeader();
+        replyHeader.setId(header.getId());
+        replyHeader.setFlags(JdwpConstants.FLAG_REPLY_PACKET);
+        replyHeader.setErrorCode((short) 0);
+        // 缓存的数组只读共享，包装即可
+        localReplies.writeLocalReply(channel, new JdwpPacket(replyHeader, Unpooled.wrappedBuffer(cached)));
+        return true;
     }
 
 }
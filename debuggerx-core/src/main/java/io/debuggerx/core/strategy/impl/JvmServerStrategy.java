@@ -1,65 +1,451 @@
 package io.debuggerx.core.strategy.impl;
 
+import io.debuggerx.common.constants.JdwpConstants;
 import io.debuggerx.common.enums.ConnectionType;
 import io.debuggerx.common.utils.CollectionUtils;
+import io.debuggerx.core.metrics.ProxyMetrics;
+import io.debuggerx.core.service.DebuggerBackpressure;
 import io.debuggerx.core.service.DebuggerService;
+import io.debuggerx.core.service.LocalReplyGate;
+import io.debuggerx.core.session.CommandCoalescer;
+import io.debuggerx.core.session.CommandKey;
 import io.debuggerx.core.session.DebugSession;
+import io.debuggerx.core.session.EventRouteTable;
+import io.debuggerx.core.session.InFlightRequest;
+import io.debuggerx.core.session.ReplyCache;
 import io.debuggerx.core.session.SessionManager;
 import io.debuggerx.core.strategy.ConnectionHandlerStrategy;
+import io.debuggerx.protocol.packet.JdwpFrameChunk;
+import io.debuggerx.protocol.packet.JdwpFrames;
 import io.debuggerx.protocol.packet.JdwpPacket;
 import io.debuggerx.protocol.packet.PacketSource;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.Unpooled;
 import io.netty.channel.Channel;
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.ChannelFutureListener;
 import io.netty.channel.ChannelHandlerContext;
+import io.netty.util.AttributeKey;
+import io.netty.util.concurrent.FastThreadLocal;
+import io.netty.util.ReferenceCountUtil;
+import lombok.AllArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 
+import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.List;
 import java.util.stream.Collectors;
 
 /**
  * Handles packets from the JVM server.
- * Broadcasts events and replies to all active debugger clients.
+ * Routes replies to the debugger that sent the command and events to the debuggers receiving them,
+ * splitting composite events whose events go to different debuggers.
  *
  * @author ouwu
  */
 @Slf4j
 public class JvmServerStrategy implements ConnectionHandlerStrategy {
+    /**
+     * JVM channel上正在分段转发的回复
+     */
+    private static final AttributeKey<ReplyStream> REPLY_STREAM = AttributeKey.valueOf("debuggerx.replyStream");
+    /**
+     * 回复路径查询在途命令复用的视图，每个事件循环一个
+     */
+    private static final FastThreadLocal<InFlightRequest> REPLY_VIEW = new FastThreadLocal<InFlightRequest>() {
+        @Override
+        protected InFlightRequest initialValue() {
+            return new InFlightRequest();
+        }
+    };
+    /**
+     * 复合事件按调试器筛选时复用的位图，每个事件循环一个
+     */
+    private static final FastThreadLocal<BitSet> SELECTED_EVENTS = new FastThreadLocal<BitSet>() {
+        @Override
+        protected BitSet initialValue() {
+            return new BitSet();
+        }
+    };
+
+    private final ProxyMetrics metrics = ProxyMetrics.getInstance();
+    private final DebuggerBackpressure backpressure = DebuggerBackpressure.getInstance();
+    private final LocalReplyGate localReplies = LocalReplyGate.getInstance();
+
     @Override
     public void handle(ChannelHandlerContext ctx, JdwpPacket packet, DebuggerService service) {
-        this.handleJvmServerPacket(packet, service);
+        this.handleJvmServerPacket(ctx.channel(), packet, service);
     }
 
-    public void handleJvmServerPacket(JdwpPacket packet, DebuggerService service) {
-        DebugSession session = SessionManager.getInstance().findJvmServerSession();
+    @Override
+    public boolean forward(ChannelHandlerContext ctx, ByteBuf frame, DebuggerService service) {
+        // 事件包需要解析requestId才能路由
+        if (JdwpFrames.isCommand(frame)) {
+            return false;
+        }
+        long receivedAt = System.nanoTime();
+        DebugSession session = SessionManager.getInstance().sessionOf(ctx.channel());
+        if (session == null) {
+            // 握手完成前的回复不属于任何会话，交由解析路径处理
+            return false;
+        }
+        int id = JdwpFrames.id(frame);
+        // 已解析过的命令(含代理内部请求)其回复也交由处理器处理
+        if (session.isParsedRequest(id)) {
+            return false;
+        }
+        CommandCoalescer.CoalescedCommand coalesced = session.completeCoalesced(id);
+        if (coalesced != null) {
+            this.fanOut(session, coalesced, frame);
+        }
+        InFlightRequest request = REPLY_VIEW.get();
+        boolean inFlight = session.removeOriginLink(id, request);
+        if (inFlight && JdwpFrames.errorCode(frame) == 0) {
+            session.getVmInfo().record(request.getCommandSet(), request.getCommand(),
+                    frame.slice(frame.readerIndex() + JdwpConstants.HEADER_LENGTH, frame.readableBytes() - JdwpConstants.HEADER_LENGTH));
+        }
+        PacketSource origin = inFlight ? session.getOriginSource(request) : null;
+        if (origin == null) {
+            log.debug("[JvmServer] Dropping reply id={} without in-flight command", id);
+            return true;
+        }
+        metrics.recordReply(request, receivedAt);
+        JdwpFrames.setId(frame, request.getOriginId());
+        this.writeReply(session, frame, origin.getChannel(), request, receivedAt);
+        return true;
+    }
+
+    @Override
+    public void forwardChunk(ChannelHandlerContext ctx, JdwpFrameChunk chunk, DebuggerService service) {
+        Channel jvmChannel = ctx.channel();
+        if (chunk.isHead()) {
+            jvmChannel.attr(REPLY_STREAM).set(this.openReplyStream(jvmChannel, chunk.content()));
+            return;
+        }
+        ReplyStream stream = jvmChannel.attr(REPLY_STREAM).get();
+        if (chunk.isLast()) {
+            jvmChannel.attr(REPLY_STREAM).set(null);
+        }
+        if (stream == null || stream.channel == null || !stream.channel.isActive()) {
+            // 调试器已断开，丢弃剩余数据
+            return;
+        }
+        if (!backpressure.admitContinuation(stream.session, stream.channel)) {
+            // 部分写出的回复只能随连接一起丢弃，调试器正在断开
+            localReplies.closeStream(stream.channel);
+            stream.channel = null;
+            return;
+        }
+        ChannelFuture future = stream.channel.writeAndFlush(chunk.content().retain());
+        if (chunk.isLast()) {
+            future.addListener(stream.flushListener);
+            localReplies.closeStream(stream.channel);
+        }
+    }
+
+    /**
+     * Starts forwarding a large reply whose data has not fully arrived: maps it back to the origin
+     * debugger and writes the rewritten header. The decoder only streams replies to commands that
+     * need no processing ({@link DebugSession#isStreamableReply}).
+     *
+     * @param jvmChannel the JVM channel
+     * @param header the reply header; its ID is rewritten in place
+     * @return the stream state; its channel is null if the data is to be dropped
+     */
+    private ReplyStream openReplyStream(Channel jvmChannel, ByteBuf header) {
+        long receivedAt = System.nanoTime();
+        DebugSession session = SessionManager.getInstance().sessionOf(jvmChannel);
+        int id = JdwpFrames.id(header);
+        CommandCoalescer.CoalescedCommand coalesced = session.completeCoalesced(id);
+        if (coalesced != null) {
+            // 分段决定之后才加入的等待者拿不到完整回复，重新发送其命令
+            this.reissue(session, coalesced);
+        }
+        InFlightRequest request = REPLY_VIEW.get();
+        PacketSource origin = session.removeOriginLink(id, request) ? session.getOriginSource(request) : null;
+        if (origin == null) {
+            log.debug("[JvmServer] Dropping streamed reply id={} without in-flight command", id);
+            return new ReplyStream(session, null, null);
+        }
+        metrics.recordReply(request, receivedAt);
+        metrics.recordStreamedReply(JdwpFrames.length(header));
+        Channel channel = origin.getChannel();
+        // 回复部分写出后只能以断开调试器的方式丢弃，开始时按常规回复判断背压
+        if (!channel.isActive() || !backpressure.admit(session, channel, true)) {
+            return new ReplyStream(session, null, null);
+        }
+        JdwpFrames.setId(header, request.getOriginId());
+        localReplies.openStream(channel, header.retain());
+        return new ReplyStream(session, channel, metrics.replyFlushListener(request, receivedAt));
+    }
+
+    public void handleJvmServerPacket(Channel jvmChannel, JdwpPacket packet, DebuggerService service) {
+        DebugSession session = SessionManager.getInstance().sessionOf(jvmChannel);
         if (session == null) {
             log.error("No session found for jvm server session. Is command packet?:{}", packet.getHeader().isCommand());
             return;
         }
+        boolean isEvent = packet.getHeader().isCommand();
+        // 回复包在handlePacket中释放在途记录，先取出用于延迟统计
+        InFlightRequest request = isEvent ? null : REPLY_VIEW.get();
+        if (request != null && !session.findInFlightRequest(packet.getHeader().getId(), request)) {
+            request = null;
+        }
+        long receivedAt = System.nanoTime();
+        if (request != null) {
+            metrics.recordReply(request, receivedAt);
+            this.cacheReply(session, request, packet);
+            if (packet.getHeader().getErrorCode() == 0) {
+                session.getVmInfo().record(request.getCommandSet(), request.getCommand(), packet.content());
+            }
+        }
+        CommandCoalescer.CoalescedCommand coalesced = isEvent ? null : session.completeCoalesced(packet.getHeader().getId());
+        if (coalesced != null) {
+            ByteBuf encoded = packet.encode(session.getJvmServerChannel().alloc());
+            try {
+                this.fanOut(session, coalesced, encoded);
+            } finally {
+                encoded.release();
+            }
+        }
         List<PacketSource> packetSources = service.handlePacket(new PacketSource(ConnectionType.JVM_SERVER, session.getJvmServerChannel()), packet, session);
         if (CollectionUtils.isEmpty(packetSources)) {
-            log.error("Channel is null.");
+            if (isEvent) {
+                metrics.recordEvent(0);
+                if (session.getClassIndex().ownsAll(packet.getRequestIds())) {
+                    // 只属于代理类索引请求的事件
+                    log.trace("[JvmServer] Consumed class index event id={}", packet.getHeader().getId());
+                } else {
+                    log.error("Channel is null.");
+                }
+            } else {
+                // 代理内部请求的回复在处理器中消费，无需转发
+                log.debug("[JvmServer] Consumed reply id={} of internal request", packet.getHeader().getId());
+            }
             return;
         }
-        List<PacketSource> collect = packetSources.stream().filter(s -> s.getSourceType().equals(ConnectionType.DEBUGGER_PROXY)).collect(Collectors.toList());
+        // 一个复合事件中的多个requestId可能指向同一个调试器，去重避免重复投递
+        List<PacketSource> collect = packetSources.stream().filter(s -> s.getSourceType().equals(ConnectionType.DEBUGGER_PROXY)).distinct().collect(Collectors.toList());
         if (CollectionUtils.isEmpty(collect)) {
             log.error("The reply channel is empty.");
             return;
         }
-        this.broadcast(packet, collect.stream().map(PacketSource::getChannel).collect(Collectors.toList()));
+        if (!isEvent && request != null) {
+            this.writeReply(session, packet, collect.get(0).getChannel(), request, receivedAt);
+            return;
+        }
+        if (isEvent) {
+            metrics.recordEvent(this.deliverEvent(session, packet, collect));
+            return;
+        }
+        this.broadcast(session, packet, collect.stream().map(PacketSource::getChannel).collect(Collectors.toList()));
+    }
+
+    /**
+     * Delivers a composite event. A debugger that receives only some of its events gets its own
+     * composite holding just those events; debuggers receiving all of them share one encoded packet.
+     *
+     * @param session the debug session
+     * @param packet the composite event; the caller keeps its reference
+     * @param targets the debuggers receiving at least one of its events
+     * @return the number of channels written to
+     */
+    private int deliverEvent(DebugSession session, JdwpPacket packet, List<PacketSource> targets) {
+        int[] offsets = packet.getEventOffsets();
+        List<Integer> requestIds = packet.getRequestIds();
+        if (offsets == null || requestIds.size() < 2) {
+            return this.broadcast(session, packet, targets.stream().map(PacketSource::getChannel).collect(Collectors.toList()));
+        }
+        EventRouteTable routes = session.getEventRoutes();
+        boolean essential = backpressure.isEssential(packet);
+        List<Channel> whole = new ArrayList<>(targets.size());
+        int deliveries = 0;
+        int events = requestIds.size();
+        BitSet selected = SELECTED_EVENTS.get();
+        for (PacketSource target : targets) {
+            Channel channel = target.getChannel();
+            int slot = session.slotOf(channel);
+            selected.clear();
+            for (int i = 0; i < events; i++) {
+                if (routes.receives(requestIds.get(i), slot)) {
+                    selected.set(i);
+                }
+            }
+            int count = selected.cardinality();
+            if (count == events) {
+                whole.add(channel);
+                continue;
+            }
+            if (count == 0 || !channel.isActive() || !backpressure.admit(session, channel, essential)) {
+                continue;
+            }
+            metrics.recordFilteredEvents(events - count);
+            channel.writeAndFlush(this.selectEvents(packet, selected, count, channel.alloc()));
+            deliveries++;
+        }
+        return whole.isEmpty() ? deliveries : deliveries + this.broadcast(session, packet, whole);
+    }
+
+    /**
+     * Encodes a composite event holding only the selected events, copying runs of adjacent events at once.
+     *
+     * @param packet the parsed composite event
+     * @param selected the events to keep, by position; reused by the caller
+     * @param count the number of selected events
+     * @param allocator the allocator of the target channel
+     * @return the new frame
+     */
+    private ByteBuf selectEvents(JdwpPacket packet, BitSet selected, int count, ByteBufAllocator allocator) {
+        int[] offsets = packet.getEventOffsets();
+        int length = JdwpConstants.HEADER_LENGTH + offsets[0];
+        for (int i = selected.nextSetBit(0); i >= 0; i = selected.nextSetBit(i + 1)) {
+            length += offsets[i + 1] - offsets[i];
+        }
+        ByteBuf data = packet.content();
+        int base = data.readerIndex();
+        ByteBuf out = allocator.directBuffer(length);
+        packet.getHeader().writeTo(out);
+        out.setInt(0, length);
+        // suspendPolicy
+        out.writeByte(data.getByte(base));
+        out.writeInt(count);
+        for (int runStart = selected.nextSetBit(0); runStart >= 0; ) {
+            int runEnd = selected.nextClearBit(runStart);
+            out.writeBytes(data, base + offsets[runStart], offsets[runEnd] - offsets[runStart]);
+            runStart = selected.nextSetBit(runEnd);
+        }
+        return out;
+    }
+
+    /**
+     * Writes the reply of a coalesced command to every debugger that sent an identical command, each
+     * with its own packet ID. Replies carrying objectIDs are not shared: the waiters' commands are
+     * re-issued so that the JVM counts every reference it hands out.
+     *
+     * @param session the debug session
+     * @param coalesced the command and its waiters
+     * @param reply the complete reply frame; the caller keeps its reference
+     */
+    private void fanOut(DebugSession session, CommandCoalescer.CoalescedCommand coalesced, ByteBuf reply) {
+        if (CommandCoalescer.carriesObjectIds(coalesced.getKey(), reply, session.getVmInfo().getIdSizes())) {
+            this.reissue(session, coalesced);
+            return;
+        }
+        for (CommandCoalescer.Waiter waiter : coalesced.getWaiters()) {
+            PacketSource source = session.getDebuggerSource(waiter.getSlot());
+            if (source == null) {
+                continue;
+            }
+            Channel channel = source.getChannel();
+            if (!channel.isActive() || !backpressure.admit(session, channel, true)) {
+                continue;
+            }
+            // 每个等待者只复制11字节头部改写id，数据部分共享同一份回复
+            ByteBuf header = channel.alloc().buffer(JdwpConstants.HEADER_LENGTH)
+                    .writeBytes(reply, reply.readerIndex(), JdwpConstants.HEADER_LENGTH);
+            JdwpFrames.setId(header, waiter.getOriginId());
+            ByteBuf data = reply.retainedSlice(reply.readerIndex() + JdwpConstants.HEADER_LENGTH,
+                    reply.readableBytes() - JdwpConstants.HEADER_LENGTH);
+            channel.writeAndFlush(Unpooled.wrappedBuffer(header, data));
+        }
+    }
+
+    private void reissue(DebugSession session, CommandCoalescer.CoalescedCommand coalesced) {
+        Channel jvmChannel = session.getJvmServerChannel();
+        CommandKey key = coalesced.getKey();
+        int reissued = 0;
+        for (CommandCoalescer.Waiter waiter : coalesced.getWaiters()) {
+            PacketSource source = session.getDebuggerSource(waiter.getSlot());
+            if (source == null) {
+                continue;
+            }
+            int newId = session.getNewIdAndSaveOriginLink(waiter.getOriginId(), source.getChannel(),
+                    (byte) key.commandSet(), (byte) key.command());
+            jvmChannel.write(key.toFrame(newId, jvmChannel.alloc()));
+            reissued++;
+        }
+        jvmChannel.flush();
+        session.getCoalescer().recordReissued(reissued);
+    }
+
+    /**
+     * Stores a successful reply to a cacheable query; the held command packet is the cache key.
+     *
+     * @param session the debug session
+     * @param request the in-flight command, still holding its packet
+     * @param reply the reply from the JVM
+     */
+    private void cacheReply(DebugSession session, InFlightRequest request, JdwpPacket reply) {
+        if (request.getPacket() == null || reply.getHeader().getErrorCode() != 0
+                || !ReplyCache.isCacheable(request.getCommandSet(), request.getCommand())
+                || !session.isCacheableGeneration(request)) {
+            return;
+        }
+        session.getReplyCache().put(request.getPacket(), reply, session.getVmInfo().getIdSizes());
+    }
+
+    /**
+     * Writes a reply back to the debugger that sent the command, recording its latency once flushed.
+     *
+     * @param session the session of the debugger
+     * @param msg the reply frame or packet; the caller keeps its own reference
+     * @param channel the origin debugger channel
+     * @param request the in-flight command the reply belongs to
+     * @param receivedAt {@link System#nanoTime()} when the reply was received
+     */
+    private void writeReply(DebugSession session, Object msg, Channel channel, InFlightRequest request, long receivedAt) {
+        if (!channel.isActive() || !backpressure.admit(session, channel, true)) {
+            return;
+        }
+        channel.writeAndFlush(ReferenceCountUtil.retain(msg))
+                .addListener(metrics.replyFlushListener(request, receivedAt));
     }
 
     /**
      * Broadcasts a message to multiple debugger clients.
-     * Only sends to active channels.
+     * Only sends to active channels that {@link DebuggerBackpressure} admits. Each write retains the
+     * message; the caller keeps its own reference.
+     * A packet going to more than one client is encoded once into a pooled direct buffer and every
+     * channel receives a retained duplicate of it, so fan-out does not multiply serialization cost.
      *
+     * @param session the session of the debuggers
      * @param msg the message to broadcast
      * @param channels the list of debugger channels
+     * @return the number of channels written to
      */
-    public void broadcast(Object msg, List<Channel> channels) {
-        channels.stream()
+    public int broadcast(DebugSession session, Object msg, List<Channel> channels) {
+        boolean essential = !(msg instanceof JdwpPacket) || backpressure.isEssential((JdwpPacket) msg);
+        List<Channel> activeChannels = channels.stream()
                 .filter(Channel::isActive)
-                .forEach(debuggerChannel -> {
-                    debuggerChannel.writeAndFlush(msg);
-                });
+                .filter(channel -> backpressure.admit(session, channel, essential))
+                .collect(Collectors.toList());
+        if (activeChannels.size() > 1 && msg instanceof JdwpPacket) {
+            ByteBuf encoded = ((JdwpPacket) msg).encode(activeChannels.get(0).alloc());
+            try {
+                activeChannels.forEach(debuggerChannel -> debuggerChannel.writeAndFlush(encoded.retainedDuplicate()));
+            } finally {
+                encoded.release();
+            }
+            return activeChannels.size();
+        }
+        activeChannels.forEach(debuggerChannel -> debuggerChannel.writeAndFlush(ReferenceCountUtil.retain(msg)));
+        return activeChannels.size();
     }
 
+    /**
+     * 分段转发中的回复
+     */
+    @AllArgsConstructor
+    private static final class ReplyStream {
+        private final DebugSession session;
+        /**
+         * 接收回复的调试器，null表示丢弃
+         */
+        private Channel channel;
+        /**
+         * 最后一段写出后记录延迟
+         */
+        private final ChannelFutureListener flushListener;
+    }
 }
@@ -0,0 +1,279 @@
+import io.debuggerx.common.exception.DebuggerException;
+import io.debuggerx.core.capture.CaptureAnalyzer;
+import io.debuggerx.core.capture.CaptureFormat;
+import io.debuggerx.core.capture.CaptureReport;
+import io.debuggerx.protocol.enums.EventKind;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @author ouwu
+ */
+public class CaptureAnalyzerTest {
+    /**
+     * 与100ms窗口对齐的起始时间
+     */
+    private static final long BASE = TimeUnit.SECONDS.toNanos(1000);
+    private static final int ID = Integer.MAX_VALUE;
+    private static final byte CLASS_PREPARE = 8;
+    private static final byte BREAKPOINT = 2;
+
+    private File file;
+
+    @Before
+    public void createFile() throws IOException {
+        file = File.createTempFile("capture-analyzer", ".dbxcap");
+    }
+
+    @After
+    public void deleteFile() {
+        file.delete();
+    }
+
+    @Test
+    public void testPairsRepliesPerSessionAndFindsSlowRequests() throws Exception {
+        writeCapture(file);
+        CaptureReport report = new CaptureAnalyzer(TimeUnit.MILLISECONDS.toNanos(100), 3, 10).analyze(file.getPath());
+
+        Assert.assertEquals(5, report.getRoundTrips());
+        Assert.assertEquals(1, report.getUnanswered());
+        Assert.assertEquals(1, report.getUnpairedReplies());
+        Assert.assertEquals(1, report.getTruncatedFrames());
+        Assert.assertEquals(TimeUnit.MILLISECONDS.toNanos(400), report.getLastTimestamp() - report.getFirstTimestamp());
+
+        // 两个会话的新id相同，回复按各调试器所属的JVM配对
+        CaptureReport.CommandStats threadName = command(report, 11, 1);
+        Assert.assertEquals("ThreadReference.1", threadName.getName());
+        Assert.assertEquals(2, threadName.getCommands());
+        Assert.assertEquals(2, threadName.getReplies());
+        Assert.assertEquals(TimeUnit.MILLISECONDS.toNanos(50), threadName.getLatency().getMaxNanos());
+        long median = threadName.getLatency().percentileNanos(0.5);
+        Assert.assertTrue(median >= TimeUnit.MILLISECONDS.toNanos(2) && median < TimeUnit.MICROSECONDS.toNanos(2250));
+
+        CaptureReport.CommandStats setRequest = command(report, 15, 1);
+        Assert.assertEquals("EventRequest.1 SET_EVENT_REQUEST", setRequest.getName());
+        Assert.assertEquals(1, setRequest.getCommands());
+        Assert.assertEquals(1, setRequest.getErrors());
+        Assert.assertEquals("VirtualMachine.7 ID_SIZES", command(report, 1, 7).getName());
+        Assert.assertSame(threadName, report.getCommands().get(0));
+
+        List<CaptureReport.SlowRequest> slowest = report.getSlowestRequests();
+        Assert.assertEquals(5, slowest.size());
+        Assert.assertEquals("debugger /127.0.0.1:40001", slowest.get(0).getClient());
+        Assert.assertEquals(2, slowest.get(0).getOriginId());
+        Assert.assertEquals(TimeUnit.MILLISECONDS.toNanos(50), slowest.get(0).getLatencyNanos());
+        Assert.assertEquals("debugger /127.0.0.1:40002", slowest.get(1).getClient());
+        Assert.assertEquals(TimeUnit.MILLISECONDS.toNanos(5), slowest.get(1).getLatencyNanos());
+
+        Assert.assertEquals("Event (64)", report.getCommandSetsByCount().get(0).getName());
+        Assert.assertEquals(10, report.getCommandSetsByCount().get(0).getPackets());
+        Assert.assertEquals(5, report.getCommandSetsByCount().get(1).getPackets());
+        Assert.assertEquals("VirtualMachine (1)", report.getCommandSetsByCount().get(1).getName());
+
+        List<CaptureReport.ClientStats> clients = report.getClients();
+        Assert.assertEquals("proxy", clients.get(0).getDescription());
+        Assert.assertEquals(1, clients.get(0).getForwarded());
+        Assert.assertEquals(3, clients.get(1).getForwarded());
+        Assert.assertEquals(2, clients.get(1).getReplies());
+        Assert.assertEquals(12, clients.get(2).getEvents());
+        Assert.assertEquals(10, clients.get(2).getEventPackets());
+        Assert.assertEquals(2, clients.get(3).getReplies());
+        Assert.assertTrue(report.toString().contains("debugger /127.0.0.1:40002"));
+    }
+
+    @Test
+    public void testPairsCollidingIdsByJvmChannel() throws Exception {
+        // 两个会话都还没有回复过，只能靠LINK记录中的JVM channel区分同一新id
+        try (DataOutputStream out = new DataOutputStream(new FileOutputStream(file))) {
+            out.write(CaptureFormat.MAGIC);
+            record(out, 0, CaptureFormat.CHANNEL, 1, "debugger /127.0.0.1:40001".getBytes(StandardCharsets.UTF_8));
+            record(out, 0, CaptureFormat.CHANNEL, 3, "debugger /127.0.0.1:40002".getBytes(StandardCharsets.UTF_8));
+            record(out, 0, CaptureFormat.FROM_DEBUGGER, 1, command(7, 11, 1, new byte[4]));
+            record(out, 0, CaptureFormat.LINK, 1, link(ID, 7, 11, 1, 2));
+            record(out, 1, CaptureFormat.FROM_DEBUGGER, 3, command(8, 11, 1, new byte[4]));
+            record(out, 1, CaptureFormat.LINK, 3, link(ID, 8, 11, 1, 4));
+            // 另一个JVM的同id回复不属于任何一个
+            record(out, 3, CaptureFormat.FROM_JVM, 6, reply(ID, 0, new byte[0]));
+            record(out, 5, CaptureFormat.FROM_JVM, 4, reply(ID, 0, new byte[0]));
+            record(out, 50, CaptureFormat.FROM_JVM, 2, reply(ID, 0, new byte[0]));
+        }
+        CaptureReport report = new CaptureAnalyzer().analyze(file.getPath());
+
+        Assert.assertEquals(2, report.getRoundTrips());
+        Assert.assertEquals(0, report.getUnanswered());
+        Assert.assertEquals(1, report.getUnpairedReplies());
+        List<CaptureReport.SlowRequest> slowest = report.getSlowestRequests();
+        Assert.assertEquals("debugger /127.0.0.1:40001", slowest.get(0).getClient());
+        Assert.assertEquals(7, slowest.get(0).getOriginId());
+        Assert.assertEquals(TimeUnit.MILLISECONDS.toNanos(50), slowest.get(0).getLatencyNanos());
+        Assert.assertEquals("debugger /127.0.0.1:40002", slowest.get(1).getClient());
+        Assert.assertEquals(8, slowest.get(1).getOriginId());
+        Assert.assertEquals(TimeUnit.MILLISECONDS.toNanos(4), slowest.get(1).getLatencyNanos());
+    }
+
+    @Test
+    public void testWalksCompositeEventsAndFindsStorms() throws Exception {
+        writeCapture(file);
+        CaptureReport report = new CaptureAnalyzer(TimeUnit.MILLISECONDS.toNanos(100), 3, 10).analyze(file.getPath());
+
+        // 第二个事件只有按JVM的4字节ID解析才能读到
+        CaptureReport.EventStats breakpoints = report.getEvents().get(0);
+        Assert.assertEquals(EventKind.BREAKPOINT, breakpoints.getKind());
+        Assert.assertEquals(9, breakpoints.getEvents());
+        Assert.assertEquals(4, breakpoints.getPeakWindowEvents());
+        Assert.assertEquals(BASE + TimeUnit.MILLISECONDS.toNanos(200), breakpoints.getPeakWindowStart());
+        Assert.assertEquals(1, breakpoints.getStorms().size());
+        CaptureReport.Storm storm = breakpoints.getStorms().get(0);
+        Assert.assertEquals(BASE + TimeUnit.MILLISECONDS.toNanos(100), storm.getStart());
+        Assert.assertEquals(BASE + TimeUnit.MILLISECONDS.toNanos(300), storm.getEnd());
+        Assert.assertEquals(7, storm.getEvents());
+
+        CaptureReport.EventStats classPrepare = report.getEvents().get(1);
+        Assert.assertEquals(EventKind.CLASS_PREPARE, classPrepare.getKind());
+        Assert.assertEquals(2, classPrepare.getEvents());
+        Assert.assertTrue(classPrepare.getStorms().isEmpty());
+        // 截断帧中第一个事件之后的事件
+        Assert.assertEquals(1, report.getUnparsedEvents());
+    }
+
+    @Test(expected = DebuggerException.class)
+    public void testRejectsFileWithoutMagic() throws Exception {
+        try (FileOutputStream out = new FileOutputStream(file)) {
+            out.write("not a capture".getBytes(StandardCharsets.US_ASCII));
+        }
+        new CaptureAnalyzer().analyze(file.getPath());
+    }
+
+    private static CaptureReport.CommandStats command(CaptureReport report, int commandSet, int command) {
+        return report.getCommands().stream()
+                .filter(stats -> stats.getCommandSet() == commandSet && stats.getCommand() == command)
+                .findFirst()
+                .orElseThrow(AssertionError::new);
+    }
+
+    /**
+     * 两个会话：调试器1连JVM 2(4字节ID)，调试器3连JVM 4(8字节ID)，两边的新id从同一值开始
+     */
+    private static void writeCapture(File file) throws IOException {
+        try (DataOutputStream out = new DataOutputStream(new FileOutputStream(file))) {
+            out.write(CaptureFormat.MAGIC);
+            record(out, 0, CaptureFormat.CHANNEL, 1, "debugger /127.0.0.1:40001".getBytes(StandardCharsets.UTF_8));
+            record(out, 0, CaptureFormat.CHANNEL, 3, "debugger /127.0.0.1:40002".getBytes(StandardCharsets.UTF_8));
+
+            record(out, 0, CaptureFormat.FROM_DEBUGGER, 1, command(1, 1, 7, new byte[0]));
+            record(out, 0, CaptureFormat.LINK, 1, link(ID - 1, 1, 1, 7, 2));
+            record(out, 1, CaptureFormat.CHANNEL, 2, "jvm /127.0.0.1:5005".getBytes(StandardCharsets.UTF_8));
+            record(out, 1, CaptureFormat.FROM_JVM, 2, reply(ID - 1, 0, idSizes(4)));
+            record(out, 2, CaptureFormat.FROM_DEBUGGER, 3, command(1, 1, 7, new byte[0]));
+            record(out, 2, CaptureFormat.LINK, 3, link(ID - 1, 1, 1, 7, 4));
+            record(out, 7, CaptureFormat.CHANNEL, 4, "jvm /127.0.0.1:5006".getBytes(StandardCharsets.UTF_8));
+            record(out, 7, CaptureFormat.FROM_JVM, 4, reply(ID - 1, 0, idSizes(8)));
+
+            // 同一新id在两个会话中同时在途，JVM 4先回复
+            record(out, 10, CaptureFormat.FROM_DEBUGGER, 1, command(2, 11, 1, new byte[4]));
+            record(out, 10, CaptureFormat.LINK, 1, link(ID - 2, 2, 11, 1, 2));
+            record(out, 11, CaptureFormat.FROM_DEBUGGER, 3, command(2, 11, 1, new byte[8]));
+            record(out, 11, CaptureFormat.LINK, 3, link(ID - 2, 2, 11, 1, 4));
+            record(out, 13, CaptureFormat.FROM_JVM, 4, reply(ID - 2, 0, new byte[8]));
+
+            record(out, 20, CaptureFormat.LINK, 0, link(ID - 3, ID - 3, 15, 1, 2));
+            record(out, 21, CaptureFormat.FROM_JVM, 2, reply(ID - 3, 99, new byte[0]));
+            record(out, 30, CaptureFormat.FROM_DEBUGGER, 1, command(3, 1, 1, new byte[0]));
+            record(out, 30, CaptureFormat.LINK, 1, link(ID - 4, 3, 1, 1, 2));
+            record(out, 31, CaptureFormat.FROM_JVM, 2, reply(12345, 0, new byte[0]));
+
+            ByteBuffer events = compositeHeader(2);
+            classPrepare(events);
+            breakpoint(events);
+            record(out, 40, CaptureFormat.FROM_JVM, 2, event(slice(events)));
+            record(out, 60, CaptureFormat.FROM_JVM, 2, reply(ID - 2, 0, new byte[8]));
+
+            for (long millis : new long[]{100, 110, 120, 200, 210, 220, 230, 300}) {
+                ByteBuffer single = compositeHeader(1);
+                breakpoint(single);
+                record(out, millis, CaptureFormat.FROM_JVM, 2, event(slice(single)));
+            }
+
+            // 只捕获到第一个事件
+            ByteBuffer truncated = compositeHeader(2);
+            classPrepare(truncated);
+            int captured = truncated.position() + 11;
+            breakpoint(truncated);
+            byte[] frame = event(slice(truncated));
+            out.writeLong(BASE + TimeUnit.MILLISECONDS.toNanos(400));
+            out.writeByte(CaptureFormat.FROM_JVM);
+            out.writeInt(2);
+            out.writeInt(frame.length);
+            out.writeInt(captured);
+            out.write(frame, 0, captured);
+        }
+    }
+
+    private static ByteBuffer compositeHeader(int count) {
+        return ByteBuffer.allocate(128).put((byte) 0).putInt(count);
+    }
+
+    private static void classPrepare(ByteBuffer out) {
+        byte[] signature = "Lcom/example/Prepared;".getBytes(StandardCharsets.UTF_8);
+        out.put(CLASS_PREPARE).putInt(5).putInt(0x100).put((byte) 1).putInt(0x200);
+        out.putInt(signature.length).put(signature).putInt(7);
+    }
+
+    private static void breakpoint(ByteBuffer out) {
+        out.put(BREAKPOINT).putInt(6).putInt(0x100).put((byte) 1).putInt(0x200).putInt(0x300).putLong(4);
+    }
+
+    private static byte[] idSizes(int size) {
+        ByteBuffer sizes = ByteBuffer.allocate(20);
+        for (int i = 0; i < 5; i++) {
+            sizes.putInt(size);
+        }
+        return sizes.array();
+    }
+
+    private static void record(DataOutputStream out, long millis, byte direction, int channel, byte[] bytes) throws IOException {
+        out.writeLong(BASE + TimeUnit.MILLISECONDS.toNanos(millis));
+        out.writeByte(direction);
+        out.writeInt(channel);
+        out.writeInt(bytes.length);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static byte[] command(int id, int commandSet, int command, byte[] data) {
+        return ByteBuffer.allocate(11 + data.length).putInt(11 + data.length).putInt(id)
+                .put((byte) 0).put((byte) commandSet).put((byte) command).put(data).array();
+    }
+
+    private static byte[] event(byte[] data) {
+        return command(1, 64, 100, data);
+    }
+
+    private static byte[] reply(int id, int errorCode, byte[] data) {
+        return ByteBuffer.allocate(11 + data.length).putInt(11 + data.length).putInt(id)
+                .put((byte) 0x80).putShort((short) errorCode).put(data).array();
+    }
+
+    private static byte[] link(int newId, int originId, int commandSet, int command, int jvmChannel) {
+        return ByteBuffer.allocate(CaptureFormat.LINK_BYTES).putInt(newId).putInt(originId)
+                .put((byte) commandSet).put((byte) command).putInt(jvmChannel).array();
+    }
+
+    private static byte[] slice(ByteBuffer buffer) {
+        byte[] bytes = new byte[buffer.position()];
+        buffer.flip();
+        buffer.get(bytes);
+        return bytes;
+    }
+}
@@ -0,0 +1,277 @@
+import io.debuggerx.common.constants.JdwpConstants;
+import io.debuggerx.core.session.ClassIndex;
+import io.debuggerx.core.session.NameQuery;
+import io.debuggerx.protocol.jdwp.IdSizes;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.Unpooled;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * @author ouwu
+ */
+public class ClassIndexTest {
+    private static final IdSizes ID_SIZES = new IdSizes(8, 8, 8, 8, 8);
+    private static final byte TYPE_TAG_CLASS = 1;
+    private static final int STATUS_INITIALIZED = 7;
+    private static final String FOO = "Lcom/example/Foo;";
+    private static final String BAR = "Lcom/example/Bar;";
+
+    @Test
+    public void testQueriesAnsweredOnlyOnceSeeded() {
+        ClassIndex index = new ClassIndex();
+        Assert.assertNull(reply(index, 2, signature(FOO)));
+        Assert.assertTrue(index.startSeeding());
+        Assert.assertFalse(index.startSeeding());
+        Assert.assertNull(reply(index, 2, signature(FOO)));
+
+        Assert.assertTrue(index.seed(seed(FOO, BAR), ID_SIZES).isEmpty());
+        Assert.assertTrue(index.isReady());
+        Assert.assertEquals(2, index.size());
+
+        ByteBuffer matches = reply(index, 2, signature(FOO));
+        Assert.assertEquals(1, matches.getInt());
+        Assert.assertEquals(TYPE_TAG_CLASS, matches.get());
+        Assert.assertEquals(0x10, matches.getLong());
+        Assert.assertEquals(STATUS_INITIALIZED, matches.getInt());
+        Assert.assertEquals(1, index.getLocalReplyCount());
+    }
+
+    @Test
+    public void testAllClassesAnsweredFromIndex() {
+        ClassIndex index = seeded(FOO, BAR);
+
+        ByteBuffer classes = reply(index, 3, Unpooled.EMPTY_BUFFER);
+        Assert.assertEquals(2, classes.getInt());
+        Assert.assertEquals(TYPE_TAG_CLASS, classes.get());
+        Assert.assertEquals(0x10, classes.getLong());
+        Assert.assertEquals(FOO, readString(classes));
+        Assert.assertEquals(STATUS_INITIALIZED, classes.getInt());
+
+        ByteBuffer withGeneric = reply(index, 20, Unpooled.EMPTY_BUFFER);
+        Assert.assertEquals(2, withGeneric.getInt());
+        withGeneric.get();
+        Assert.assertEquals(0x10, withGeneric.getLong());
+        Assert.assertEquals(FOO, readString(withGeneric));
+        Assert.assertEquals("", readString(withGeneric));
+        Assert.assertEquals(STATUS_INITIALIZED, withGeneric.getInt());
+        Assert.assertEquals(2, index.getLocalReplyCount());
+    }
+
+    @Test
+    public void testGenericClassListForwardedUntilGenericsKnown() {
+        ClassIndex index = seeded(FOO);
+        byte[] bar = BAR.getBytes(StandardCharsets.UTF_8);
+        Assert.assertTrue(index.classPrepared(TYPE_TAG_CLASS, 0x20, bar, 3));
+        index.awaitGeneric(5, 0x20);
+
+        // CLASS_PREPARE不带泛型签名
+        Assert.assertNull(reply(index, 20, Unpooled.EMPTY_BUFFER));
+        Assert.assertEquals(2, reply(index, 3, Unpooled.EMPTY_BUFFER).getInt());
+
+        Assert.assertEquals(Long.valueOf(0x20), index.genericQuery(5));
+        Assert.assertNull(index.genericQuery(5));
+        index.genericSignature(0x20, "<T:Ljava/lang/Object;>Ljava/lang/Object;".getBytes(StandardCharsets.UTF_8));
+        ByteBuffer withGeneric = reply(index, 20, Unpooled.EMPTY_BUFFER);
+        Assert.assertEquals(2, withGeneric.getInt());
+    }
+
+    @Test
+    public void testResyncAddsClassesWithoutEvents() {
+        ClassIndex index = seeded(FOO);
+        Assert.assertTrue(index.startResync());
+        Assert.assertFalse(index.startResync());
+        index.awaitResync(7);
+        Assert.assertFalse(index.isResyncReply(6));
+        Assert.assertTrue(index.isResyncReply(7));
+
+        // 数组类与未准备的类只能从重新同步中得知
+        index.resynced(seed(FOO, "[Lcom/example/Foo;"), ID_SIZES);
+        Assert.assertFalse(index.isResyncReply(7));
+        Assert.assertEquals(2, index.size());
+        ByteBuffer classes = reply(index, 3, Unpooled.EMPTY_BUFFER);
+        Assert.assertEquals(2, classes.getInt());
+        Assert.assertTrue(index.startResync());
+
+        index.resynced(null, ID_SIZES);
+        Assert.assertEquals(2, index.size());
+        Assert.assertTrue(index.startResync());
+    }
+
+    @Test
+    public void testClassLoadedAfterSeedAnsweredOnceKnown() {
+        ClassIndex index = seeded(FOO);
+        // 已加载但尚未准备的类没有CLASS_PREPARE事件，未命中时发往JVM
+        Assert.assertNull(reply(index, 2, signature(BAR)));
+
+        index.classPrepared(TYPE_TAG_CLASS, 0x20, BAR.getBytes(StandardCharsets.UTF_8), 3);
+        index.classPrepared(TYPE_TAG_CLASS, 0x20, BAR.getBytes(StandardCharsets.UTF_8), 3);
+        Assert.assertEquals(2, index.size());
+        ByteBuffer matches = reply(index, 2, signature(BAR));
+        Assert.assertEquals(1, matches.getInt());
+        matches.get();
+        Assert.assertEquals(0x20, matches.getLong());
+        Assert.assertEquals(3, matches.getInt());
+    }
+
+    @Test
+    public void testArraySignatureForwardedToJvm() {
+        // 数组类没有CLASS_PREPARE事件，即使种子中有也不能代表当前状态
+        ClassIndex index = seeded(FOO, "[Lcom/example/Foo;");
+        Assert.assertNull(reply(index, 2, signature("[Lcom/example/Foo;")));
+        Assert.assertNull(reply(index, 2, signature("[[I")));
+        Assert.assertEquals(0, index.getLocalReplyCount());
+    }
+
+    @Test
+    public void testUnloadOfSharedSignatureRequiresRefresh() {
+        ClassIndex index = seeded(FOO, FOO, BAR);
+        byte[] foo = FOO.getBytes(StandardCharsets.UTF_8);
+        byte[] bar = BAR.getBytes(StandardCharsets.UTF_8);
+
+        Assert.assertFalse(index.classUnloaded(bar));
+        Assert.assertNull(reply(index, 2, signature(BAR)));
+
+        // 两个类加载器加载的同名类，不知道卸载的是哪一个
+        Assert.assertTrue(index.classUnloaded(foo));
+        index.awaitRefresh(9, foo);
+        Assert.assertNull(reply(index, 2, signature(FOO)));
+        Assert.assertArrayEquals(foo, index.refreshQuery(9));
+        ByteBuffer loaded = (ByteBuffer) ByteBuffer.allocate(17)
+                .putInt(1).put(TYPE_TAG_CLASS).putLong(0x11).putInt(STATUS_INITIALIZED).flip();
+        index.refreshed(foo, loaded, ID_SIZES);
+
+        ByteBuffer matches = reply(index, 2, signature(FOO));
+        Assert.assertEquals(1, matches.getInt());
+        matches.get();
+        Assert.assertEquals(0x11, matches.getLong());
+        Assert.assertEquals(1, index.size());
+    }
+
+    @Test
+    public void testUnloadDuringSeedingAppliedAfterSeed() {
+        ClassIndex index = new ClassIndex();
+        index.startSeeding();
+        Assert.assertFalse(index.classUnloaded(FOO.getBytes(StandardCharsets.UTF_8)));
+        List<byte[]> refresh = index.seed(seed(FOO, BAR), ID_SIZES);
+
+        Assert.assertTrue(refresh.isEmpty());
+        Assert.assertEquals(1, index.size());
+        Assert.assertNull(reply(index, 2, signature(FOO)));
+    }
+
+    @Test
+    public void testSearchByPrefixSubstringAndGlob() {
+        ClassIndex index = seeded(FOO, BAR, "Lcom/example/service/FooService;", "Lorg/other/Foo;", "[Lcom/example/Foo;");
+
+        Assert.assertEquals(3, index.search(NameQuery.className("com.example", null), 10).size());
+        Assert.assertEquals(1, index.search(NameQuery.className("com.example.service.", null), 10).size());
+        Assert.assertEquals(1, index.search(NameQuery.className("com.example.Foo", "prefix"), 10).size());
+        Assert.assertEquals(1, index.search(NameQuery.className("com.example", null), 1).size());
+
+        // 数组类不参与检索
+        Assert.assertEquals(3, index.search(NameQuery.className("Foo", "substring"), 10).size());
+        List<ClassIndex.ClassMatch> services = index.search(NameQuery.className("*.*Service", null), 10);
+        Assert.assertEquals(1, services.size());
+        Assert.assertEquals("com.example.service.FooService", services.get(0).getName());
+        Assert.assertEquals(2, index.search(NameQuery.className("*.Fo?", "glob"), 10).size());
+        Assert.assertTrue(index.search(NameQuery.className("com.example.Baz", null), 10).isEmpty());
+    }
+
+    @Test
+    public void testMethodsFetchedOnce() {
+        ClassIndex index = seeded(FOO);
+        NameQuery getters = NameQuery.methodName("get*", null);
+        Assert.assertFalse(index.hasMethods(0x10));
+        Assert.assertNull(index.methods(0x10, getters));
+
+        CompletableFuture<Void> fetch = index.awaitMethods(3, 0x10);
+        Assert.assertSame(fetch, index.pendingMethods(0x10));
+        Assert.assertEquals(Long.valueOf(0x10), index.methodsQuery(3));
+        ByteBuf methods = Unpooled.buffer().writeInt(2);
+        writeMethod(methods, 1, "getName", "()Ljava/lang/String;");
+        writeMethod(methods, 2, "setName", "(Ljava/lang/String;)V");
+        index.methodsReplied(0x10, methods.nioBuffer(), ID_SIZES);
+
+        Assert.assertTrue(fetch.isDone());
+        Assert.assertNull(index.pendingMethods(0x10));
+        Assert.assertTrue(index.hasMethods(0x10));
+        List<ClassIndex.MethodInfo> matched = index.methods(0x10, getters);
+        Assert.assertEquals(1, matched.size());
+        Assert.assertEquals("getName", matched.get(0).getName());
+        Assert.assertEquals("()Ljava/lang/String;", matched.get(0).getSignature());
+
+        index.classesRedefined(Collections.singletonList(0x10L));
+        Assert.assertFalse(index.hasMethods(0x10));
+    }
+
+    private static void writeMethod(ByteBuf out, long methodId, String name, String signature) {
+        out.writeLong(methodId);
+        out.writeBytes(signature(name));
+        out.writeBytes(signature(signature));
+        out.writeInt(1);
+    }
+
+    private static ClassIndex seeded(String... signatures) {
+        ClassIndex index = new ClassIndex();
+        index.startSeeding();
+        index.seed(seed(signatures), ID_SIZES);
+        return index;
+    }
+
+    /**
+     * AllClassesWithGeneric回复数据，referenceTypeID依次为0x10、0x11...，均无泛型签名
+     */
+    private static ByteBuffer seed(String... signatures) {
+        ByteBuf data = Unpooled.buffer().writeInt(signatures.length);
+        for (int i = 0; i < signatures.length; i++) {
+            data.writeByte(TYPE_TAG_CLASS).writeLong(0x10 + i);
+            data.writeBytes(signature(signatures[i]));
+            data.writeBytes(signature(""));
+            data.writeInt(STATUS_INITIALIZED);
+        }
+        return data.nioBuffer();
+    }
+
+    private static String readString(ByteBuffer buffer) {
+        byte[] bytes = new byte[buffer.getInt()];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static ByteBuf signature(String signature) {
+        byte[] bytes = signature.getBytes(StandardCharsets.UTF_8);
+        return Unpooled.buffer().writeInt(bytes.length).writeBytes(bytes);
+    }
+
+    private static ByteBuffer reply(ClassIndex index, int command, ByteBuf data) {
+        ByteBuf frame = Unpooled.buffer()
+                .writeInt(JdwpConstants.HEADER_LENGTH + data.readableBytes())
+                .writeInt(1)
+                .writeByte(0)
+                .writeByte(1)
+                .writeByte(command)
+                .writeBytes(data);
+        ByteBuf reply = index.reply(frame, ID_SIZES, ByteBufAllocator.DEFAULT);
+        if (reply == null) {
+            return null;
+        }
+        try {
+            Assert.assertEquals(reply.readableBytes(), reply.getInt(0));
+            Assert.assertEquals(1, reply.getInt(4));
+            ByteBuffer result = ByteBuffer.allocate(reply.readableBytes() - JdwpConstants.HEADER_LENGTH);
+            reply.getBytes(JdwpConstants.HEADER_LENGTH, result);
+            result.flip();
+            return result;
+        } finally {
+            reply.release();
+        }
+    }
+}
@@ -0,0 +1,139 @@
+import io.debuggerx.common.constants.JdwpConstants;
+import io.debuggerx.core.session.CommandCoalescer;
+import io.debuggerx.core.session.CommandKey;
+import io.debuggerx.protocol.jdwp.IdSizes;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * @author ouwu
+ */
+public class CommandCoalescerTest {
+
+    private final IdSizes idSizes = new IdSizes(8, 8, 8, 8, 8);
+    private final AtomicLong clock = new AtomicLong();
+    private final AtomicInteger nextId = new AtomicInteger(100);
+    private final CommandCoalescer coalescer = new CommandCoalescer(1000, clock::get);
+
+    @Test
+    public void testIdenticalCommandsJoinLeader() {
+        Assert.assertFalse(joinOrLead(key(11, 6, 0x10), 0, 1));
+        Assert.assertTrue(joinOrLead(key(11, 6, 0x10), 1, 7));
+        Assert.assertFalse(joinOrLead(key(11, 6, 0x11), 1, 8));
+
+        CommandCoalescer.CoalescedCommand command = coalescer.complete(101);
+        Assert.assertNotNull(command);
+        Assert.assertEquals(1, command.getWaiters().size());
+        Assert.assertEquals(1, command.getWaiters().get(0).getSlot());
+        Assert.assertEquals(7, command.getWaiters().get(0).getOriginId());
+        // 无人等待的首个命令
+        Assert.assertNull(coalescer.complete(102));
+        Assert.assertEquals(0, coalescer.size());
+        Assert.assertEquals(1, coalescer.getCoalescedCount());
+
+        // 回复到达后相同命令重新转发
+        Assert.assertFalse(joinOrLead(key(11, 6, 0x10), 1, 9));
+    }
+
+    @Test
+    public void testWaitersJoinClaimedLeaderBeforeItIsSent() {
+        CommandCoalescer.CoalescedCommand leader = coalescer.joinOrClaim(key(11, 6, 0x10), 0, 1);
+        Assert.assertNotNull(leader);
+        // 首个命令登记与发送在锁外，期间到达的相同命令仍然合并
+        Assert.assertNull(coalescer.joinOrClaim(key(11, 6, 0x10), 1, 2));
+        Assert.assertEquals(0, coalescer.size());
+        coalescer.lead(leader, 101);
+
+        CommandCoalescer.CoalescedCommand command = coalescer.complete(101);
+        Assert.assertSame(leader, command);
+        Assert.assertEquals(2, command.getWaiters().get(0).getOriginId());
+    }
+
+    @Test
+    public void testDisconnectedDebuggerRemovedFromWaiters() {
+        joinOrLead(key(11, 6, 0x10), 0, 1);
+        joinOrLead(key(11, 6, 0x10), 1, 2);
+        coalescer.removeSlot(1);
+        Assert.assertNull(coalescer.complete(101));
+    }
+
+    @Test
+    public void testStaleLeaderNotJoined() {
+        joinOrLead(key(11, 6, 0x10), 0, 1);
+        clock.addAndGet(TimeUnit.MILLISECONDS.toNanos(1001));
+        Assert.assertFalse(joinOrLead(key(11, 6, 0x10), 1, 2));
+        Assert.assertNull(coalescer.complete(101));
+        Assert.assertEquals(1, coalescer.size());
+    }
+
+    @Test
+    public void testOnlySideEffectFreeCommandsCoalescable() {
+        // ThreadReference.Frames、ReferenceType.Signature(可缓存)
+        Assert.assertTrue(CommandCoalescer.isCoalescable(11, 6));
+        Assert.assertTrue(CommandCoalescer.isCoalescable(2, 1));
+        // ThreadReference.Resume、VirtualMachine.AllThreads(返回objectID)、ObjectReference.InvokeMethod
+        Assert.assertFalse(CommandCoalescer.isCoalescable(11, 3));
+        Assert.assertFalse(CommandCoalescer.isCoalescable(1, 4));
+        Assert.assertFalse(CommandCoalescer.isCoalescable(9, 6));
+    }
+
+    @Test
+    public void testGetValuesReplyWithObjectsIsNotShared() {
+        CommandKey getValues = key(16, 1, 0x10);
+        ByteBuf primitives = reply(Unpooled.buffer().writeInt(2).writeByte('I').writeInt(42).writeByte('L').writeLong(0));
+        ByteBuf objects = reply(Unpooled.buffer().writeInt(2).writeByte('Z').writeByte(1).writeByte('s').writeLong(0x5000));
+        try {
+            Assert.assertFalse(CommandCoalescer.carriesObjectIds(getValues, primitives, idSizes));
+            Assert.assertTrue(CommandCoalescer.carriesObjectIds(getValues, objects, idSizes));
+            // Frames回复不是tagged value
+            Assert.assertFalse(CommandCoalescer.carriesObjectIds(key(11, 6, 0x10), objects, idSizes));
+        } finally {
+            primitives.release();
+            objects.release();
+        }
+    }
+
+    /**
+     * 认领成功时按转发路径分配下一个id并建立索引
+     */
+    private boolean joinOrLead(CommandKey key, int slot, int originId) {
+        CommandCoalescer.CoalescedCommand leader = coalescer.joinOrClaim(key, slot, originId);
+        if (leader == null) {
+            return true;
+        }
+        coalescer.lead(leader, nextId.incrementAndGet());
+        return false;
+    }
+
+    private static CommandKey key(int commandSet, int command, long id) {
+        ByteBuf frame = Unpooled.buffer()
+                .writeInt(JdwpConstants.HEADER_LENGTH + 8)
+                .writeInt(1)
+                .writeByte(JdwpConstants.FLAG_COMMAND)
+                .writeByte(commandSet)
+                .writeByte(command)
+                .writeLong(id);
+        try {
+            return CommandKey.of(frame);
+        } finally {
+            frame.release();
+        }
+    }
+
+    private static ByteBuf reply(ByteBuf data) {
+        ByteBuf frame = Unpooled.buffer()
+                .writeInt(JdwpConstants.HEADER_LENGTH + data.readableBytes())
+                .writeInt(1)
+                .writeByte(JdwpConstants.FLAG_REPLY_PACKET)
+                .writeShort(0)
+                .writeBytes(data);
+        data.release();
+        return frame;
+    }
+}
@@ -4,12 +4,17 @@ import io.debuggerx.core.processor.CommandProcessor;
 import io.debuggerx.core.processor.registry.CommandProcessorRegistry;
 import io.debuggerx.core.processor.registry.EventProcessorRegistry;
 import io.debuggerx.protocol.enums.CommandIdentifier;
+import io.debuggerx.protocol.enums.EventKind;
 import io.debuggerx.protocol.packet.JdwpHeader;
 import io.debuggerx.protocol.packet.JdwpPacket;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
 import org.junit.Assert;
 import org.junit.Test;
 
 import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
 import java.util.List;
 
 /**
@@ -40,10 +45,60 @@ public class CompositeEventTest {
 
         CommandProcessor processor = commandProcessors.getProcessor(commandIdentifier);
 
-        List<Integer> requestIds = processor.process(ByteBuffer.wrap(data), jdwpPacket);
+        List<Integer> requestIds = processor.process(ByteBuffer.wrap(data), jdwpPacket, null);
 
         Assert.assertFalse(CollectionUtils.isEmpty(requestIds));
 
+        // 事件边界用于按调试器拆分复合事件
+        int[] offsets = jdwpPacket.getEventOffsets();
+        Assert.assertNotNull(offsets);
+        Assert.assertEquals(requestIds.size() + 1, offsets.length);
+        Assert.assertEquals(5, offsets[0]);
+        Assert.assertEquals(dataLength, offsets[offsets.length - 1]);
+
+    }
+
+    @Test
+    public void testCompositeEventSkipsVariableLengthFields() {
+        ByteBuf data = Unpooled.buffer();
+        data.writeByte(0);
+        data.writeInt(4);
+        // EXCEPTION: thread、location、exception、catchLocation
+        data.writeByte(EventKind.EXCEPTION.id).writeInt(11).writeLong(1);
+        writeLocation(data);
+        data.writeByte('L').writeLong(2);
+        writeLocation(data);
+        // FIELD_MODIFICATION: thread、location、refTypeTag、typeID、fieldID、object、valueToBe
+        data.writeByte(EventKind.FIELD_MODIFICATION.id).writeInt(12).writeLong(1);
+        writeLocation(data);
+        data.writeByte(1).writeLong(3).writeLong(4).writeByte('L').writeLong(5);
+        data.writeByte('J').writeLong(42);
+        // METHOD_EXIT_WITH_RETURN_VALUE: thread、location、value
+        data.writeByte(EventKind.METHOD_EXIT_WITH_RETURN_VALUE.id).writeInt(13).writeLong(1);
+        writeLocation(data);
+        data.writeByte('Z').writeByte(1);
+        // CLASS_UNLOAD: signature
+        byte[] signature = "Lcom/example/Foo;".getBytes(StandardCharsets.UTF_8);
+        data.writeByte(EventKind.CLASS_UNLOAD.id).writeInt(14).writeInt(signature.length).writeBytes(signature);
+
+        JdwpHeader header = new JdwpHeader();
+        header.setFlags(JdwpConstants.FLAG_COMMAND);
+        header.setCommandSet((byte) 64);
+        header.setCommand((byte) 100);
+        JdwpPacket packet = new JdwpPacket(header, data);
+
+        List<Integer> requestIds = commandProcessors.getProcessor(CommandIdentifier.of(header)).process(packet.dataBuffer(), packet, null);
+        Assert.assertEquals(Arrays.asList(11, 12, 13, 14), requestIds);
+        int[] offsets = packet.getEventOffsets();
+        Assert.assertEquals(5, offsets[0]);
+        Assert.assertEquals(data.readableBytes(), offsets[4]);
+        Assert.assertEquals(EventKind.FIELD_MODIFICATION.id, packet.dataByte(offsets[1]));
+        Assert.assertEquals(EventKind.CLASS_UNLOAD.id, packet.dataByte(offsets[3]));
+        packet.release();
+    }
+
+    private static void writeLocation(ByteBuf data) {
+        data.writeByte(1).writeLong(0x2000).writeLong(0x3000).writeLong(7);
     }
 
 }
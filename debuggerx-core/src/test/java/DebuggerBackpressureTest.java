@@ -0,0 +1,143 @@
+import io.debuggerx.common.config.DebuggerConfig;
+import io.debuggerx.common.enums.SlowClientPolicy;
+import io.debuggerx.core.service.DebuggerBackpressure;
+import io.debuggerx.core.session.DebugSession;
+import io.debuggerx.core.session.SessionManager;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.DefaultChannelId;
+import io.netty.channel.WriteBufferWaterMark;
+import io.netty.channel.embedded.EmbeddedChannel;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * @author ouwu
+ */
+public class DebuggerBackpressureTest {
+
+    private final SessionManager sessionManager = SessionManager.getInstance();
+    private final DebuggerBackpressure backpressure = DebuggerBackpressure.getInstance();
+    private final DebuggerConfig config = DebuggerConfig.getDefault();
+
+    private EmbeddedChannel jvmChannel;
+    private EmbeddedChannel debuggerChannel;
+    private DebugSession session;
+
+    @Before
+    public void setUp() {
+        sessionManager.setConfig(config);
+        jvmChannel = new EmbeddedChannel();
+        session = sessionManager.createJvmServerSession(jvmChannel);
+        debuggerChannel = new EmbeddedChannel(DefaultChannelId.newInstance());
+        debuggerChannel.config().setWriteBufferWaterMark(new WriteBufferWaterMark(8, 16));
+        session.addDebugger(debuggerChannel);
+    }
+
+    @After
+    public void tearDown() {
+        sessionManager.removeSession(jvmChannel);
+        sessionManager.setConfig(DebuggerConfig.getDefault());
+        jvmChannel.finishAndReleaseAll();
+        debuggerChannel.finishAndReleaseAll();
+    }
+
+    @Test
+    public void testWritableDebuggerIsAlwaysAdmitted() {
+        config.setSlowClientPolicy(SlowClientPolicy.DISCONNECT);
+        Assert.assertTrue(backpressure.admit(session, debuggerChannel, false));
+        Assert.assertTrue(debuggerChannel.isActive());
+    }
+
+    @Test
+    public void testPauseJvmReadUntilDebuggerDrains() {
+        config.setSlowClientPolicy(SlowClientPolicy.PAUSE_JVM_READ);
+        fillWriteBuffer();
+
+        Assert.assertTrue(backpressure.admit(session, debuggerChannel, false));
+        Assert.assertFalse(jvmChannel.config().isAutoRead());
+        Assert.assertTrue(session.isJvmReadPaused());
+
+        debuggerChannel.flush();
+        Assert.assertTrue(debuggerChannel.isWritable());
+        backpressure.writabilityChanged(debuggerChannel);
+        Assert.assertTrue(jvmChannel.config().isAutoRead());
+        Assert.assertFalse(session.isJvmReadPaused());
+    }
+
+    @Test
+    public void testDisconnectReleasesJvmReadPause() {
+        config.setSlowClientPolicy(SlowClientPolicy.PAUSE_JVM_READ);
+        fillWriteBuffer();
+        backpressure.admit(session, debuggerChannel, true);
+        Assert.assertFalse(jvmChannel.config().isAutoRead());
+
+        session.removeDebugger(debuggerChannel);
+        Assert.assertTrue(jvmChannel.config().isAutoRead());
+    }
+
+    @Test
+    public void testDropEventsKeepsEssentialMessages() {
+        config.setSlowClientPolicy(SlowClientPolicy.DROP_EVENTS);
+        fillWriteBuffer();
+
+        Assert.assertFalse(backpressure.admit(session, debuggerChannel, false));
+        Assert.assertTrue(backpressure.admit(session, debuggerChannel, true));
+        Assert.assertTrue(jvmChannel.config().isAutoRead());
+        Assert.assertTrue(debuggerChannel.isActive());
+    }
+
+    @Test
+    public void testDisconnectPolicyClosesSlowDebugger() {
+        config.setSlowClientPolicy(SlowClientPolicy.DISCONNECT);
+        fillWriteBuffer();
+
+        Assert.assertFalse(backpressure.admit(session, debuggerChannel, true));
+        Assert.assertFalse(debuggerChannel.isActive());
+    }
+
+    @Test
+    public void testPendingBytesLimitOverridesPolicy() {
+        config.setSlowClientPolicy(SlowClientPolicy.PAUSE_JVM_READ);
+        // 待写字节数含每个写入项的固定开销
+        config.setDebuggerMaxPendingBytes(1024);
+        fillWriteBuffer();
+        Assert.assertTrue(backpressure.admit(session, debuggerChannel, true));
+        debuggerChannel.write(Unpooled.wrappedBuffer(new byte[1024]));
+
+        Assert.assertFalse(backpressure.admit(session, debuggerChannel, true));
+        Assert.assertFalse(debuggerChannel.isActive());
+    }
+
+    @Test
+    public void testContinuationPausesJvmReadUnderAnyDroppingPolicy() {
+        config.setSlowClientPolicy(SlowClientPolicy.DROP_EVENTS);
+        fillWriteBuffer();
+
+        // 已部分写出的回复不能丢弃，只能暂停读取JVM
+        Assert.assertTrue(backpressure.admitContinuation(session, debuggerChannel));
+        Assert.assertFalse(jvmChannel.config().isAutoRead());
+        Assert.assertTrue(debuggerChannel.isActive());
+    }
+
+    @Test
+    public void testContinuationDisconnectsOverPendingBytesLimit() {
+        config.setSlowClientPolicy(SlowClientPolicy.PAUSE_JVM_READ);
+        config.setDebuggerMaxPendingBytes(1024);
+        fillWriteBuffer();
+        debuggerChannel.write(Unpooled.wrappedBuffer(new byte[1024]));
+
+        Assert.assertFalse(backpressure.admitContinuation(session, debuggerChannel));
+        Assert.assertFalse(debuggerChannel.isActive());
+        Assert.assertFalse(backpressure.admitContinuation(session, debuggerChannel));
+    }
+
+    /**
+     * 只写不刷新，写缓冲超过高水位
+     */
+    private void fillWriteBuffer() {
+        debuggerChannel.write(Unpooled.wrappedBuffer(new byte[24]));
+        Assert.assertFalse(debuggerChannel.isWritable());
+    }
+}
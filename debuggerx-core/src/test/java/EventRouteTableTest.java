@@ -0,0 +1,145 @@
+import io.debuggerx.common.constants.JdwpConstants;
+import io.debuggerx.core.session.DebugSession;
+import io.debuggerx.core.session.EventRouteTable;
+import io.debuggerx.core.session.SessionManager;
+import io.debuggerx.protocol.enums.EventKind;
+import io.debuggerx.protocol.packet.BreakpointRequestRelation;
+import io.debuggerx.protocol.packet.JdwpPacket;
+import io.netty.channel.DefaultChannelId;
+import io.netty.channel.embedded.EmbeddedChannel;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+
+/**
+ * @author ouwu
+ */
+public class EventRouteTableTest {
+
+    @Test
+    public void testEventsRoutedToOwnerAndObservers() {
+        EventRouteTable table = new EventRouteTable();
+        table.connect(0, false);
+        table.connect(1, false);
+        table.connect(70, true);
+        table.subscribe(5, 0);
+
+        long[] targets = table.route(Collections.singletonList(5));
+        Assert.assertTrue(EventRouteTable.get(targets, 0));
+        Assert.assertFalse(EventRouteTable.get(targets, 1));
+        Assert.assertTrue(EventRouteTable.get(targets, 70));
+
+        // 未知请求只发往观察者
+        long[] unknown = table.route(Collections.singletonList(9));
+        Assert.assertFalse(EventRouteTable.get(unknown, 0));
+        Assert.assertTrue(EventRouteTable.get(unknown, 70));
+
+        // requestId为0的事件发往所有调试器
+        long[] automatic = table.route(Arrays.asList(0, 5));
+        Assert.assertTrue(EventRouteTable.get(automatic, 0));
+        Assert.assertTrue(EventRouteTable.get(automatic, 1));
+        Assert.assertTrue(EventRouteTable.get(automatic, 70));
+    }
+
+    @Test
+    public void testSubscriptionsRemovedWithRequestAndDebugger() {
+        EventRouteTable table = new EventRouteTable();
+        table.connect(0, false);
+        table.connect(1, false);
+        table.subscribe(5, 0);
+        table.subscribe(5, 1);
+        table.subscribe(6, 1);
+        Assert.assertEquals(Arrays.asList(5, 6), table.requestIdsOf(1));
+
+        table.unsubscribe(6, 1);
+        Assert.assertEquals(1, table.size());
+
+        table.disconnect(0);
+        long[] targets = table.route(Collections.singletonList(5));
+        Assert.assertFalse(EventRouteTable.get(targets, 0));
+        Assert.assertTrue(EventRouteTable.get(targets, 1));
+
+        table.removeRequest(5);
+        Assert.assertEquals(0, table.size());
+        Assert.assertTrue(table.requestIdsOf(1).isEmpty());
+    }
+
+    @Test
+    public void testRouteSharesBitsetWhenCovered() {
+        EventRouteTable table = new EventRouteTable();
+        table.connect(3, false);
+        table.subscribe(5, 3);
+        table.subscribe(6, 3);
+
+        Assert.assertSame(table.route(Collections.singletonList(5)), table.route(Arrays.asList(5, 6)));
+
+        table.setObserver(3, true);
+        Assert.assertTrue(table.isObserver(3));
+        table.setObserver(4, true);
+        Assert.assertFalse(table.isObserver(4));
+    }
+
+    @Test
+    public void testOrphanedRequestsRoutedToRemainingDebuggers() {
+        EventRouteTable table = new EventRouteTable();
+        table.connect(0, false);
+        table.connect(1, false);
+        table.subscribe(5, 0);
+        table.subscribe(6, 0);
+        table.subscribe(6, 1);
+
+        // 5只由断开的调试器接收，6仍有订阅者
+        Assert.assertEquals(Collections.singletonList(5), table.disconnect(0));
+        long[] targets = table.route(Collections.singletonList(5));
+        Assert.assertFalse(EventRouteTable.get(targets, 0));
+        Assert.assertTrue(EventRouteTable.get(targets, 1));
+        Assert.assertTrue(table.receives(5, 1));
+
+        // 最后一个调试器断开后无人接收，路由删除
+        Assert.assertEquals(new HashSet<>(Arrays.asList(5, 6)), new HashSet<>(table.disconnect(1)));
+        Assert.assertEquals(0, table.size());
+    }
+
+    @Test
+    public void testDisconnectClearsOrphanedRequestsInJvm() {
+        SessionManager sessionManager = SessionManager.getInstance();
+        EmbeddedChannel jvmChannel = new EmbeddedChannel();
+        EmbeddedChannel owner = new EmbeddedChannel(DefaultChannelId.newInstance());
+        EmbeddedChannel other = new EmbeddedChannel(DefaultChannelId.newInstance());
+        DebugSession session = sessionManager.createJvmServerSession(jvmChannel);
+        try {
+            session.addDebugger(owner);
+            session.addDebugger(other);
+            EventRouteTable routes = session.getEventRoutes();
+            routes.subscribe(5, session.slotOf(owner));
+            routes.subscribe(6, session.slotOf(owner));
+            routes.subscribe(6, session.slotOf(other));
+            session.getBreakpointRequestMap().put(owner, new HashSet<>(Arrays.asList(
+                    new BreakpointRequestRelation(EventKind.BREAKPOINT, 5),
+                    new BreakpointRequestRelation(EventKind.BREAKPOINT, 6))));
+
+            session.removeDebugger(owner);
+
+            // 只清除无人接收的请求5，清除完成前其事件转发给其余调试器
+            JdwpPacket clear = jvmChannel.readOutbound();
+            Assert.assertNull(jvmChannel.readOutbound());
+            Assert.assertEquals((Byte) JdwpConstants.EVENT_REQUEST_COMMAND_SET, clear.getHeader().getCommandSet());
+            Assert.assertEquals((Byte) JdwpConstants.CLEAR_BREAK_POINT_COMMAND, clear.getHeader().getCommand());
+            Assert.assertEquals(EventKind.BREAKPOINT.getId(), clear.dataByte(0));
+            Assert.assertEquals(5, clear.dataBuffer().getInt(1));
+            Assert.assertTrue(routes.receives(5, session.slotOf(other)));
+
+            session.removeOriginLink(clear.getHeader().getId());
+            Assert.assertFalse(routes.receives(5, session.slotOf(other)));
+            Assert.assertTrue(routes.receives(6, session.slotOf(other)));
+            clear.release();
+        } finally {
+            sessionManager.removeSession(jvmChannel);
+            jvmChannel.finishAndReleaseAll();
+            other.finishAndReleaseAll();
+        }
+    }
+}
@@ -0,0 +1,160 @@
+import io.debuggerx.common.constants.JdwpConstants;
+import io.debuggerx.core.session.InFlightRequest;
+import io.debuggerx.core.session.InFlightRequestTable;
+import io.debuggerx.protocol.packet.JdwpHeader;
+import io.debuggerx.protocol.packet.JdwpPacket;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * @author ouwu
+ */
+public class InFlightRequestTableTest {
+
+    private final AtomicLong now = new AtomicLong();
+
+    @Test
+    public void testReplyFreesEntryAndReleasesPacket() {
+        InFlightRequestTable table = new InFlightRequestTable(8, 1000, now::get);
+        JdwpPacket packet = newCommandPacket();
+        table.put(Integer.MAX_VALUE - 1, 7, 0, (byte) 15, (byte) 1, true, packet);
+
+        Assert.assertTrue(table.isParsed(Integer.MAX_VALUE - 1));
+        Assert.assertEquals(15 << 8 | 1, table.commandOf(Integer.MAX_VALUE - 1));
+        InFlightRequest request = new InFlightRequest();
+        Assert.assertTrue(table.get(Integer.MAX_VALUE - 1, request));
+        Assert.assertEquals(7, request.getOriginId());
+        Assert.assertEquals(15, request.getCommandSet());
+        Assert.assertEquals(1, request.getCommand());
+        Assert.assertSame(packet, request.getPacket());
+
+        // 同一视图复用，移除时不带命令包
+        Assert.assertTrue(table.remove(Integer.MAX_VALUE - 1, request));
+        Assert.assertEquals(7, request.getOriginId());
+        Assert.assertNull(request.getPacket());
+        Assert.assertEquals(0, table.size());
+        Assert.assertEquals(0, packet.refCnt());
+        Assert.assertFalse(table.remove(Integer.MAX_VALUE - 1, request));
+        Assert.assertEquals(-1, table.commandOf(Integer.MAX_VALUE - 1));
+    }
+
+    @Test
+    public void testEntriesKeepGenerationOfTheirRegistration() {
+        InFlightRequestTable table = new InFlightRequestTable(8, 1000, now::get);
+        InFlightRequest request = new InFlightRequest();
+        table.put(1, 1, 0, (byte) 2, (byte) 1, true, null);
+        // 类重定义生效，之前登记的查询回复不可缓存
+        table.nextGeneration();
+        table.put(2, 2, 0, (byte) 2, (byte) 1, true, null);
+
+        Assert.assertTrue(table.get(1, request));
+        Assert.assertNotEquals(table.getGeneration(), request.getGeneration());
+        Assert.assertTrue(table.get(2, request));
+        Assert.assertEquals(table.getGeneration(), request.getGeneration());
+    }
+
+    @Test
+    public void testCollidingKeysSurviveRemoval() {
+        InFlightRequestTable table = new InFlightRequestTable(64, 1000, now::get);
+        InFlightRequest request = new InFlightRequest();
+        for (int i = 0; i < 64; i++) {
+            table.put(i, i + 1000, i % 3, (byte) 1, (byte) 1, false, null);
+        }
+        for (int i = 0; i < 64; i += 2) {
+            Assert.assertTrue(table.remove(i, request));
+        }
+        for (int i = 1; i < 64; i += 2) {
+            Assert.assertTrue(table.get(i, request));
+            Assert.assertEquals(i + 1000, request.getOriginId());
+            Assert.assertFalse(table.isParsed(i));
+        }
+        Assert.assertEquals(32, table.size());
+    }
+
+    @Test
+    public void testExpiryAndEviction() {
+        InFlightRequestTable table = new InFlightRequestTable(4, 1000, now::get);
+        JdwpPacket packet = newCommandPacket();
+        table.put(1, 1, 0, (byte) 1, (byte) 1, true, packet);
+
+        now.addAndGet(TimeUnit.MILLISECONDS.toNanos(1500));
+        table.put(2, 2, 0, (byte) 1, (byte) 1, false, null);
+        Assert.assertEquals(-1, table.commandOf(1));
+        Assert.assertEquals(0, packet.refCnt());
+        Assert.assertEquals(1, table.getExpiredCount());
+
+        for (int id = 3; id <= 6; id++) {
+            now.incrementAndGet();
+            table.put(id, id, 0, (byte) 1, (byte) 1, false, null);
+        }
+        Assert.assertEquals(4, table.size());
+        Assert.assertEquals(-1, table.commandOf(2));
+        Assert.assertEquals(1, table.getEvictedCount());
+    }
+
+    @Test
+    public void testOldestEvictedAfterRemovalsAndShifts() {
+        InFlightRequestTable table = new InFlightRequestTable(32, 1000, now::get);
+        InFlightRequest request = new InFlightRequest();
+        for (int id = 0; id < 32; id++) {
+            now.incrementAndGet();
+            table.put(id, id, 0, (byte) 1, (byte) 1, false, null);
+        }
+        // 删除会回移冲突链上的条目，插入顺序须保持
+        for (int id = 0; id < 32; id += 3) {
+            table.remove(id, request);
+        }
+        for (int id = 32; id < 43; id++) {
+            now.incrementAndGet();
+            table.put(id, id, 0, (byte) 1, (byte) 1, false, null);
+        }
+        Assert.assertEquals(32, table.size());
+        Assert.assertEquals(0, table.getEvictedCount());
+
+        // 表满后按插入顺序逐个淘汰最早的存活条目
+        now.incrementAndGet();
+        table.put(43, 43, 0, (byte) 1, (byte) 1, false, null);
+        Assert.assertEquals(-1, table.commandOf(1));
+        Assert.assertTrue(table.get(2, request));
+        now.incrementAndGet();
+        table.put(44, 44, 0, (byte) 1, (byte) 1, false, null);
+        Assert.assertEquals(-1, table.commandOf(2));
+        Assert.assertTrue(table.get(4, request));
+
+        // 过期从最早的条目开始，遇到未过期的即停止
+        now.addAndGet(TimeUnit.MILLISECONDS.toNanos(1000) - 35);
+        table.put(45, 45, 0, (byte) 1, (byte) 1, false, null);
+        Assert.assertEquals(4, table.getExpiredCount());
+        Assert.assertEquals(-1, table.commandOf(8));
+        Assert.assertTrue(table.get(10, request));
+        Assert.assertEquals(2, table.getEvictedCount());
+    }
+
+    @Test
+    public void testDisconnectedDebuggerEntriesAreOrphaned() {
+        InFlightRequestTable table = new InFlightRequestTable(16, 1000, now::get);
+        table.put(1, 1, 0, (byte) 1, (byte) 1, false, null);
+        table.put(2, 2, 1, (byte) 1, (byte) 1, false, null);
+        table.put(3, 3, 0, (byte) 1, (byte) 1, false, null);
+        table.put(4, 4, InFlightRequestTable.NO_SLOT, (byte) 1, (byte) 1, true, null);
+
+        Assert.assertEquals(2, table.removeSlot(0));
+        Assert.assertEquals(2, table.getOrphanedCount());
+        InFlightRequest request = new InFlightRequest();
+        Assert.assertFalse(table.get(1, request));
+        Assert.assertTrue(table.get(2, request));
+        Assert.assertTrue(table.get(4, request));
+        Assert.assertTrue(request.isInternal());
+    }
+
+    private static JdwpPacket newCommandPacket() {
+        JdwpHeader header = new JdwpHeader();
+        header.setFlags(JdwpConstants.FLAG_COMMAND);
+        header.setCommandSet((byte) 15);
+        header.setCommand((byte) 1);
+        return new JdwpPacket(header, new byte[]{2, 0, 0, 0, 0, 0});
+    }
+}
@@ -0,0 +1,182 @@
+import io.debuggerx.common.enums.ConnectionType;
+import io.debuggerx.common.exception.DebuggerException;
+import io.debuggerx.core.capture.CaptureFormat;
+import io.debuggerx.core.capture.CaptureRing;
+import io.debuggerx.core.capture.CaptureSettings;
+import io.debuggerx.core.capture.CaptureStatus;
+import io.debuggerx.core.capture.PacketCapture;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.embedded.EmbeddedChannel;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * @author ouwu
+ */
+public class PacketCaptureTest {
+
+    @Test
+    public void testRingDropsWhenFullAndDrainsInOrder() {
+        CaptureRing ring = new CaptureRing(2, 16);
+        EmbeddedChannel channel = new EmbeddedChannel();
+        ByteBuf first = command(1, 1, 1, 32);
+        ByteBuf second = command(2, 1, 1, 0);
+        ByteBuf third = command(3, 1, 1, 0);
+        try {
+            Assert.assertTrue(ring.offer(10, CaptureFormat.FROM_DEBUGGER, channel, first, first.readableBytes()));
+            Assert.assertTrue(ring.offer(20, CaptureFormat.FROM_JVM, channel, second, second.readableBytes()));
+            Assert.assertFalse(ring.offer(30, CaptureFormat.FROM_JVM, channel, third, third.readableBytes()));
+            Assert.assertEquals(1, ring.getDroppedCount());
+
+            List<long[]> records = new ArrayList<>();
+            int drained = ring.drain((timestamp, direction, ch, jvm, length, bytes, offset, captured) ->
+                    records.add(new long[]{timestamp, direction, length, captured}), 10);
+            Assert.assertEquals(2, drained);
+            Assert.assertArrayEquals(new long[]{10, CaptureFormat.FROM_DEBUGGER, 43, 16}, records.get(0));
+            Assert.assertArrayEquals(new long[]{20, CaptureFormat.FROM_JVM, 11, 11}, records.get(1));
+            Assert.assertTrue(ring.isEmpty());
+
+            Assert.assertTrue(ring.offer(40, CaptureFormat.FROM_JVM, channel, third, third.readableBytes()));
+            Assert.assertEquals(1, ring.drain((timestamp, direction, ch, jvm, length, bytes, offset, captured) -> { }, 10));
+        } finally {
+            first.release();
+            second.release();
+            third.release();
+            channel.finishAndReleaseAll();
+        }
+    }
+
+    @Test
+    public void testCaptureWritesFilteredFramesToFile() throws Exception {
+        File file = File.createTempFile("packet-capture", ".dbxcap");
+        EmbeddedChannel channel = new EmbeddedChannel();
+        ByteBuf accepted = command(7, 1, 1, 100);
+        ByteBuf filtered = command(8, 2, 1, 0);
+        PacketCapture capture = PacketCapture.getInstance();
+        try {
+            capture.start(CaptureSettings.builder()
+                    .file(file.getPath())
+                    .snapLength(32)
+                    .ringCapacity(16)
+                    .commandSets(CaptureSettings.parseCommandSets("1"))
+                    .sampleRate(1)
+                    .build());
+            try {
+                capture.start(CaptureSettings.builder().file(file.getPath()).snapLength(32).ringCapacity(16).sampleRate(1).build());
+                Assert.fail("A second capture must be rejected");
+            } catch (DebuggerException expected) {
+                // 已有捕获在进行
+            }
+            capture.capture(channel, ConnectionType.DEBUGGER_PROXY, accepted);
+            capture.capture(channel, ConnectionType.DEBUGGER_PROXY, filtered);
+            CaptureStatus status = capture.stop();
+            Assert.assertNull(capture.stop());
+
+            Assert.assertEquals(1, status.getRecords());
+            Assert.assertEquals(0, status.getDropped());
+            Assert.assertFalse(status.isFailed());
+            // 捕获前后帧的读索引不变
+            Assert.assertEquals(0, accepted.readerIndex());
+
+            try (DataInputStream in = new DataInputStream(new FileInputStream(file))) {
+                byte[] magic = new byte[CaptureFormat.MAGIC.length];
+                in.readFully(magic);
+                Assert.assertArrayEquals(CaptureFormat.MAGIC, magic);
+
+                in.readLong();
+                Assert.assertEquals(CaptureFormat.CHANNEL, in.readByte());
+                Assert.assertEquals(1, in.readInt());
+                byte[] description = new byte[in.readInt()];
+                Assert.assertEquals(description.length, in.readInt());
+                in.readFully(description);
+                Assert.assertTrue(new String(description, StandardCharsets.UTF_8).startsWith("debugger "));
+
+                Assert.assertTrue(in.readLong() > 0);
+                Assert.assertEquals(CaptureFormat.FROM_DEBUGGER, in.readByte());
+                Assert.assertEquals(1, in.readInt());
+                Assert.assertEquals(111, in.readInt());
+                Assert.assertEquals(32, in.readInt());
+                byte[] bytes = new byte[32];
+                in.readFully(bytes);
+                byte[] expected = new byte[32];
+                accepted.getBytes(0, expected);
+                Assert.assertArrayEquals(expected, bytes);
+                Assert.assertEquals(-1, in.read());
+            }
+        } finally {
+            capture.stop();
+            accepted.release();
+            filtered.release();
+            channel.finishAndReleaseAll();
+            file.delete();
+        }
+    }
+
+    @Test
+    public void testLinkRecordCarriesJvmChannel() throws Exception {
+        File file = File.createTempFile("packet-capture", ".dbxcap");
+        EmbeddedChannel debugger = new EmbeddedChannel();
+        EmbeddedChannel jvm = new EmbeddedChannel();
+        PacketCapture capture = PacketCapture.getInstance();
+        try {
+            capture.start(CaptureSettings.builder().file(file.getPath()).snapLength(16).ringCapacity(16).sampleRate(1).build());
+            capture.link(debugger, jvm, -5, 3, (byte) 1, (byte) 7);
+            Assert.assertEquals(1, capture.stop().getRecords());
+
+            try (DataInputStream in = new DataInputStream(new FileInputStream(file))) {
+                in.skipBytes(CaptureFormat.MAGIC.length);
+                // 命令发往的JVM即使还没有帧被捕获也分配编号
+                Assert.assertTrue(readChannelRecord(in, 1).startsWith("debugger "));
+                Assert.assertTrue(readChannelRecord(in, 2).startsWith("jvm "));
+
+                in.readLong();
+                Assert.assertEquals(CaptureFormat.LINK, in.readByte());
+                Assert.assertEquals(1, in.readInt());
+                Assert.assertEquals(CaptureFormat.LINK_BYTES, in.readInt());
+                Assert.assertEquals(CaptureFormat.LINK_BYTES, in.readInt());
+                Assert.assertEquals(-5, in.readInt());
+                Assert.assertEquals(3, in.readInt());
+                Assert.assertEquals(1, in.readByte());
+                Assert.assertEquals(7, in.readByte());
+                Assert.assertEquals(2, in.readInt());
+                Assert.assertEquals(-1, in.read());
+            }
+        } finally {
+            capture.stop();
+            debugger.finishAndReleaseAll();
+            jvm.finishAndReleaseAll();
+            file.delete();
+        }
+    }
+
+    private static String readChannelRecord(DataInputStream in, int channel) throws Exception {
+        in.readLong();
+        Assert.assertEquals(CaptureFormat.CHANNEL, in.readByte());
+        Assert.assertEquals(channel, in.readInt());
+        byte[] description = new byte[in.readInt()];
+        Assert.assertEquals(description.length, in.readInt());
+        in.readFully(description);
+        return new String(description, StandardCharsets.UTF_8);
+    }
+
+    private static ByteBuf command(int id, int commandSet, int command, int dataLength) {
+        ByteBuf frame = Unpooled.buffer(11 + dataLength);
+        frame.writeInt(11 + dataLength);
+        frame.writeInt(id);
+        frame.writeByte(0);
+        frame.writeByte(commandSet);
+        frame.writeByte(command);
+        for (int i = 0; i < dataLength; i++) {
+            frame.writeByte(i);
+        }
+        return frame;
+    }
+}
@@ -0,0 +1,83 @@
+import io.debuggerx.common.constants.JdwpConstants;
+import io.debuggerx.common.exception.DebuggerException;
+import io.debuggerx.core.processor.command.impl.ClassIndexReplyProcessor;
+import io.debuggerx.core.processor.command.impl.CompositeEventCommandProcessor;
+import io.debuggerx.core.processor.registry.CommandProcessorRegistry;
+import io.debuggerx.core.processor.registry.EventProcessorRegistry;
+import io.debuggerx.protocol.enums.CommandIdentifier;
+import io.debuggerx.protocol.enums.EventKind;
+import io.debuggerx.protocol.enums.Type;
+import io.debuggerx.protocol.jdwp.IdSizes;
+import io.debuggerx.protocol.jdwp.Value;
+import io.debuggerx.protocol.packet.JdwpHeader;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+
+/**
+ * @author ouwu
+ */
+public class ProcessorRegistryTest {
+
+    @Test
+    public void testLookupsByTag() {
+        for (CommandIdentifier id : CommandIdentifier.values()) {
+            Assert.assertSame(id, CommandIdentifier.of(id.getCommandSetId(), id.getCommandId(), id.getFlags() == 0));
+        }
+        Assert.assertNull(CommandIdentifier.of(1, 7, true));
+        Assert.assertNull(CommandIdentifier.of(0xFF, 0xFF, false));
+
+        Assert.assertSame(EventKind.VM_DEATH, EventKind.findByValue((byte) 99));
+        Assert.assertNull(EventKind.findByValue((byte) -1));
+        Assert.assertSame(Type.OBJECT, Type.findByValue((byte) 'L'));
+        Assert.assertNull(Type.findByValue((byte) 'X'));
+    }
+
+    @Test(expected = DebuggerException.class)
+    public void testUnknownValueTagRejected() {
+        Value.read(ByteBuffer.wrap(new byte[]{'X', 0, 0, 0, 0}), IdSizes.DEFAULT);
+    }
+
+    @Test
+    public void testProcessorsDispatchedByHeader() {
+        CommandProcessorRegistry registry = new CommandProcessorRegistry(new EventProcessorRegistry());
+
+        JdwpHeader event = new JdwpHeader();
+        event.setFlags(JdwpConstants.FLAG_COMMAND);
+        event.setCommandSet((byte) 64);
+        event.setCommand((byte) 100);
+        Assert.assertTrue(registry.getProcessor(event) instanceof CompositeEventCommandProcessor);
+
+        // 回复头的命令集与命令由在途命令映射
+        JdwpHeader reply = new JdwpHeader();
+        reply.setFlags(JdwpConstants.FLAG_REPLY_PACKET);
+        reply.setCommandSet((byte) 1);
+        reply.setCommand((byte) TestProcessorProvider.COMMAND);
+        Assert.assertSame(TestProcessorProvider.PROCESSOR, registry.getProcessor(reply));
+        Assert.assertTrue(registry.hasProcessor(1, TestProcessorProvider.COMMAND));
+
+        reply.setCommand((byte) 201);
+        Assert.assertNull(registry.getProcessor(reply));
+        Assert.assertFalse(registry.hasProcessor(1, 201));
+    }
+
+    @Test
+    public void testInternalReplyProcessorsLeaveDebuggerCommandsUnparsed() {
+        CommandProcessorRegistry registry = new CommandProcessorRegistry(new EventProcessorRegistry());
+        JdwpHeader reply = new JdwpHeader();
+        reply.setFlags(JdwpConstants.FLAG_REPLY_PACKET);
+        reply.setCommandSet(JdwpConstants.VIRTUAL_MACHINE_COMMAND_SET);
+        reply.setCommand(JdwpConstants.ALL_CLASSES_WITH_GENERIC_COMMAND);
+
+        // 类索引只处理代理自身查询的回复，调试器的同类命令走快速路径
+        Assert.assertFalse(registry.hasProcessor(JdwpConstants.VIRTUAL_MACHINE_COMMAND_SET, JdwpConstants.ALL_CLASSES_WITH_GENERIC_COMMAND));
+        Assert.assertFalse(registry.hasProcessor(JdwpConstants.VIRTUAL_MACHINE_COMMAND_SET, JdwpConstants.CLASSES_BY_SIGNATURE_COMMAND));
+        Assert.assertNull(registry.getProcessor(reply));
+        Assert.assertTrue(registry.getInternalReplyProcessor(reply) instanceof ClassIndexReplyProcessor);
+
+        // 无内部处理器的回复沿用常规处理器
+        reply.setCommand((byte) TestProcessorProvider.COMMAND);
+        Assert.assertSame(TestProcessorProvider.PROCESSOR, registry.getInternalReplyProcessor(reply));
+    }
+}
@@ -0,0 +1,16 @@
+import io.debuggerx.core.metrics.ProxyMetrics;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * @author ouwu
+ */
+public class ProxyMetricsTest {
+
+    @Test
+    public void testLabelValueEscaped() {
+        Assert.assertEquals("127.0.0.1:5005", ProxyMetrics.escapeLabelValue("127.0.0.1:5005"));
+        Assert.assertEquals("C:\\\\app \\\"x\\\"\\nnext", ProxyMetrics.escapeLabelValue("C:\\app \"x\"\nnext"));
+        Assert.assertEquals("", ProxyMetrics.escapeLabelValue(null));
+    }
+}
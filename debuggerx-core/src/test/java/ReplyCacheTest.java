@@ -0,0 +1,108 @@
+import io.debuggerx.common.constants.JdwpConstants;
+import io.debuggerx.core.session.ReplyCache;
+import io.debuggerx.protocol.jdwp.IdSizes;
+import io.debuggerx.protocol.packet.JdwpHeader;
+import io.debuggerx.protocol.packet.JdwpPacket;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+
+/**
+ * @author ouwu
+ */
+public class ReplyCacheTest {
+
+    private final IdSizes idSizes = new IdSizes(8, 8, 8, 8, 8);
+
+    @Test
+    public void testHitReturnsReplyDataForAnyPacketId() {
+        ReplyCache cache = new ReplyCache(1024 * 1024);
+        Assert.assertNull(cache.get(command(1, 2, 5, 0x2000)));
+        cache.put(command(1, 2, 5, 0x2000), reply(new byte[]{1, 2, 3}), idSizes);
+
+        Assert.assertArrayEquals(new byte[]{1, 2, 3}, cache.get(command(99, 2, 5, 0x2000)));
+        Assert.assertNull(cache.get(command(2, 2, 5, 0x2001)));
+        Assert.assertNull(cache.get(command(3, 2, 4, 0x2000)));
+        Assert.assertEquals(1, cache.getHitCount());
+        Assert.assertEquals(3, cache.getMissCount());
+    }
+
+    @Test
+    public void testLeastRecentlyUsedEvictedWhenOverMemoryBound() {
+        // 每个条目约 96 + 8 + 100 字节
+        ReplyCache cache = new ReplyCache(450);
+        cache.put(command(1, 2, 5, 1), reply(new byte[100]), idSizes);
+        cache.put(command(2, 2, 5, 2), reply(new byte[100]), idSizes);
+        // 访问1使2成为最久未使用
+        Assert.assertNotNull(cache.get(command(3, 2, 5, 1)));
+        cache.put(command(4, 2, 5, 3), reply(new byte[100]), idSizes);
+
+        Assert.assertEquals(2, cache.size());
+        Assert.assertEquals(1, cache.getEvictedCount());
+        Assert.assertNotNull(cache.get(command(5, 2, 5, 1)));
+        Assert.assertNull(cache.get(command(6, 2, 5, 2)));
+        Assert.assertNotNull(cache.get(command(7, 2, 5, 3)));
+        Assert.assertTrue(cache.getBytes() <= cache.getMaxBytes());
+    }
+
+    @Test
+    public void testRedefineInvalidatesEveryCommandOfTheClass() {
+        ReplyCache cache = new ReplyCache(1024 * 1024);
+        cache.put(command(1, 2, 5, 0x2000), reply(new byte[8]), idSizes);
+        cache.put(command(2, 6, 1, 0x2000, 0x3000), reply(new byte[8]), idSizes);
+        cache.put(command(3, 2, 5, 0x2001), reply(new byte[8]), idSizes);
+
+        Assert.assertEquals(2, cache.invalidateReferenceTypes(Collections.singletonList(0x2000L)));
+        Assert.assertNull(cache.get(command(5, 2, 5, 0x2000)));
+        Assert.assertNull(cache.get(command(6, 6, 1, 0x2000, 0x3000)));
+        Assert.assertNotNull(cache.get(command(7, 2, 5, 0x2001)));
+    }
+
+    @Test
+    public void testClassUnloadInvalidatesBySignature() {
+        ReplyCache cache = new ReplyCache(1024 * 1024);
+        byte[] signature = "Lcom/example/Foo;".getBytes(StandardCharsets.UTF_8);
+        ByteBuf data = Unpooled.buffer().writeInt(signature.length).writeBytes(signature);
+        byte[] signatureReply = new byte[data.readableBytes()];
+        data.readBytes(signatureReply);
+        cache.put(command(1, 2, 1, 0x2000), reply(signatureReply), idSizes);
+        cache.put(command(2, 2, 5, 0x2000), reply(new byte[8]), idSizes);
+
+        Assert.assertEquals(0, cache.invalidateSignature("Lcom/example/Bar;"));
+        Assert.assertEquals(2, cache.invalidateSignature("Lcom/example/Foo;"));
+        Assert.assertEquals(0, cache.size());
+        Assert.assertEquals(0, cache.getBytes());
+    }
+
+    @Test
+    public void testDisabledCacheStoresNothing() {
+        ReplyCache cache = new ReplyCache(0);
+        cache.put(command(1, 2, 5, 0x2000), reply(new byte[8]), idSizes);
+        Assert.assertNull(cache.get(command(2, 2, 5, 0x2000)));
+        Assert.assertEquals(0, cache.size());
+    }
+
+    private static JdwpPacket command(int id, int commandSet, int command, long... ids) {
+        JdwpHeader header = new JdwpHeader();
+        header.setId(id);
+        header.setFlags(JdwpConstants.FLAG_COMMAND);
+        header.setCommandSet((byte) commandSet);
+        header.setCommand((byte) command);
+        ByteBuf data = Unpooled.buffer();
+        for (long value : ids) {
+            data.writeLong(value);
+        }
+        return new JdwpPacket(header, data);
+    }
+
+    private static JdwpPacket reply(byte[] data) {
+        JdwpHeader header = new JdwpHeader();
+        header.setFlags(JdwpConstants.FLAG_REPLY_PACKET);
+        header.setErrorCode((short) 0);
+        return new JdwpPacket(header, data);
+    }
+}
@@ -0,0 +1,22 @@
+import io.debuggerx.core.processor.CommandProcessor;
+import io.debuggerx.core.processor.ProcessorProvider;
+import io.debuggerx.core.processor.registry.CommandProcessorRegistry;
+import io.debuggerx.core.processor.registry.EventProcessorRegistry;
+import io.debuggerx.protocol.enums.CommandType;
+
+import java.util.Collections;
+
+/**
+ * 经ServiceLoader注册的测试处理器，绑定到枚举中没有的 VirtualMachine(1)/200 回复
+ *
+ * @author ouwu
+ */
+public class TestProcessorProvider implements ProcessorProvider {
+    static final int COMMAND = 200;
+    static final CommandProcessor PROCESSOR = (byteBuffer, packet, session) -> Collections.singletonList(byteBuffer.getInt());
+
+    @Override
+    public void registerProcessors(CommandProcessorRegistry commandProcessors, EventProcessorRegistry eventProcessors) {
+        commandProcessors.register(1, COMMAND, CommandType.REPLY, PROCESSOR);
+    }
+}
@@ -0,0 +1,85 @@
+import io.debuggerx.common.constants.JdwpConstants;
+import io.debuggerx.core.session.VmInfo;
+import io.debuggerx.protocol.jdwp.IdSizes;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.Unpooled;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * @author ouwu
+ */
+public class VmInfoTest {
+
+    @Test
+    public void testFirstReplyRecordedOnce() {
+        VmInfo vmInfo = new VmInfo();
+        Assert.assertNull(vmInfo.get(1, 1));
+        vmInfo.record(1, 1, Unpooled.wrappedBuffer(new byte[]{1, 2}));
+        vmInfo.record(1, 1, Unpooled.wrappedBuffer(new byte[]{3}));
+        // 非启动查询不记录
+        vmInfo.record(1, 4, Unpooled.wrappedBuffer(new byte[]{4}));
+
+        Assert.assertArrayEquals(new byte[]{1, 2}, vmInfo.get(1, 1));
+        Assert.assertNull(vmInfo.get(1, 4));
+        Assert.assertFalse(VmInfo.isRecorded(2, 1));
+    }
+
+    @Test
+    public void testReplyFrameUsesDebuggerPacketId() {
+        ByteBuf frame = VmInfo.replyFrame(42, new byte[]{7, 8}, ByteBufAllocator.DEFAULT);
+        try {
+            Assert.assertEquals(JdwpConstants.HEADER_LENGTH + 2, frame.getInt(0));
+            Assert.assertEquals(42, frame.getInt(4));
+            Assert.assertEquals(JdwpConstants.FLAG_REPLY_PACKET, frame.getByte(8));
+            Assert.assertEquals(0, frame.getShort(9));
+            Assert.assertEquals(8, frame.getByte(12));
+        } finally {
+            frame.release();
+        }
+    }
+
+    @Test
+    public void testPinnedThreadGroupsRemovedFromDisposeObjects() {
+        VmInfo vmInfo = new VmInfo();
+        // ID长度未知时无法解析线程组，不记录
+        vmInfo.record(1, 5, Unpooled.buffer().writeInt(1).writeLong(0x100));
+        Assert.assertNull(vmInfo.get(1, 5));
+
+        vmInfo.setIdSizes(new IdSizes(8, 8, 8, 8, 8));
+        vmInfo.record(1, 5, Unpooled.buffer().writeInt(1).writeLong(0x100));
+        Assert.assertNotNull(vmInfo.get(1, 5));
+
+        ByteBuf unrelated = disposeObjects(0x200);
+        ByteBuf mixed = disposeObjects(0x100, 0x200);
+        ByteBuf filtered = vmInfo.filterDisposeObjects(mixed, ByteBufAllocator.DEFAULT);
+        try {
+            Assert.assertNull(vmInfo.filterDisposeObjects(unrelated, ByteBufAllocator.DEFAULT));
+            Assert.assertNotNull(filtered);
+            Assert.assertEquals(JdwpConstants.HEADER_LENGTH + 4 + 12, filtered.getInt(0));
+            Assert.assertEquals(9, filtered.getInt(4));
+            Assert.assertEquals(1, filtered.getInt(JdwpConstants.HEADER_LENGTH));
+            Assert.assertEquals(0x200, filtered.getLong(JdwpConstants.HEADER_LENGTH + 4));
+            Assert.assertEquals(filtered.getInt(0), filtered.readableBytes());
+        } finally {
+            unrelated.release();
+            mixed.release();
+            filtered.release();
+        }
+    }
+
+    private static ByteBuf disposeObjects(long... objectIds) {
+        ByteBuf frame = Unpooled.buffer()
+                .writeInt(JdwpConstants.HEADER_LENGTH + 4 + objectIds.length * 12)
+                .writeInt(9)
+                .writeByte(JdwpConstants.FLAG_COMMAND)
+                .writeByte(1)
+                .writeByte(14)
+                .writeInt(objectIds.length);
+        for (long objectId : objectIds) {
+            frame.writeLong(objectId).writeInt(1);
+        }
+        return frame;
+    }
+}
@@ -24,6 +24,32 @@ public enum CommandIdentifier {
      */
     ID_SIZES_REPLY(1, 7, REPLY),
 
+    /**
+     * 按签名查询已加载类的回复
+     * Reply Data
+     * int	classes	Number of reference types that follow
+     * byte	refTypeTag / referenceTypeID	typeID / int	status
+     */
+    CLASSES_BY_SIGNATURE_REPLY(1, 2, REPLY),
+
+    /**
+     * 所有已加载类(含泛型签名)的回复
+     * Reply Data
+     * int	classes	Number of reference types that follow
+     * byte	refTypeTag / referenceTypeID	typeID / string	signature / string	genericSignature / int	status
+     */
+    ALL_CLASSES_WITH_GENERIC_REPLY(1, 20, REPLY),
+
+    /**
+     * 重定义类回复，无数据，处理时读取原命令
+     * 原命令 Out Data
+     * int	classes	Number of reference types that follow
+     * referenceTypeID	refType	The reference type
+     * int	classfile	Number of bytes defining class
+     * byte	classbyte	byte making up class file
+     */
+    REDEFINE_CLASSES_REPLY(1, 18, REPLY),
+
     /**
      * 设置事件回复
      * int	requestID	ID of created request
@@ -60,11 +86,43 @@ public enum CommandIdentifier {
      */
     REFERENCE_TYPE_SIGNATURE_REPLY(2, 1, REPLY),
 
+    /**
+     * ReferenceType.SignatureWithGeneric reply - returns class signature and generic signature
+     */
+    REFERENCE_TYPE_SIGNATURE_WITH_GENERIC_REPLY(2, 13, REPLY),
+
+    /**
+     * ReferenceType.Methods reply - returns the methods declared by a class
+     */
+    REFERENCE_TYPE_METHODS_REPLY(2, 5, REPLY),
+
     /**
      * Method.LineTable reply - returns line number table for a method
      */
     METHOD_LINE_TABLE_REPLY(6, 1, REPLY);
 
+    /**
+     * 按 [commandSet][command] 索引的命令与回复，首次引用枚举时建立
+     */
+    private static final CommandIdentifier[][] COMMANDS = new CommandIdentifier[256][];
+    private static final CommandIdentifier[][] REPLIES = new CommandIdentifier[256][];
+
+    static {
+        for (CommandIdentifier id : values()) {
+            CommandIdentifier[][] table = id.type == COMMAND ? COMMANDS : REPLIES;
+            int commandSet = id.commandSetId & 0xFF;
+            int command = id.commandId & 0xFF;
+            CommandIdentifier[] commands = table[commandSet];
+            if (commands == null || commands.length <= command) {
+                commands = table[commandSet] = commands == null
+                        ? new CommandIdentifier[command + 1] : Arrays.copyOf(commands, command + 1);
+            }
+            if (commands[command] == null) {
+                commands[command] = id;
+            }
+        }
+    }
+
     private final short commandSetId;
     private final short commandId;
     private final CommandType type;
@@ -76,11 +134,21 @@ public enum CommandIdentifier {
     }
 
     public static CommandIdentifier of(JdwpHeader header) {
-        return Arrays.stream(values())
-                .filter(ci -> ci.getCommandSetId() == header.getCommandSet())
-                .filter(ci -> ci.getCommandId() == header.getCommand())
-                .filter(ci -> header.isCommand() ? ci.getType().equals(COMMAND) : ci.getType().equals(REPLY))
-                .findFirst().orElse(null);
+        return of(header.getCommandSet(), header.getCommand(), header.isCommand());
+    }
+
+    /**
+     * Looks up a command or reply by array index, without allocating.
+     *
+     * @param commandSet the JDWP command set
+     * @param command the JDWP command
+     * @param isCommand true for the command, false for its reply
+     * @return the identifier, or null if the command is not known to the proxy
+     */
+    public static CommandIdentifier of(int commandSet, int command, boolean isCommand) {
+        CommandIdentifier[] commands = (isCommand ? COMMANDS : REPLIES)[commandSet & 0xFF];
+        int index = command & 0xFF;
+        return commands == null || index >= commands.length ? null : commands[index];
     }
 
     public short getCommandSetId() {
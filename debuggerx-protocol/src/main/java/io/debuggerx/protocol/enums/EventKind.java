@@ -1,7 +1,6 @@
 package io.debuggerx.protocol.enums;
 
 import java.nio.ByteBuffer;
-import java.util.Arrays;
 
 /**
  * 事件类型
@@ -125,16 +124,31 @@ public enum EventKind {
      */
     VM_DISCONNECTED(100);
 
+    /**
+     * 按事件类型id(无符号)索引
+     */
+    private static final EventKind[] BY_ID = new EventKind[256];
+
+    static {
+        for (EventKind kind : values()) {
+            if (BY_ID[kind.id & 0xFF] == null) {
+                BY_ID[kind.id & 0xFF] = kind;
+            }
+        }
+    }
+
     public final byte id;
 
     EventKind(int id) {
         this.id = (byte) id;
     }
 
+    /**
+     * @param value the event kind byte
+     * @return the event kind, or null if unknown
+     */
     public static EventKind findByValue(byte value) {
-        return Arrays.stream(EventKind.values())
-                .filter(eventKind -> eventKind.id == value)
-                .findAny().orElse(null);
+        return BY_ID[value & 0xFF];
     }
 
     public static EventKind read(ByteBuffer byteBuffer) {
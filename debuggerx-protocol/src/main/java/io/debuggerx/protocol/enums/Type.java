@@ -5,7 +5,6 @@ import io.debuggerx.protocol.jdwp.ObjectId;
 import org.apache.commons.lang3.tuple.Pair;
 
 import java.nio.ByteBuffer;
-import java.util.Arrays;
 import java.util.function.Function;
 
 /**
@@ -79,6 +78,17 @@ public enum Type {
      */
     CLASS_OBJECT(99, pair -> ObjectId.read(pair.getLeft(), pair.getRight()));
 
+    /**
+     * 按类型标签(无符号)索引
+     */
+    private static final Type[] BY_TAG = new Type[256];
+
+    static {
+        for (Type type : values()) {
+            BY_TAG[type.id & 0xFF] = type;
+        }
+    }
+
     private final byte id;
     private final Function<Pair<ByteBuffer, IdSizes>, Object> readFunction;
 
@@ -87,10 +97,12 @@ public enum Type {
         this.readFunction = readFunction;
     }
 
+    /**
+     * @param value the type tag
+     * @return the type, or null if the tag is unknown
+     */
     public static Type findByValue(byte value) {
-        return Arrays.stream(Type.values())
-                .filter(type -> type.id == value)
-                .findFirst().get();
+        return BY_TAG[value & 0xFF];
     }
 
     public Object read(Pair<ByteBuffer, IdSizes> input) {
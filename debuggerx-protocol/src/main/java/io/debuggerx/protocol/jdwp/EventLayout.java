@@ -0,0 +1,63 @@
+package io.debuggerx.protocol.jdwp;
+
+import io.debuggerx.protocol.enums.EventKind;
+
+/**
+ * Encoded lengths of the fixed-size fields of every event kind, precomputed for one set of
+ * {@link IdSizes} so that event parsing skips what routing does not need in a single step.
+ * A length covers the fields following the requestID up to the first variable-size field (a
+ * signature or a tagged value), which the event processor reads itself.
+ *
+ * @author ouwu
+ * @see <a href="https://docs.oracle.com/javase/8/docs/platform/jpda/jdwp/jdwp-protocol.html#JDWP_Event_Composite">Event.Composite</a>
+ */
+public final class EventLayout {
+    /**
+     * 按事件类型id索引的固定字段长度
+     */
+    private final int[] fixedLengths = new int[256];
+    private final int locationLength;
+    private final int taggedObjectIdLength;
+
+    EventLayout(IdSizes idSizes) {
+        int threadId = idSizes.getObjectIdSize();
+        locationLength = 1 + idSizes.getReferenceTypeIdSize() + idSizes.getMethodIdSize() + 8;
+        taggedObjectIdLength = 1 + idSizes.getObjectIdSize();
+
+        set(threadId + locationLength, EventKind.SINGLE_STEP, EventKind.BREAKPOINT, EventKind.METHOD_ENTRY,
+                EventKind.METHOD_EXIT, EventKind.METHOD_EXIT_WITH_RETURN_VALUE);
+        set(threadId + locationLength + taggedObjectIdLength + locationLength, EventKind.EXCEPTION);
+        set(threadId + taggedObjectIdLength + locationLength,
+                EventKind.MONITOR_CONTENDED_ENTER, EventKind.MONITOR_CONTENDED_ENTERED);
+        // MONITOR_WAIT带long timeout，MONITOR_WAITED带boolean timed_out
+        set(threadId + taggedObjectIdLength + locationLength + 8, EventKind.MONITOR_WAIT);
+        set(threadId + taggedObjectIdLength + locationLength + 1, EventKind.MONITOR_WAITED);
+        set(threadId + locationLength + 1 + idSizes.getReferenceTypeIdSize() + idSizes.getFieldIdSize() + taggedObjectIdLength,
+                EventKind.FIELD_ACCESS, EventKind.FIELD_MODIFICATION);
+        set(threadId, EventKind.VM_START, EventKind.THREAD_START, EventKind.THREAD_DEATH);
+        set(threadId + 1 + idSizes.getReferenceTypeIdSize(), EventKind.CLASS_PREPARE);
+        set(0, EventKind.VM_DEATH, EventKind.CLASS_UNLOAD);
+    }
+
+    private void set(int length, EventKind... kinds) {
+        for (EventKind kind : kinds) {
+            fixedLengths[kind.id & 0xFF] = length;
+        }
+    }
+
+    /**
+     * @param kind the event kind
+     * @return the length of the fixed-size fields after the requestID
+     */
+    public int fixedLength(EventKind kind) {
+        return fixedLengths[kind.id & 0xFF];
+    }
+
+    public int getLocationLength() {
+        return locationLength;
+    }
+
+    public int getTaggedObjectIdLength() {
+        return taggedObjectIdLength;
+    }
+}
@@ -11,11 +11,20 @@ import java.nio.ByteBuffer;
  * @author ouwu
  */
 public class IdSizes {
+    /**
+     * 未收到IDSizes回复前按8字节解析ID，与{@link DataTypeBase}的假设一致
+     */
+    public static final IdSizes DEFAULT = new IdSizes(8, 8, 8, 8, 8);
+
     private final int fieldIdSize;
     private final int methodIdSize;
     private final int objectIdSize;
     private final int referenceTypeIdSize;
     private final int frameIdSize;
+    /**
+     * 按需计算，重复计算的结果相同
+     */
+    private EventLayout eventLayout;
 
     public static IdSizes read(ByteBuffer byteBuffer) {
         return new IdSizes(
@@ -51,6 +60,18 @@ public class IdSizes {
         }
     }
 
+    /**
+     * @return the event field lengths for these ID sizes
+     */
+    public EventLayout getEventLayout() {
+        EventLayout layout = eventLayout;
+        if (layout == null) {
+            layout = new EventLayout(this);
+            eventLayout = layout;
+        }
+        return layout;
+    }
+
     public int getFieldIdSize() {
         return fieldIdSize;
     }
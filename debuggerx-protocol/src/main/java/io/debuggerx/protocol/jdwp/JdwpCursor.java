@@ -0,0 +1,96 @@
+package io.debuggerx.protocol.jdwp;
+
+import io.debuggerx.common.exception.DebuggerException;
+import io.debuggerx.common.utils.ByteBufferUtils;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Allocation-free readers over JDWP data: IDs are decoded straight into primitives and fields the
+ * caller does not need are skipped by their encoded length. The buffer position is the cursor.
+ * The {@link ObjectId}-style value classes remain for code that keeps what it reads.
+ *
+ * @author ouwu
+ */
+public final class JdwpCursor {
+
+    private JdwpCursor() {
+    }
+
+    public static long readObjectId(ByteBuffer buffer, IdSizes idSizes) {
+        return ByteBufferUtils.getLong(buffer, idSizes.getObjectIdSize());
+    }
+
+    public static long readReferenceTypeId(ByteBuffer buffer, IdSizes idSizes) {
+        return ByteBufferUtils.getLong(buffer, idSizes.getReferenceTypeIdSize());
+    }
+
+    public static long readMethodId(ByteBuffer buffer, IdSizes idSizes) {
+        return ByteBufferUtils.getLong(buffer, idSizes.getMethodIdSize());
+    }
+
+    /**
+     * Advances the cursor.
+     *
+     * @param buffer the data
+     * @param length the number of bytes to skip
+     */
+    public static void skip(ByteBuffer buffer, int length) {
+        buffer.position(buffer.position() + length);
+    }
+
+    /**
+     * Skips a string: its length followed by the UTF-8 bytes.
+     *
+     * @param buffer the data
+     */
+    public static void skipString(ByteBuffer buffer) {
+        skip(buffer, buffer.getInt());
+    }
+
+    /**
+     * Skips a tagged value.
+     *
+     * @param buffer the data, positioned at the tag
+     * @param idSizes the ID sizes of the JVM
+     * @throws DebuggerException if the tag is unknown
+     */
+    public static void skipValue(ByteBuffer buffer, IdSizes idSizes) {
+        skip(buffer, valueLength(buffer.get(), idSizes));
+    }
+
+    /**
+     * @param tag the type tag of a value
+     * @param idSizes the ID sizes of the JVM
+     * @return the length of the untagged value
+     * @throws DebuggerException if the tag is unknown
+     */
+    public static int valueLength(byte tag, IdSizes idSizes) {
+        switch (tag) {
+            case 'V':
+                return 0;
+            case 'B':
+            case 'Z':
+                return 1;
+            case 'C':
+            case 'S':
+                return 2;
+            case 'F':
+            case 'I':
+                return 4;
+            case 'D':
+            case 'J':
+                return 8;
+            case '[':
+            case 'L':
+            case 's':
+            case 't':
+            case 'g':
+            case 'l':
+            case 'c':
+                return idSizes.getObjectIdSize();
+            default:
+                throw new DebuggerException("Unknown value tag: " + tag);
+        }
+    }
+}
@@ -1,5 +1,6 @@
 package io.debuggerx.protocol.jdwp;
 
+import io.debuggerx.common.exception.DebuggerException;
 import io.debuggerx.protocol.enums.Type;
 import org.apache.commons.lang3.tuple.Pair;
 
@@ -22,6 +23,9 @@ public class Value {
 
     protected Value(ByteBuffer byteBuffer, IdSizes idSizes, byte typeTag) {
         this.type = Type.findByValue(typeTag);
+        if (type == null) {
+            throw new DebuggerException("Unknown value tag: " + typeTag);
+        }
         returnValue = type.read(Pair.of(byteBuffer, idSizes));
     }
 
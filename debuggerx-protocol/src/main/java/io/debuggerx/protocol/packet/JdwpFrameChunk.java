@@ -0,0 +1,47 @@
+package io.debuggerx.protocol.packet;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.DefaultByteBufHolder;
+import lombok.Getter;
+
+/**
+ * 分段转发的大帧的一部分：先是只含header的首段，之后是随读取到达的数据段，直到最后一段
+ * <p>
+ * 解码器对无需处理器检查的大回复不再等待整帧，按段输出，由下游负责释放
+ *
+ * @author ouwu
+ */
+@Getter
+public final class JdwpFrameChunk extends DefaultByteBufHolder {
+    /**
+     * 是否为只含header的首段
+     */
+    private final boolean head;
+    /**
+     * 是否为帧的最后一段
+     */
+    private final boolean last;
+
+    private JdwpFrameChunk(ByteBuf content, boolean head, boolean last) {
+        super(content);
+        this.head = head;
+        this.last = last;
+    }
+
+    /**
+     * @param header the frame header; its length field covers the whole frame
+     * @return the first chunk of a streamed frame
+     */
+    public static JdwpFrameChunk head(ByteBuf header) {
+        return new JdwpFrameChunk(header, true, false);
+    }
+
+    /**
+     * @param data the next bytes of the frame data
+     * @param last whether the frame ends with these bytes
+     * @return a data chunk of a streamed frame
+     */
+    public static JdwpFrameChunk body(ByteBuf data, boolean last) {
+        return new JdwpFrameChunk(data, false, last);
+    }
+}
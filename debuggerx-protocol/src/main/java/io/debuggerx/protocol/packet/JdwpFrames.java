@@ -0,0 +1,67 @@
+package io.debuggerx.protocol.packet;
+
+import io.debuggerx.common.constants.JdwpConstants;
+import io.netty.buffer.ByteBuf;
+
+/**
+ * 直接读写原始JDWP帧header字段的工具方法，不构建{@link JdwpHeader}
+ * <p>
+ * 帧布局: length(4) | id(4) | flags(1) | commandSet(1) + command(1) 或 errorCode(2) | data
+ *
+ * @author ouwu
+ */
+public final class JdwpFrames {
+    private static final int ID_OFFSET = 4;
+    private static final int FLAGS_OFFSET = 8;
+    private static final int COMMAND_SET_OFFSET = 9;
+    private static final int COMMAND_OFFSET = 10;
+
+    private JdwpFrames() {
+    }
+
+    public static int length(ByteBuf frame) {
+        return frame.getInt(frame.readerIndex());
+    }
+
+    public static int id(ByteBuf frame) {
+        return frame.getInt(frame.readerIndex() + ID_OFFSET);
+    }
+
+    /**
+     * 原地改写帧的数据包id
+     * @param frame 完整帧
+     * @param id 新id
+     */
+    public static void setId(ByteBuf frame, int id) {
+        frame.setInt(frame.readerIndex() + ID_OFFSET, id);
+    }
+
+    public static byte flags(ByteBuf frame) {
+        return frame.getByte(frame.readerIndex() + FLAGS_OFFSET);
+    }
+
+    public static boolean isCommand(ByteBuf frame) {
+        return (flags(frame) & JdwpConstants.FLAG_REPLY_PACKET) == 0;
+    }
+
+    /**
+     * 命令集，仅对命令包有意义
+     */
+    public static byte commandSet(ByteBuf frame) {
+        return frame.getByte(frame.readerIndex() + COMMAND_SET_OFFSET);
+    }
+
+    /**
+     * 命令，仅对命令包有意义
+     */
+    public static byte command(ByteBuf frame) {
+        return frame.getByte(frame.readerIndex() + COMMAND_OFFSET);
+    }
+
+    /**
+     * 错误码，仅对回复包有意义
+     */
+    public static short errorCode(ByteBuf frame) {
+        return frame.getShort(frame.readerIndex() + COMMAND_SET_OFFSET);
+    }
+}
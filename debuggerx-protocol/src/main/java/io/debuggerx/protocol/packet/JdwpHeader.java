@@ -2,6 +2,7 @@ package io.debuggerx.protocol.packet;
 
 import io.debuggerx.common.constants.JdwpConstants;
 import lombok.Data;
+import io.netty.buffer.ByteBuf;
 import lombok.extern.slf4j.Slf4j;
 
 import java.nio.ByteBuffer;
@@ -68,6 +69,43 @@ public class JdwpHeader {
         return header;
     }
     
+    /**
+     * 从缓冲区当前读位置解析header，读索引前移11字节
+     * @param buf 至少包含11个可读字节的缓冲区
+     * @return header
+     */
+    public static JdwpHeader read(ByteBuf buf) {
+        JdwpHeader header = new JdwpHeader();
+        header.length = buf.readInt();
+        header.id = buf.readInt();
+        header.flags = buf.readByte();
+
+        if (header.isCommand()) {
+            header.commandSet = buf.readByte();
+            header.command = buf.readByte();
+        } else {
+            header.errorCode = buf.readShort();
+        }
+
+        return header;
+    }
+
+    /**
+     * 将header写入目标缓冲区，不产生中间数组
+     * @param out 目标缓冲区
+     */
+    public void writeTo(ByteBuf out) {
+        out.writeInt(length);
+        out.writeInt(id);
+        out.writeByte(flags);
+        if (isCommand()) {
+            out.writeByte(commandSet);
+            out.writeByte(command);
+        } else {
+            out.writeShort(errorCode);
+        }
+    }
+
     public byte[] toBytes() {
         ByteBuffer buffer = ByteBuffer.allocate(11);
         if (isCommand()) {
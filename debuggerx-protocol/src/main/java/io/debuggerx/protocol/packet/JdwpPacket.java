@@ -1,42 +1,156 @@
 package io.debuggerx.protocol.packet;
 
 import io.debuggerx.common.constants.JdwpConstants;
-import lombok.Data;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.DefaultByteBufHolder;
+import io.netty.buffer.Unpooled;
+import lombok.Getter;
+import lombok.Setter;
 
+import java.nio.ByteBuffer;
 import java.util.List;
 
 /**
  * JDWP协议数据包
+ * <p>
+ * 数据部分为引用计数的{@link ByteBuf}，解码时直接持有接收缓冲区的切片，不做拷贝。
+ * 数据包写出后由编码器释放；需要在写出后继续持有时必须先{@link #retain()}。
  *
  * @author ouwu
  */
-@Data
-public class JdwpPacket {
-    private JdwpHeader header;
-    private byte[] data;
+public class JdwpPacket extends DefaultByteBufHolder {
+    @Getter
+    private final JdwpHeader header;
+    @Getter
+    @Setter
     private List<Integer> requestIds;
-    public JdwpPacket(JdwpHeader header, byte[] data) {
+    /**
+     * 复合事件中各事件在数据部分的起始偏移，末尾追加数据长度，与requestIds一一对应；未解析出事件边界时为null
+     */
+    @Getter
+    @Setter
+    private int[] eventOffsets;
+
+    public JdwpPacket(JdwpHeader header, ByteBuf data) {
+        super(data != null ? data : Unpooled.EMPTY_BUFFER);
         this.header = header;
-        this.data = data;
-        this.header.setLength(JdwpConstants.HEADER_LENGTH + (data != null ? data.length : 0));
+        this.header.setLength(JdwpConstants.HEADER_LENGTH + content().readableBytes());
     }
-    
-    public byte[] toBytes() {
-        int totalLength = JdwpConstants.HEADER_LENGTH;
-        if (data != null) {
-            totalLength += data.length;
-        }
 
-        byte[] bytes = new byte[totalLength];
-        System.arraycopy(header.toBytes(), 0, bytes, 0, JdwpConstants.HEADER_LENGTH);
+    public JdwpPacket(JdwpHeader header, byte[] data) {
+        this(header, data != null ? Unpooled.wrappedBuffer(data) : null);
+    }
+
+    /**
+     * 从完整帧解析数据包，数据部分为帧的retained切片；帧本身的引用仍由调用方释放
+     * @param frame 完整JDWP帧(含header)
+     * @return 数据包
+     */
+    public static JdwpPacket decode(ByteBuf frame) {
+        JdwpHeader header = JdwpHeader.read(frame.duplicate());
+        // 显式按帧的绝对索引切分，派生缓冲区的duplicate再切片时索引会落到根缓冲区上
+        int dataIndex = frame.readerIndex() + JdwpConstants.HEADER_LENGTH;
+        return new JdwpPacket(header, frame.retainedSlice(dataIndex, frame.writerIndex() - dataIndex));
+    }
 
-        if (data != null) {
-            System.arraycopy(data, 0, bytes, JdwpConstants.HEADER_LENGTH, data.length);
-        }
+    /**
+     * 数据部分长度
+     * @return 不含header的字节数
+     */
+    public int dataLength() {
+        return content().readableBytes();
+    }
+
+    /**
+     * 以大端序NIO视图访问数据部分，不拷贝底层内存
+     * @return 独立position的ByteBuffer
+     */
+    public ByteBuffer dataBuffer() {
+        ByteBuf data = content();
+        return data.nioBuffer(data.readerIndex(), data.readableBytes());
+    }
+
+    /**
+     * 读取数据部分指定偏移的字节
+     * @param index 相对数据起始的偏移
+     * @return 字节值
+     */
+    public byte dataByte(int index) {
+        ByteBuf data = content();
+        return data.getByte(data.readerIndex() + index);
+    }
 
+    public byte[] toBytes() {
+        byte[] bytes = new byte[JdwpConstants.HEADER_LENGTH + dataLength()];
+        System.arraycopy(header.toBytes(), 0, bytes, 0, JdwpConstants.HEADER_LENGTH);
+        ByteBuf data = content();
+        data.getBytes(data.readerIndex(), bytes, JdwpConstants.HEADER_LENGTH, dataLength());
         return bytes;
     }
 
+    /**
+     * 将header与数据部分写入目标缓冲区
+     * @param out 目标缓冲区
+     */
+    public void writeTo(ByteBuf out) {
+        header.writeTo(out);
+        ByteBuf data = content();
+        out.writeBytes(data, data.readerIndex(), data.readableBytes());
+    }
+
+    /**
+     * 将整个数据包编码到一块新的direct缓冲区，供多个channel共享写出
+     * @param allocator 缓冲区分配器(通常为池化分配器)
+     * @return 引用计数为1的编码结果，调用方负责释放
+     */
+    public ByteBuf encode(ByteBufAllocator allocator) {
+        ByteBuf out = allocator.directBuffer(header.getLength());
+        writeTo(out);
+        return out;
+    }
+
+    @Override
+    public JdwpPacket replace(ByteBuf content) {
+        JdwpPacket packet = new JdwpPacket(header, content);
+        packet.setRequestIds(requestIds);
+        packet.setEventOffsets(eventOffsets);
+        return packet;
+    }
+
+    @Override
+    public JdwpPacket retain() {
+        super.retain();
+        return this;
+    }
+
+    @Override
+    public JdwpPacket retain(int increment) {
+        super.retain(increment);
+        return this;
+    }
+
+    @Override
+    public JdwpPacket touch() {
+        super.touch();
+        return this;
+    }
+
+    @Override
+    public JdwpPacket touch(Object hint) {
+        super.touch(hint);
+        return this;
+    }
+
+    @Override
+    public String toString() {
+        return "JdwpPacket{" +
+                "header=" + header +
+                ", dataLength=" + (refCnt() > 0 ? dataLength() : -1) +
+                ", requestIds=" + requestIds +
+                '}';
+    }
+
     public static JdwpPacket createClearBreakpointsPacket(byte[] data) {
         JdwpHeader jdwpHeader = new JdwpHeader();
         jdwpHeader.setId(888);
@@ -46,4 +160,4 @@ public class JdwpPacket {
         jdwpHeader.setFlags(JdwpConstants.FLAG_COMMAND);
         return new JdwpPacket(jdwpHeader, data);
     }
-}
\ No newline at end of file
+}
@@ -1,77 +1,103 @@
 package io.debuggerx.transport.codec;
 
 import io.debuggerx.common.constants.JdwpConstants;
-import io.debuggerx.protocol.packet.JdwpHeader;
-import io.debuggerx.protocol.packet.JdwpPacket;
+import io.debuggerx.core.session.DebugSession;
+import io.debuggerx.core.session.SessionManager;
+import io.debuggerx.protocol.packet.JdwpFrameChunk;
+import io.debuggerx.protocol.packet.JdwpFrames;
 import io.netty.buffer.ByteBuf;
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.handler.codec.ByteToMessageDecoder;
 import lombok.extern.slf4j.Slf4j;
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
 
+import java.nio.charset.StandardCharsets;
 import java.util.List;
 
 /**
  * 解密数据包
+ * <p>
+ * 握手完成后按帧切分，输出引用计数的整帧{@link ByteBuf}(含header)，由下游负责释放。
+ * 握手前的会话选择行({@link JdwpConstants#SESSION_SELECTOR_PREFIX})记录在channel属性上。
+ * 超过阈值且无需处理器检查的JVM回复不等待整帧，按{@link JdwpFrameChunk}分段输出，代理内存占用与回复大小无关
  *
  * @author ouwu
  */
 @Slf4j
 public class JdwpPacketDecoder extends ByteToMessageDecoder {
 
-    // Separate logger for JDWP packets only, configured programmatically
-    private static final Logger packetLog = io.debuggerx.common.logging.PacketLogger.getLogger();
+    private static final byte[] SESSION_SELECTOR = JdwpConstants.SESSION_SELECTOR_PREFIX.getBytes(StandardCharsets.US_ASCII);
 
     private boolean handshakeCompleted = false;
 
     /**
-     * Log packet data in readable hexdump format (hex + ASCII)
-     * Limited to first 128 bytes to avoid log bloat
+     * 分段输出回复的帧长度阈值，0表示不分段
      */
-    private void logPacketData(byte[] data) {
-        int maxBytes = Math.min(data.length, 128);
-        StringBuilder sb = new StringBuilder("\n");
-
-        for (int i = 0; i < maxBytes; i += 16) {
-            // Offset
-            sb.append(String.format("  %04X: ", i));
-
-            // Hex bytes
-            for (int j = 0; j < 16; j++) {
-                if (i + j < maxBytes) {
-                    sb.append(String.format("%02X ", data[i + j]));
-                } else {
-                    sb.append("   ");
-                }
-                if (j == 7) sb.append(" "); // Space in middle
-            }
+    private final int streamThreshold;
 
-            sb.append(" |");
+    /**
+     * 正在分段输出的帧剩余的数据字节数
+     */
+    private int streamRemaining;
 
-            // ASCII representation
-            for (int j = 0; j < 16 && i + j < maxBytes; j++) {
-                byte b = data[i + j];
-                if (b >= 32 && b < 127) {
-                    sb.append((char) b);
-                } else {
-                    sb.append('.');
-                }
-            }
+    public JdwpPacketDecoder() {
+        this(0);
+    }
 
-            sb.append("|\n");
-        }
+    /**
+     * @param streamThreshold frame length from which replies that no processor inspects are passed on
+     *                        in chunks as they arrive, 0 to always wait for whole frames
+     */
+    public JdwpPacketDecoder(int streamThreshold) {
+        this.streamThreshold = streamThreshold;
+    }
 
-        if (data.length > maxBytes) {
-            sb.append(String.format("  ... (%d more bytes)\n", data.length - maxBytes));
+    /**
+     * 读取握手前可选的会话选择行
+     *
+     * @return false表示选择行尚未完整到达
+     */
+    private boolean readSessionSelector(ChannelHandlerContext ctx, ByteBuf in) {
+        int start = in.readerIndex();
+        int prefixBytes = Math.min(in.readableBytes(), SESSION_SELECTOR.length);
+        for (int i = 0; i < prefixBytes; i++) {
+            if (in.getByte(start + i) != SESSION_SELECTOR[i]) {
+                return true;
+            }
         }
+        int end = in.indexOf(start, start + Math.min(in.readableBytes(), JdwpConstants.SESSION_SELECTOR_MAX_BYTES), (byte) '\n');
+        if (end < 0) {
+            if (in.readableBytes() >= JdwpConstants.SESSION_SELECTOR_MAX_BYTES) {
+                log.warn("[DecodeHandShake] Session selector too long, closing channel: {}", ctx.channel());
+                in.skipBytes(in.readableBytes());
+                ctx.close();
+            }
+            return false;
+        }
+        String selector = in.toString(start + SESSION_SELECTOR.length, end - start - SESSION_SELECTOR.length,
+                StandardCharsets.UTF_8).trim();
+        in.readerIndex(end + 1);
+        ctx.channel().attr(SessionManager.SESSION_SELECTOR).set(selector);
+        log.info("[DecodeHandShake] Channel {} selected session {}", ctx.channel(), selector);
+        return true;
+    }
 
-        packetLog.info(sb.toString());
+    /**
+     * 未到齐的大回复若其命令无需解析，则可分段转发
+     */
+    private boolean isStreamable(ChannelHandlerContext ctx, ByteBuf in, int frameLength) {
+        if (streamThreshold <= 0 || frameLength < streamThreshold || JdwpFrames.isCommand(in)) {
+            return false;
+        }
+        DebugSession session = SessionManager.getInstance().sessionOf(ctx.channel());
+        return session != null && session.isStreamableReply(JdwpFrames.id(in));
     }
 
     @Override
     protected void decode(ChannelHandlerContext ctx, ByteBuf in, List<Object> out) {
         if (!handshakeCompleted) {
+            if (!readSessionSelector(ctx, in)) {
+                return;
+            }
             // handshake
             if (in.readableBytes() >= JdwpConstants.HANDSHAKE_BYTES) {
                 byte[] handshake = new byte[JdwpConstants.HANDSHAKE_BYTES];
@@ -86,46 +112,32 @@ public class JdwpPacketDecoder extends ByteToMessageDecoder {
             }
             return;
         }
-        
-        if (in.readableBytes() < JdwpConstants.HEADER_LENGTH) {
+
+        if (streamRemaining > 0) {
+            // 分段帧的数据直接引用本次读取的缓冲区输出，不累积
+            int chunkLength = Math.min(streamRemaining, in.readableBytes());
+            streamRemaining -= chunkLength;
+            out.add(JdwpFrameChunk.body(in.readRetainedSlice(chunkLength), streamRemaining == 0));
             return;
         }
         
-        in.markReaderIndex();
-        
-        // 读取包头
-        byte[] headerBytes = new byte[JdwpConstants.HEADER_LENGTH];
-        in.readBytes(headerBytes);
-        JdwpHeader header = JdwpHeader.fromBytes(headerBytes);
-
-        // 检查数据包完整性
-        int dataLength = header.getLength() - JdwpConstants.HEADER_LENGTH;
-        if (in.readableBytes() < dataLength) {
-            in.resetReaderIndex();
+        if (in.readableBytes() < JdwpConstants.HEADER_LENGTH) {
             return;
         }
         
-        // 读取数据部分
-        byte[] data = new byte[dataLength];
-        in.readBytes(data);
-
-        JdwpPacket packet = new JdwpPacket(header, data);
-
-        // Log ALL packets to separate packets log with formatted data content
-        if (header.isCommand()) {
-            packetLog.info("COMMAND id={} commandSet={} command={} dataLen={}",
-                header.getId(), header.getCommandSet(), header.getCommand(), dataLength);
-            if (dataLength > 0) {
-                logPacketData(data);
-            }
-        } else {
-            packetLog.info("REPLY id={} flags={} errorCode={} dataLen={}",
-                header.getId(), header.getFlags(), header.getErrorCode(), dataLength);
-            if (dataLength > 0) {
-                logPacketData(data);
+        // 检查数据包完整性(仅窥视长度字段，不移动读索引)
+        int frameLength = in.getInt(in.readerIndex());
+        if (in.readableBytes() < frameLength) {
+            if (isStreamable(ctx, in, frameLength)) {
+                streamRemaining = frameLength - JdwpConstants.HEADER_LENGTH;
+                out.add(JdwpFrameChunk.head(in.readRetainedSlice(JdwpConstants.HEADER_LENGTH)));
             }
+            return;
         }
 
-        out.add(packet);
+        // 整帧直接引用累积缓冲区的切片输出，是否解析为JdwpPacket由处理器按需决定
+        ByteBuf frame = in.readRetainedSlice(frameLength);
+
+        out.add(frame);
     }
 }
\ No newline at end of file
@@ -8,14 +8,22 @@ import lombok.extern.slf4j.Slf4j;
 
 /**
  * Encode Handle
+ * <p>
+ * 编码完成后由{@link MessageToByteEncoder}释放数据包的引用计数
  * @author ouwu
  */
 @Slf4j
 public class JdwpPacketEncoder extends MessageToByteEncoder<JdwpPacket> {
-    
+
+    @Override
+    protected ByteBuf allocateBuffer(ChannelHandlerContext ctx, JdwpPacket packet, boolean preferDirect) {
+        // 帧长度已知，一次分配到位避免扩容拷贝
+        int length = packet.getHeader().getLength();
+        return preferDirect ? ctx.alloc().ioBuffer(length) : ctx.alloc().heapBuffer(length);
+    }
+
     @Override
     protected void encode(ChannelHandlerContext ctx, JdwpPacket packet, ByteBuf out) {
-        byte[] data = packet.toBytes();
-        out.writeBytes(data);
+        packet.writeTo(out);
     }
-}
\ No newline at end of file
+}
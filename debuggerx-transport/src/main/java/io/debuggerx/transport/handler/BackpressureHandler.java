@@ -0,0 +1,22 @@
+package io.debuggerx.transport.handler;
+
+import io.debuggerx.core.service.DebuggerBackpressure;
+import io.netty.channel.ChannelHandler;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+
+/**
+ * 调试器写缓冲水位变化时通知{@link DebuggerBackpressure}，回落到低水位后恢复读取JVM
+ *
+ * @author ouwu
+ */
+@ChannelHandler.Sharable
+public class BackpressureHandler extends ChannelInboundHandlerAdapter {
+    private final DebuggerBackpressure backpressure = DebuggerBackpressure.getInstance();
+
+    @Override
+    public void channelWritabilityChanged(ChannelHandlerContext ctx) throws Exception {
+        backpressure.writabilityChanged(ctx.channel());
+        super.channelWritabilityChanged(ctx);
+    }
+}
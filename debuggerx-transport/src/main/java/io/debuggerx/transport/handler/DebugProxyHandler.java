@@ -2,16 +2,24 @@ package io.debuggerx.transport.handler;
 
 import io.debuggerx.common.constants.JdwpConstants;
 import io.debuggerx.common.enums.ConnectionType;
+import io.debuggerx.common.exception.DebuggerException;
+import io.debuggerx.core.capture.PacketCapture;
+import io.debuggerx.core.metrics.ProxyMetrics;
 import io.debuggerx.core.service.DebuggerService;
+import io.debuggerx.core.session.SessionManager;
 import io.debuggerx.core.strategy.ConnectionHandlerStrategy;
 import io.debuggerx.core.strategy.impl.DebuggerProxyStrategy;
 import io.debuggerx.core.strategy.impl.JvmServerStrategy;
+import io.debuggerx.protocol.packet.JdwpFrameChunk;
 import io.debuggerx.protocol.packet.JdwpPacket;
 import io.debuggerx.protocol.packet.PacketSource;
+import io.netty.buffer.ByteBuf;
 import io.netty.buffer.Unpooled;
+import io.netty.channel.Channel;
 import io.netty.channel.ChannelHandler;
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.channel.EventLoop;
 import lombok.extern.slf4j.Slf4j;
 
 import java.util.EnumMap;
@@ -29,6 +37,7 @@ import static io.debuggerx.common.enums.ConnectionType.JVM_SERVER;
 public class DebugProxyHandler extends ChannelInboundHandlerAdapter {
     private final ConnectionType connectionType;
     private final DebuggerService debuggerService;
+    private final PacketCapture capture = PacketCapture.getInstance();
 
     private final EnumMap<ConnectionType, ConnectionHandlerStrategy> strategies = new EnumMap<>(ConnectionType.class);
 
@@ -54,13 +63,44 @@ public class DebugProxyHandler extends ChannelInboundHandlerAdapter {
             return;
         }
         
-        if (msg instanceof JdwpPacket) {
-            handlePacket(ctx, (JdwpPacket) msg);
+        if (msg instanceof ByteBuf) {
+            ByteBuf frame = (ByteBuf) msg;
+            try {
+                // 转发前捕获，此时id尚未改写
+                capture.capture(ctx.channel(), connectionType, frame);
+                handleFrame(ctx, frame);
+            } finally {
+                // 转发路径各自retain，此处释放解码器产生的引用
+                frame.release();
+            }
+            return;
+        }
+
+        if (msg instanceof JdwpFrameChunk) {
+            JdwpFrameChunk chunk = (JdwpFrameChunk) msg;
+            try {
+                if (chunk.isHead()) {
+                    capture.capture(ctx.channel(), connectionType, chunk.content());
+                }
+                strategies.get(connectionType).forwardChunk(ctx, chunk, debuggerService);
+            } finally {
+                chunk.release();
+            }
         }
     }
 
     private void handleHandshake(ChannelHandlerContext ctx) {
-        debuggerService.handleHandshake(ctx.channel(), connectionType);
+        try {
+            if (connectionType == DEBUGGER_PROXY && migrateToSessionLoop(ctx)) {
+                return;
+            }
+            debuggerService.handleHandshake(ctx.channel(), connectionType);
+        } catch (DebuggerException e) {
+            // 调试器选择的会话不存在，不回复握手
+            log.warn("[DebugProxyHandshake] Rejecting {}: {}", ctx.channel(), e.getMessage());
+            ctx.close();
+            return;
+        }
         
         // debug客户端主动握手回复
         if (connectionType == DEBUGGER_PROXY) {
@@ -68,6 +108,39 @@ public class DebugProxyHandler extends ChannelInboundHandlerAdapter {
         }
     }
 
+    /**
+     * 调试器不在所选会话JVM channel的事件循环上时，先迁移过去再完成握手，此后会话的读写都在同一线程
+     *
+     * @return true表示正在迁移，握手在迁移完成后继续
+     */
+    private boolean migrateToSessionLoop(ChannelHandlerContext ctx) {
+        Channel channel = ctx.channel();
+        if (!SessionManager.getInstance().getConfig().isSessionEventLoopAffinity()) {
+            return false;
+        }
+        EventLoop sessionLoop = SessionManager.getInstance().selectSession(channel).getJvmServerChannel().eventLoop();
+        if (channel.eventLoop() == sessionLoop) {
+            return false;
+        }
+        // 调试器在收到握手回复前不会发送命令，迁移期间没有待处理的数据
+        channel.deregister().addListener(deregistered -> {
+            if (!deregistered.isSuccess()) {
+                channel.close();
+                return;
+            }
+            sessionLoop.register(channel).addListener(registered -> {
+                if (!registered.isSuccess()) {
+                    log.warn("[DebugProxyHandshake] Failed to move {} to its session event loop", channel, registered.cause());
+                    channel.close();
+                    return;
+                }
+                ProxyMetrics.getInstance().recordLoopMigration();
+                handleHandshake(ctx);
+            });
+        });
+        return true;
+    }
+
     private void handleHandShakeMsg(ChannelHandlerContext ctx) {
         ctx.writeAndFlush(Unpooled.wrappedBuffer(JdwpConstants.HANDSHAKE_PACKET))
                 .addListener(future -> {
@@ -77,6 +150,20 @@ public class DebugProxyHandler extends ChannelInboundHandlerAdapter {
                 });
     }
     
+    private void handleFrame(ChannelHandlerContext ctx, ByteBuf frame) {
+        // 无处理器关心的数据包只改写id直接转发
+        if (strategies.get(connectionType).forward(ctx, frame, debuggerService)) {
+            return;
+        }
+
+        JdwpPacket packet = JdwpPacket.decode(frame);
+        try {
+            handlePacket(ctx, packet);
+        } finally {
+            packet.release();
+        }
+    }
+
     private void handlePacket(ChannelHandlerContext ctx, JdwpPacket packet) {
         // 前置处理
         execPreprocessor(ctx, packet);
@@ -87,8 +174,10 @@ public class DebugProxyHandler extends ChannelInboundHandlerAdapter {
     }
 
     private void execPreprocessor(ChannelHandlerContext ctx, JdwpPacket packet) {
-        // 如果是事件请求 缓存requestId
-        debuggerService.cacheRequestId(new PacketSource(connectionType, ctx.channel()), packet);
+        // 回复包需在释放在途记录之前处理; 命令包与事件包由DebuggerService.handlePacket处理一次
+        if (!packet.getHeader().isCommand()) {
+            debuggerService.cacheRequestId(new PacketSource(connectionType, ctx.channel()), packet);
+        }
     }
 
     private void execPacket(ChannelHandlerContext ctx, JdwpPacket packet) {
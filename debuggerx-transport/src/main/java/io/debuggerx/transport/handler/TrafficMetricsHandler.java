@@ -0,0 +1,80 @@
+package io.debuggerx.transport.handler;
+
+import io.debuggerx.common.enums.ConnectionType;
+import io.debuggerx.common.utils.ChannelUtils;
+import io.debuggerx.core.metrics.ChannelTraffic;
+import io.debuggerx.core.metrics.ProxyMetrics;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufHolder;
+import io.netty.channel.ChannelDuplexHandler;
+import io.netty.channel.ChannelHandler;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelPromise;
+import io.netty.util.AttributeKey;
+
+/**
+ * 统计每个channel的收发字节数、写包数与flush次数，位于pipeline头部以计入原始字节和实际到达socket的flush
+ *
+ * @author ouwu
+ */
+@ChannelHandler.Sharable
+public class TrafficMetricsHandler extends ChannelDuplexHandler {
+    private static final AttributeKey<ChannelTraffic> TRAFFIC = AttributeKey.valueOf("debuggerx.traffic");
+
+    private final String role;
+
+    public TrafficMetricsHandler(ConnectionType connectionType) {
+        this.role = connectionType == ConnectionType.JVM_SERVER ? "jvm" : "debugger";
+    }
+
+    @Override
+    public void channelActive(ChannelHandlerContext ctx) throws Exception {
+        ChannelTraffic traffic = ProxyMetrics.getInstance()
+                .registerChannel(ctx.channel(), role, ChannelUtils.getDebugChannelId(ctx.channel()));
+        ctx.channel().attr(TRAFFIC).set(traffic);
+        super.channelActive(ctx);
+    }
+
+    @Override
+    public void channelInactive(ChannelHandlerContext ctx) throws Exception {
+        ProxyMetrics.getInstance().unregisterChannel(ctx.channel());
+        super.channelInactive(ctx);
+    }
+
+    @Override
+    public void channelRead(ChannelHandlerContext ctx, Object msg) throws Exception {
+        ChannelTraffic traffic = ctx.channel().attr(TRAFFIC).get();
+        if (traffic != null) {
+            traffic.addBytesIn(readableBytes(msg));
+        }
+        super.channelRead(ctx, msg);
+    }
+
+    @Override
+    public void write(ChannelHandlerContext ctx, Object msg, ChannelPromise promise) throws Exception {
+        ChannelTraffic traffic = ctx.channel().attr(TRAFFIC).get();
+        if (traffic != null) {
+            traffic.addBytesOut(readableBytes(msg));
+        }
+        super.write(ctx, msg, promise);
+    }
+
+    @Override
+    public void flush(ChannelHandlerContext ctx) throws Exception {
+        ChannelTraffic traffic = ctx.channel().attr(TRAFFIC).get();
+        if (traffic != null) {
+            traffic.incrementFlushes();
+        }
+        super.flush(ctx);
+    }
+
+    private static long readableBytes(Object msg) {
+        if (msg instanceof ByteBuf) {
+            return ((ByteBuf) msg).readableBytes();
+        }
+        if (msg instanceof ByteBufHolder) {
+            return ((ByteBufHolder) msg).content().readableBytes();
+        }
+        return 0;
+    }
+}
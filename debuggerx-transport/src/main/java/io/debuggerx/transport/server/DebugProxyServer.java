@@ -1,25 +1,44 @@
 package io.debuggerx.transport.server;
 
 import io.debuggerx.common.config.DebuggerConfig;
+import io.debuggerx.common.config.JvmTarget;
 import io.debuggerx.common.enums.ConnectionType;
 import io.debuggerx.common.utils.AssertUtils;
+import io.debuggerx.core.capture.CaptureSettings;
+import io.debuggerx.core.capture.PacketCapture;
+import io.debuggerx.core.session.SessionManager;
 import io.debuggerx.transport.codec.JdwpPacketDecoder;
 import io.debuggerx.transport.codec.JdwpPacketEncoder;
+import io.debuggerx.transport.handler.BackpressureHandler;
 import io.debuggerx.transport.handler.DebugProxyHandler;
+import io.debuggerx.transport.handler.TrafficMetricsHandler;
 import io.netty.bootstrap.Bootstrap;
 import io.netty.bootstrap.ServerBootstrap;
+import io.netty.channel.Channel;
 import io.netty.channel.ChannelFuture;
 import io.netty.channel.ChannelInitializer;
 import io.netty.channel.ChannelOption;
 import io.netty.channel.EventLoopGroup;
-import io.netty.channel.nio.NioEventLoopGroup;
-import io.netty.channel.socket.SocketChannel;
-import io.netty.channel.socket.nio.NioServerSocketChannel;
-import io.netty.channel.socket.nio.NioSocketChannel;
+import io.netty.channel.WriteBufferWaterMark;
+import io.netty.channel.unix.DomainSocketAddress;
+import io.netty.handler.flush.FlushConsolidationHandler;
 import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.StringUtils;
+
+import java.io.File;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * debug代理service
+ * <p>
+ * 连接配置中的每个JVM目标，每个目标一个会话；默认目标监听debuggerProxyPort，其他目标监听各自的端口，
+ * 调试器也可以在握手前发送选择行{@code DEBUGGERX-SESSION <会话ID或目标名>}连接任意目标。
+ * 启用会话事件循环亲和时，每个JVM连接分到worker组中的一个事件循环，其监听端口接入的调试器直接注册到该循环，
+ * 其他调试器在握手时迁移过去，会话的全部IO因此在同一线程上处理
  *
  * @author ouwu
  */
@@ -28,91 +47,225 @@ public class DebugProxyServer {
     private final DebuggerConfig config;
     private final EventLoopGroup bossGroup;
     private final EventLoopGroup workerGroup;
-    private final NioEventLoopGroup jvmClientEventGroup;
+    private final EventLoopGroup jvmClientEventGroup;
+    private final ProxyTransport transport;
     private final DebugProxyHandler debugProxyHandler;
+    private final TrafficMetricsHandler debuggerTrafficHandler;
+    private final TrafficMetricsHandler jvmTrafficHandler;
+    private final BackpressureHandler backpressureHandler;
+    /**
+     * 调试器TCP监听channel，key为目标名称，启动后可用
+     */
+    private final Map<String, Channel> debuggerServerChannels = new ConcurrentHashMap<>();
     
     public DebugProxyServer(DebuggerConfig config) {
         this.config = config;
-        this.bossGroup = new NioEventLoopGroup(1);
-        this.workerGroup = new NioEventLoopGroup();
-        this.jvmClientEventGroup = new NioEventLoopGroup();
+        SessionManager.getInstance().setConfig(config);
+        this.transport = ProxyTransport.resolve(config.getTransport(),
+                StringUtils.isNotEmpty(config.getDebuggerProxySocketPath()));
+        this.bossGroup = transport.newEventLoopGroup(1);
+        this.workerGroup = transport.newEventLoopGroup(0);
+        // 会话亲和时JVM连接与调试器共用worker组，每个会话固定在其中一个事件循环
+        this.jvmClientEventGroup = config.isSessionEventLoopAffinity() ? workerGroup : transport.newEventLoopGroup(0);
         this.debugProxyHandler = new DebugProxyHandler(ConnectionType.DEBUGGER_PROXY);
+        this.debuggerTrafficHandler = new TrafficMetricsHandler(ConnectionType.DEBUGGER_PROXY);
+        this.jvmTrafficHandler = new TrafficMetricsHandler(ConnectionType.JVM_SERVER);
+        this.backpressureHandler = new BackpressureHandler();
     }
 
     public void start() throws InterruptedException {
-        // 连接JVM
-        ChannelFuture jvmClientFuture = this.startJvmClient();
-
-        // 启动debug代理服务
-        this.startDebuggerProxyServer();
+        List<ChannelFuture> jvmClientFutures = this.startAsync();
 
         try {
-            AssertUtils.notNull(jvmClientFuture, "JvmClient is null");
-            jvmClientFuture.channel().closeFuture().sync();
+            AssertUtils.notNull(jvmClientFutures, "JvmClient is null");
+            // 所有被调试程序都断开后退出
+            for (ChannelFuture jvmClientFuture : jvmClientFutures) {
+                jvmClientFuture.channel().closeFuture().sync();
+            }
         } finally {
             shutdown();
         }
     }
 
 
-    public ChannelFuture startJvmClient() throws InterruptedException {
+    /**
+     * Connects to every JVM target and starts accepting debuggers without waiting for the sessions
+     * to end. Call {@link #shutdown()} to stop the proxy.
+     *
+     * @return the JVM connection futures, the default target first
+     * @throws InterruptedException if interrupted while connecting or binding
+     */
+    public List<ChannelFuture> startAsync() throws InterruptedException {
+        if (StringUtils.isNotEmpty(config.getCaptureFile())) {
+            PacketCapture.getInstance().start(CaptureSettings.of(config, config.getCaptureFile()));
+        }
+        List<ChannelFuture> jvmClientFutures = new ArrayList<>();
+        for (JvmTarget target : config.targets()) {
+            // 连接JVM
+            ChannelFuture jvmClientFuture = this.startJvmClient(target);
+            jvmClientFutures.add(jvmClientFuture);
+
+            // 启动debug代理服务，默认目标总是监听(端口0时随机分配)
+            if (JvmTarget.DEFAULT_NAME.equals(target.getName()) || target.getListenPort() > 0) {
+                this.startDebuggerProxyServer(target, config.isSessionEventLoopAffinity()
+                        ? jvmClientFuture.channel().eventLoop() : workerGroup);
+            }
+        }
+
+        String socketPath = config.getDebuggerProxySocketPath();
+        if (StringUtils.isNotEmpty(socketPath)) {
+            this.startDebuggerDomainSocketServer(socketPath);
+        }
+        return jvmClientFutures;
+    }
+
+    /**
+     * Returns the address the debugger listener of the default target is bound to (resolves port 0
+     * to the actual port).
+     *
+     * @return the bound address, or null before the listener is started
+     */
+    public InetSocketAddress getDebuggerProxyAddress() {
+        return getDebuggerProxyAddress(JvmTarget.DEFAULT_NAME);
+    }
+
+    /**
+     * Returns the address the debugger listener of a target is bound to.
+     *
+     * @param target the target name
+     * @return the bound address, or null if the target has no listener
+     */
+    public InetSocketAddress getDebuggerProxyAddress(String target) {
+        Channel channel = debuggerServerChannels.get(target);
+        return channel == null ? null : (InetSocketAddress) channel.localAddress();
+    }
+
+    public ChannelFuture startJvmClient(JvmTarget target) throws InterruptedException {
         // 连接JVM
-        log.info("[JvmClient] Attempting to connect to JVM at {}:{}", config.getJvmServerHost(), config.getJvmServerPort());
-        Bootstrap jvmClient = createClientBootstrap(jvmClientEventGroup);
-        ChannelFuture jvmClientFuture = jvmClient.connect(config.getJvmServerHost(), config.getJvmServerPort()).sync();
+        log.info("[JvmClient] Attempting to connect to JVM {} at {}:{}", target.getName(), target.getHost(), target.getPort());
+        Bootstrap jvmClient = createClientBootstrap(jvmClientEventGroup)
+                .attr(SessionManager.TARGET, target.getName());
+        ChannelFuture jvmClientFuture = jvmClient.connect(target.getHost(), target.getPort()).sync();
 
         if (jvmClientFuture.isSuccess()) {
-            log.info("[JvmClient] Successfully connected to JVM at {}:{}", config.getJvmServerHost(), config.getJvmServerPort());
+            log.info("[JvmClient] Successfully connected to JVM {} at {}:{}", target.getName(), target.getHost(), target.getPort());
         } else {
-            log.error("[JvmClient] Failed to connect to JVM at {}:{} - {}",
-                config.getJvmServerHost(), config.getJvmServerPort(), jvmClientFuture.cause());
+            log.error("[JvmClient] Failed to connect to JVM {} at {}:{} - {}",
+                target.getName(), target.getHost(), target.getPort(), jvmClientFuture.cause());
         }
 
         // 只监听被调试程序的连接状态
         jvmClientFuture.channel().closeFuture().addListener(future -> {
-            log.info("[JvmClient] disconnected from JVM, shutting down jvm client...");
+            log.info("[JvmClient] disconnected from JVM {}, shutting down jvm client...", target.getName());
         });
          return jvmClientFuture;
     }
 
-    public void startDebuggerProxyServer() throws InterruptedException {
-        // 启动调试器监听服务器
-        ServerBootstrap debuggerServer = createServerBootstrap();
-        ChannelFuture debuggerFuture = debuggerServer.bind(config.getDebuggerProxyPort()).sync();
+    /**
+     * 启动目标的调试器监听服务器，接入的调试器默认连接该目标
+     * @param target JVM目标
+     * @param childGroup 接入的调试器注册的事件循环组
+     */
+    public void startDebuggerProxyServer(JvmTarget target, EventLoopGroup childGroup) throws InterruptedException {
+        ServerBootstrap debuggerServer = createServerBootstrap(childGroup)
+                .childAttr(SessionManager.TARGET, target.getName());
+        ChannelFuture debuggerFuture = debuggerServer.bind(target.getListenPort()).sync();
+        debuggerServerChannels.put(target.getName(), debuggerFuture.channel());
+        log.info("[DebuggerProxy] listening on {} for JVM {}", debuggerFuture.channel().localAddress(), target.getName());
 
         // 只监听被调试程序的连接状态
         debuggerFuture.channel().closeFuture().addListener(future -> log.info("[DebuggerProxy] debugger disconnected, shutting down proxy server..."));
     }
+
+    /**
+     * 在Unix domain socket上接受本地调试器连接，与TCP监听共享同一套pipeline
+     * @param socketPath socket文件路径
+     */
+    private void startDebuggerDomainSocketServer(String socketPath) throws InterruptedException {
+        if (!transport.supportsDomainSocket()) {
+            log.warn("[DebuggerProxy] domain socket {} requires epoll transport (current: {}), skipped",
+                    socketPath, transport.getType());
+            return;
+        }
+        File socketFile = new File(socketPath);
+        // 清理上次异常退出遗留的socket文件，否则bind失败
+        if (socketFile.exists() && !socketFile.delete()) {
+            log.warn("[DebuggerProxy] failed to delete stale socket file {}", socketPath);
+        }
+        ServerBootstrap domainServer = new ServerBootstrap()
+                .group(bossGroup, workerGroup)
+                .channel(transport.domainServerChannelClass())
+                .childAttr(SessionManager.TARGET, JvmTarget.DEFAULT_NAME)
+                .childOption(ChannelOption.WRITE_BUFFER_WATER_MARK, debuggerWriteBufferWaterMark())
+                .childHandler(debuggerChannelInitializer());
+        ChannelFuture domainFuture = domainServer.bind(new DomainSocketAddress(socketFile)).sync();
+        log.info("[DebuggerProxy] listening on domain socket {}", socketPath);
+
+        domainFuture.channel().closeFuture().addListener(future -> {
+            if (socketFile.exists() && !socketFile.delete()) {
+                log.warn("[DebuggerProxy] failed to delete socket file {}", socketPath);
+            }
+        });
+    }
     
-    private ServerBootstrap createServerBootstrap() {
+    private ServerBootstrap createServerBootstrap(EventLoopGroup childGroup) {
         return new ServerBootstrap()
-                .group(bossGroup, workerGroup)
-                .channel(NioServerSocketChannel.class)
+                .group(bossGroup, childGroup)
+                .channel(transport.serverChannelClass())
                 .childOption(ChannelOption.TCP_NODELAY, true)
                 .childOption(ChannelOption.SO_KEEPALIVE, true)
-                .childHandler(new ChannelInitializer<SocketChannel>() {
-                    @Override
-                    protected void initChannel(SocketChannel ch) {
-                        ch.pipeline()
-                                .addLast(new JdwpPacketDecoder())
-                                .addLast(new JdwpPacketEncoder())
-                                .addLast(debugProxyHandler);
-                    }
-                });
+                .childOption(ChannelOption.WRITE_BUFFER_WATER_MARK, debuggerWriteBufferWaterMark())
+                .childHandler(debuggerChannelInitializer());
+    }
+
+    /**
+     * 调试器写缓冲超过高水位后由{@link io.debuggerx.core.service.DebuggerBackpressure}按慢调试器策略处理
+     */
+    private WriteBufferWaterMark debuggerWriteBufferWaterMark() {
+        return new WriteBufferWaterMark(config.getDebuggerWriteLowWaterMark(), config.getDebuggerWriteHighWaterMark());
+    }
+
+    private ChannelInitializer<Channel> debuggerChannelInitializer() {
+        return new ChannelInitializer<Channel>() {
+            @Override
+            protected void initChannel(Channel ch) {
+                ch.pipeline().addLast(debuggerTrafficHandler);
+                addFlushConsolidation(ch);
+                ch.pipeline()
+                        .addLast(new JdwpPacketDecoder())
+                        .addLast(new JdwpPacketEncoder())
+                        .addLast(backpressureHandler)
+                        .addLast(debugProxyHandler);
+            }
+        };
     }
     
-    private Bootstrap createClientBootstrap(NioEventLoopGroup jvmClientEventGroup) {
+    /**
+     * 在流量统计之后加入合并flush：本channel读周期内的写在channelReadComplete时一次flush，
+     * 其他channel读取时产生的写(调试器命令转发给JVM、JVM事件分发给调试器)合并为事件循环上的一次flush任务，
+     * 同一会话的channel共用事件循环时即在本轮读取处理完后执行
+     */
+    private void addFlushConsolidation(Channel ch) {
+        int limit = config.getFlushConsolidationLimit();
+        if (limit > 0) {
+            ch.pipeline().addLast(new FlushConsolidationHandler(limit, true));
+        }
+    }
+
+    private Bootstrap createClientBootstrap(EventLoopGroup jvmClientEventGroup) {
         return new Bootstrap()
                 .group(jvmClientEventGroup)
-                .channel(NioSocketChannel.class)
+                .channel(transport.socketChannelClass())
                 .option(ChannelOption.TCP_NODELAY, true)
                 .option(ChannelOption.SO_KEEPALIVE, true)
                 .option(ChannelOption.SO_LINGER, 0)
-                .handler(new ChannelInitializer<SocketChannel>() {
+                .handler(new ChannelInitializer<Channel>() {
                     @Override
-                    protected void initChannel(SocketChannel ch) {
+                    protected void initChannel(Channel ch) {
+                        ch.pipeline().addLast(jvmTrafficHandler);
+                        addFlushConsolidation(ch);
                         ch.pipeline()
-                                .addLast(new JdwpPacketDecoder())
+                                .addLast(new JdwpPacketDecoder(config.getReplyStreamThreshold()))
                                 .addLast(new JdwpPacketEncoder())
                                 .addLast(new DebugProxyHandler(ConnectionType.JVM_SERVER));
                     }
@@ -120,9 +273,12 @@ public class DebugProxyServer {
     }
     
     public void shutdown() {
+        PacketCapture.getInstance().stop();
         bossGroup.shutdownGracefully();
         workerGroup.shutdownGracefully();
-        jvmClientEventGroup.shutdownGracefully();
+        if (jvmClientEventGroup != workerGroup) {
+            jvmClientEventGroup.shutdownGracefully();
+        }
         log.info("[DebugProxyServer]Debug proxy server shutdown");
     }
 } 
\ No newline at end of file
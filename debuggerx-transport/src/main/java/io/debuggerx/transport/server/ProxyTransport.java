@@ -0,0 +1,119 @@
+package io.debuggerx.transport.server;
+
+import io.debuggerx.common.enums.TransportType;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.ServerChannel;
+import io.netty.channel.epoll.Epoll;
+import io.netty.channel.epoll.EpollEventLoopGroup;
+import io.netty.channel.epoll.EpollServerDomainSocketChannel;
+import io.netty.channel.epoll.EpollServerSocketChannel;
+import io.netty.channel.epoll.EpollSocketChannel;
+import io.netty.channel.nio.NioEventLoopGroup;
+import io.netty.channel.socket.ServerSocketChannel;
+import io.netty.channel.socket.SocketChannel;
+import io.netty.channel.socket.nio.NioServerSocketChannel;
+import io.netty.channel.socket.nio.NioSocketChannel;
+import io.netty.incubator.channel.uring.IOUring;
+import io.netty.incubator.channel.uring.IOUringEventLoopGroup;
+import io.netty.incubator.channel.uring.IOUringServerSocketChannel;
+import io.netty.incubator.channel.uring.IOUringSocketChannel;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * 代理使用的网络传输，启动时根据配置和平台能力确定
+ * <p>
+ * 请求的原生传输不可用时回退到NIO；编解码与handler对所有传输保持一致
+ *
+ * @author ouwu
+ */
+@Slf4j
+public final class ProxyTransport {
+    @Getter
+    private final TransportType type;
+
+    private ProxyTransport(TransportType type) {
+        this.type = type;
+    }
+
+    /**
+     * 解析实际使用的传输
+     * @param requested 配置的传输，为空时视为NIO
+     * @param domainSocketRequired 是否配置了domain socket监听
+     * @return 可用的传输
+     */
+    public static ProxyTransport resolve(TransportType requested, boolean domainSocketRequired) {
+        TransportType type = requested == null ? TransportType.NIO : requested;
+        switch (type) {
+            case AUTO:
+                if (!domainSocketRequired && IOUring.isAvailable()) {
+                    type = TransportType.IO_URING;
+                } else if (Epoll.isAvailable()) {
+                    type = TransportType.EPOLL;
+                } else {
+                    type = TransportType.NIO;
+                }
+                break;
+            case EPOLL:
+                if (!Epoll.isAvailable()) {
+                    log.warn("[Transport] epoll unavailable, falling back to NIO", Epoll.unavailabilityCause());
+                    type = TransportType.NIO;
+                }
+                break;
+            case IO_URING:
+                if (!IOUring.isAvailable()) {
+                    log.warn("[Transport] io_uring unavailable, falling back to NIO", IOUring.unavailabilityCause());
+                    type = TransportType.NIO;
+                }
+                break;
+            default:
+                break;
+        }
+        log.info("[Transport] requested {}, using {}", requested, type);
+        return new ProxyTransport(type);
+    }
+
+    public EventLoopGroup newEventLoopGroup(int threads) {
+        switch (type) {
+            case EPOLL:
+                return new EpollEventLoopGroup(threads);
+            case IO_URING:
+                return new IOUringEventLoopGroup(threads);
+            default:
+                return new NioEventLoopGroup(threads);
+        }
+    }
+
+    public Class<? extends ServerSocketChannel> serverChannelClass() {
+        switch (type) {
+            case EPOLL:
+                return EpollServerSocketChannel.class;
+            case IO_URING:
+                return IOUringServerSocketChannel.class;
+            default:
+                return NioServerSocketChannel.class;
+        }
+    }
+
+    public Class<? extends SocketChannel> socketChannelClass() {
+        switch (type) {
+            case EPOLL:
+                return EpollSocketChannel.class;
+            case IO_URING:
+                return IOUringSocketChannel.class;
+            default:
+                return NioSocketChannel.class;
+        }
+    }
+
+    /**
+     * 是否支持Unix domain socket监听
+     */
+    public boolean supportsDomainSocket() {
+        return type == TransportType.EPOLL;
+    }
+
+    public Class<? extends ServerChannel> domainServerChannelClass() {
+        return EpollServerDomainSocketChannel.class;
+    }
+}
@@ -0,0 +1,37 @@
+import io.debuggerx.core.processor.EventProcessor;
+import io.debuggerx.core.processor.ProcessorProvider;
+import io.debuggerx.core.processor.registry.CommandProcessorRegistry;
+import io.debuggerx.core.processor.registry.EventProcessorRegistry;
+import io.debuggerx.core.session.DebugSession;
+import io.debuggerx.protocol.enums.EventKind;
+import io.debuggerx.protocol.jdwp.IdSizes;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 经ServiceLoader注册，包装METHOD_EXIT事件处理器并统计其解析次数
+ *
+ * @author ouwu
+ */
+public class CountingProcessorProvider implements ProcessorProvider {
+    static final AtomicInteger METHOD_EXIT_READS = new AtomicInteger();
+
+    @Override
+    public void registerProcessors(CommandProcessorRegistry commandProcessors, EventProcessorRegistry eventProcessors) {
+        EventProcessor delegate = eventProcessors.getProcessor(EventKind.METHOD_EXIT)
+                .orElseThrow(IllegalStateException::new);
+        eventProcessors.register(EventKind.METHOD_EXIT, new EventProcessor() {
+            @Override
+            public boolean supports(EventKind eventKind) {
+                return eventKind == EventKind.METHOD_EXIT;
+            }
+
+            @Override
+            public int readEvent(ByteBuffer buffer, IdSizes idSizes, EventKind eventKind, DebugSession session) {
+                METHOD_EXIT_READS.incrementAndGet();
+                return delegate.readEvent(buffer, idSizes, eventKind, session);
+            }
+        });
+    }
+}
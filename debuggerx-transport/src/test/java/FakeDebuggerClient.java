@@ -0,0 +1,276 @@
+import io.debuggerx.common.constants.JdwpConstants;
+import io.debuggerx.common.exception.DebuggerException;
+import io.debuggerx.protocol.enums.EventKind;
+import io.debuggerx.protocol.packet.JdwpHeader;
+import io.debuggerx.protocol.packet.JdwpPacket;
+import io.debuggerx.transport.codec.JdwpPacketDecoder;
+import io.debuggerx.transport.codec.JdwpPacketEncoder;
+import io.netty.bootstrap.Bootstrap;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.channel.ChannelInitializer;
+import io.netty.channel.ChannelOption;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.socket.nio.NioSocketChannel;
+
+import java.io.Closeable;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.IntToLongFunction;
+
+/**
+ * 脚本化的假调试器客户端，经代理连接{@link FakeJdwpServer}
+ * <p>
+ * 命令同步等待回复；收到的复合事件按{@link FakeJdwpServer#sentAt(int)}记录转发延迟
+ *
+ * @author ouwu
+ */
+public class FakeDebuggerClient implements Closeable {
+    private static final long REPLY_TIMEOUT_SECONDS = 10;
+
+    private final EventLoopGroup group;
+    private final IntToLongFunction sentAt;
+    private final CountDownLatch handshake = new CountDownLatch(1);
+    private final AtomicInteger nextId = new AtomicInteger(1);
+    private final Map<Integer, CompletableFuture<ByteBuffer>> pendingReplies = new ConcurrentHashMap<>();
+
+    private int idSize = 8;
+    private Channel channel;
+    /**
+     * 仅在事件循环线程上写入，先写延迟再递增计数，读取方以计数为准
+     */
+    private long[] latencies = new long[1024];
+    private volatile int eventCount;
+    /**
+     * 收到的复合事件中包含的事件总数
+     */
+    private volatile int innerEventCount;
+
+    /**
+     * @param group 客户端事件循环
+     * @param sentAt 事件包id -> 发送时间
+     */
+    public FakeDebuggerClient(EventLoopGroup group, IntToLongFunction sentAt) {
+        this.group = group;
+        this.sentAt = sentAt;
+    }
+
+    /**
+     * 连接代理并完成握手
+     */
+    public void connect(InetSocketAddress proxyAddress) throws InterruptedException {
+        connect(proxyAddress, null);
+    }
+
+    /**
+     * 连接代理，握手前发送会话选择行
+     * @param session 会话ID或目标名称，null时不发送
+     */
+    public void connect(InetSocketAddress proxyAddress, String session) throws InterruptedException {
+        channel = new Bootstrap()
+                .group(group)
+                .channel(NioSocketChannel.class)
+                .option(ChannelOption.TCP_NODELAY, true)
+                .handler(new ChannelInitializer<Channel>() {
+                    @Override
+                    protected void initChannel(Channel ch) {
+                        ch.pipeline()
+                                .addLast(new JdwpPacketDecoder())
+                                .addLast(new JdwpPacketEncoder())
+                                .addLast(new ClientHandler());
+                    }
+                })
+                .connect(proxyAddress).sync().channel();
+        // 代理拒绝连接时不必等到超时
+        channel.closeFuture().addListener(future -> handshake.countDown());
+        if (session != null) {
+            channel.write(Unpooled.copiedBuffer(JdwpConstants.SESSION_SELECTOR_PREFIX + session + "\n", StandardCharsets.UTF_8));
+        }
+        channel.writeAndFlush(Unpooled.wrappedBuffer(JdwpConstants.HANDSHAKE_PACKET));
+        if (!handshake.await(REPLY_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+            throw new DebuggerException("JDWP handshake timed out");
+        }
+        if (!channel.isActive()) {
+            throw new DebuggerException("Connection closed by proxy during handshake");
+        }
+    }
+
+    /**
+     * VirtualMachine.IDSizes，之后的命令按返回的id长度编码
+     * @return objectID长度
+     */
+    public int idSizes() {
+        ByteBuffer reply = command((byte) 1, (byte) 7, Unpooled.EMPTY_BUFFER);
+        reply.getInt();
+        reply.getInt();
+        idSize = reply.getInt();
+        return idSize;
+    }
+
+    /**
+     * EventRequest.Set，BREAKPOINT附带LocationOnly修饰符
+     * @param kind 事件类型
+     * @return 事件请求id
+     */
+    public int setEventRequest(EventKind kind) {
+        ByteBuf data = Unpooled.buffer();
+        data.writeByte(kind.id);
+        data.writeByte(0);
+        if (kind == EventKind.BREAKPOINT) {
+            data.writeInt(1);
+            // LocationOnly
+            data.writeByte(7);
+            data.writeByte(1);
+            writeId(data, 0x2000);
+            writeId(data, 0x3000);
+            data.writeLong(0);
+        } else {
+            data.writeInt(0);
+        }
+        return command((byte) 15, (byte) 1, data).getInt();
+    }
+
+    /**
+     * EventRequest.Clear
+     */
+    public void clearEventRequest(EventKind kind, int requestId) {
+        ByteBuf data = Unpooled.buffer();
+        data.writeByte(kind.id);
+        data.writeInt(requestId);
+        command((byte) 15, (byte) 2, data);
+    }
+
+    /**
+     * 发送命令并等待回复
+     * @param data 命令数据，所有权转移
+     * @return 回复数据(拷贝)
+     * @throws DebuggerException 超时或回复错误码非0
+     */
+    public ByteBuffer command(byte commandSet, byte command, ByteBuf data) {
+        try {
+            return send(commandSet, command, data).get(REPLY_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        } catch (Exception e) {
+            throw new DebuggerException("Command " + commandSet + "/" + command + " failed: " + e);
+        }
+    }
+
+    /**
+     * 发送命令，不等待回复
+     * @param data 命令数据，所有权转移
+     * @return 回复数据(拷贝)，错误码非0时异常完成
+     */
+    public CompletableFuture<ByteBuffer> send(byte commandSet, byte command, ByteBuf data) {
+        int id = nextId.getAndIncrement();
+        CompletableFuture<ByteBuffer> reply = new CompletableFuture<>();
+        pendingReplies.put(id, reply);
+        reply.whenComplete((result, error) -> pendingReplies.remove(id));
+
+        JdwpHeader header = new JdwpHeader();
+        header.setId(id);
+        header.setFlags(JdwpConstants.FLAG_COMMAND);
+        header.setCommandSet(commandSet);
+        header.setCommand(command);
+        channel.writeAndFlush(new JdwpPacket(header, data));
+        return reply;
+    }
+
+    /**
+     * 等待收到指定数量的事件包
+     * @return 是否在超时前收齐
+     */
+    public boolean awaitEvents(int count, long timeout, TimeUnit unit) throws InterruptedException {
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        while (eventCount < count) {
+            if (System.nanoTime() - deadline >= 0) {
+                return false;
+            }
+            TimeUnit.MILLISECONDS.sleep(5);
+        }
+        return true;
+    }
+
+    public int getEventCount() {
+        return eventCount;
+    }
+
+    public int getInnerEventCount() {
+        return innerEventCount;
+    }
+
+    /**
+     * @return 每个事件包从假JVM写出到本客户端读到的延迟(纳秒)
+     */
+    public long[] getLatencies() {
+        int count = eventCount;
+        return Arrays.copyOf(latencies, count);
+    }
+
+    @Override
+    public void close() {
+        if (channel != null) {
+            channel.close().syncUninterruptibly();
+        }
+    }
+
+    private void recordEvent(int eventId) {
+        int count = eventCount;
+        if (count == latencies.length) {
+            latencies = Arrays.copyOf(latencies, latencies.length * 2);
+        }
+        latencies[count] = System.nanoTime() - sentAt.applyAsLong(eventId);
+        eventCount = count + 1;
+    }
+
+    private void writeId(ByteBuf out, long value) {
+        if (idSize == 8) {
+            out.writeLong(value);
+        } else {
+            out.writeInt((int) value);
+        }
+    }
+
+    private final class ClientHandler extends ChannelInboundHandlerAdapter {
+        @Override
+        public void channelRead(ChannelHandlerContext ctx, Object msg) {
+            if (msg instanceof byte[]) {
+                handshake.countDown();
+                return;
+            }
+            ByteBuf frame = (ByteBuf) msg;
+            JdwpPacket packet = JdwpPacket.decode(frame);
+            try {
+                JdwpHeader header = packet.getHeader();
+                if (header.isCommand()) {
+                    innerEventCount += packet.content().getInt(packet.content().readerIndex() + 1);
+                    recordEvent(header.getId());
+                    return;
+                }
+                CompletableFuture<ByteBuffer> reply = pendingReplies.get(header.getId());
+                if (reply == null) {
+                    return;
+                }
+                if (header.getErrorCode() != 0) {
+                    reply.completeExceptionally(new DebuggerException("JDWP error " + header.getErrorCode()));
+                } else {
+                    byte[] data = new byte[packet.dataLength()];
+                    packet.content().getBytes(packet.content().readerIndex(), data);
+                    reply.complete(ByteBuffer.wrap(data));
+                }
+            } finally {
+                packet.release();
+                frame.release();
+            }
+        }
+    }
+}
@@ -0,0 +1,436 @@
+import io.debuggerx.common.constants.JdwpConstants;
+import io.debuggerx.protocol.enums.EventKind;
+import io.debuggerx.protocol.packet.JdwpHeader;
+import io.debuggerx.protocol.packet.JdwpPacket;
+import io.debuggerx.transport.codec.JdwpPacketDecoder;
+import io.debuggerx.transport.codec.JdwpPacketEncoder;
+import io.netty.bootstrap.ServerBootstrap;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.channel.ChannelInitializer;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.nio.NioEventLoopGroup;
+import io.netty.channel.socket.nio.NioServerSocketChannel;
+import io.netty.util.concurrent.Promise;
+import io.netty.util.concurrent.ScheduledFuture;
+
+import java.io.Closeable;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * 压测用的假JDWP目标，代替真实的被调试JVM
+ * <p>
+ * 完成握手，应答VirtualMachine.Version/IDSizes、EventRequest.Set/Clear、ReferenceType.Signature、Method.LineTable
+ * 和ArrayReference.GetValues(int数组，第i个元素为i，用于大回复)，
+ * 其余命令回复NOT_IMPLEMENTED；可按目标速率发送BREAKPOINT、SINGLE_STEP、METHOD_ENTRY、CLASS_PREPARE复合事件风暴。
+ * 事件包id依次递增并记录发送时间，供{@link FakeDebuggerClient}计算经代理转发的延迟。
+ *
+ * @author ouwu
+ */
+public class FakeJdwpServer implements Closeable {
+    private static final int SENT_AT_SLOTS = 1 << 20;
+    private static final short ERROR_NOT_IMPLEMENTED = 99;
+    private static final byte SUSPEND_POLICY_NONE = 0;
+    private static final byte TYPE_TAG_CLASS = 1;
+    private static final int CLASS_STATUS_PREPARED = 7;
+    public static final String CLASS_SIGNATURE = "Lcom/example/fake/FakeTarget;";
+    public static final long CLASS_ID = 0x2000;
+    public static final long METHOD_ID = 0x3000;
+    public static final long THREAD_GROUP_ID = 0x100;
+
+    private final int idSize;
+    private final EventLoopGroup group = new NioEventLoopGroup(1);
+    private final CountDownLatch connected = new CountDownLatch(1);
+    /**
+     * 各事件类型已创建的事件请求id
+     */
+    private final Map<EventKind, List<Integer>> requestIds = new ConcurrentHashMap<>();
+    private final AtomicInteger nextRequestId = new AtomicInteger(1);
+    /**
+     * 按 commandSet << 8 | command 统计收到的命令数
+     */
+    private final Map<Integer, AtomicInteger> commandCounts = new ConcurrentHashMap<>();
+    /**
+     * 经VirtualMachine.DisposeObjects释放的objectID
+     */
+    private final Set<Long> disposedObjects = ConcurrentHashMap.newKeySet();
+    /**
+     * 事件包id -> 发送时的{@link System#nanoTime()}，按id取模的环形槽
+     */
+    private final AtomicLongArray sentAt = new AtomicLongArray(SENT_AT_SLOTS);
+    /**
+     * 非null时下一个ArrayReference.GetValues回复只写出前一半，其余在该future完成后写出
+     */
+    private final AtomicReference<CompletableFuture<Void>> splitValuesReply = new AtomicReference<>();
+    /**
+     * 事件包id，仅在事件循环线程上递增
+     */
+    private int nextEventId = 1;
+
+    private Channel serverChannel;
+    private volatile Channel proxyChannel;
+
+    /**
+     * @param idSize 所有id的字节数(4或8)
+     */
+    public FakeJdwpServer(int idSize) {
+        this.idSize = idSize;
+    }
+
+    /**
+     * 在本地随机端口上监听
+     * @return 监听端口
+     */
+    public int start() throws InterruptedException {
+        serverChannel = new ServerBootstrap()
+                .group(group)
+                .channel(NioServerSocketChannel.class)
+                .childHandler(new ChannelInitializer<Channel>() {
+                    @Override
+                    protected void initChannel(Channel ch) {
+                        ch.pipeline()
+                                .addLast(new JdwpPacketDecoder())
+                                .addLast(new JdwpPacketEncoder())
+                                .addLast(new CommandHandler());
+                    }
+                })
+                .bind("127.0.0.1", 0).sync().channel();
+        return ((InetSocketAddress) serverChannel.localAddress()).getPort();
+    }
+
+    /**
+     * 等待代理连接并完成握手
+     */
+    public boolean awaitConnection(long timeout, TimeUnit unit) throws InterruptedException {
+        return connected.await(timeout, unit);
+    }
+
+    /**
+     * 事件包的发送时间
+     * @param eventId 事件包id
+     * @return 发送时的{@link System#nanoTime()}
+     */
+    public long sentAt(int eventId) {
+        return sentAt.get(eventId & (SENT_AT_SLOTS - 1));
+    }
+
+    /**
+     * 收到的命令数
+     * @return 代理转发到假JVM的该命令数量
+     */
+    public int commandCount(int commandSet, int command) {
+        AtomicInteger count = commandCounts.get(commandSet << 8 | command);
+        return count == null ? 0 : count.get();
+    }
+
+    /**
+     * @return 是否收到过释放该objectID的DisposeObjects
+     */
+    public boolean isDisposed(long objectId) {
+        return disposedObjects.contains(objectId);
+    }
+
+    /**
+     * 按目标速率发送事件风暴，事件类型轮流取自kinds
+     * @param kinds 事件类型，须已有对应的事件请求
+     * @param count 事件包总数
+     * @param eventsPerSecond 目标速率
+     * @return 全部写出后完成，结果为发送的事件包数
+     */
+    public Promise<Integer> storm(EventKind[] kinds, int count, int eventsPerSecond) {
+        Channel channel = proxyChannel;
+        Promise<Integer> done = channel.eventLoop().newPromise();
+        Storm storm = new Storm(channel, kinds, count, eventsPerSecond, done);
+        storm.future = channel.eventLoop().scheduleAtFixedRate(storm, 0, 1, TimeUnit.MILLISECONDS);
+        return done;
+    }
+
+    /**
+     * 下一个ArrayReference.GetValues回复分两次写出，代理收到前一半时按分段转发
+     * @param rest 完成后写出后一半
+     */
+    public void splitNextValuesReply(CompletableFuture<Void> rest) {
+        splitValuesReply.set(rest);
+    }
+
+    @Override
+    public void close() {
+        if (serverChannel != null) {
+            serverChannel.close().syncUninterruptibly();
+        }
+        if (proxyChannel != null) {
+            proxyChannel.close().syncUninterruptibly();
+        }
+        group.shutdownGracefully(0, 1, TimeUnit.SECONDS).syncUninterruptibly();
+    }
+
+    private final class Storm implements Runnable {
+        private final Channel channel;
+        private final EventKind[] kinds;
+        private final int count;
+        private final int eventsPerSecond;
+        private final Promise<Integer> done;
+        private final long startedAt = System.nanoTime();
+        private int sent;
+        private ScheduledFuture<?> future;
+
+        private Storm(Channel channel, EventKind[] kinds, int count, int eventsPerSecond, Promise<Integer> done) {
+            this.channel = channel;
+            this.kinds = kinds;
+            this.count = count;
+            this.eventsPerSecond = eventsPerSecond;
+            this.done = done;
+        }
+
+        @Override
+        public void run() {
+            if (!channel.isActive()) {
+                future.cancel(false);
+                done.tryFailure(new IllegalStateException("proxy disconnected after " + sent + " events"));
+                return;
+            }
+            // 按已经过时间补齐应发数量；代理读不过来(不可写)时本轮跳过，之后追赶
+            long due = Math.min(count, (System.nanoTime() - startedAt) * eventsPerSecond / TimeUnit.SECONDS.toNanos(1) + 1);
+            while (sent < due && channel.isWritable()) {
+                channel.write(newEvent(kinds[sent % kinds.length]));
+                sent++;
+            }
+            channel.flush();
+            if (sent >= count) {
+                future.cancel(false);
+                done.trySuccess(sent);
+            }
+        }
+    }
+
+    private JdwpPacket newEvent(EventKind kind) {
+        // 与真实JVM一致：同一事件命中多个事件请求时，复合事件中每个请求各带一个事件
+        List<Integer> registered = requestIds.get(kind);
+        Integer[] ids = registered == null || registered.isEmpty() ? new Integer[]{0} : registered.toArray(new Integer[0]);
+
+        ByteBuf data = Unpooled.buffer();
+        data.writeByte(SUSPEND_POLICY_NONE);
+        data.writeInt(ids.length);
+        for (int requestId : ids) {
+            data.writeByte(kind.id);
+            data.writeInt(requestId);
+            writeId(data, 0x1000);
+            data.writeByte(TYPE_TAG_CLASS);
+            writeId(data, CLASS_ID);
+            if (kind == EventKind.CLASS_PREPARE) {
+                writeString(data, CLASS_SIGNATURE);
+                data.writeInt(CLASS_STATUS_PREPARED);
+            } else {
+                // location: class、method、code index
+                writeId(data, METHOD_ID);
+                data.writeLong(nextEventId);
+            }
+        }
+
+        int eventId = nextEventId++;
+        JdwpHeader header = new JdwpHeader();
+        header.setId(eventId);
+        header.setFlags(JdwpConstants.FLAG_COMMAND);
+        header.setCommandSet((byte) 64);
+        header.setCommand((byte) 100);
+        sentAt.set(eventId & (SENT_AT_SLOTS - 1), System.nanoTime());
+        return new JdwpPacket(header, data);
+    }
+
+    private final class CommandHandler extends ChannelInboundHandlerAdapter {
+        @Override
+        public void channelRead(ChannelHandlerContext ctx, Object msg) {
+            if (msg instanceof byte[]) {
+                ctx.writeAndFlush(Unpooled.wrappedBuffer(JdwpConstants.HANDSHAKE_PACKET));
+                proxyChannel = ctx.channel();
+                connected.countDown();
+                return;
+            }
+            ByteBuf frame = (ByteBuf) msg;
+            JdwpPacket command = JdwpPacket.decode(frame);
+            try {
+                JdwpPacket reply = reply(command);
+                CompletableFuture<Void> rest = command.getHeader().getCommandSet() == 13 && command.getHeader().getCommand() == 2
+                        ? splitValuesReply.getAndSet(null) : null;
+                if (rest == null) {
+                    ctx.writeAndFlush(reply);
+                    return;
+                }
+                ByteBuf encoded = reply.encode(ctx.alloc());
+                reply.release();
+                int half = encoded.readableBytes() / 2;
+                ctx.writeAndFlush(encoded.retainedSlice(0, half));
+                rest.thenRun(() -> ctx.writeAndFlush(encoded.slice(half, encoded.readableBytes() - half)));
+            } finally {
+                command.release();
+                frame.release();
+            }
+        }
+    }
+
+    private JdwpPacket reply(JdwpPacket command) {
+        JdwpHeader commandHeader = command.getHeader();
+        commandCounts.computeIfAbsent(commandHeader.getCommandSet() << 8 | commandHeader.getCommand(), k -> new AtomicInteger())
+                .incrementAndGet();
+        ByteBuf data = Unpooled.buffer();
+        short errorCode = 0;
+        switch (commandHeader.getCommandSet() << 8 | commandHeader.getCommand()) {
+            // VirtualMachine.Version
+            case 1 << 8 | 1:
+                writeString(data, "Fake JDWP target");
+                data.writeInt(1);
+                data.writeInt(8);
+                writeString(data, "1.8.0");
+                writeString(data, "FakeVM");
+                break;
+            // VirtualMachine.TopLevelThreadGroups
+            case 1 << 8 | 5:
+                data.writeInt(1);
+                writeId(data, THREAD_GROUP_ID);
+                break;
+            // VirtualMachine.ClassesBySignature
+            case 1 << 8 | 2: {
+                ByteBuf content = command.content();
+                boolean loaded = CLASS_SIGNATURE.equals(content.toString(content.readerIndex() + 4,
+                        content.getInt(content.readerIndex()), StandardCharsets.UTF_8));
+                data.writeInt(loaded ? 1 : 0);
+                if (loaded) {
+                    data.writeByte(TYPE_TAG_CLASS);
+                    writeId(data, CLASS_ID);
+                    data.writeInt(CLASS_STATUS_PREPARED);
+                }
+                break;
+            }
+            // VirtualMachine.AllClasses
+            case 1 << 8 | 3:
+                data.writeInt(1);
+                data.writeByte(TYPE_TAG_CLASS);
+                writeId(data, CLASS_ID);
+                writeString(data, CLASS_SIGNATURE);
+                data.writeInt(CLASS_STATUS_PREPARED);
+                break;
+            // VirtualMachine.AllClassesWithGeneric
+            case 1 << 8 | 20:
+                data.writeInt(1);
+                data.writeByte(TYPE_TAG_CLASS);
+                writeId(data, CLASS_ID);
+                writeString(data, CLASS_SIGNATURE);
+                writeString(data, "");
+                data.writeInt(CLASS_STATUS_PREPARED);
+                break;
+            // VirtualMachine.DisposeObjects
+            case 1 << 8 | 14: {
+                ByteBuf content = command.content();
+                int requests = content.getInt(content.readerIndex());
+                for (int i = 0; i < requests; i++) {
+                    int index = content.readerIndex() + 4 + i * (idSize + 4);
+                    disposedObjects.add(idSize == 8 ? content.getLong(index) : content.getUnsignedInt(index));
+                }
+                break;
+            }
+            // VirtualMachine.RedefineClasses
+            case 1 << 8 | 18:
+                break;
+            // VirtualMachine.IDSizes
+            case 1 << 8 | 7:
+                for (int i = 0; i < 5; i++) {
+                    data.writeInt(idSize);
+                }
+                break;
+            // EventRequest.Set
+            case 15 << 8 | 1: {
+                EventKind kind = EventKind.findByValue(command.dataByte(0));
+                int requestId = nextRequestId.getAndIncrement();
+                requestIds.computeIfAbsent(kind, k -> new CopyOnWriteArrayList<>()).add(requestId);
+                data.writeInt(requestId);
+                break;
+            }
+            // EventRequest.Clear
+            case 15 << 8 | 2: {
+                EventKind kind = EventKind.findByValue(command.dataByte(0));
+                List<Integer> ids = requestIds.get(kind);
+                if (ids != null) {
+                    ids.remove(Integer.valueOf(command.content().getInt(command.content().readerIndex() + 1)));
+                }
+                break;
+            }
+            // ReferenceType.Signature
+            case 2 << 8 | 1:
+                writeString(data, CLASS_SIGNATURE);
+                break;
+            // ReferenceType.SignatureWithGeneric
+            case 2 << 8 | 13:
+                writeString(data, CLASS_SIGNATURE);
+                writeString(data, "");
+                break;
+            // ReferenceType.Methods
+            case 2 << 8 | 5:
+                data.writeInt(1);
+                writeId(data, METHOD_ID);
+                writeString(data, "run");
+                writeString(data, "()V");
+                data.writeInt(1);
+                break;
+            // Method.LineTable
+            case 6 << 8 | 1:
+                data.writeLong(0);
+                data.writeLong(90);
+                data.writeInt(10);
+                for (int i = 0; i < 10; i++) {
+                    data.writeLong(i * 10L);
+                    data.writeInt(20 + i);
+                }
+                break;
+            // ArrayReference.GetValues
+            case 13 << 8 | 2: {
+                ByteBuf content = command.content();
+                int firstIndex = content.getInt(content.readerIndex() + idSize);
+                int length = content.getInt(content.readerIndex() + idSize + 4);
+                data.writeByte('I');
+                data.writeInt(length);
+                for (int i = 0; i < length; i++) {
+                    data.writeInt(firstIndex + i);
+                }
+                break;
+            }
+            default:
+                errorCode = ERROR_NOT_IMPLEMENTED;
+                break;
+        }
+
+        JdwpHeader header = new JdwpHeader();
+        header.setId(commandHeader.getId());
+        header.setFlags(JdwpConstants.FLAG_REPLY_PACKET);
+        header.setErrorCode(errorCode);
+        return new JdwpPacket(header, data);
+    }
+
+    private void writeId(ByteBuf out, long value) {
+        if (idSize == 8) {
+            out.writeLong(value);
+        } else {
+            out.writeInt((int) value);
+        }
+    }
+
+    private static void writeString(ByteBuf out, String value) {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.writeBytes(bytes);
+    }
+}
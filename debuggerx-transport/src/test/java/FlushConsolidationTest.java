@@ -0,0 +1,64 @@
+import io.debuggerx.common.enums.ConnectionType;
+import io.debuggerx.core.metrics.ChannelTraffic;
+import io.debuggerx.core.metrics.ProxyMetrics;
+import io.debuggerx.transport.handler.TrafficMetricsHandler;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.handler.flush.FlushConsolidationHandler;
+import io.netty.util.ReferenceCountUtil;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * 合并flush后，一个读周期内转发的多个包只flush一次，并计入每次flush的包数
+ *
+ * @author ouwu
+ */
+public class FlushConsolidationTest {
+
+    @Test
+    public void testWritesOfReadCycleFlushedOnReadComplete() {
+        EmbeddedChannel channel = newChannel();
+        ChannelTraffic traffic = ProxyMetrics.getInstance().trafficOf(channel);
+
+        // 一次读取中的三个流水线命令，每个都回写一个包
+        channel.writeInbound(packet(1), packet(2), packet(3));
+        Assert.assertEquals(3, traffic.getPacketsOut().sum());
+        Assert.assertEquals(1, traffic.getFlushes().sum());
+        Assert.assertEquals(3, releaseOutbound(channel));
+
+        StringBuilder metrics = new StringBuilder();
+        ProxyMetrics.getInstance().writePrometheus(metrics);
+        Assert.assertTrue(metrics.toString().contains("debuggerx_packets_per_flush{role=\"debugger\"}"));
+        channel.finishAndReleaseAll();
+    }
+
+    private static EmbeddedChannel newChannel() {
+        return new EmbeddedChannel(
+                new TrafficMetricsHandler(ConnectionType.DEBUGGER_PROXY),
+                new FlushConsolidationHandler(256, true),
+                new ChannelInboundHandlerAdapter() {
+                    @Override
+                    public void channelRead(ChannelHandlerContext ctx, Object msg) {
+                        ctx.writeAndFlush(msg);
+                    }
+                });
+    }
+
+    private static ByteBuf packet(int id) {
+        return Unpooled.buffer().writeInt(11).writeInt(id).writeByte(0).writeByte(1).writeByte(1);
+    }
+
+    private static int releaseOutbound(EmbeddedChannel channel) {
+        int count = 0;
+        Object msg;
+        while ((msg = channel.readOutbound()) != null) {
+            ReferenceCountUtil.release(msg);
+            count++;
+        }
+        return count;
+    }
+}
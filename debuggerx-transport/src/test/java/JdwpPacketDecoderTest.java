@@ -0,0 +1,138 @@
+import io.debuggerx.common.constants.JdwpConstants;
+import io.debuggerx.core.session.DebugSession;
+import io.debuggerx.core.session.SessionManager;
+import io.debuggerx.protocol.packet.JdwpFrameChunk;
+import io.debuggerx.transport.codec.JdwpPacketDecoder;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.DefaultChannelId;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.util.ReferenceCountUtil;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * 大回复分段输出：按读取切分为头、数据段与最后一段，一次读全的回复仍按整帧输出
+ *
+ * @author ouwu
+ */
+public class JdwpPacketDecoderTest {
+    private static final int THRESHOLD = 64;
+    private static final int DATA_LENGTH = 200;
+
+    private final SessionManager sessionManager = SessionManager.getInstance();
+
+    private EmbeddedChannel jvmChannel;
+    private EmbeddedChannel debuggerChannel;
+    private DebugSession session;
+
+    @Before
+    public void setUp() {
+        jvmChannel = new EmbeddedChannel(new JdwpPacketDecoder(THRESHOLD));
+        jvmChannel.writeInbound(Unpooled.wrappedBuffer(JdwpConstants.HANDSHAKE_PACKET));
+        Assert.assertTrue(jvmChannel.readInbound() instanceof byte[]);
+        session = sessionManager.createJvmServerSession(jvmChannel);
+        debuggerChannel = new EmbeddedChannel(DefaultChannelId.newInstance());
+        session.addDebugger(debuggerChannel);
+    }
+
+    @After
+    public void tearDown() {
+        sessionManager.removeSession(jvmChannel);
+        jvmChannel.finishAndReleaseAll();
+        debuggerChannel.finishAndReleaseAll();
+    }
+
+    @Test
+    public void testLargeReplyChunkedAcrossReads() {
+        int id = streamableCommand();
+        ByteBuf frame = reply(id, DATA_LENGTH);
+        ByteBuf next = reply(streamableCommand(), 4);
+
+        jvmChannel.writeInbound(frame.retainedSlice(0, 20));
+        JdwpFrameChunk head = jvmChannel.readInbound();
+        Assert.assertTrue(head.isHead());
+        Assert.assertEquals(JdwpConstants.HEADER_LENGTH, head.content().readableBytes());
+        Assert.assertEquals(id, head.content().getInt(4));
+        assertChunk(jvmChannel.readInbound(), frame, 11, 9, false);
+        Assert.assertNull(jvmChannel.readInbound());
+
+        jvmChannel.writeInbound(frame.retainedSlice(20, 100));
+        assertChunk(jvmChannel.readInbound(), frame, 20, 100, false);
+
+        // 最后一段之后的字节属于下一帧
+        jvmChannel.writeInbound(Unpooled.wrappedBuffer(frame.retainedSlice(120, frame.readableBytes() - 120), next.retain()));
+        assertChunk(jvmChannel.readInbound(), frame, 120, frame.readableBytes() - 120, true);
+        ByteBuf whole = jvmChannel.readInbound();
+        Assert.assertEquals(next, whole);
+        Assert.assertNull(jvmChannel.readInbound());
+
+        ReferenceCountUtil.release(head);
+        whole.release();
+        frame.release();
+        next.release();
+    }
+
+    @Test
+    public void testReplyCompleteInOneReadNotChunked() {
+        ByteBuf frame = reply(streamableCommand(), DATA_LENGTH);
+
+        jvmChannel.writeInbound(frame.retainedDuplicate());
+        Object decoded = jvmChannel.readInbound();
+        Assert.assertFalse(decoded instanceof JdwpFrameChunk);
+        Assert.assertEquals(frame, decoded);
+        Assert.assertNull(jvmChannel.readInbound());
+
+        ReferenceCountUtil.release(decoded);
+        frame.release();
+    }
+
+    @Test
+    public void testUnknownReplyWaitsForWholeFrame() {
+        // 没有在途命令的回复无法判断是否需要处理，不分段
+        ByteBuf frame = reply(0x7000, DATA_LENGTH);
+
+        jvmChannel.writeInbound(frame.retainedSlice(0, 100));
+        Assert.assertNull(jvmChannel.readInbound());
+        jvmChannel.writeInbound(frame.retainedSlice(100, frame.readableBytes() - 100));
+        ByteBuf whole = jvmChannel.readInbound();
+        Assert.assertEquals(frame, whole);
+
+        whole.release();
+        frame.release();
+    }
+
+    /**
+     * 登记一个无需处理器检查回复的调试器命令(ArrayReference.GetValues)
+     */
+    private int streamableCommand() {
+        int id = session.getNewIdAndSaveOriginLink(1, debuggerChannel, (byte) 13, (byte) 2);
+        Assert.assertTrue(session.isStreamableReply(id));
+        return id;
+    }
+
+    private static ByteBuf reply(int id, int dataLength) {
+        ByteBuf frame = Unpooled.buffer()
+                .writeInt(JdwpConstants.HEADER_LENGTH + dataLength)
+                .writeInt(id)
+                .writeByte(JdwpConstants.FLAG_REPLY_PACKET)
+                .writeShort(0);
+        for (int i = 0; i < dataLength; i++) {
+            frame.writeByte(i);
+        }
+        return frame;
+    }
+
+    private static void assertChunk(Object decoded, ByteBuf frame, int offset, int length, boolean last) {
+        JdwpFrameChunk chunk = (JdwpFrameChunk) decoded;
+        try {
+            Assert.assertFalse(chunk.isHead());
+            Assert.assertEquals(last, chunk.isLast());
+            Assert.assertEquals(frame.slice(offset, length), chunk.content());
+        } finally {
+            chunk.release();
+        }
+    }
+}
@@ -0,0 +1,148 @@
+import io.debuggerx.common.config.DebuggerConfig;
+import io.debuggerx.common.exception.DebuggerException;
+import io.debuggerx.core.session.DebugSession;
+import io.debuggerx.core.session.SessionManager;
+import io.debuggerx.transport.server.DebugProxyServer;
+import io.netty.channel.Channel;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.nio.NioEventLoopGroup;
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.util.Collection;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 一个{@link DebugProxyServer}同时服务两个JVM：调试器按监听端口或握手前的选择行选择会话，
+ * 每个会话使用各自JVM的ID长度
+ *
+ * @author ouwu
+ */
+public class MultiSessionProxyTest {
+    private static final String SECOND = "second";
+
+    private static FakeJdwpServer first;
+    private static FakeJdwpServer second;
+    private static DebugProxyServer proxy;
+    private static EventLoopGroup clientGroup;
+
+    @BeforeClass
+    public static void startProxy() throws Exception {
+        first = new FakeJdwpServer(8);
+        second = new FakeJdwpServer(4);
+        int firstPort = first.start();
+        int secondPort = second.start();
+
+        DebuggerConfig config = DebuggerConfig.getDefault();
+        config.setJvmServerHost("127.0.0.1");
+        config.setJvmServerPort(firstPort);
+        config.setDebuggerProxyPort(0);
+        config.setJvmTargets(SECOND + "=127.0.0.1:" + secondPort + "@" + freePort());
+        proxy = new DebugProxyServer(config);
+        proxy.startAsync();
+
+        Assert.assertTrue(first.awaitConnection(10, TimeUnit.SECONDS));
+        Assert.assertTrue(second.awaitConnection(10, TimeUnit.SECONDS));
+        awaitSessions(2);
+        clientGroup = new NioEventLoopGroup(1);
+    }
+
+    @AfterClass
+    public static void stopProxy() throws InterruptedException {
+        if (clientGroup != null) {
+            clientGroup.shutdownGracefully(0, 1, TimeUnit.SECONDS).syncUninterruptibly();
+        }
+        if (first != null) {
+            first.close();
+        }
+        if (second != null) {
+            second.close();
+        }
+        // 会话随JVM断开移除，避免影响同一JVM中的其他测试
+        awaitSessions(0);
+        if (proxy != null) {
+            proxy.shutdown();
+        }
+    }
+
+    @Test
+    public void testDebuggerSelectsSessionByListenerPort() throws Exception {
+        try (FakeDebuggerClient onDefault = newClient(proxy.getDebuggerProxyAddress(), null);
+             FakeDebuggerClient onSecond = newClient(proxy.getDebuggerProxyAddress(SECOND), null)) {
+            Assert.assertEquals(8, onDefault.idSizes());
+            Assert.assertEquals(4, onSecond.idSizes());
+        }
+    }
+
+    @Test
+    public void testDebuggerSelectsSessionBySelectorLine() throws Exception {
+        SessionManager sessionManager = SessionManager.getInstance();
+        DebugSession secondSession = sessionManager.findSession(SECOND);
+        try (FakeDebuggerClient byName = newClient(proxy.getDebuggerProxyAddress(), SECOND);
+             FakeDebuggerClient byId = newClient(proxy.getDebuggerProxyAddress(SECOND), sessionManager.findSession("default").getSessionId())) {
+            Assert.assertEquals(4, byName.idSizes());
+            Assert.assertEquals(8, byId.idSizes());
+            Assert.assertEquals(4, secondSession.getVmInfo().getIdSizes().getObjectIdSize());
+        }
+    }
+
+    @Test
+    public void testDebuggersPinnedToTheirSessionEventLoop() throws Exception {
+        try (FakeDebuggerClient onDefault = newClient(proxy.getDebuggerProxyAddress(), null);
+             FakeDebuggerClient bySelector = newClient(proxy.getDebuggerProxyAddress(), SECOND);
+             FakeDebuggerClient onSecond = newClient(proxy.getDebuggerProxyAddress(SECOND), null)) {
+            Assert.assertEquals(4, bySelector.idSizes());
+            for (DebugSession session : SessionManager.getInstance().getSessions()) {
+                for (Channel debugger : session.getDebuggerChannels().values()) {
+                    Assert.assertSame(session.getJvmServerChannel().eventLoop(), debugger.eventLoop());
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testUnknownSessionRejected() throws Exception {
+        try {
+            newClient(proxy.getDebuggerProxyAddress(), "missing").close();
+            Assert.fail("debugger selecting an unknown session should be rejected");
+        } catch (DebuggerException expected) {
+            // 代理关闭连接，不回复握手
+        }
+        try {
+            SessionManager.getInstance().findJvmServerSession();
+            Assert.fail("several sessions require an explicit choice");
+        } catch (DebuggerException expected) {
+            // 多个会话时必须按ID或名称查找
+        }
+    }
+
+    private static FakeDebuggerClient newClient(InetSocketAddress address, String session) throws InterruptedException {
+        FakeDebuggerClient client = new FakeDebuggerClient(clientGroup, id -> System.nanoTime());
+        try {
+            client.connect(new InetSocketAddress("127.0.0.1", address.getPort()), session);
+        } catch (DebuggerException e) {
+            client.close();
+            throw e;
+        }
+        return client;
+    }
+
+    private static int freePort() throws Exception {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+
+    private static void awaitSessions(int count) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        Collection<DebugSession> sessions = SessionManager.getInstance().getSessions();
+        while (sessions.size() != count || !sessions.stream().allMatch(DebugSession::isHandshakeCompleted)) {
+            Assert.assertTrue("expected " + count + " sessions", System.nanoTime() < deadline);
+            TimeUnit.MILLISECONDS.sleep(10);
+        }
+    }
+}
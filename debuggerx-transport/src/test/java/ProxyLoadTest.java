@@ -0,0 +1,379 @@
+import io.debuggerx.common.config.DebuggerConfig;
+import io.debuggerx.common.exception.DebuggerException;
+import io.debuggerx.core.metrics.ProxyMetrics;
+import io.debuggerx.core.service.ClassSearch;
+import io.debuggerx.core.session.ClassIndex;
+import io.debuggerx.core.session.DebugSession;
+import io.debuggerx.core.session.NameQuery;
+import io.debuggerx.core.session.SessionManager;
+import io.debuggerx.protocol.enums.EventKind;
+import io.debuggerx.transport.server.DebugProxyServer;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.nio.NioEventLoopGroup;
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 经{@link DebugProxyServer}的端到端压测：假JVM发送事件风暴，多个假调试器接收并统计吞吐与p99转发延迟
+ * <p>
+ * 规模可通过系统属性调整：loadTest.clients、loadTest.events、loadTest.rate(事件包/秒)
+ *
+ * @author ouwu
+ */
+public class ProxyLoadTest {
+    private static final int ID_SIZE = 8;
+    private static final EventKind[] STORM_KINDS = {
+            EventKind.BREAKPOINT, EventKind.SINGLE_STEP, EventKind.METHOD_ENTRY, EventKind.CLASS_PREPARE
+    };
+
+    private static FakeJdwpServer jvm;
+    private static DebugProxyServer proxy;
+    private static EventLoopGroup clientGroup;
+
+    @BeforeClass
+    public static void startProxy() throws Exception {
+        jvm = new FakeJdwpServer(ID_SIZE);
+        int jvmPort = jvm.start();
+
+        DebuggerConfig config = DebuggerConfig.getDefault();
+        config.setJvmServerHost("127.0.0.1");
+        config.setJvmServerPort(jvmPort);
+        config.setDebuggerProxyPort(0);
+        config.setReplyStreamThreshold(1 << 20);
+        proxy = new DebugProxyServer(config);
+        proxy.startAsync();
+
+        Assert.assertTrue(jvm.awaitConnection(10, TimeUnit.SECONDS));
+        awaitSession();
+        clientGroup = new NioEventLoopGroup(2);
+    }
+
+    @AfterClass
+    public static void stopProxy() {
+        if (clientGroup != null) {
+            clientGroup.shutdownGracefully(0, 1, TimeUnit.SECONDS).syncUninterruptibly();
+        }
+        if (jvm != null) {
+            jvm.close();
+        }
+        if (proxy != null) {
+            proxy.shutdown();
+        }
+    }
+
+    @Test
+    public void testCommandsRoundTripThroughProxy() throws Exception {
+        try (FakeDebuggerClient client = newClient()) {
+            Assert.assertEquals(ID_SIZE, client.idSizes());
+
+            int requestId = client.setEventRequest(EventKind.BREAKPOINT);
+            Assert.assertTrue(requestId > 0);
+            client.clearEventRequest(EventKind.BREAKPOINT, requestId);
+
+            ByteBuffer signature = client.command((byte) 2, (byte) 1, Unpooled.buffer().writeLong(0x2000));
+            byte[] bytes = new byte[signature.getInt()];
+            signature.get(bytes);
+            Assert.assertEquals("Lcom/example/fake/FakeTarget;", new String(bytes, StandardCharsets.UTF_8));
+
+            try {
+                client.command((byte) 11, (byte) 1, Unpooled.buffer().writeLong(1));
+                Assert.fail("unsupported command should fail");
+            } catch (DebuggerException expected) {
+                // 假JVM对未实现的命令回复错误码
+            }
+        }
+    }
+
+    @Test
+    public void testLargeReplyStreamedThrough() throws Exception {
+        int length = 1 << 20;
+        try (FakeDebuggerClient client = newClient()) {
+            client.idSizes();
+            StringBuilder before = new StringBuilder();
+            ProxyMetrics.getInstance().writePrometheus(before);
+
+            // 4MB的回复分段转发，调试器按自己的id收到逐字节一致的回复
+            ByteBuffer values = client.command((byte) 13, (byte) 2,
+                    Unpooled.buffer().writeLong(0x4000).writeInt(0).writeInt(length));
+            Assert.assertEquals(5 + 4 * length, values.remaining());
+            Assert.assertEquals('I', values.get());
+            Assert.assertEquals(length, values.getInt());
+            for (int i = 0; i < length; i++) {
+                Assert.assertEquals(i, values.getInt());
+            }
+
+            StringBuilder after = new StringBuilder();
+            ProxyMetrics.getInstance().writePrometheus(after);
+            Assert.assertEquals(counter(before, "debuggerx_streamed_replies_total") + 1,
+                    counter(after, "debuggerx_streamed_replies_total"));
+        }
+    }
+
+    @Test
+    public void testLocalRepliesHeldUntilStreamedReplyEnds() throws Exception {
+        int length = 1 << 20;
+        try (FakeDebuggerClient client = newClient()) {
+            client.idSizes();
+            long streamed = streamedReplies();
+            CompletableFuture<Void> rest = new CompletableFuture<>();
+            jvm.splitNextValuesReply(rest);
+            CompletableFuture<ByteBuffer> values = client.send((byte) 13, (byte) 2,
+                    Unpooled.buffer().writeLong(0x4000).writeInt(0).writeInt(length));
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+            while (streamedReplies() == streamed && System.nanoTime() < deadline) {
+                Thread.sleep(10);
+            }
+            Assert.assertEquals(streamed + 1, streamedReplies());
+
+            // 回复头已写出，代理本地应答的IDSizes不能插入到回复中间
+            CompletableFuture<ByteBuffer> idSizes = client.send((byte) 1, (byte) 7, Unpooled.EMPTY_BUFFER);
+            Thread.sleep(100);
+            Assert.assertFalse(idSizes.isDone());
+            rest.complete(null);
+
+            ByteBuffer data = values.get(10, TimeUnit.SECONDS);
+            Assert.assertEquals('I', data.get());
+            Assert.assertEquals(length, data.getInt());
+            for (int i = 0; i < length; i++) {
+                Assert.assertEquals(i, data.getInt());
+            }
+            Assert.assertEquals(ID_SIZE, idSizes.get(10, TimeUnit.SECONDS).getInt());
+        }
+    }
+
+    @Test
+    public void testMetadataQueriesServedFromReplyCache() throws Exception {
+        try (FakeDebuggerClient first = newClient(); FakeDebuggerClient second = newClient()) {
+            first.idSizes();
+            int before = jvm.commandCount(2, 1);
+            for (FakeDebuggerClient client : Arrays.asList(first, second, first)) {
+                ByteBuffer signature = client.command((byte) 2, (byte) 1, Unpooled.buffer().writeLong(0x2100));
+                Assert.assertEquals("Lcom/example/fake/FakeTarget;".length(), signature.getInt());
+            }
+            Assert.assertEquals(1, jvm.commandCount(2, 1) - before);
+        }
+    }
+
+    @Test
+    public void testRedefineInvalidatesCachedReplies() throws Exception {
+        try (FakeDebuggerClient client = newClient()) {
+            client.idSizes();
+            int before = jvm.commandCount(2, 1);
+            client.command((byte) 2, (byte) 1, Unpooled.buffer().writeLong(0x2300));
+            client.command((byte) 2, (byte) 1, Unpooled.buffer().writeLong(0x2300));
+            Assert.assertEquals(1, jvm.commandCount(2, 1) - before);
+
+            // 重定义回复到达后缓存失效
+            client.command((byte) 1, (byte) 18, Unpooled.buffer()
+                    .writeInt(1).writeLong(0x2300).writeInt(4).writeInt(0xCAFEBABE));
+            client.command((byte) 2, (byte) 1, Unpooled.buffer().writeLong(0x2300));
+            Assert.assertEquals(2, jvm.commandCount(2, 1) - before);
+        }
+    }
+
+    @Test
+    public void testBootstrapQueriesAnsweredByProxy() throws Exception {
+        try (FakeDebuggerClient first = newClient()) {
+            first.idSizes();
+            first.command((byte) 1, (byte) 1, Unpooled.EMPTY_BUFFER);
+            first.command((byte) 1, (byte) 5, Unpooled.EMPTY_BUFFER);
+        }
+        int idSizes = jvm.commandCount(1, 7);
+        int versions = jvm.commandCount(1, 1);
+        int threadGroups = jvm.commandCount(1, 5);
+        try (FakeDebuggerClient second = newClient()) {
+            Assert.assertEquals(ID_SIZE, second.idSizes());
+            ByteBuffer groups = second.command((byte) 1, (byte) 5, Unpooled.EMPTY_BUFFER);
+            Assert.assertEquals(1, groups.getInt());
+            Assert.assertEquals(FakeJdwpServer.THREAD_GROUP_ID, groups.getLong());
+            second.command((byte) 1, (byte) 1, Unpooled.EMPTY_BUFFER);
+
+            Assert.assertEquals(idSizes, jvm.commandCount(1, 7));
+            Assert.assertEquals(versions, jvm.commandCount(1, 1));
+            Assert.assertEquals(threadGroups, jvm.commandCount(1, 5));
+
+            // 共享的顶层线程组不能被某个调试器释放
+            int disposes = jvm.commandCount(1, 14);
+            second.command((byte) 1, (byte) 14, Unpooled.buffer()
+                    .writeInt(2).writeLong(FakeJdwpServer.THREAD_GROUP_ID).writeInt(1).writeLong(0x4000).writeInt(1));
+            Assert.assertEquals(disposes + 1, jvm.commandCount(1, 14));
+            Assert.assertFalse(jvm.isDisposed(FakeJdwpServer.THREAD_GROUP_ID));
+            Assert.assertTrue(jvm.isDisposed(0x4000));
+        }
+    }
+
+    @Test
+    public void testClassQueriesAnsweredFromIndex() throws Exception {
+        try (FakeDebuggerClient client = newClient()) {
+            client.idSizes();
+            ClassIndex index = SessionManager.getInstance().getSessions().iterator().next().getClassIndex();
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+            while (!index.isReady() && System.nanoTime() < deadline) {
+                Thread.sleep(10);
+            }
+            Assert.assertTrue(index.isReady());
+
+            int allClasses = jvm.commandCount(1, 3);
+            int resyncs = jvm.commandCount(1, 20);
+            long localReplies = index.getLocalReplyCount();
+            ByteBuffer classes = client.command((byte) 1, (byte) 20, Unpooled.EMPTY_BUFFER);
+            Assert.assertEquals(1, classes.getInt());
+            Assert.assertEquals(1, classes.get());
+            Assert.assertEquals(FakeJdwpServer.CLASS_ID, classes.getLong());
+            classes = client.command((byte) 1, (byte) 3, Unpooled.EMPTY_BUFFER);
+            Assert.assertEquals(1, classes.getInt());
+            Assert.assertEquals(allClasses, jvm.commandCount(1, 3));
+            Assert.assertEquals(localReplies + 2, index.getLocalReplyCount());
+
+            // 本地应答类列表后在后台重新同步数组类与未准备的类
+            while (jvm.commandCount(1, 20) == resyncs && System.nanoTime() < deadline) {
+                Thread.sleep(10);
+            }
+            Assert.assertTrue(jvm.commandCount(1, 20) > resyncs);
+
+            int bySignature = jvm.commandCount(1, 2);
+            byte[] signature = FakeJdwpServer.CLASS_SIGNATURE.getBytes(StandardCharsets.UTF_8);
+            ByteBuffer matches = client.command((byte) 1, (byte) 2, Unpooled.buffer().writeInt(signature.length).writeBytes(signature));
+            Assert.assertEquals(1, matches.getInt());
+            Assert.assertEquals(1, matches.get());
+            Assert.assertEquals(FakeJdwpServer.CLASS_ID, matches.getLong());
+            Assert.assertEquals(bySignature, jvm.commandCount(1, 2));
+
+            // 未命中的签名以JVM为准
+            byte[] missing = "Lcom/example/fake/Missing;".getBytes(StandardCharsets.UTF_8);
+            Assert.assertEquals(0, client.command((byte) 1, (byte) 2, Unpooled.buffer().writeInt(missing.length).writeBytes(missing)).getInt());
+            Assert.assertEquals(bySignature + 1, jvm.commandCount(1, 2));
+
+            DebugSession session = SessionManager.getInstance().findJvmServerSession();
+            ClassSearch.Result found = ClassSearch.search(session, NameQuery.className("com.example.fake.", null),
+                    NameQuery.methodName("ru", null), 10, 5000);
+            Assert.assertEquals(1, found.getHits().size());
+            Assert.assertEquals("com.example.fake.FakeTarget", found.getHits().get(0).getType().getName());
+            Assert.assertEquals("run", found.getHits().get(0).getMethods().get(0).getName());
+            int methods = jvm.commandCount(2, 5);
+            ClassSearch.search(session, NameQuery.className("*Target", null), NameQuery.methodName("run", null), 10, 5000);
+            Assert.assertEquals(methods, jvm.commandCount(2, 5));
+        }
+    }
+
+    @Test
+    public void testEventsDeliveredOnlyToRequestOwner() throws Exception {
+        try (FakeDebuggerClient owner = newClient(); FakeDebuggerClient bystander = newClient()) {
+            owner.idSizes();
+            bystander.idSizes();
+            owner.setEventRequest(EventKind.METHOD_EXIT);
+            int reads = CountingProcessorProvider.METHOD_EXIT_READS.get();
+
+            Assert.assertEquals(100, (int) jvm.storm(new EventKind[]{EventKind.METHOD_EXIT}, 100, 10000).get(10, TimeUnit.SECONDS));
+            Assert.assertTrue(owner.awaitEvents(100, 10, TimeUnit.SECONDS));
+            Assert.assertEquals(0, bystander.getEventCount());
+            // 每个事件只解析一次
+            Assert.assertEquals(reads + 100, CountingProcessorProvider.METHOD_EXIT_READS.get());
+        }
+    }
+
+    @Test
+    public void testCompositeEventSplitPerClient() throws Exception {
+        try (FakeDebuggerClient first = newClient(); FakeDebuggerClient second = newClient()) {
+            first.idSizes();
+            second.idSizes();
+            // 两个请求命中同一事件，假JVM发出包含两个事件的复合事件
+            first.setEventRequest(EventKind.METHOD_ENTRY);
+            second.setEventRequest(EventKind.METHOD_ENTRY);
+
+            Assert.assertEquals(50, (int) jvm.storm(new EventKind[]{EventKind.METHOD_ENTRY}, 50, 10000).get(10, TimeUnit.SECONDS));
+            Assert.assertTrue(first.awaitEvents(50, 10, TimeUnit.SECONDS));
+            Assert.assertTrue(second.awaitEvents(50, 10, TimeUnit.SECONDS));
+            Assert.assertEquals(50, first.getInnerEventCount());
+            Assert.assertEquals(50, second.getInnerEventCount());
+        }
+    }
+
+    @Test
+    public void testEventStormReachesEveryClient() throws Exception {
+        int clientCount = Integer.getInteger("loadTest.clients", 4);
+        int events = Integer.getInteger("loadTest.events", 5000);
+        int rate = Integer.getInteger("loadTest.rate", 2000);
+
+        List<FakeDebuggerClient> clients = new ArrayList<>();
+        try {
+            for (int i = 0; i < clientCount; i++) {
+                FakeDebuggerClient client = newClient();
+                clients.add(client);
+                client.idSizes();
+                for (EventKind kind : STORM_KINDS) {
+                    client.setEventRequest(kind);
+                }
+            }
+
+            long startedAt = System.nanoTime();
+            Assert.assertEquals(events, (int) jvm.storm(STORM_KINDS, events, rate).get(60, TimeUnit.SECONDS));
+            for (FakeDebuggerClient client : clients) {
+                client.awaitEvents(events, 60, TimeUnit.SECONDS);
+            }
+            int[] received = clients.stream().mapToInt(FakeDebuggerClient::getEventCount).toArray();
+            for (int count : received) {
+                Assert.assertEquals("events received per client: " + Arrays.toString(received), events, count);
+            }
+            long elapsedNanos = System.nanoTime() - startedAt;
+
+            long[] latencies = clients.stream().map(FakeDebuggerClient::getLatencies)
+                    .flatMapToLong(Arrays::stream).sorted().toArray();
+            Assert.assertEquals((long) events * clientCount, latencies.length);
+            System.out.printf("[ProxyLoadTest] %d clients, %d events at %d/s: %.0f deliveries/s, p50=%dus p99=%dus max=%dus%n",
+                    clientCount, events, rate,
+                    latencies.length * 1e9 / elapsedNanos,
+                    percentileMicros(latencies, 0.50),
+                    percentileMicros(latencies, 0.99),
+                    percentileMicros(latencies, 1.0));
+        } finally {
+            clients.forEach(FakeDebuggerClient::close);
+        }
+    }
+
+    private static FakeDebuggerClient newClient() throws InterruptedException {
+        FakeDebuggerClient client = new FakeDebuggerClient(clientGroup, jvm::sentAt);
+        client.connect(new InetSocketAddress("127.0.0.1", proxy.getDebuggerProxyAddress().getPort()));
+        return client;
+    }
+
+    private static void awaitSession() throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (SessionManager.getInstance().getSessions().stream().noneMatch(DebugSession::isHandshakeCompleted)) {
+            Assert.assertTrue("proxy did not complete the JVM handshake", System.nanoTime() < deadline);
+            TimeUnit.MILLISECONDS.sleep(10);
+        }
+    }
+
+    private static long percentileMicros(long[] sorted, double percentile) {
+        int index = (int) Math.min(sorted.length - 1, Math.ceil(percentile * sorted.length) - 1);
+        return TimeUnit.NANOSECONDS.toMicros(sorted[Math.max(index, 0)]);
+    }
+
+    private static long streamedReplies() {
+        StringBuilder metrics = new StringBuilder();
+        ProxyMetrics.getInstance().writePrometheus(metrics);
+        return counter(metrics, "debuggerx_streamed_replies_total");
+    }
+
+    private static long counter(CharSequence metrics, String name) {
+        for (String line : metrics.toString().split("\n")) {
+            if (line.startsWith(name + " ")) {
+                return Long.parseLong(line.substring(name.length() + 1));
+            }
+        }
+        throw new AssertionError("missing metric " + name);
+    }
+}